@@ -145,6 +145,13 @@ public interface MycatDataContext extends Wrapper, SessionOpt {
         return ((Number) this.getProcessStateMap().getOrDefault("MERGE_UNION_SIZE", MetaClusterCurrent.exist(ServerConfig.class) ? MetaClusterCurrent.wrapper(ServerConfig.class).getMergeUnionSize() : -1)).intValue();
     }
 
+    /**
+     * 本条语句通过hint指定的分组聚合并行度,未指定时返回-1
+     */
+    default public int getAggregateParallelism() {
+        return ((Number) this.getProcessStateMap().getOrDefault("AGGREGATE_PARALLELISM", -1)).intValue();
+    }
+
     boolean isDebug();
 
     public void setDebug(boolean value);
@@ -153,6 +160,13 @@ public interface MycatDataContext extends Wrapper, SessionOpt {
 
     public void setVector(boolean value);
 
+    /**
+     * 会话执行过改变后端会话状态的语句(SET,临时表,锁表等)后不再使用共用连接
+     */
+    boolean isBackendSessionPinned();
+
+    void setBackendSessionPinned(boolean value);
+
     public Integer getLock(String name, long time);
 
     public Integer releaseLock(String name);
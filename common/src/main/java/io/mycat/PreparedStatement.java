@@ -64,6 +64,10 @@ public class PreparedStatement {
      */
     private Map<Long, ByteArrayOutputStream> longDataMap;
     private BindValue[] bindValues;
+    /**
+     * 准备时绑定的执行计划,由计算层设置
+     */
+    private Object attach;
 
     public PreparedStatement(long id, SQLStatement statement, int parametersNumber) {
         this.id = id;
@@ -210,4 +214,12 @@ public class PreparedStatement {
     public void setBindValues(BindValue[] bindValues) {
         this.bindValues = bindValues;
     }
+
+    public Object getAttach() {
+        return attach;
+    }
+
+    public void setAttach(Object attach) {
+        this.attach = attach;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package io.mycat.newquery;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
+import com.alibaba.druid.sql.ast.statement.*;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlLockTableStatement;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 按语法树判断语句与后端会话状态的关系,决定能否使用共用连接
+ */
+public class MultiplexSQLChecker {
+    /**
+     * 结果依赖或者会改变后端会话状态的函数
+     */
+    private static final Set<String> SESSION_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "get_lock", "release_lock", "release_all_locks", "is_free_lock", "is_used_lock",
+            "last_insert_id", "found_rows", "row_count", "connection_id"));
+
+    /**
+     * 不加锁,不读写变量,不依赖会话状态的查询
+     */
+    public static boolean isMultiplexable(SQLStatement statement) {
+        if (!(statement instanceof SQLSelectStatement)) {
+            return false;
+        }
+        SessionStateVisitor visitor = new SessionStateVisitor();
+        statement.accept(visitor);
+        return !visitor.sessionDependent;
+    }
+
+    /**
+     * 执行后后端会话状态被改变的语句,之后该会话不再使用共用连接.
+     * 只算会到达后端的语句,SET NAMES,autocommit与会话变量由mycat保存,不改变后端会话
+     */
+    public static boolean isSessionAltering(SQLStatement statement) {
+        if (statement instanceof SQLSetStatement) {
+            return assignsUserVariable((SQLSetStatement) statement);
+        }
+        if (statement instanceof MySqlLockTableStatement) {
+            return true;
+        }
+        if (statement instanceof SQLCreateTableStatement) {
+            return ((SQLCreateTableStatement) statement).getType() != null;
+        }
+        if (statement instanceof SQLDropTableStatement) {
+            return ((SQLDropTableStatement) statement).isTemporary();
+        }
+        SessionStateVisitor visitor = new SessionStateVisitor();
+        statement.accept(visitor);
+        return visitor.altering;
+    }
+
+    private static boolean assignsUserVariable(SQLSetStatement statement) {
+        for (SQLAssignItem item : statement.getItems()) {
+            if (isUserVariable(item.getTarget())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * select into的目标解析为标识符或者标识符列表
+     */
+    private static boolean isUserVariable(SQLExpr expr) {
+        String name;
+        if (expr instanceof SQLVariantRefExpr) {
+            name = ((SQLVariantRefExpr) expr).getName();
+        } else if (expr instanceof SQLIdentifierExpr) {
+            name = ((SQLIdentifierExpr) expr).getName();
+        } else if (expr instanceof SQLListExpr) {
+            for (SQLExpr item : ((SQLListExpr) expr).getItems()) {
+                if (isUserVariable(item)) {
+                    return true;
+                }
+            }
+            return false;
+        } else {
+            return false;
+        }
+        return name.startsWith("@") && !name.startsWith("@@");
+    }
+
+    static class SessionStateVisitor extends MySqlASTVisitorAdapter {
+        boolean sessionDependent;
+        /**
+         * 加锁或者给用户变量赋值
+         */
+        boolean altering;
+
+        @Override
+        public boolean visit(SQLVariantRefExpr x) {
+            if (!"?".equals(x.getName())) {
+                sessionDependent = true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean visit(SQLMethodInvokeExpr x) {
+            String name = x.getMethodName();
+            if (name != null && SESSION_FUNCTIONS.contains(name.toLowerCase())) {
+                sessionDependent = true;
+                if (name.toLowerCase().endsWith("_lock")) {
+                    altering = true;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(SQLBinaryOpExpr x) {
+            if (x.getOperator() == SQLBinaryOperator.Assignment && isUserVariable(x.getLeft())) {
+                sessionDependent = true;
+                altering = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean visit(MySqlSelectQueryBlock x) {
+            if (x.isForUpdate() || x.isLockInShareMode() || x.getInto() != null) {
+                sessionDependent = true;
+            }
+            if (x.getInto() != null && isUserVariable(x.getInto().getExpr())) {
+                altering = true;
+            }
+            return true;
+        }
+    }
+}
@@ -31,7 +31,16 @@ public interface NewMycatConnection {
 
     Observable<VectorSchemaRoot> prepareQuery(String sql, List<Object> params, BufferAllocator allocator);
 
-    Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus);
+    default Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus) {
+        return prepareQuery(sql, params, serverstatus, 0);
+    }
+
+    /**
+     * 以mysql报文原样输出结果集,用于直接转发给客户端
+     *
+     * @param packetIdOffset 客户端当前的包序号,输出的报文序号都加上该值
+     */
+    Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus, int packetIdOffset);
 
     Future<List<Object>> call(String sql);
 
@@ -59,6 +68,20 @@ public interface NewMycatConnection {
 
     public Future<Void> abandonQuery();
 
+    /**
+     * 暂停读取当前查询的结果,下游消费不过来时调用
+     */
+    default void pauseQuery() {
+
+    }
+
+    /**
+     * 恢复读取当前查询的结果
+     */
+    default void resumeQuery() {
+
+    }
+
     public boolean isQuerying();
 
     public void onActiveTimestamp(long timestamp);
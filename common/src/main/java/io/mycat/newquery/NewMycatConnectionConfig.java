@@ -4,4 +4,12 @@ public class NewMycatConnectionConfig {
     public static boolean PASS_HALF_PACKET = true;
     public static boolean FORCE_NATIVE_DATASOURCE = false;
     public static boolean CLIENT_DEPRECATE_EOF = true;
+    /**
+     * 每个原生数据源上供自动提交只读查询共用的连接数,0表示不共用
+     */
+    public static int MULTIPLEX_SIZE = 0;
+    /**
+     * 共用连接上排队的查询超过该值时改用独占连接
+     */
+    public static int MULTIPLEX_MAX_PENDING = 32;
 }
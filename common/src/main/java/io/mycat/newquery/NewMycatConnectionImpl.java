@@ -14,6 +14,7 @@ import io.mycat.beans.mysql.packet.ColumnDefPacketImpl;
 import io.mycat.config.DatasourceConfig;
 import io.reactivex.rxjava3.core.Observable;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
@@ -55,6 +56,9 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
 
     private DatasourceConfig config;
 
+    private final Object pauseLock = new Object();
+    private volatile boolean paused = false;
+
     public NewMycatConnectionImpl(String targetName,boolean needLastInsertId, Connection connection) {
         this.targetName = targetName;
         this.needLastInsertId = needLastInsertId;
@@ -128,6 +132,7 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
                                 objects[j] = resultSet.getObject(i);
                             }
                             collector.onRow(objects);
+                            awaitResume();
                         }
                     }
                 } else {
@@ -150,6 +155,7 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
                                 objects[j] = resultSet.getObject(i);
                             }
                             collector.onRow(objects);
+                            awaitResume();
                         }
                     }
                 }
@@ -160,6 +166,7 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
                 return Future.failedFuture(e);
             } finally {
                 resultSet = null;
+                paused = false;
             }
             collector.onComplete();
             return Future.succeededFuture();
@@ -178,6 +185,39 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
 //        }
     }
 
+    /**
+     * 下游要求暂停时阻塞读取结果的工作线程,事件循环线程上不阻塞
+     */
+    private void awaitResume() {
+        if (!paused || Context.isOnEventLoopThread()) {
+            return;
+        }
+        synchronized (pauseLock) {
+            try {
+                while (paused && !isResultSetClosed()) {
+                    pauseLock.wait(1000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void pauseQuery() {
+        paused = true;
+    }
+
+    @Override
+    public void resumeQuery() {
+        if (paused) {
+            synchronized (pauseLock) {
+                paused = false;
+                pauseLock.notifyAll();
+            }
+        }
+    }
+
     private boolean isResultSetClosed() {
         try {
             return resultSet == null || resultSet.isClosed();
@@ -287,7 +327,7 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
     }
 
     @Override
-    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus) {
+    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus, int packetIdOffset) {
         return Observable.create(emitter -> {
             synchronized (NewMycatConnectionImpl.this) {
                 this.future = this.future.transform(new Function<AsyncResult<Void>, Future<Void>>() {
@@ -308,7 +348,7 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
                                 resultSet = statement.executeQuery(paramize);
                                 NewMycatConnectionImpl.this.onRev();
                                 int columnCount = resultSet.getMetaData().getColumnCount();
-                                int packetId = 1;
+                                int packetId = 1 + packetIdOffset;
                                 MycatRowMetaData metaData = getJdbcRowMetaData(resultSet.getMetaData());
                                 MycatRelDataType mycatRelDataType = metaData.getMycatRelDataType();
                                 List<MycatField> fieldList = mycatRelDataType.getFieldList();
@@ -634,6 +674,7 @@ public class NewMycatConnectionImpl implements NewMycatConnection {
             JdbcUtils.close(resultSet);
             resultSet = null;
         }
+        resumeQuery();
         return Future.succeededFuture();
     }
 
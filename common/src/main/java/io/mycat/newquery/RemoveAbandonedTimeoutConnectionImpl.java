@@ -67,8 +67,8 @@ public class RemoveAbandonedTimeoutConnectionImpl implements NewMycatConnection
         return connection.prepareQuery(sql, params, allocator);
     }
 
-    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus) {
-        return connection.prepareQuery(sql, params, serverstatus);
+    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus, int packetIdOffset) {
+        return connection.prepareQuery(sql, params, serverstatus, packetIdOffset);
     }
 
     public Future<List<Object>> call(String sql) {
@@ -123,6 +123,14 @@ public class RemoveAbandonedTimeoutConnectionImpl implements NewMycatConnection
         return connection.abandonQuery();
     }
 
+    public void pauseQuery() {
+        connection.pauseQuery();
+    }
+
+    public void resumeQuery() {
+        connection.resumeQuery();
+    }
+
     public boolean isQuerying() {
         return connection.isQuerying();
     }
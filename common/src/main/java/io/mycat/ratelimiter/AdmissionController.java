@@ -0,0 +1,241 @@
+package io.mycat.ratelimiter;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import io.mycat.IOExecutor;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.MycatException;
+import io.mycat.beans.mysql.MySQLErrorCode;
+import io.mycat.config.AdmissionControlConfig;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 前端准入控制.
+ * 语句在解析,优化和获取后端连接之前,按用户,库,参数化sql三个维度的令牌桶限制qps,
+ * 超出时在maxWaitMillis内排队等待令牌,否则直接拒绝.
+ * 分片表全表扫描与跨分片join在执行前按类别限制并发
+ */
+public class AdmissionController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionController.class);
+    public static final AdmissionController INSTANCE = new AdmissionController();
+
+    public static final String USER = "user";
+    public static final String SCHEMA = "schema";
+    public static final String SQL = "sql";
+
+    public static enum HeavyQueryType {
+        FULL_SCAN,
+        CROSS_SHARD_JOIN
+    }
+
+    private volatile boolean enable;
+    private volatile long maxWaitNanos;
+    private volatile long heavyQueryMaxWaitMillis;
+    private volatile Map<String, TokenBucket> userBuckets = Collections.emptyMap();
+    private volatile Map<String, TokenBucket> schemaBuckets = Collections.emptyMap();
+    private volatile Map<String, TokenBucket> sqlBuckets = Collections.emptyMap();
+    private volatile Map<HeavyQueryType, ConcurrencyLimiter> heavyLimiters = Collections.emptyMap();
+
+    /**
+     * 维度 -> 限制的key -> 拒绝次数
+     */
+    private final Map<String, Map<String, LongAdder>> rejectCounts = new ConcurrentHashMap<>();
+    private final LongAdder queuedCount = new LongAdder();
+
+    public synchronized void configure(AdmissionControlConfig config) {
+        this.enable = config.isEnable();
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getMaxWaitMillis()));
+        this.heavyQueryMaxWaitMillis = Math.max(0, config.getHeavyQueryMaxWaitMillis());
+        this.userBuckets = buckets(config.getUserQps(), Function.identity());
+        this.schemaBuckets = buckets(config.getSchemaQps(), Function.identity());
+        this.sqlBuckets = buckets(config.getSqlQps(), AdmissionController::fingerprint);
+        EnumMap<HeavyQueryType, ConcurrencyLimiter> limiters = new EnumMap<>(HeavyQueryType.class);
+        if (config.getFullScanConcurrency() > 0) {
+            limiters.put(HeavyQueryType.FULL_SCAN, new ConcurrencyLimiter(config.getFullScanConcurrency(), config.getHeavyQueryMaxQueue()));
+        }
+        if (config.getCrossShardJoinConcurrency() > 0) {
+            limiters.put(HeavyQueryType.CROSS_SHARD_JOIN, new ConcurrencyLimiter(config.getCrossShardJoinConcurrency(), config.getHeavyQueryMaxQueue()));
+        }
+        this.heavyLimiters = limiters;
+    }
+
+    private static Map<String, TokenBucket> buckets(Map<String, Integer> qpsMap, Function<String, String> keyMapper) {
+        if (qpsMap == null || qpsMap.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        HashMap<String, TokenBucket> map = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : qpsMap.entrySet()) {
+            Integer qps = entry.getValue();
+            if (qps != null && qps > 0) {
+                map.put(keyMapper.apply(entry.getKey()), new TokenBucket(qps));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * sql指纹,参数化失败时使用原文
+     */
+    public static String fingerprint(String sql) {
+        try {
+            return ParameterizedOutputVisitorUtils.parameterize(sql, DbType.mysql);
+        } catch (Throwable throwable) {
+            LOGGER.debug("parameterize sql:{} fail", sql, throwable);
+            return sql;
+        }
+    }
+
+    public boolean isEnable() {
+        return enable;
+    }
+
+    /**
+     * 用户与库维度在调用线程上检查,sql维度需要参数化sql,在工作线程上计算指纹后检查
+     *
+     * @param sqlSupplier 只有配置了sql维度的限制时才会调用
+     */
+    public Future<Void> admit(String user, String schema, Supplier<String> sqlSupplier) {
+        if (!enable) {
+            return Future.succeededFuture();
+        }
+        long maxWaitNanos = this.maxWaitNanos;
+        List<TokenBucket> reserved = new ArrayList<>(3);
+        long now = System.nanoTime();
+        long userWait = reserve(user, userBuckets, now, maxWaitNanos, reserved);
+        if (userWait < 0) {
+            return rejectReserved(USER, user, userBuckets, reserved);
+        }
+        long schemaWait = reserve(schema, schemaBuckets, now, maxWaitNanos, reserved);
+        if (schemaWait < 0) {
+            return rejectReserved(SCHEMA, schema, schemaBuckets, reserved);
+        }
+        long userSchemaWait = Math.max(userWait, schemaWait);
+        Map<String, TokenBucket> sqlBuckets = this.sqlBuckets;
+        if (sqlBuckets.isEmpty()) {
+            return delay(userSchemaWait);
+        }
+        IOExecutor ioExecutor = MetaClusterCurrent.wrapper(IOExecutor.class);
+        return ioExecutor.executeBlocking((Promise<String> promise) -> promise.complete(fingerprint(sqlSupplier.get())))
+                .compose(key -> {
+                    long sqlWait = reserve(key, sqlBuckets, System.nanoTime(), maxWaitNanos, reserved);
+                    if (sqlWait < 0) {
+                        return rejectReserved(SQL, key, sqlBuckets, reserved);
+                    }
+                    return delay(Math.max(userSchemaWait, sqlWait));
+                });
+    }
+
+    /**
+     * @return 需要等待的纳秒数,没有对应的限制时返回0,超出限制时返回-1
+     */
+    private static long reserve(String key, Map<String, TokenBucket> buckets, long now, long maxWaitNanos, List<TokenBucket> reserved) {
+        TokenBucket bucket = key == null ? null : buckets.get(key);
+        if (bucket == null) {
+            return 0;
+        }
+        long wait = bucket.reserve(now, maxWaitNanos);
+        if (wait >= 0) {
+            reserved.add(bucket);
+        }
+        return wait;
+    }
+
+    private Future<Void> rejectReserved(String dimension, String key, Map<String, TokenBucket> buckets, List<TokenBucket> reserved) {
+        for (TokenBucket tokenBucket : reserved) {
+            tokenBucket.cancel();
+        }
+        return reject(dimension, key, String.format("%s '%s' has exceeded the qps limit %s", dimension, key, (int) buckets.get(key).getPermitsPerSecond()));
+    }
+
+    private Future<Void> delay(long waitNanos) {
+        if (waitNanos == 0) {
+            return Future.succeededFuture();
+        }
+        queuedCount.increment();
+        Promise<Void> promise = Promise.promise();
+        Vertx vertx = MetaClusterCurrent.wrapper(Vertx.class);
+        vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)), id -> promise.complete());
+        return promise.future();
+    }
+
+    public boolean hasHeavyLimit() {
+        return enable && !heavyLimiters.isEmpty();
+    }
+
+    /**
+     * 在重查询类别的并发限制内执行
+     */
+    public Future<Void> runHeavy(HeavyQueryType type, Supplier<Future<Void>> task) {
+        ConcurrencyLimiter limiter = enable && type != null ? heavyLimiters.get(type) : null;
+        if (limiter == null) {
+            return task.get();
+        }
+        Future<Void> acquire = limiter.acquire();
+        if (acquire == null) {
+            return reject(type.name().toLowerCase(), type.name(),
+                    String.format("too many concurrent %s queries, limit:%s", type.name().toLowerCase(), limiter.getLimit()));
+        }
+        if (acquire.isComplete()) {
+            return runAndRelease(limiter, task);
+        }
+        long maxWaitMillis = this.heavyQueryMaxWaitMillis;
+        if (maxWaitMillis > 0) {
+            Vertx vertx = MetaClusterCurrent.wrapper(Vertx.class);
+            Future<Void> waiting = acquire;
+            long timerId = vertx.setTimer(maxWaitMillis, id -> limiter.cancel(waiting,
+                    () -> rejectException(type.name().toLowerCase(), type.name(),
+                            String.format("wait for %s query slot timeout:%sms, limit:%s", type.name().toLowerCase(), maxWaitMillis, limiter.getLimit()))));
+            acquire = acquire.onComplete(event -> vertx.cancelTimer(timerId));
+        }
+        //排队的查询由释放名额的线程唤醒,转回工作线程执行
+        return acquire.compose(unused -> {
+            IOExecutor ioExecutor = MetaClusterCurrent.wrapper(IOExecutor.class);
+            return ioExecutor.executeBlocking(promise -> runAndRelease(limiter, task).onComplete(promise));
+        });
+    }
+
+    private static Future<Void> runAndRelease(ConcurrencyLimiter limiter, Supplier<Future<Void>> task) {
+        Future<Void> future;
+        try {
+            future = task.get();
+        } catch (Throwable throwable) {
+            limiter.release();
+            return Future.failedFuture(throwable);
+        }
+        return future.onComplete(event -> limiter.release());
+    }
+
+    private Future<Void> reject(String dimension, String key, String message) {
+        return Future.failedFuture(rejectException(dimension, key, message));
+    }
+
+    private MycatException rejectException(String dimension, String key, String message) {
+        rejectCounts.computeIfAbsent(dimension, s -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, s -> new LongAdder())
+                .increment();
+        return new MycatException(MySQLErrorCode.ER_USER_LIMIT_REACHED, message);
+    }
+
+    public Map<String, Map<String, LongAdder>> getRejectCounts() {
+        return rejectCounts;
+    }
+
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    public Map<HeavyQueryType, ConcurrencyLimiter> getHeavyLimiters() {
+        return heavyLimiters;
+    }
+}
@@ -0,0 +1,89 @@
+package io.mycat.ratelimiter;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * 并发数限制,超出时排队,队列满或者排队超时时拒绝
+ */
+public class ConcurrencyLimiter {
+    private final int limit;
+    private final int maxQueue;
+    private final ArrayDeque<Promise<Void>> waiters = new ArrayDeque<>();
+    private int running;
+
+    public ConcurrencyLimiter(int limit, int maxQueue) {
+        this.limit = limit;
+        this.maxQueue = Math.max(0, maxQueue);
+    }
+
+    /**
+     * @return 队列已满时返回null
+     */
+    public synchronized Future<Void> acquire() {
+        if (running < limit) {
+            running++;
+            return Future.succeededFuture();
+        }
+        if (waiters.size() >= maxQueue) {
+            return null;
+        }
+        Promise<Void> promise = Promise.promise();
+        waiters.add(promise);
+        return promise.future();
+    }
+
+    /**
+     * 排队超时,仍在队列中时移出并以cause失败
+     *
+     * @return 已经获得名额时返回false
+     */
+    public boolean cancel(Future<Void> acquired, Supplier<? extends Throwable> cause) {
+        Promise<Void> promise = null;
+        synchronized (this) {
+            for (Promise<Void> waiter : waiters) {
+                if (waiter.future() == acquired) {
+                    promise = waiter;
+                    break;
+                }
+            }
+            if (promise == null) {
+                return false;
+            }
+            waiters.remove(promise);
+        }
+        promise.fail(cause.get());
+        return true;
+    }
+
+    /**
+     * 名额直接转交给排队的请求
+     */
+    public void release() {
+        Promise<Void> promise;
+        synchronized (this) {
+            promise = waiters.poll();
+            if (promise == null) {
+                running--;
+            }
+        }
+        if (promise != null) {
+            promise.complete();
+        }
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
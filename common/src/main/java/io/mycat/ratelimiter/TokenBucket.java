@@ -0,0 +1,52 @@
+package io.mycat.ratelimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶,容量为一秒的令牌数.
+ * 令牌不足时可以预支,令牌数为负表示已排队的请求,返回需要等待的时间
+ */
+public class TokenBucket {
+    private final double permitsPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long lastNanos;
+
+    public TokenBucket(int permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.tokens = capacity;
+        this.lastNanos = System.nanoTime();
+    }
+
+    /**
+     * @return 获得令牌需要等待的纳秒数,超过maxWaitNanos时不预支并返回-1
+     */
+    public synchronized long reserve(long nowNanos, long maxWaitNanos) {
+        if (nowNanos > lastNanos) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastNanos) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastNanos = nowNanos;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        long waitNanos = (long) Math.ceil((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        tokens -= 1;
+        return waitNanos;
+    }
+
+    /**
+     * 归还预支的令牌
+     */
+    public synchronized void cancel() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+}
@@ -86,7 +86,7 @@ public class ByteArrayOutput implements Closeable {
      * unsatisfiably large capacity {@code (long) Integer.MAX_VALUE + (minCapacity -
      * Integer.MAX_VALUE)}.
      */
-    private void ensureCapacity(int minCapacity) {
+    protected void ensureCapacity(int minCapacity) {
         // overflow-conscious code
         if (minCapacity - buf.length > 0) {
             grow(minCapacity);
@@ -0,0 +1,38 @@
+package io.mycat.ratelimiter;
+
+import io.vertx.core.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testQueueAndRelease() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1);
+        Future<Void> first = limiter.acquire();
+        Assert.assertTrue(first.succeeded());
+        Future<Void> second = limiter.acquire();
+        Assert.assertFalse(second.isComplete());
+        Assert.assertNull(limiter.acquire());
+        limiter.release();
+        Assert.assertTrue(second.succeeded());
+        Assert.assertEquals(1, limiter.getRunning());
+        limiter.release();
+        Assert.assertEquals(0, limiter.getRunning());
+    }
+
+    @Test
+    public void testCancelWaiter() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1);
+        Future<Void> first = limiter.acquire();
+        Future<Void> second = limiter.acquire();
+        Assert.assertFalse(limiter.cancel(first, () -> new IllegalStateException("timeout")));
+        Assert.assertTrue(limiter.cancel(second, () -> new IllegalStateException("timeout")));
+        Assert.assertTrue(second.failed());
+        Assert.assertEquals("timeout", second.cause().getMessage());
+        Assert.assertEquals(0, limiter.getQueued());
+        //取消后释放名额不会转交给已取消的请求
+        limiter.release();
+        Assert.assertEquals(0, limiter.getRunning());
+    }
+}
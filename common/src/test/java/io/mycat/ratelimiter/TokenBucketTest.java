@@ -0,0 +1,61 @@
+package io.mycat.ratelimiter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucketTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(10);
+        long now = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(0, bucket.reserve(now, 0));
+        }
+        Assert.assertEquals(-1, bucket.reserve(now, 0));
+    }
+
+    @Test
+    public void testReserveWait() {
+        TokenBucket bucket = new TokenBucket(10);
+        long now = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            bucket.reserve(now, 0);
+        }
+        //每个令牌100ms,预支的令牌依次排在后面
+        Assert.assertEquals(SECOND / 10, bucket.reserve(now, SECOND));
+        Assert.assertEquals(2 * SECOND / 10, bucket.reserve(now, SECOND));
+        Assert.assertEquals(-1, bucket.reserve(now, SECOND / 10));
+    }
+
+    @Test
+    public void testRefill() {
+        TokenBucket bucket = new TokenBucket(10);
+        long now = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            bucket.reserve(now, 0);
+        }
+        Assert.assertEquals(-1, bucket.reserve(now, 0));
+        Assert.assertEquals(0, bucket.reserve(now + SECOND / 10, 0));
+        Assert.assertEquals(-1, bucket.reserve(now + SECOND / 10, 0));
+        //空闲很久也不会超过容量
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(0, bucket.reserve(later, 0));
+        }
+        Assert.assertEquals(-1, bucket.reserve(later, 0));
+    }
+
+    @Test
+    public void testCancel() {
+        TokenBucket bucket = new TokenBucket(1);
+        long now = System.nanoTime();
+        Assert.assertEquals(0, bucket.reserve(now, 0));
+        Assert.assertEquals(-1, bucket.reserve(now, 0));
+        bucket.cancel();
+        Assert.assertEquals(0, bucket.reserve(now, 0));
+    }
+}
@@ -0,0 +1,46 @@
+package io.mycat.config;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 前端准入控制配置,qps与并发数小于等于0表示不限制
+ */
+@Data
+public class AdmissionControlConfig {
+    private boolean enable = false;
+    /**
+     * 超出qps时最长排队等待时间,0表示直接拒绝
+     */
+    private long maxWaitMillis = 0;
+    /**
+     * 用户名 -> qps
+     */
+    private Map<String, Integer> userQps = new HashMap<>();
+    /**
+     * 库名 -> qps
+     */
+    private Map<String, Integer> schemaQps = new HashMap<>();
+    /**
+     * sql(按参数化后的形式匹配) -> qps
+     */
+    private Map<String, Integer> sqlQps = new HashMap<>();
+    /**
+     * 同时执行的分片表全表扫描数
+     */
+    private int fullScanConcurrency = 0;
+    /**
+     * 同时执行的跨分片join数
+     */
+    private int crossShardJoinConcurrency = 0;
+    /**
+     * 重查询超出并发数时的排队长度,超出后直接拒绝
+     */
+    private int heavyQueryMaxQueue = 64;
+    /**
+     * 重查询排队等待并发名额的最长时间,超出后返回错误,0表示不限制
+     */
+    private long heavyQueryMaxWaitMillis = 10000;
+}
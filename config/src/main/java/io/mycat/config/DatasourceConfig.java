@@ -25,6 +25,7 @@ public class DatasourceConfig implements KVObject{
     private int minCon = 1;
     private int maxRetryCount = 5;
     private long maxConnectTimeout = 30 * 1000;
+    private long acquireTimeout = 0;//连接池已满时等待连接的超时,毫秒,0表示使用maxConnectTimeout
 
     private String dbType = "mysql";
 
@@ -41,10 +42,15 @@ public class DatasourceConfig implements KVObject{
     private boolean removeAbandoned = false;
     private int removeAbandonedTimeoutSecond=180;//秒
     private boolean logAbandoned = true;
+    private int preparedStatementCacheSize = 0;//每个连接缓存的服务端预处理语句数,0表示不缓存
 
     public DatasourceConfig() {
     }
 
+    public long acquireTimeoutOrDefault() {
+        return acquireTimeout > 0 ? acquireTimeout : maxConnectTimeout;
+    }
+
     public static String getDbTypeRaw(String rawUrl) {
         if (rawUrl == null) {
             return null;
@@ -84,6 +84,31 @@ public class ServerConfig {
     private long stickySessionTime = -1;
     private int sendBufferSize = -1;
     private int receiveBufferSize = -1;
+    private boolean autoAnalyze = false;
+    private long autoAnalyzeMinChangedRows = 1000;
+    private double autoAnalyzeChangedRatio = 0.1;
+    private double autoAnalyzePlanInvalidateRatio = 0.5;
+    private long autoAnalyzePeriodSecond = 60;
+    private long planCacheMaxBytes = 64L * 1024 * 1024;
+    private boolean planSnapshot = false;
+    private int planSnapshotLimit = 1000;
+    private long planSnapshotPeriodSecond = 300;
+    private long planSnapshotLoadTimeoutSecond = 60;
+    private boolean preparedPlanCache = true;
+    private int preparedPlanTypeVariants = 8;
+    private long queryMemoryBytes = 256L * 1024 * 1024;
+    private long nodeQueryMemoryBytes = 1024L * 1024 * 1024;
+    private int mergeSortPrefetch = 256;
+    private int resultSetPauseWatermark = 128;
+    private int resultSetPrefetch = 64;
+    private int writeBatchBytes = 64 * 1024;
+    private int writeBatchPackets = 1024;
+    private int backendMultiplexSize = 0;
+    private int backendMultiplexMaxPending = 32;
+    private int spillRowThreshold = 100000;
+    private int aggregateParallelism = 1;
+    private long vectorBatchBytes = 4L * 1024 * 1024;
+    private AdmissionControlConfig admissionControl = new AdmissionControlConfig();
     public static void main(String[] args) {
         System.out.println(JsonUtil.toJson(new ServerConfig()));
     }
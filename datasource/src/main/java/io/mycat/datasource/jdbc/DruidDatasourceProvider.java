@@ -74,6 +74,16 @@ public class DruidDatasourceProvider implements DatasourceProvider {
         if (maxRetryCount > 0) {
             datasource.setConnectionErrorRetryAttempts(maxRetryCount);
         }
+        int preparedStatementCacheSize = config.getPreparedStatementCacheSize();
+        if (preparedStatementCacheSize > 0) {
+            //每个连接一个LRU,淘汰和连接关闭时真正关闭语句(COM_STMT_CLOSE)
+            datasource.setPoolPreparedStatements(true);
+            datasource.setMaxPoolPreparedStatementPerConnectionSize(preparedStatementCacheSize);
+            if (url.startsWith("jdbc:mysql:")) {
+                //使用COM_STMT_PREPARE/COM_STMT_EXECUTE,不支持预处理的语句由驱动退回文本协议
+                datasource.setUrl(appendUrlProperty(url, "useServerPrepStmts", "true"));
+            }
+        }
         if (dbType != null) {
             datasource.setDbType(dbType);
         }
@@ -127,6 +137,13 @@ public class DruidDatasourceProvider implements DatasourceProvider {
         return new JdbcDataSource(config, finalDataSource);
     }
 
+    static String appendUrlProperty(String url, String key, String value) {
+        if (url.contains(key + "=")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + key + "=" + value;
+    }
+
     @Override
     public void closeDataSource(JdbcDataSource dataSource) {
         if (dataSource != null) {
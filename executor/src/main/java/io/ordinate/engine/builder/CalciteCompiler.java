@@ -32,11 +32,15 @@ import io.ordinate.engine.function.column.ColumnFunction;
 import io.ordinate.engine.function.constant.IntConstant;
 import io.ordinate.engine.physicalplan.*;
 import io.ordinate.engine.schema.InnerType;
+import io.ordinate.engine.vector.ExprVectorExpression;
 import io.ordinate.engine.vector.VectorExpression;
+import io.ordinate.engine.vector.kernel.KernelVectorExpression;
+import io.ordinate.engine.vector.kernel.VectorKernel;
 import lombok.Getter;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.apache.calcite.linq4j.JoinType;
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
@@ -49,6 +53,7 @@ import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableIntList;
 
 
 import java.util.*;
@@ -58,6 +63,27 @@ import java.util.stream.Collectors;
 public class CalciteCompiler {
     static ExecuteCompiler executeCompiler = new ExecuteCompiler();
     final RexConverter rexConverter = new RexConverter();
+    /**
+     * 为false时当前子树只被不依赖行顺序的算子消费(聚合,hash join构建侧),叶子节点可以乱序发送
+     */
+    private boolean ordered = true;
+
+    /**
+     * 按指定的顺序要求转换子树,filter/project直接调用convert沿用当前要求
+     */
+    public PhysicalPlan convert(RelNode relNode, boolean ordered) {
+        boolean parentOrdered = this.ordered;
+        this.ordered = ordered;
+        try {
+            return convert(relNode);
+        } finally {
+            this.ordered = parentOrdered;
+        }
+    }
+
+    private PhysicalPlan leaf(PhysicalPlan physicalPlan) {
+        return ordered ? physicalPlan : physicalPlan.unordered();
+    }
 
     public PhysicalPlan convert(RelNode relNode) {
         if (relNode instanceof Values) {
@@ -84,7 +110,7 @@ public class CalciteCompiler {
         } else if (relNode instanceof Sort) {
             return convertTopN((Sort) relNode);
         } else if (relNode instanceof MycatTableScan) {
-            return new VisualTablePlanImpl((MycatTableScan) relNode);
+            return leaf(new VisualTablePlanImpl((MycatTableScan) relNode));
         } else if (relNode instanceof MycatView) {
             MycatView mycatView = (MycatView) relNode;
             RelNode viewRelNode = mycatView.getRelNode();
@@ -112,13 +138,13 @@ public class CalciteCompiler {
                     }
                 }
             }
-            return new MycatViewPlan(mycatView,offsetFunction,fetchFunction);
+            return leaf(new MycatViewPlan(mycatView,offsetFunction,fetchFunction));
         }
         throw new UnsupportedOperationException();
     }
 
     public PhysicalPlan convertTopN(Sort relNode) {
-        PhysicalPlan physicalPlan = convert(relNode.getInput());
+        PhysicalPlan physicalPlan = convert(relNode.getInput(), true);
         return convertTopN(relNode, physicalPlan);
     }
 
@@ -183,8 +209,8 @@ public class CalciteCompiler {
     }
 
     public CorrelateJoinPlan convertCorrelate(Correlate correlate) {
-        PhysicalPlan left = convert(correlate.getLeft());
-        PhysicalPlan right = convert(correlate.getRight());
+        PhysicalPlan left = convert(correlate.getLeft(), true);
+        PhysicalPlan right = convert(correlate.getRight(), true);
 
         CorrelationId correlationId = correlate.getCorrelationId();
         List<Integer> requireList = correlate.getRequiredColumns().asList();
@@ -208,14 +234,14 @@ public class CalciteCompiler {
     public PhysicalPlan convertUnion(Union union) {
         List<PhysicalPlan> inputs = new ArrayList<>();
         for (RelNode input : union.getInputs()) {
-            inputs.add(convert(input));
+            inputs.add(convert(input, true));
         }
         return executeCompiler.unionAll(union.all, inputs);
     }
 
     public PhysicalPlan convertAggregate(Aggregate aggregate) {
-
-        PhysicalPlan input = convert(aggregate.getInput());
+        //分组结果与输入顺序无关
+        PhysicalPlan input = convert(aggregate.getInput(), false);
         List<Integer> groupSet = aggregate.getGroupSet().asList();
         List<AggregateCall> aggCallList = aggregate.getAggCallList();
         GroupKeys[] groupSets = aggregate.getGroupSets().stream().map(i -> GroupKeys.of(i.toArray())).toArray(n -> new GroupKeys[n]);
@@ -325,13 +351,30 @@ public class CalciteCompiler {
 
     public PhysicalPlan convertJoin(Join join) {
         JoinRelType joinType = join.getJoinType();
+        JoinType type = JoinType.valueOf(joinType.name());
+        List<Integer> leftKeys = new ArrayList<>();
+        List<Integer> rightKeys = new ArrayList<>();
+        List<Boolean> filterNulls = new ArrayList<>();
+        RexNode remaining = RelOptUtil.splitJoinCondition(join.getLeft(), join.getRight(), join.getCondition(), leftKeys, rightKeys, filterNulls);
+        //is not distinct from需要null相等,不走hash join
+        boolean hashJoin = HeapHashJoinNPlan.isSupported(type) && !filterNulls.contains(false) && !leftKeys.isEmpty();
+        //输出按探测侧的顺序,探测侧沿用当前要求;构建侧整体放入哈希表,不依赖行顺序
         PhysicalPlan left = convert(join.getLeft());
-        PhysicalPlan right = convert(join.getRight());
+        PhysicalPlan right = convert(join.getRight(), !hashJoin);
         Schema createjoinSchema = executeCompiler.createJoinSchema(left, right);
+        if (hashJoin && HeapHashJoinNPlan.isSupported(left, right, leftKeys, rightKeys)) {
+            return executeCompiler.hashJoin(
+                    left,
+                    right,
+                    type,
+                    ImmutableIntList.copyOf(leftKeys),
+                    ImmutableIntList.copyOf(rightKeys),
+                    remaining.isAlwaysTrue() ? null : rexConverter.convertRex(remaining, createjoinSchema));
+        }
         return executeCompiler.crossJoin(
                 left,
                 right,
-                JoinType.valueOf(joinType.name()),
+                type,
                 ExecuteCompiler.JoinImpl.HASH,
                 rexConverter.convertRex(join.getCondition(), createjoinSchema));
     }
@@ -341,18 +384,35 @@ public class CalciteCompiler {
         List<RexNode> projects = project.getProjects();
 
         int index = 0;
+        boolean vectorized = false;
         Function[] functions = new Function[projects.size()];
+        VectorExpression[] expressions = new VectorExpression[projects.size()];
         for (RexNode rexNode : projects) {
-            Function function = rexConverter.convertRex(rexNode, input.schema());
-            functions[index] = function;
+            //列引用与常量保持原样,只有表达式按批计算
+            VectorKernel kernel = rexNode instanceof RexCall ? rexConverter.convertToKernel(rexNode, input.schema()) : null;
+            if (kernel != null) {
+                expressions[index] = new KernelVectorExpression(kernel);
+                vectorized = true;
+            } else {
+                Function function = rexConverter.convertRex(rexNode, input.schema());
+                functions[index] = function;
+                expressions[index] = new ExprVectorExpression(function);
+            }
             index++;
         }
+        if (vectorized) {
+            return executeCompiler.projectVector(input, Arrays.asList(expressions));
+        }
         return executeCompiler.project(input, functions);
     }
 
     public PhysicalPlan convertFilter(Filter filter) {
         PhysicalPlan input = convert(filter.getInput());
         RexNode condition = filter.getCondition();
+        VectorKernel kernel = rexConverter.convertToKernel(condition, input.schema());
+        if (kernel != null && kernel.getType() == InnerType.BOOLEAN_TYPE) {
+            return executeCompiler.filter(input, kernel);
+        }
         Function function = rexConverter.convertRex(condition, input.schema());
         return executeCompiler.filter(input, function);
     }
@@ -17,8 +17,132 @@
 
 package io.ordinate.engine.builder;
 
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
 public class EngineConfiguration {
+    public static int DEFAULT_AGGREGATE_PARALLELISM = 1;
+    public static long DEFAULT_BATCH_BYTES = 4L * 1024 * 1024;
+    public static int DEFAULT_MIN_BATCH_ROWS = 1024;
+    public static int DEFAULT_MAX_BATCH_ROWS = 8192 * 4;
+    public static int DEFAULT_VARIABLE_WIDTH_BYTES = 32;
+    public static long DEFAULT_QUERY_MEMORY_LIMIT = 256L * 1024 * 1024;
+    /**
+     * 分组聚合的并行度,大于1时按分组key哈希分区到多个map并行计算
+     */
+    private int aggregateParallelism = DEFAULT_AGGREGATE_PARALLELISM;
+    /**
+     * 每个批次的目标字节数,行数由schema估算的行宽换算,并限制在[minBatchRows,maxBatchRows]
+     */
+    private long batchBytes = DEFAULT_BATCH_BYTES;
+    private int minBatchRows = DEFAULT_MIN_BATCH_ROWS;
+    private int maxBatchRows = DEFAULT_MAX_BATCH_ROWS;
+    /**
+     * 变长类型(字符串,二进制)每个值的估算字节数
+     */
+    private int variableWidthBytes = DEFAULT_VARIABLE_WIDTH_BYTES;
+    /**
+     * 每个查询的arrow内存上限,超过时分配失败
+     */
+    private long queryMemoryLimit = DEFAULT_QUERY_MEMORY_LIMIT;
+
+    /**
+     * 按目标字节数换算的每批行数
+     */
+    public int getBatchRowCount(Schema schema) {
+        long rowWidth = Math.max(1, estimateRowWidth(schema));
+        long rows = batchBytes / rowWidth;
+        return (int) Math.max(minBatchRows, Math.min(maxBatchRows, rows));
+    }
+
+    /**
+     * 估算一行的字节数,包括有效位与变长类型的偏移量
+     */
+    public int estimateRowWidth(Schema schema) {
+        int width = 0;
+        for (Field field : schema.getFields()) {
+            width += estimateWidth(field.getType());
+        }
+        //每列1bit有效位,按字节向上取整
+        return width + (schema.getFields().size() + 7) / 8;
+    }
+
+    public int estimateWidth(ArrowType type) {
+        switch (type.getTypeID()) {
+            case Null:
+                return 0;
+            case Bool:
+                return 1;
+            case Int:
+                return ((ArrowType.Int) type).getBitWidth() / 8;
+            case FloatingPoint:
+                return ((ArrowType.FloatingPoint) type).getPrecision() == FloatingPointPrecision.DOUBLE ? 8 : 4;
+            case Decimal:
+                return 16;
+            case FixedSizeBinary:
+                return ((ArrowType.FixedSizeBinary) type).getByteWidth();
+            case Utf8:
+            case Binary:
+                return 4 + variableWidthBytes;
+            case LargeUtf8:
+            case LargeBinary:
+                return 8 + variableWidthBytes;
+            default:
+                return 8;
+        }
+    }
+
     public int getScale() {
         return 0;
     }
+
+    public int getAggregateParallelism() {
+        return aggregateParallelism;
+    }
+
+    public void setAggregateParallelism(int aggregateParallelism) {
+        this.aggregateParallelism = aggregateParallelism;
+    }
+
+    public long getBatchBytes() {
+        return batchBytes;
+    }
+
+    public void setBatchBytes(long batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+
+    public int getMinBatchRows() {
+        return minBatchRows;
+    }
+
+    public void setMinBatchRows(int minBatchRows) {
+        this.minBatchRows = minBatchRows;
+    }
+
+    public int getMaxBatchRows() {
+        return maxBatchRows;
+    }
+
+    public void setMaxBatchRows(int maxBatchRows) {
+        this.maxBatchRows = maxBatchRows;
+    }
+
+    public int getVariableWidthBytes() {
+        return variableWidthBytes;
+    }
+
+    public void setVariableWidthBytes(int variableWidthBytes) {
+        this.variableWidthBytes = variableWidthBytes;
+    }
+
+    public long getQueryMemoryLimit() {
+        return queryMemoryLimit;
+    }
+
+    public void setQueryMemoryLimit(long queryMemoryLimit) {
+        this.queryMemoryLimit = queryMemoryLimit;
+    }
 }
@@ -33,10 +33,12 @@ import io.ordinate.engine.schema.InnerType;
 import io.ordinate.engine.vector.VectorExpression;
 import io.ordinate.engine.function.aggregate.any.AnyValueAccumulator;
 import io.ordinate.engine.vector.ExprVectorExpression;
+import io.ordinate.engine.vector.kernel.VectorKernel;
 import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.apache.calcite.linq4j.JoinType;
+import org.apache.calcite.util.ImmutableIntList;
 
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -458,6 +460,11 @@ public class ExecuteCompiler {
         return new NLJoinPlan(left, right, joinType, on, createJoinSchema(left, right));
     }
 
+    public static PhysicalPlan hashJoin(PhysicalPlan left, PhysicalPlan right, JoinType joinType, ImmutableIntList leftKeys, ImmutableIntList rightKeys, Function on) {
+        Schema schema = (joinType == JoinType.SEMI || joinType == JoinType.ANTI) ? left.schema() : createJoinSchema(left, right);
+        return new HeapHashJoinNPlan(left, right, leftKeys, rightKeys, on, schema, joinType);
+    }
+
     public static PhysicalPlan project(PhysicalPlan input, Function... exprs) {
         return project(input, Arrays.asList(exprs));
     }
@@ -578,6 +585,15 @@ public class ExecuteCompiler {
         return new ProjectionPlan(input, Arrays.asList(expressions), schema);
     }
 
+    public static PhysicalPlan projectVector(PhysicalPlan input, List<VectorExpression> exprs) {
+        ArrowType[] exprTypes = new ArrowType[exprs.size()];
+        for (int i = 0; i < exprTypes.length; i++) {
+            exprTypes[i] = exprs.get(i).getType();
+        }
+        Schema schema = SchemaBuilder.ofArrowType(exprTypes).toArrow();
+        return new ProjectionPlan(input, exprs, schema);
+    }
+
     public static TableFunctionPlan values(Function[] functions) {
         return (TableFunctionPlan.create(functions));
     }
@@ -590,6 +606,10 @@ public class ExecuteCompiler {
         return new FilterPlan(input, function, input.schema());
     }
 
+    public static FilterPlan filter(PhysicalPlan input, VectorKernel kernel) {
+        return new FilterPlan(input, kernel, input.schema());
+    }
+
     public static GroupByKeyPlan agg(PhysicalPlan input,GroupKeys... groupKeyList) {
         GroupByKeyPlan groupByKey = new GroupByKeyPlan(input, groupKeyList, input.schema());
         return groupByKey;
@@ -27,6 +27,7 @@ import io.ordinate.engine.function.bind.SessionVariableFunction;
 import io.ordinate.engine.function.bind.VariableParameterFunction;
 import io.ordinate.engine.function.constant.SymbolConstant;
 import io.ordinate.engine.schema.InnerType;
+import io.ordinate.engine.vector.kernel.*;
 import lombok.Getter;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.apache.calcite.avatica.util.TimeUnit;
@@ -36,6 +37,7 @@ import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.*;
 import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.fun.SqlLikeOperator;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.IntervalSqlType;
 import org.apache.calcite.sql.type.SqlTypeName;
@@ -111,6 +113,218 @@ public class RexConverter {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * 转换为按批计算的kernel,存在不支持的类型或运算符时返回null,由调用方退回行式函数
+     */
+    public VectorKernel convertToKernel(RexNode rexNode, Schema schema) {
+        if (rexNode instanceof RexInputRef) {
+            int index = ((RexInputRef) rexNode).getIndex();
+            InnerType type = InnerType.from(schema.getFields().get(index).getType());
+            return Kernels.isSupported(type) ? new ColumnKernel(index, type) : null;
+        }
+        if (rexNode instanceof RexLiteral || rexNode instanceof RexDynamicParam) {
+            return convertToConstantKernel(rexNode);
+        }
+        if (!(rexNode instanceof RexCall)) {
+            return null;
+        }
+        RexCall call = (RexCall) rexNode;
+        InnerType type = convertKernelType(call.getType());
+        if (type == null) {
+            return null;
+        }
+        List<RexNode> operands = call.getOperands();
+        switch (call.getKind()) {
+            case OR: {
+                InKernel inKernel = convertToInKernel(call, schema);
+                if (inKernel != null) {
+                    return inKernel;
+                }
+                return convertToLogicalKernel(false, operands, schema);
+            }
+            case AND:
+                return convertToLogicalKernel(true, operands, schema);
+            case EQUALS:
+            case NOT_EQUALS:
+            case LESS_THAN:
+            case GREATER_THAN:
+            case LESS_THAN_OR_EQUAL:
+            case GREATER_THAN_OR_EQUAL: {
+                VectorKernel left = convertToKernel(operands.get(0), schema);
+                VectorKernel right = left == null ? null : convertToKernel(operands.get(1), schema);
+                if (right == null || isString(left.getType()) != isString(right.getType())) {
+                    return null;
+                }
+                return new CompareKernel(toCompareOp(call.getKind()), left, right);
+            }
+            case PLUS:
+            case MINUS:
+            case TIMES:
+            case DIVIDE: {
+                if (!Kernels.isNumeric(type)) {
+                    return null;
+                }
+                VectorKernel left = convertToKernel(operands.get(0), schema);
+                VectorKernel right = left == null ? null : convertToKernel(operands.get(1), schema);
+                if (right == null || !Kernels.isNumeric(left.getType()) || !Kernels.isNumeric(right.getType())) {
+                    return null;
+                }
+                return new ArithmeticKernel(ArithmeticKernel.Op.valueOf(call.getKind().name()), left, right, type);
+            }
+            case NOT: {
+                VectorKernel child = convertToKernel(operands.get(0), schema);
+                if (child == null || child.getType() != InnerType.BOOLEAN_TYPE) {
+                    return null;
+                }
+                return new NotKernel(child);
+            }
+            case IS_NULL:
+            case IS_NOT_NULL: {
+                VectorKernel child = convertToKernel(operands.get(0), schema);
+                if (child == null) {
+                    return null;
+                }
+                return new IsNullKernel(child, call.getKind() == SqlKind.IS_NOT_NULL);
+            }
+            case LIKE: {
+                VectorKernel child = convertToKernel(operands.get(0), schema);
+                if (child == null || child.getType() != InnerType.STRING_TYPE) {
+                    return null;
+                }
+                ConstantKernel pattern = convertToConstantKernel(operands.get(1));
+                ConstantKernel escape = operands.size() > 2 ? convertToConstantKernel(operands.get(2)) : null;
+                if (pattern == null || pattern.getType() != InnerType.STRING_TYPE || (operands.size() > 2 && escape == null)) {
+                    return null;
+                }
+                boolean negated = call.getOperator() instanceof SqlLikeOperator
+                        && ((SqlLikeOperator) call.getOperator()).isNegated();
+                return new LikeKernel(child, pattern, escape, negated);
+            }
+            case CAST: {
+                VectorKernel child = convertToKernel(operands.get(0), schema);
+                if (child == null || !CastKernel.isSupported(child.getType(), type)) {
+                    return null;
+                }
+                return new CastKernel(child, type);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private LogicalKernel convertToLogicalKernel(boolean and, List<RexNode> operands, Schema schema) {
+        List<VectorKernel> children = new ArrayList<>(operands.size());
+        for (RexNode operand : operands) {
+            VectorKernel child = convertToKernel(operand, schema);
+            if (child == null || child.getType() != InnerType.BOOLEAN_TYPE) {
+                return null;
+            }
+            children.add(child);
+        }
+        return new LogicalKernel(and, children);
+    }
+
+    /**
+     * x = a OR x = b OR ... 转换为IN
+     */
+    private InKernel convertToInKernel(RexCall call, Schema schema) {
+        RexNode target = null;
+        List<RexNode> values = new ArrayList<>();
+        for (RexNode operand : call.getOperands()) {
+            if (!operand.isA(SqlKind.EQUALS)) {
+                return null;
+            }
+            List<RexNode> pair = ((RexCall) operand).getOperands();
+            RexNode left = pair.get(0);
+            RexNode right = pair.get(1);
+            if (isConstant(left) && !isConstant(right)) {
+                RexNode tmp = left;
+                left = right;
+                right = tmp;
+            }
+            if (!isConstant(right) || (target != null && !target.equals(left))) {
+                return null;
+            }
+            target = left;
+            values.add(right);
+        }
+        VectorKernel child = convertToKernel(target, schema);
+        if (child == null) {
+            return null;
+        }
+        List<ConstantKernel> constantKernels = new ArrayList<>(values.size());
+        for (RexNode value : values) {
+            ConstantKernel constantKernel = convertToConstantKernel(value);
+            if (constantKernel == null || isString(constantKernel.getType()) != isString(child.getType())) {
+                return null;
+            }
+            constantKernels.add(constantKernel);
+        }
+        return new InKernel(child, constantKernels);
+    }
+
+    private ConstantKernel convertToConstantKernel(RexNode rexNode) {
+        if (!isConstant(rexNode)) {
+            return null;
+        }
+        InnerType type = convertKernelType(rexNode.getType());
+        if (type == null) {
+            return null;
+        }
+        Function function = rexNode instanceof RexDynamicParam
+                ? visitDynamicParam((RexDynamicParam) rexNode)
+                : convertToFunction((RexLiteral) rexNode);
+        return new ConstantKernel(function, type);
+    }
+
+    private static boolean isConstant(RexNode rexNode) {
+        return rexNode instanceof RexLiteral || rexNode instanceof RexDynamicParam;
+    }
+
+    private static boolean isString(InnerType type) {
+        return type == InnerType.STRING_TYPE;
+    }
+
+    private static CompareKernel.Op toCompareOp(SqlKind kind) {
+        switch (kind) {
+            case EQUALS:
+                return CompareKernel.Op.EQ;
+            case NOT_EQUALS:
+                return CompareKernel.Op.NE;
+            case LESS_THAN:
+                return CompareKernel.Op.LT;
+            case GREATER_THAN:
+                return CompareKernel.Op.GT;
+            case LESS_THAN_OR_EQUAL:
+                return CompareKernel.Op.LE;
+            default:
+                return CompareKernel.Op.GE;
+        }
+    }
+
+    /**
+     * @return kernel不支持的类型返回null
+     */
+    private static InnerType convertKernelType(RelDataType type) {
+        switch (type.getSqlTypeName()) {
+            case CHAR:
+            case VARCHAR:
+                return InnerType.STRING_TYPE;
+            case BOOLEAN:
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case REAL:
+            case FLOAT:
+            case DOUBLE:
+            case DECIMAL:
+                return convertColumnType(type.getSqlTypeName());
+            default:
+                return null;
+        }
+    }
+
     public Function convertRexInputRefToFunction(RexInputRef rexInputRef, Schema schema) {
         int index = rexInputRef.getIndex();
         return executeCompiler.column(index, schema);
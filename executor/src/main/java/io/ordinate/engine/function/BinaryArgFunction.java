@@ -40,6 +40,8 @@
 
 package io.ordinate.engine.function;
 
+import io.ordinate.engine.record.Record;
+
 import java.util.Arrays;
 import java.util.List;
 
@@ -60,6 +62,14 @@ public interface BinaryArgFunction extends ScalarFunction {
         return (l.isConstant() && r.isRuntimeConstant()) || (r.isConstant() && l.isRuntimeConstant()) || (l.isRuntimeConstant() && r.isRuntimeConstant());
     }
 
+    /**
+     * 任一参数为null时结果为null,需要在取值之后调用
+     */
+    @Override
+    default boolean isNull(Record rec) {
+        return getLeft().isNull(rec) || getRight().isNull(rec);
+    }
+
     @Override
     default boolean isConstant() {
         return getLeft().isConstant() && getRight().isConstant();
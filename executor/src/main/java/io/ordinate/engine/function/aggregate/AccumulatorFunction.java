@@ -148,5 +148,14 @@ public interface AccumulatorFunction<T> extends Function {
         return false;
     }
 
+    /**
+     * 没有按实例保存的可变状态时返回true:分组状态只保存在MapValue中,
+     * 实例字段只在allocContext/setInputColumnIndex时写入,此时可以在多个map上并行计算.
+     * 在实例上保存分组状态(例如去重集合,值列表)的实现必须返回false
+     */
+    default boolean isParallelSafe() {
+        return true;
+    }
+
     void setInputColumnIndex(int index);
 }
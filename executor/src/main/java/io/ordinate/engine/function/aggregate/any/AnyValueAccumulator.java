@@ -367,4 +367,12 @@ public class AnyValueAccumulator implements AnyAccumulator {
         Object o = object.get(valueIndex);
         return o == null;
     }
+
+    /**
+     * 值列表与valueIndex保存在实例上
+     */
+    @Override
+    public boolean isParallelSafe() {
+        return false;
+    }
 }
@@ -122,4 +122,12 @@ public class CountDistinctLongColumnAggregateFunction implements LongAccumulator
     public void setInputColumnIndex(int index) {
         this.inputColumn = index;
     }
+
+    /**
+     * 去重集合与valueIndex保存在实例上
+     */
+    @Override
+    public boolean isParallelSafe() {
+        return false;
+    }
 }
@@ -65,15 +65,33 @@ public class AndFunctionFactory  implements FunctionFactory {
     private static class Func extends BooleanFunction implements BinaryArgFunction {
         final ScalarFunction left;
         final ScalarFunction right;
+        boolean isNull;
 
         public Func(ScalarFunction left, ScalarFunction right) {
             this.left = left;
             this.right = right;
         }
 
+        /**
+         * 三值逻辑:任一侧为false时结果为false,否则任一侧为null时结果为null
+         */
         @Override
         public int getInt(Record rec) {
-            return (left.getInt(rec) >0 && right.getInt(rec) > 0)?1:0;
+            boolean l = left.getBooleanType(rec);
+            boolean leftNull = left.isNull(rec);
+            boolean r = right.getBooleanType(rec);
+            boolean rightNull = right.isNull(rec);
+            if ((!leftNull && !l) || (!rightNull && !r)) {
+                isNull = false;
+                return 0;
+            }
+            isNull = leftNull || rightNull;
+            return isNull ? 0 : 1;
+        }
+
+        @Override
+        public boolean isNull(Record rec) {
+            return isNull;
         }
 
         @Override
@@ -64,15 +64,33 @@ public class OrFunctionFactory implements FunctionFactory {
     private static class Func extends BooleanFunction implements BinaryArgFunction {
         final ScalarFunction left;
         final ScalarFunction right;
+        boolean isNull;
 
         public Func(ScalarFunction left, ScalarFunction right) {
             this.left = left;
             this.right = right;
         }
 
+        /**
+         * 三值逻辑:任一侧为true时结果为true,否则任一侧为null时结果为null
+         */
         @Override
         public int getInt(Record rec) {
-            return (left.getInt(rec) > 1 || right.getInt(rec) > 1) ? 1 : 0;
+            boolean l = left.getBooleanType(rec);
+            boolean leftNull = left.isNull(rec);
+            boolean r = right.getBooleanType(rec);
+            boolean rightNull = right.isNull(rec);
+            if ((!leftNull && l) || (!rightNull && r)) {
+                isNull = false;
+                return 1;
+            }
+            isNull = leftNull || rightNull;
+            return 0;
+        }
+
+        @Override
+        public boolean isNull(Record rec) {
+            return isNull;
         }
 
         @Override
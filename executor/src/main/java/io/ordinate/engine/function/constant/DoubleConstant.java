@@ -44,7 +44,12 @@ import io.ordinate.engine.function.DoubleFunction;
 import io.ordinate.engine.record.Record;
 
 public class DoubleConstant extends DoubleFunction implements ConstantFunction {
-    public static final DoubleConstant NULL = new DoubleConstant(Double.NaN);
+    public static final DoubleConstant NULL = new DoubleConstant(Double.NaN) {
+        @Override
+        public boolean isNull(Record rec) {
+            return true;
+        }
+    };
 
     private final double value;
 
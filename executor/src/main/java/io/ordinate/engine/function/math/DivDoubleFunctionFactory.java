@@ -49,7 +49,8 @@ public class DivDoubleFunctionFactory implements FunctionFactory {
         public double getDouble(Record rec) {
             final double left = this.left.getDouble(rec);
             final double right = this.right.getDouble(rec);
-            isNull = this.left.isNull(rec) || this.right.isNull(rec);
+            //除数为0时结果为null
+            isNull = this.left.isNull(rec) || this.right.isNull(rec) || right == 0;
             if (isNull) return 0;
             return left / right;
         }
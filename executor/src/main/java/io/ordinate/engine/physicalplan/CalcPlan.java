@@ -112,7 +112,7 @@ public class CalcPlan implements PhysicalPlan {
                 output.setRowCount(outputRowIndex);
                 return output;
             }finally {
-                inputPlan.eachFree(input);
+                inputPlan.eachFree(rootContext, input);
             }
         }).subscribeOn(Schedulers.computation());
     }
@@ -0,0 +1,367 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.physicalplan;
+
+import com.carrotsearch.hppc.LongArrayList;
+import io.ordinate.engine.builder.SchemaBuilder;
+import io.ordinate.engine.record.RootContext;
+import io.ordinate.engine.schema.InnerType;
+import io.netty.util.internal.PlatformDependent;
+import io.reactivex.rxjava3.core.Observable;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 解析内存映射的csv分片(RFC4180),数值直接从字节解析写入向量,不经过String
+ */
+class CsvChunkReader {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /**
+     * 2^53,小于它的整数可以精确表示为double
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int SPLIT_WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private final Schema schema;
+    private final InnerType[] types;
+    private final RootContext rootContext;
+    private final int batchSize;
+
+    private MappedByteBuffer buffer;
+    private int pos;
+    private int limit;
+    private boolean lineEnded;
+
+    /**
+     * 当前字段,带引号的字段反转义后放在scratch
+     */
+    private int fieldStart;
+    private int fieldLength;
+    private boolean quoted;
+    private byte[] scratch = new byte[256];
+
+    CsvChunkReader(Schema schema, RootContext rootContext, int batchSize) {
+        this.schema = schema;
+        this.types = InnerType.fromSchemaToInnerTypes(schema);
+        this.rootContext = rootContext;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 按chunkBytes把文件切分为以换行结尾的分片,引号内的换行不作为边界.
+     * 与nextField一致,只有字段开头的引号开始引用,引用内""是转义的引号
+     *
+     * @return 分片边界,第i个分片为[bounds[i],bounds[i+1])
+     */
+    static long[] split(FileChannel channel, long size, long chunkBytes) throws IOException {
+        LongArrayList bounds = new LongArrayList();
+        bounds.add(0);
+        boolean fieldBegin = true;
+        boolean inQuotes = false;
+        //引用内遇到引号,要看下一个字节才知道是转义还是右引号,可能跨窗口
+        boolean quotePending = false;
+        long target = chunkBytes;
+        for (long windowStart = 0; windowStart < size; windowStart += SPLIT_WINDOW_BYTES) {
+            int windowSize = (int) Math.min(SPLIT_WINDOW_BYTES, size - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            try {
+                for (int i = 0; i < windowSize; i++) {
+                    byte b = window.get(i);
+                    if (inQuotes) {
+                        if (!quotePending) {
+                            quotePending = b == '"';
+                            continue;
+                        }
+                        quotePending = false;
+                        if (b == '"') {
+                            continue;
+                        }
+                        inQuotes = false;
+                    }
+                    if (b == '"' && fieldBegin) {
+                        inQuotes = true;
+                        fieldBegin = false;
+                        continue;
+                    }
+                    fieldBegin = b == ',' || b == '\n';
+                    if (b == '\n' && windowStart + i + 1 >= target) {
+                        long bound = windowStart + i + 1;
+                        if (bound < size) {
+                            bounds.add(bound);
+                        }
+                        target = bound + chunkBytes;
+                    }
+                }
+            } finally {
+                unmap(window);
+            }
+        }
+        bounds.add(size);
+        return bounds.toArray();
+    }
+
+    /**
+     * 解析[start,end)分片,每填满一个批次就发送,分片解析结束或者取消时解除映射
+     */
+    Observable<VectorSchemaRoot> read(FileChannel channel, long start, long end) {
+        return Observable.create(emitter -> {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            buffer = mapped;
+            pos = 0;
+            limit = mapped.limit();
+            VectorSchemaRoot root = null;
+            int rowId = 0;
+            try {
+                while (pos < limit && !emitter.isDisposed()) {
+                    if (skipEmptyLine()) {
+                        continue;
+                    }
+                    if (root == null) {
+                        root = rootContext.getVectorSchemaRoot(schema, batchSize);
+                        rowId = 0;
+                    }
+                    readRow(root.getFieldVectors(), rowId);
+                    rowId++;
+                    if (rowId == batchSize) {
+                        root.setRowCount(rowId);
+                        VectorSchemaRoot batch = root;
+                        root = null;
+                        emitter.onNext(batch);
+                    }
+                }
+                if (root != null && !emitter.isDisposed()) {
+                    root.setRowCount(rowId);
+                    VectorSchemaRoot batch = root;
+                    root = null;
+                    emitter.onNext(batch);
+                }
+                emitter.onComplete();
+            } catch (Throwable e) {
+                emitter.tryOnError(e);
+            } finally {
+                if (root != null) {
+                    root.close();
+                }
+                buffer = null;
+                unmap(mapped);
+            }
+        });
+    }
+
+    /**
+     * 字段值已经复制到向量,映射可以立即释放而不用等GC
+     */
+    private static void unmap(MappedByteBuffer mapped) {
+        PlatformDependent.freeDirectBuffer(mapped);
+    }
+
+    private boolean skipEmptyLine() {
+        byte b = buffer.get(pos);
+        if (b == '\n') {
+            pos++;
+            return true;
+        }
+        if (b == '\r' && pos + 1 < limit && buffer.get(pos + 1) == '\n') {
+            pos += 2;
+            return true;
+        }
+        return false;
+    }
+
+    private void readRow(List<FieldVector> vectors, int rowId) {
+        lineEnded = false;
+        for (int columnIndex = 0; columnIndex < types.length; columnIndex++) {
+            FieldVector vector = vectors.get(columnIndex);
+            if (lineEnded) {
+                SchemaBuilder.setVectorNull(vector, rowId);
+                continue;
+            }
+            nextField();
+            write(vector, types[columnIndex], rowId);
+        }
+        //多出的列忽略
+        while (!lineEnded) {
+            nextField();
+        }
+    }
+
+    private void nextField() {
+        quoted = pos < limit && buffer.get(pos) == '"';
+        if (quoted) {
+            pos++;
+            int length = 0;
+            while (pos < limit) {
+                byte b = buffer.get(pos++);
+                if (b == '"') {
+                    if (pos < limit && buffer.get(pos) == '"') {
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+                if (length == scratch.length) {
+                    byte[] bytes = new byte[scratch.length * 2];
+                    System.arraycopy(scratch, 0, bytes, 0, length);
+                    scratch = bytes;
+                }
+                scratch[length++] = b;
+            }
+            fieldStart = 0;
+            fieldLength = length;
+            //跳过右引号与分隔符之间的内容
+            while (pos < limit && buffer.get(pos) != ',' && buffer.get(pos) != '\n') {
+                pos++;
+            }
+        } else {
+            int start = pos;
+            while (pos < limit && buffer.get(pos) != ',' && buffer.get(pos) != '\n') {
+                pos++;
+            }
+            int end = pos;
+            if (end > start && buffer.get(end - 1) == '\r' && (pos >= limit || buffer.get(pos) == '\n')) {
+                end--;
+            }
+            fieldStart = start;
+            fieldLength = end - start;
+        }
+        if (pos < limit && buffer.get(pos) == ',') {
+            pos++;
+        } else {
+            pos++;
+            lineEnded = true;
+        }
+    }
+
+    private byte byteAt(int index) {
+        return quoted ? scratch[index] : buffer.get(fieldStart + index);
+    }
+
+    private String fieldString() {
+        byte[] bytes = new byte[fieldLength];
+        if (quoted) {
+            System.arraycopy(scratch, 0, bytes, 0, fieldLength);
+        } else {
+            for (int i = 0; i < fieldLength; i++) {
+                bytes[i] = buffer.get(fieldStart + i);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void write(FieldVector vector, InnerType type, int rowId) {
+        if (fieldLength == 0 && type != InnerType.STRING_TYPE) {
+            SchemaBuilder.setVectorNull(vector, rowId);
+            return;
+        }
+        switch (type) {
+            case INT64_TYPE:
+                ((BigIntVector) vector).set(rowId, parseLong());
+                break;
+            case INT8_TYPE:
+            case INT16_TYPE:
+            case INT32_TYPE:
+                ((BaseIntVector) vector).setWithPossibleTruncate(rowId, parseLong());
+                break;
+            case DOUBLE_TYPE:
+                ((Float8Vector) vector).set(rowId, parseDouble());
+                break;
+            case FLOAT_TYPE:
+                ((Float4Vector) vector).set(rowId, (float) parseDouble());
+                break;
+            case STRING_TYPE:
+                if (quoted) {
+                    ((VarCharVector) vector).setSafe(rowId, scratch, 0, fieldLength);
+                } else {
+                    ((VarCharVector) vector).setSafe(rowId, buffer, fieldStart, fieldLength);
+                }
+                break;
+            default:
+                SchemaBuilder.setVector(vector, rowId, fieldString());
+        }
+    }
+
+    private long parseLong() {
+        int i = 0;
+        boolean negative = false;
+        byte first = byteAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        //18位以内不会溢出
+        if (i == fieldLength || fieldLength - i > 18) {
+            return Long.parseLong(fieldString());
+        }
+        long value = 0;
+        for (; i < fieldLength; i++) {
+            int digit = byteAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(fieldString());
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 尾数小于2^53且小数位不超过22位时一次除法即可得到正确舍入的结果,其余交给Double.parseDouble
+     */
+    private double parseDouble() {
+        int i = 0;
+        boolean negative = false;
+        byte first = byteAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        for (; i < fieldLength; i++) {
+            byte b = byteAt(i);
+            if (b >= '0' && b <= '9') {
+                if (digits == 18) {
+                    return Double.parseDouble(fieldString());
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (dot) {
+                    scale++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(fieldString());
+            }
+        }
+        if (digits == 0 || mantissa >= MAX_EXACT_MANTISSA || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(fieldString());
+        }
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+}
@@ -19,34 +19,46 @@ package io.ordinate.engine.physicalplan;
 
 import com.google.common.collect.ImmutableList;
 import io.ordinate.engine.record.RootContext;
-import io.ordinate.engine.builder.SchemaBuilder;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
-import lombok.SneakyThrows;
-import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.types.pojo.Schema;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
-import java.util.Iterator;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
+/**
+ * 内存映射csv文件,按换行切分为多个分片并行解析
+ */
 public class CsvScanPlan implements PhysicalPlan {
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvScanPlan.class);
+    /**
+     * 每个分片的字节数
+     */
+    public static long CHUNK_BYTES = 8L * 1024 * 1024;
+    /**
+     * 同时解析的分片数
+     */
+    public static int PARALLELISM = Runtime.getRuntime().availableProcessors();
     protected final String path;
     protected final org.apache.arrow.vector.types.pojo.Schema arrowSchema;
+    /**
+     * 为false时先解析完的分片先发送,下游不依赖行顺序时使用
+     */
+    protected final boolean ordered;
 
     public CsvScanPlan(String path, Schema schema) {
+        this(path, schema, true);
+    }
+
+    public CsvScanPlan(String path, Schema schema, boolean ordered) {
         this.path = path;
         this.arrowSchema = schema;
+        this.ordered = ordered;
     }
 
 
@@ -61,63 +73,32 @@ public class CsvScanPlan implements PhysicalPlan {
     }
 
     @Override
-    @SneakyThrows
     public Observable execute(RootContext rootContext) {
-        return (Observable) Observable.create(emitter -> {
-
-            int columnNum = arrowSchema.getFields().size();
-            Path path = Paths.get(this.path);
-            long size = Files.size(path);
-//          int estimateRowCount = (int) Math.max(size / columnNum / 22, pContext.getBatchSize());
-            int estimateRowCount =900_0000;
-            LOGGER.debug("estimateRowCount:{}",estimateRowCount);
-            try (CSVParser parser = CSVParser.parse(path, StandardCharsets.UTF_8, CSVFormat.RFC4180)) {
-
-                Iterator<CSVRecord> iterator = parser.iterator();
-
-                int batchSize = estimateRowCount;
-                VectorSchemaRoot vectorSchemaRoot = null;
-
-                int batchCount = 0;
-                while (iterator.hasNext()) {
-                    CSVRecord record = iterator.next();
-                    if (vectorSchemaRoot==null) {
-                        vectorSchemaRoot = rootContext.getVectorSchemaRoot(arrowSchema, estimateRowCount);
-                        vectorSchemaRoot.setRowCount(estimateRowCount);
-                    }
-                    List<FieldVector> fieldVectors = vectorSchemaRoot.getFieldVectors();
-                    for (int i = 0; i < columnNum; i++) {
-                        String s = record.get(i);
-                        FieldVector valueVectors = fieldVectors.get(i);
-                        if (s == null) {
-                            SchemaBuilder.setVectorNull(valueVectors, batchCount);
-                        } else {
-                            SchemaBuilder.setVector(valueVectors, batchCount, s);
-                        }
+        int batchSize = rootContext.getBatchSize(arrowSchema);
+        LOGGER.debug("batchSize:{}", batchSize);
+        return (Observable) Observable.using(
+                () -> FileChannel.open(Paths.get(this.path), StandardOpenOption.READ),
+                channel -> {
+                    long[] bounds = CsvChunkReader.split(channel, channel.size(), CHUNK_BYTES);
+                    LOGGER.debug("path:{} chunks:{}", path, bounds.length - 1);
+                    Observable<Integer> chunks = Observable.range(0, bounds.length - 1);
+                    io.reactivex.rxjava3.functions.Function<Integer, Observable<VectorSchemaRoot>> read = chunk ->
+                            new CsvChunkReader(arrowSchema, rootContext, batchSize)
+                                    .read(channel, bounds[chunk], bounds[chunk + 1])
+                                    .subscribeOn(Schedulers.computation());
+                    int parallelism = Math.max(1, PARALLELISM);
+                    //分片并行解析,ordered时按文件顺序发送
+                    if (ordered) {
+                        return chunks.concatMapEager(read, parallelism, 1);
                     }
-                    batchCount++;
-                    if (batchCount == batchSize) {
-                        vectorSchemaRoot.setRowCount(batchCount);
-                        emitter.onNext(vectorSchemaRoot);
-                        vectorSchemaRoot = null;
-                        batchCount = 0;
-                    }
-                }
-                if (vectorSchemaRoot != null) {
-                    vectorSchemaRoot.setRowCount(batchCount);
-                    emitter.onNext(vectorSchemaRoot);
-                    batchCount = 0;
-                    vectorSchemaRoot = null;
-                }
-                long recordNumber = parser.getRecordNumber();
-                System.out.println("recordNumber:" + recordNumber);
-
-                emitter.onComplete();
-            } catch (Exception e) {
-                emitter.onError(e);
-            }
-        }).subscribeOn(Schedulers.io());
+                    return chunks.flatMap(read, parallelism);
+                },
+                FileChannel::close);
+    }
 
+    @Override
+    public PhysicalPlan unordered() {
+        return ordered ? new CsvScanPlan(path, arrowSchema, false) : this;
     }
 
     @Override
@@ -125,6 +106,11 @@ public class CsvScanPlan implements PhysicalPlan {
         vectorSchemaRoot.close();
     }
 
+    @Override
+    public void eachFree(RootContext rootContext, VectorSchemaRoot vectorSchemaRoot) {
+        rootContext.recycle(vectorSchemaRoot);
+    }
+
     @Override
     public void accept(PhysicalPlanVisitor physicalPlanVisitor) {
         physicalPlanVisitor.visit(this);
@@ -132,6 +118,6 @@ public class CsvScanPlan implements PhysicalPlan {
 
     @Override
     public String toString() {
-        return "CsvScan: schema=" + arrowSchema;
+        return "CsvScan: ordered=" + ordered + " schema=" + arrowSchema;
     }
 }
@@ -23,6 +23,9 @@ import io.ordinate.engine.function.Function;
 import io.ordinate.engine.record.VectorBatchRecord;
 import io.ordinate.engine.record.RootContext;
 import io.ordinate.engine.vector.ContinueFilterContext;
+import io.ordinate.engine.vector.kernel.KernelContext;
+import io.ordinate.engine.vector.kernel.SelectionVector;
+import io.ordinate.engine.vector.kernel.VectorKernel;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 import org.apache.arrow.vector.BitVector;
@@ -37,11 +40,23 @@ public class FilterPlan implements PhysicalPlan {
     private static final Logger LOGGER = LoggerFactory.getLogger(FilterPlan.class);
     final PhysicalPlan inputPlan;
     final Function condition;
+    final VectorKernel kernel;
     final org.apache.arrow.vector.types.pojo.Schema schema;
 
     public FilterPlan(PhysicalPlan input, Function condition, org.apache.arrow.vector.types.pojo.Schema schema) {
         this.inputPlan = input;
         this.condition = condition;
+        this.kernel = null;
+        this.schema = schema;
+    }
+
+    /**
+     * 按批计算条件,得到选择向量后只复制命中的行
+     */
+    public FilterPlan(PhysicalPlan input, VectorKernel kernel, org.apache.arrow.vector.types.pojo.Schema schema) {
+        this.inputPlan = input;
+        this.condition = null;
+        this.kernel = kernel;
         this.schema = schema;
     }
 
@@ -57,6 +72,9 @@ public class FilterPlan implements PhysicalPlan {
 
     @Override
     public Observable<VectorSchemaRoot> execute(RootContext rootContext) {
+        if (kernel != null) {
+            return executeKernel(rootContext);
+        }
         return inputPlan.execute(rootContext).map(input -> {
             int rowCount = input.getRowCount();
             BitVector bitVector = new BitVector("", rootContext.getRootAllocator());
@@ -99,7 +117,31 @@ public class FilterPlan implements PhysicalPlan {
                 output.setRowCount(outputRowIndex);
                 return output;
             }finally {
-                inputPlan.eachFree(input);
+                inputPlan.eachFree(rootContext, input);
+            }
+        }).subscribeOn(Schedulers.computation());
+    }
+
+    private Observable<VectorSchemaRoot> executeKernel(RootContext rootContext) {
+        return inputPlan.execute(rootContext).map(input -> {
+            try (KernelContext context = new KernelContext(input, rootContext.getRootAllocator())) {
+                int rowCount = input.getRowCount();
+                SelectionVector selection = kernel.filter(context, SelectionVector.all(rowCount));
+                int size = selection.size();
+                VectorSchemaRoot output = rootContext.getVectorSchemaRoot(schema, size);
+                List<FieldVector> inputVectors = input.getFieldVectors();
+                List<FieldVector> outputVectors = output.getFieldVectors();
+                for (int columnIndex = 0; columnIndex < inputVectors.size(); columnIndex++) {
+                    FieldVector from = inputVectors.get(columnIndex);
+                    FieldVector to = outputVectors.get(columnIndex);
+                    for (int i = 0; i < size; i++) {
+                        to.copyFromSafe(selection.get(i), i, from);
+                    }
+                }
+                output.setRowCount(size);
+                return output;
+            } finally {
+                inputPlan.eachFree(rootContext, input);
             }
         }).subscribeOn(Schedulers.computation());
     }
@@ -111,6 +153,6 @@ public class FilterPlan implements PhysicalPlan {
 
     @Override
     public String toString() {
-        return "Filter:" + condition;
+        return "Filter:" + (kernel != null ? kernel : condition);
     }
 }
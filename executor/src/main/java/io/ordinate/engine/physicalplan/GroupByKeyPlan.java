@@ -115,7 +115,7 @@ public class GroupByKeyPlan implements PhysicalPlan {
                     return Observable.empty();
                 }
                 output.setRowCount(outputRowId);
-                inputPlan.eachFree(input);
+                inputPlan.eachFree(rootContext, input);
                 return Observable.fromArray(output);
             }
         }).doOnComplete(new Action() {
@@ -17,6 +17,7 @@
 
 package io.ordinate.engine.physicalplan;
 
+import com.carrotsearch.hppc.IntArrayList;
 import io.ordinate.engine.record.*;
 import io.ordinate.engine.schema.InnerType;
 import io.ordinate.engine.builder.GroupKeys;
@@ -30,9 +31,13 @@ import io.questdb.cairo.map.MapValue;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.griffin.engine.groupby.SimpleMapValue;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Scheduler;
 import io.reactivex.rxjava3.functions.BiFunction;
 import io.reactivex.rxjava3.functions.Function;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
@@ -42,10 +47,30 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class GroupByKeyWithAggPlan implements PhysicalPlan {
     private static final Logger LOGGER = LoggerFactory.getLogger(GroupByKeyWithAggPlan.class);
+    /**
+     * 并行聚合专用的线程数,所有查询共用,不占用rx的computation线程与公共fork-join池
+     */
+    private static final int AGGREGATE_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final Scheduler AGGREGATE_SCHEDULER = Schedulers.from(new ThreadPoolExecutor(AGGREGATE_THREADS, AGGREGATE_THREADS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mycat-aggregate-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }));
     final PhysicalPlan physicalPlan;
     final GroupKeys[] groupByKeys;
     private AccumulatorFunction[] accumulators;
@@ -84,6 +109,10 @@ public class GroupByKeyWithAggPlan implements PhysicalPlan {
         InnerType[] innerTypes = schema().getFields().stream().map(i -> InnerType.from(i.getType())).toArray(n -> new InnerType[n]);
 
 
+        int parallelism = rootContext.getConfiguration().getAggregateParallelism();
+        if (groupByKeys.length > 0 && parallelism > 1 && isParallelSafe()) {
+            return executeParallel(rootContext, innerTypes, parallelism);
+        }
         if (groupByKeys.length > 0) {
             ColumnTypes arrayColumnTypes = RecordUtil.getArrayColumnTypes(accumulators);
             Map map = MapFactory.createMap2(innerTypes, arrayColumnTypes);
@@ -111,7 +140,7 @@ public class GroupByKeyWithAggPlan implements PhysicalPlan {
                         }
                     }
                 }
-                physicalPlan.eachFree(input);
+                physicalPlan.eachFree(rootContext, input);
                 return mapKey;
             }).map(map1 -> {
                 int size = (int) map1.size();
@@ -171,6 +200,114 @@ public class GroupByKeyWithAggPlan implements PhysicalPlan {
         }
     }
 
+    private boolean isParallelSafe() {
+        for (AccumulatorFunction accumulator : accumulators) {
+            if (!accumulator.isParallelSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 每批数据按分组key哈希分区,每个分区在聚合线程池上聚合到各自的map,
+     * 分区之间的key不重叠,输出时直接拼接各map,不需要合并聚合结果.
+     * 批次依次处理,同一时刻每个map只有一个线程访问
+     */
+    private Observable<VectorSchemaRoot> executeParallel(RootContext rootContext, InnerType[] innerTypes, int parallelism) {
+        parallelism = Math.min(parallelism, AGGREGATE_THREADS);
+        ColumnTypes arrayColumnTypes = RecordUtil.getArrayColumnTypes(accumulators);
+        Map[] maps = new Map[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            maps[i] = MapFactory.createMap2(innerTypes, arrayColumnTypes);
+        }
+        IntInnerType[][] keyTypes = buildKeyTypes(schema().getFields());
+        RecordSink[] recordSinks = new RecordSink[keyTypes.length];
+        for (int i = 0; i < keyTypes.length; i++) {
+            recordSinks[i] = RecordSinkFactory.INSTANCE.buildRecordSink(keyTypes[i]);
+        }
+        return physicalPlan.execute(rootContext)
+                .concatMapCompletable(input -> aggregateParallel(maps, keyTypes, recordSinks, input)
+                        .doFinally(() -> physicalPlan.eachFree(rootContext, input)))
+                .toSingleDefault(maps)
+                .map(partitionMaps -> {
+                    long size = 0;
+                    for (Map map : partitionMaps) {
+                        size += map.size();
+                    }
+                    VectorSchemaRoot output = rootContext.getVectorSchemaRoot(schema(), (int) size);
+                    int index = 0;
+                    for (Map map : partitionMaps) {
+                        RecordCursor cursor = map.getCursor();
+                        cursor.toTop();
+                        while (cursor.hasNext()) {
+                            Record record = cursor.getRecord();
+                            functionSink.copy(accumulators, RecordUtil.wrapAsAggRecord(record), index++, output);
+                        }
+                        map.clear();
+                    }
+                    output.setRowCount(index);
+                    return output;
+                }).toObservable().doFinally(() -> {
+                    for (Map map : maps) {
+                        map.close();
+                    }
+                });
+    }
+
+    private Completable aggregateParallel(Map[] maps, IntInnerType[][] keyTypes, RecordSink[] recordSinks, VectorSchemaRoot input) {
+        int rowCount = input.getRowCount();
+        int partitions = maps.length;
+        IntArrayList[][] selections = new IntArrayList[partitions][recordSinks.length];
+        for (int sinkIndex = 0; sinkIndex < keyTypes.length; sinkIndex++) {
+            IntInnerType[] keys = keyTypes[sinkIndex];
+            for (int rowId = 0; rowId < rowCount; rowId++) {
+                int hash = 0;
+                for (IntInnerType key : keys) {
+                    hash = 31 * hash + input.getVector(key.index).hashCode(rowId);
+                }
+                int partition = (hash & Integer.MAX_VALUE) % partitions;
+                IntArrayList selection = selections[partition][sinkIndex];
+                if (selection == null) {
+                    selections[partition][sinkIndex] = selection = new IntArrayList();
+                }
+                selection.add(rowId);
+            }
+        }
+        return Flowable.range(0, partitions)
+                .parallel(partitions)
+                .runOn(AGGREGATE_SCHEDULER)
+                .doOnNext(partition -> aggregate(maps[partition], recordSinks, selections[partition], input))
+                .sequential()
+                .ignoreElements();
+    }
+
+    private void aggregate(Map map, RecordSink[] recordSinks, IntArrayList[] selections, VectorSchemaRoot input) {
+        VectorBatchRecord record = new VectorBatchRecord(input);
+        for (int sinkIndex = 0; sinkIndex < recordSinks.length; sinkIndex++) {
+            IntArrayList selection = selections[sinkIndex];
+            if (selection == null) {
+                continue;
+            }
+            RecordSink recordSink = recordSinks[sinkIndex];
+            for (int i = 0; i < selection.size(); i++) {
+                record.setPosition(selection.get(i));
+                MapKey key = map.withKey();
+                recordSink.copy(record, RecordSinkFactory.INSTANCE.getRecordSinkSPI(key));
+                MapValue value = key.createValue();
+                if (value.isNew()) {
+                    for (AccumulatorFunction accumulator : accumulators) {
+                        accumulator.computeFirst(value, record);
+                    }
+                } else {
+                    for (AccumulatorFunction accumulator : accumulators) {
+                        accumulator.computeNext(value, record);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void accept(PhysicalPlanVisitor physicalPlanVisitor) {
         physicalPlanVisitor.visit(this);
@@ -178,7 +315,17 @@ public class GroupByKeyWithAggPlan implements PhysicalPlan {
 
     @NotNull
     private RecordSink[] buildRecordSink(List<Field> fields) {
-        RecordSink[] recordSinks = new RecordSink[groupByKeys.length];
+        IntInnerType[][] keyTypes = buildKeyTypes(fields);
+        RecordSink[] recordSinks = new RecordSink[keyTypes.length];
+        for (int i = 0; i < keyTypes.length; i++) {
+            recordSinks[i] = RecordSinkFactory.INSTANCE.buildRecordSink(keyTypes[i]);
+        }
+        return recordSinks;
+    }
+
+    @NotNull
+    private IntInnerType[][] buildKeyTypes(List<Field> fields) {
+        IntInnerType[][] keyTypes = new IntInnerType[groupByKeys.length][];
         int groupIndex = 0;
         for (GroupKeys groupByKey : groupByKeys) {
             IntInnerType[] intPairs = new IntInnerType[groupByKey.getKeys().length];
@@ -189,11 +336,11 @@ public class GroupByKeyWithAggPlan implements PhysicalPlan {
                 intPairs[index] = IntInnerType.of(index, InnerType.from(field.getType()));
                 index++;
             }
-            recordSinks[groupIndex] = RecordSinkFactory.INSTANCE.buildRecordSink(intPairs);
+            keyTypes[groupIndex] = intPairs;
 
             groupIndex++;
 
         }
-        return recordSinks;
+        return keyTypes;
     }
 }
@@ -17,38 +17,66 @@
 
 package io.ordinate.engine.physicalplan;
 
-import io.mycat.MycatRxJavaUtl;
-import io.ordinate.engine.builder.RexConverter;
-import io.ordinate.engine.function.BinarySequence;
+import com.carrotsearch.hppc.IntArrayList;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.config.ServerConfig;
 import io.ordinate.engine.function.Function;
 import io.ordinate.engine.record.*;
 import io.ordinate.engine.schema.InnerType;
 import io.ordinate.engine.schema.IntInnerType;
-import io.reactivex.rxjava3.annotations.NonNull;
+import io.ordinate.engine.structure.MapFactory;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
 import io.reactivex.rxjava3.core.Observable;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.types.pojo.ArrowType;
-import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
 import org.apache.arrow.vector.types.pojo.Schema;
-import org.apache.calcite.linq4j.Enumerable;
-import org.apache.calcite.linq4j.EnumerableDefaults;
 import org.apache.calcite.linq4j.JoinType;
-import org.apache.calcite.linq4j.Linq4j;
-import org.apache.calcite.linq4j.function.*;
 import org.apache.calcite.util.ImmutableIntList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.function.Consumer;
 
+/**
+ * 等值hash join,右表为build侧.
+ * build侧的key写入堆外FastMap,值为该key最后一行的行号,同key的行通过next数组串成链表;
+ * probe侧按批处理,先生成左右行号的选择向量,再按列批量复制到输出.
+ * build侧超出BUILD_MEMORY_LIMIT后两侧都按key哈希分区落盘,再逐个分区join.
+ * 支持inner,left,semi,anti,key含null的行不匹配
+ */
 public class HeapHashJoinNPlan implements PhysicalPlan {
-    PhysicalPlan left;
-    PhysicalPlan right;
-    ImmutableIntList leftKeys;
-    ImmutableIntList rightKeys;
-    Function predicate;
-    Schema schema;
-    JoinType joinType;
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeapHashJoinNPlan.class);
+    /**
+     * build侧在内存中的最大字节数
+     */
+    public static long BUILD_MEMORY_LIMIT = 64L * 1024 * 1024;
+    public static int SPILL_PARTITIONS = 16;
+
+    final PhysicalPlan left;
+    final PhysicalPlan right;
+    final ImmutableIntList leftKeys;
+    final ImmutableIntList rightKeys;
+    /**
+     * 等值条件以外的剩余条件,可以为null
+     */
+    final Function predicate;
+    final Schema schema;
+    final JoinType joinType;
 
     public HeapHashJoinNPlan(
             PhysicalPlan left,
@@ -68,6 +96,35 @@ public class HeapHashJoinNPlan implements PhysicalPlan {
         this.joinType = joinType;
     }
 
+    public static boolean isSupported(JoinType joinType) {
+        switch (joinType) {
+            case INNER:
+            case LEFT:
+            case SEMI:
+            case ANTI:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 两侧key类型一致时,key在FastMap中的二进制表示才一致
+     */
+    public static boolean isSupported(PhysicalPlan left, PhysicalPlan right, List<Integer> leftKeys, List<Integer> rightKeys) {
+        if (leftKeys.isEmpty() || leftKeys.size() != rightKeys.size()) {
+            return false;
+        }
+        IntInnerType[] leftTypes = InnerType.fromSchemaToIntInnerTypes(leftKeys, left.schema());
+        IntInnerType[] rightTypes = InnerType.fromSchemaToIntInnerTypes(rightKeys, right.schema());
+        for (int i = 0; i < leftTypes.length; i++) {
+            if (leftTypes[i].type != rightTypes[i].type) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public Schema schema() {
         return schema;
@@ -80,51 +137,429 @@ public class HeapHashJoinNPlan implements PhysicalPlan {
 
     @Override
     public Observable<VectorSchemaRoot> execute(RootContext rootContext) {
-        OutputLinq4jPhysicalPlan leftObjectPlan = OutputLinq4jPhysicalPlan.create(left);
-        Observable<Object[]> leftObservable = leftObjectPlan.executeToObject(rootContext);
-        @NonNull Iterable<Record> leftObjects = MycatRxJavaUtl.blockingIterable(leftObservable.map(i -> RecordImpl.create(i)));
-        @NonNull Iterable<Record> rightObjects = MycatRxJavaUtl.blockingIterable(leftObservable.map(i -> RecordImpl.create(i)));
-        int leftColumnCount = left.schema().getFields().size();
-
-        RecordSink leftKeyRecordSink = RecordSinkFactory.INSTANCE.buildRecordSink(InnerType.fromSchemaToIntInnerTypes(this.leftKeys, left.schema()));
-        RecordSink rightKeyRecordSink = RecordSinkFactory.INSTANCE.buildRecordSink(InnerType.fromSchemaToIntInnerTypes(this.rightKeys, right.schema()));
-
-
-
-        Enumerable<Record> outer =Linq4j.asEnumerable( leftObjects);
-        Enumerable<Record> inner = Linq4j.asEnumerable( rightObjects);
-        Function1<Record, Object> outerKeySelector = a0 -> {
-            RecordSetter recordSetter = SimpleRecordSetterImpl.create(leftKeys.size());
-            leftKeyRecordSink.copy(a0, recordSetter);
-            return recordSetter;
-        };
-        Function1<Record, Object> innerKeySelector = a0 -> {
-            RecordSetter recordSetter = SimpleRecordSetterImpl.create(rightKeys.size());
-            rightKeyRecordSink.copy(a0, recordSetter);
-            return recordSetter;
-        };
-        Function2<Record, Record, Record> resultSelector = (v0, v1) -> JoinRecord.create(v0,v1,leftColumnCount);
-        EqualityComparer<Object> comparer = new EqualityComparer<Object>() {
-            @Override
-            public boolean equal(Object v1, Object v2) {
-                return Objects.equals(v1,v2);
-            }
-
-            @Override
-            public int hashCode(Object record) {
-                return Objects.hashCode(record);
-            }
-        };
-        Enumerable < Record > records = EnumerableDefaults.hashJoin(
-                outer,
-                inner,
-                outerKeySelector,innerKeySelector ,resultSelector
-                ,comparer,joinType.generatesNullsOnLeft(),joinType.generatesNullsOnRight()).where(v0 -> predicate.getBooleanType(v0));
-        return InputRecordPhysicalPlan.create(schema(), Observable.fromIterable(records)).execute(rootContext);
+        return Observable.using(() -> new JoinContext(rootContext),
+                context -> right.execute(rootContext)
+                        .doOnNext(context::build)
+                        .ignoreElements()
+                        .andThen(Observable.defer(() -> context.probe(left.execute(rootContext)))),
+                JoinContext::close);
     }
 
     @Override
     public void accept(PhysicalPlanVisitor physicalPlanVisitor) {
-        throw new UnsupportedOperationException();
+        physicalPlanVisitor.visit(this);
+    }
+
+    private boolean outputRight() {
+        return joinType == JoinType.INNER || joinType == JoinType.LEFT;
+    }
+
+    private class JoinContext implements Closeable {
+        final RootContext rootContext;
+        HashTable hashTable;
+        long buildBytes;
+        /**
+         * 未落盘时为null
+         */
+        SpillPartition[] buildPartitions;
+        SpillPartition[] probePartitions;
+
+        JoinContext(RootContext rootContext) {
+            this.rootContext = rootContext;
+            this.hashTable = new HashTable(rootContext, right);
+        }
+
+        void build(VectorSchemaRoot batch) throws IOException {
+            if (buildPartitions != null) {
+                try {
+                    spill(buildPartitions, batch, rightKeys);
+                } finally {
+                    right.eachFree(rootContext, batch);
+                }
+                return;
+            }
+            buildBytes += getBufferSize(batch);
+            hashTable.add(batch);
+            if (buildBytes > BUILD_MEMORY_LIMIT) {
+                LOGGER.info("hash join build side exceeds {} bytes, spill to {} partitions", BUILD_MEMORY_LIMIT, SPILL_PARTITIONS);
+                buildPartitions = createPartitions(right.schema());
+                for (VectorSchemaRoot buildBatch : hashTable.batches) {
+                    spill(buildPartitions, buildBatch, rightKeys);
+                }
+                hashTable.close();
+                hashTable = null;
+            }
+        }
+
+        Observable<VectorSchemaRoot> probe(Observable<VectorSchemaRoot> probeInput) throws IOException {
+            if (buildPartitions == null) {
+                return probeInput.concatMapIterable(batch -> {
+                    try {
+                        return hashTable.probe(batch);
+                    } finally {
+                        left.eachFree(rootContext, batch);
+                    }
+                });
+            }
+            probePartitions = createPartitions(left.schema());
+            return probeInput
+                    .doOnNext(batch -> {
+                        try {
+                            spill(probePartitions, batch, leftKeys);
+                        } finally {
+                            left.eachFree(rootContext, batch);
+                        }
+                    })
+                    .ignoreElements()
+                    .andThen(Observable.range(0, SPILL_PARTITIONS).concatMap(this::joinPartition));
+        }
+
+        private Observable<VectorSchemaRoot> joinPartition(int partition) {
+            return Observable.using(() -> {
+                        HashTable table = new HashTable(rootContext, null);
+                        buildPartitions[partition].read(rootContext.getRootAllocator(), table::add);
+                        return table;
+                    },
+                    table -> Observable.<VectorSchemaRoot>create(emitter -> {
+                        probePartitions[partition].read(rootContext.getRootAllocator(), batch -> {
+                            try {
+                                table.probe(batch).forEach(emitter::onNext);
+                            } finally {
+                                batch.close();
+                            }
+                        });
+                        emitter.onComplete();
+                    }),
+                    HashTable::close);
+        }
+
+        private SpillPartition[] createPartitions(Schema schema) throws IOException {
+            Path dir = getTempDirectory();
+            SpillPartition[] partitions = new SpillPartition[SPILL_PARTITIONS];
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = new SpillPartition(dir, schema, rootContext.getRootAllocator());
+            }
+            return partitions;
+        }
+
+        @Override
+        public void close() {
+            if (hashTable != null) {
+                hashTable.close();
+                hashTable = null;
+            }
+            closePartitions(buildPartitions);
+            closePartitions(probePartitions);
+        }
+    }
+
+    private static void spill(SpillPartition[] partitions, VectorSchemaRoot batch, ImmutableIntList keys) throws IOException {
+        int rowCount = batch.getRowCount();
+        IntArrayList[] selections = new IntArrayList[partitions.length];
+        for (int rowId = 0; rowId < rowCount; rowId++) {
+            int hash = 0;
+            for (int key : keys) {
+                hash = 31 * hash + batch.getVector(key).hashCode(rowId);
+            }
+            int partition = (hash & Integer.MAX_VALUE) % partitions.length;
+            IntArrayList selection = selections[partition];
+            if (selection == null) {
+                selections[partition] = selection = new IntArrayList();
+            }
+            selection.add(rowId);
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            if (selections[i] != null) {
+                partitions[i].write(batch, selections[i]);
+            }
+        }
+    }
+
+    private static void closePartitions(SpillPartition[] partitions) {
+        if (partitions != null) {
+            for (SpillPartition partition : partitions) {
+                partition.close();
+            }
+        }
+    }
+
+    private static Path getTempDirectory() {
+        if (MetaClusterCurrent.exist(ServerConfig.class)) {
+            return Paths.get(MetaClusterCurrent.wrapper(ServerConfig.class).getTempDirectory());
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    private static long getBufferSize(VectorSchemaRoot batch) {
+        long size = 0;
+        for (FieldVector vector : batch.getFieldVectors()) {
+            size += vector.getBufferSize();
+        }
+        return size;
+    }
+
+    private static boolean hasNullKey(VectorSchemaRoot batch, ImmutableIntList keys, int rowId) {
+        for (int key : keys) {
+            if (batch.getVector(key).isNull(rowId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void setNull(FieldVector vector, int index) {
+        if (vector instanceof BaseFixedWidthVector) {
+            ((BaseFixedWidthVector) vector).setNull(index);
+        } else if (vector instanceof BaseVariableWidthVector) {
+            ((BaseVariableWidthVector) vector).setNull(index);
+        }
+    }
+
+    /**
+     * @param rows 为null时按顺序复制前count行
+     */
+    private static void copyRows(VectorSchemaRoot from, int[] rows, int count, VectorSchemaRoot to) {
+        List<FieldVector> fromVectors = from.getFieldVectors();
+        for (int columnIndex = 0; columnIndex < fromVectors.size(); columnIndex++) {
+            FieldVector fromVector = fromVectors.get(columnIndex);
+            FieldVector toVector = to.getVector(columnIndex);
+            for (int i = 0; i < count; i++) {
+                toVector.copyFromSafe(rows == null ? i : rows[i], i, fromVector);
+            }
+        }
+        to.setRowCount(count);
+    }
+
+    /**
+     * 内存中的build表
+     */
+    private class HashTable implements Closeable {
+        final RootContext rootContext;
+        final Map map;
+        final MapKey mapKey;
+        final RecordSetter keySetter;
+        final RecordSink buildKeySink;
+        final RecordSink probeKeySink;
+        final List<VectorSchemaRoot> batches = new ArrayList<>();
+        final List<VectorBatchRecord> records = new ArrayList<>();
+        /**
+         * 批次的来源,为null时批次由落盘分区读出,归本表所有
+         */
+        final PhysicalPlan source;
+        /**
+         * build行号 -> 所在批次,批次内行号,同key的上一行行号(-1表示链表结束)
+         */
+        final IntArrayList batchIds = new IntArrayList();
+        final IntArrayList rowIds = new IntArrayList();
+        final IntArrayList next = new IntArrayList();
+
+        HashTable(RootContext rootContext, PhysicalPlan source) {
+            this.rootContext = rootContext;
+            this.source = source;
+            IntInnerType[] buildKeyTypes = InnerType.fromSchemaToIntInnerTypes(rightKeys, right.schema());
+            this.map = MapFactory.createMap(buildKeyTypes, new InnerType[]{InnerType.INT32_TYPE});
+            this.mapKey = map.withKey();
+            this.keySetter = RecordSinkFactory.INSTANCE.getRecordSinkSPI(mapKey);
+            this.buildKeySink = RecordSinkFactory.INSTANCE.buildRecordSink(buildKeyTypes);
+            this.probeKeySink = RecordSinkFactory.INSTANCE.buildRecordSink(InnerType.fromSchemaToIntInnerTypes(leftKeys, left.schema()));
+        }
+
+        void add(VectorSchemaRoot batch) {
+            int batchId = batches.size();
+            VectorBatchRecord record = new VectorBatchRecord(batch);
+            batches.add(batch);
+            records.add(record);
+            int rowCount = batch.getRowCount();
+            for (int rowId = 0; rowId < rowCount; rowId++) {
+                if (hasNullKey(batch, rightKeys, rowId)) {
+                    continue;
+                }
+                record.setPosition(rowId);
+                map.withKey();
+                buildKeySink.copy(record, keySetter);
+                MapValue value = mapKey.createValue();
+                int id = rowIds.size();
+                batchIds.add(batchId);
+                rowIds.add(rowId);
+                next.add(value.isNew() ? -1 : value.getInt(0));
+                value.putInt(0, id);
+            }
+        }
+
+        List<VectorSchemaRoot> probe(VectorSchemaRoot batch) {
+            List<VectorSchemaRoot> outputs = new ArrayList<>(1);
+            int batchSize = rootContext.getBatchSize();
+            int rowCount = batch.getRowCount();
+            int leftColumnCount = left.schema().getFields().size();
+            VectorBatchRecord probeRecord = new VectorBatchRecord(batch);
+            JoinRecord joinRecord = JoinRecord.create(probeRecord, null, leftColumnCount);
+            IntArrayList leftSelection = new IntArrayList(Math.min(rowCount, batchSize));
+            IntArrayList rightSelection = new IntArrayList(Math.min(rowCount, batchSize));
+            for (int rowId = 0; rowId < rowCount; rowId++) {
+                boolean matched = false;
+                if (!hasNullKey(batch, leftKeys, rowId)) {
+                    probeRecord.setPosition(rowId);
+                    map.withKey();
+                    probeKeySink.copy(probeRecord, keySetter);
+                    MapValue value = mapKey.findValue();
+                    for (int id = value == null ? -1 : value.getInt(0); id != -1; id = next.get(id)) {
+                        if (predicate != null) {
+                            VectorBatchRecord buildRecord = records.get(batchIds.get(id));
+                            buildRecord.setPosition(rowIds.get(id));
+                            joinRecord.setRight(buildRecord);
+                            if (!predicate.getBooleanType(joinRecord)) {
+                                continue;
+                            }
+                        }
+                        matched = true;
+                        if (!outputRight()) {
+                            break;
+                        }
+                        leftSelection.add(rowId);
+                        rightSelection.add(id);
+                        if (leftSelection.size() >= batchSize) {
+                            outputs.add(output(batch, leftSelection, rightSelection));
+                        }
+                    }
+                }
+                switch (joinType) {
+                    case LEFT:
+                        if (!matched) {
+                            leftSelection.add(rowId);
+                            rightSelection.add(-1);
+                        }
+                        break;
+                    case SEMI:
+                        if (matched) {
+                            leftSelection.add(rowId);
+                        }
+                        break;
+                    case ANTI:
+                        if (!matched) {
+                            leftSelection.add(rowId);
+                        }
+                        break;
+                    default:
+                }
+                if (leftSelection.size() >= batchSize) {
+                    outputs.add(output(batch, leftSelection, rightSelection));
+                }
+            }
+            if (!leftSelection.isEmpty()) {
+                outputs.add(output(batch, leftSelection, rightSelection));
+            }
+            return outputs;
+        }
+
+        private VectorSchemaRoot output(VectorSchemaRoot batch, IntArrayList leftSelection, IntArrayList rightSelection) {
+            int count = leftSelection.size();
+            VectorSchemaRoot output = rootContext.getVectorSchemaRoot(schema, count);
+            List<FieldVector> leftVectors = batch.getFieldVectors();
+            int[] leftRows = leftSelection.buffer;
+            for (int columnIndex = 0; columnIndex < leftVectors.size(); columnIndex++) {
+                FieldVector from = leftVectors.get(columnIndex);
+                FieldVector to = output.getVector(columnIndex);
+                for (int i = 0; i < count; i++) {
+                    to.copyFromSafe(leftRows[i], i, from);
+                }
+            }
+            if (outputRight()) {
+                int leftColumnCount = leftVectors.size();
+                int rightColumnCount = right.schema().getFields().size();
+                for (int columnIndex = 0; columnIndex < rightColumnCount; columnIndex++) {
+                    FieldVector to = output.getVector(leftColumnCount + columnIndex);
+                    for (int i = 0; i < count; i++) {
+                        int id = rightSelection.get(i);
+                        if (id == -1) {
+                            setNull(to, i);
+                        } else {
+                            to.copyFromSafe(rowIds.get(id), i, batches.get(batchIds.get(id)).getVector(columnIndex));
+                        }
+                    }
+                }
+            }
+            output.setRowCount(count);
+            leftSelection.clear();
+            rightSelection.clear();
+            return output;
+        }
+
+        @Override
+        public void close() {
+            map.close();
+            for (VectorSchemaRoot batch : batches) {
+                if (source == null) {
+                    batch.close();
+                } else {
+                    source.eachFree(rootContext, batch);
+                }
+            }
+            batches.clear();
+            records.clear();
+        }
+    }
+
+    /**
+     * 一个落盘分区,arrow ipc流格式
+     */
+    private static class SpillPartition implements Closeable {
+        final Path file;
+        final VectorSchemaRoot root;
+        final ArrowStreamWriter writer;
+        boolean finished;
+
+        SpillPartition(Path dir, Schema schema, BufferAllocator allocator) throws IOException {
+            this.file = Files.createTempFile(dir, "hashjoin", ".arrow");
+            this.root = VectorSchemaRoot.create(schema, allocator);
+            this.writer = new ArrowStreamWriter(root, null,
+                    Channels.newChannel(new BufferedOutputStream(Files.newOutputStream(file))));
+            this.writer.start();
+        }
+
+        void write(VectorSchemaRoot batch, IntArrayList selection) throws IOException {
+            root.allocateNew();
+            copyRows(batch, selection.buffer, selection.size(), root);
+            writer.writeBatch();
+            root.clear();
+        }
+
+        /**
+         * @param consumer 取得每批数据的所有权
+         */
+        void read(BufferAllocator allocator, Consumer<VectorSchemaRoot> consumer) throws IOException {
+            finish();
+            try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file));
+                 ArrowStreamReader reader = new ArrowStreamReader(inputStream, allocator)) {
+                VectorSchemaRoot loaded = reader.getVectorSchemaRoot();
+                while (reader.loadNextBatch()) {
+                    VectorSchemaRoot batch = VectorSchemaRoot.create(loaded.getSchema(), allocator);
+                    batch.allocateNew();
+                    copyRows(loaded, null, loaded.getRowCount(), batch);
+                    consumer.accept(batch);
+                }
+            }
+        }
+
+        private void finish() throws IOException {
+            if (!finished) {
+                finished = true;
+                writer.close();
+                root.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                finish();
+            } catch (IOException e) {
+                LOGGER.warn("close hash join spill file:{} fail", file, e);
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOGGER.warn("delete hash join spill file:{} fail", file, e);
+            }
+        }
     }
 }
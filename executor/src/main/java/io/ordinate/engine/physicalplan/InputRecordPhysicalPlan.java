@@ -61,7 +61,7 @@ public class InputRecordPhysicalPlan implements PhysicalPlan {
     public Observable<VectorSchemaRoot> execute(RootContext rootContext) {
         return Observable.create(emitter -> {
             VectorSchemaRoot vectorSchemaRoot = null;
-            final int batchSize = rootContext.getBatchSize();
+            final int batchSize = rootContext.getBatchSize(schema());
             int batchId = 0;
             for (Record record : MycatRxJavaUtl.blockingIterable(observable)) {
 
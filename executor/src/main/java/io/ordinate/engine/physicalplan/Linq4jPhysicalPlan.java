@@ -66,7 +66,7 @@ public abstract class Linq4jPhysicalPlan implements PhysicalPlan {
             }
             root.close();
             emitter.onComplete();
-        })).buffer(rootContext.getBatchSize()).map(objects -> {
+        })).buffer(rootContext.getBatchSize(schema())).map(objects -> {
             VectorSchemaRoot vectorSchemaRoot = rootContext.getVectorSchemaRoot(schema());
             for (int columnId = 0; columnId < columnCount; columnId++) {
                 FieldVector vector = vectorSchemaRoot.getVector(columnId);
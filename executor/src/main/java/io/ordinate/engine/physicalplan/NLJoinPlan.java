@@ -399,13 +399,13 @@ public class NLJoinPlan implements PhysicalPlan {
 
     private void assignRight(VectorSchemaRoot output, int rightColumnSize, int leftColumnSize, int rowId, int rightRowId, VectorSchemaRoot rightBatch) {
         for (int rightColumnIndex = 0; rightColumnIndex < rightColumnSize; rightColumnIndex++) {
-            output.getVector(leftColumnSize + rightColumnIndex).copyFrom(rightRowId, rowId, rightBatch.getVector(rightColumnIndex));
+            output.getVector(leftColumnSize + rightColumnIndex).copyFromSafe(rightRowId, rowId, rightBatch.getVector(rightColumnIndex));
         }
     }
 
     private void assignLeft(VectorSchemaRoot leftInput, VectorSchemaRoot output, int leftColumnSize, int rowId) {
         for (int leftColumnIndex = 0; leftColumnIndex < leftColumnSize; leftColumnIndex++) {
-            output.getVector(leftColumnIndex).copyFrom(rowId, rowId, leftInput.getVector(leftColumnIndex));
+            output.getVector(leftColumnIndex).copyFromSafe(rowId, rowId, leftInput.getVector(leftColumnIndex));
         }
     }
 
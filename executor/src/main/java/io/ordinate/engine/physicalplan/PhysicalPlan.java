@@ -60,6 +60,20 @@ public interface PhysicalPlan {
 
     }
 
+    /**
+     * 下游用完批次后调用,批次来自rootContext时可以归还复用
+     */
+    default void eachFree(RootContext rootContext, VectorSchemaRoot vectorSchemaRoot) {
+        eachFree(vectorSchemaRoot);
+    }
+
+    /**
+     * 下游不依赖行顺序时调用,返回可以乱序发送批次的计划,默认返回自身
+     */
+    default PhysicalPlan unordered() {
+        return this;
+    }
+
    default void close(){
 
    }
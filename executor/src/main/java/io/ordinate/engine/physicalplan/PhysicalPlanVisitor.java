@@ -26,6 +26,8 @@ public interface PhysicalPlanVisitor {
 
     void visit(NLJoinPlan nlJoin);
 
+    void visit(HeapHashJoinNPlan hashJoin);
+
     void visit(ValuesPlan values);
 
     void visit(GroupByKeyPlan groupByKey);
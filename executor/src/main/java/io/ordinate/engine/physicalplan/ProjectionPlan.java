@@ -25,11 +25,14 @@ import io.ordinate.engine.record.RootContext;
 import io.ordinate.engine.vector.ExprVectorExpression;
 import io.ordinate.engine.vector.VectorContext;
 import io.ordinate.engine.vector.VectorExpression;
+import io.ordinate.engine.vector.kernel.KernelContext;
+import io.ordinate.engine.vector.kernel.KernelVectorExpression;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.util.TransferPair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +66,7 @@ public class ProjectionPlan implements PhysicalPlan {
         return input.execute(rootContext)
                 .subscribeOn(Schedulers.computation())
                 .map(input -> {
+                    KernelContext kernelContext = null;
                     try {
                         int index = 0;
                         for (VectorExpression expr : exprs) {
@@ -72,7 +76,15 @@ public class ProjectionPlan implements PhysicalPlan {
                                 ExprVectorExpression exprVectorExpression = (ExprVectorExpression) expr;
                                 ColumnFunction columnFunction = (ColumnFunction) exprVectorExpression.getFunction();
                                 FieldVector vector = input.getVector(columnFunction.getColumnIndex());
-                                vectorList[finalIndex] = vector;
+                                //引用输入列的内存而不复制,输入批次随后照常释放
+                                TransferPair transferPair = vector.getTransferPair(rootContext.getRootAllocator());
+                                transferPair.splitAndTransfer(0, vector.getValueCount());
+                                vectorList[finalIndex] = (FieldVector) transferPair.getTo();
+                            } else if (expr instanceof KernelVectorExpression) {
+                                if (kernelContext == null) {
+                                    kernelContext = new KernelContext(input, rootContext.getRootAllocator());
+                                }
+                                vectorList[finalIndex] = ((KernelVectorExpression) expr).evaluate(kernelContext);
                             } else {
                                 ArrowType type = expr.getType();
                                 vectorList[finalIndex] = FieldBuilder.of("", type, expr.isNullable()).toArrow().createVector(rootContext.getRootAllocator());
@@ -104,7 +116,10 @@ public class ProjectionPlan implements PhysicalPlan {
                         res.setRowCount(input.getRowCount());
                         return res;
                     } finally {
-                        ProjectionPlan.this.input.eachFree(input);
+                        if (kernelContext != null) {
+                            kernelContext.close();
+                        }
+                        ProjectionPlan.this.input.eachFree(rootContext, input);
                     }
                 });
     }
@@ -56,6 +56,14 @@ public class ValuesCsvScanPlan extends CsvScanPlan {
         });
     }
 
+    /**
+     * 批次已全部加载,按加载顺序发送
+     */
+    @Override
+    public PhysicalPlan unordered() {
+        return this;
+    }
+
     @Override
     public String toString() {
         return "ValuesCsvScan:" + path;
@@ -66,6 +74,14 @@ public class ValuesCsvScanPlan extends CsvScanPlan {
 
     }
 
+    /**
+     * 批次会被重复发送,不能归还
+     */
+    @Override
+    public void eachFree(RootContext rootContext, VectorSchemaRoot vectorSchemaRoot) {
+
+    }
+
     @Override
     public void close() {
         for (VectorSchemaRoot vectorSchemaRoot : observable) {
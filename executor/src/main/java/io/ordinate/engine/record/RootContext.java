@@ -17,41 +17,179 @@
 
 package io.ordinate.engine.record;
 
+import io.ordinate.engine.builder.EngineConfiguration;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.ReferenceManager;
 import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class RootContext<T> {
-    RootAllocator rootAllocator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class RootContext<T> implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RootContext.class);
+    private static final RootAllocator ROOT_ALLOCATOR = new RootAllocator(Long.MAX_VALUE);
+    /**
+     * 每种schema最多缓存的空闲批次数
+     */
+    public static int MAX_POOLED_BATCHES = 2;
+
+    volatile BufferAllocator rootAllocator;
     T context;
+    EngineConfiguration configuration = new EngineConfiguration();
+    final Map<Schema, Queue<VectorSchemaRoot>> batchPool = new ConcurrentHashMap<>();
 
     public RootContext( T context) {
         this.context = context;
-        this.rootAllocator = new RootAllocator(Long.MAX_VALUE);
     }
 
-    public RootAllocator getRootAllocator() {
+    /**
+     * 每个查询一个子分配器,上限为configuration的queryMemoryLimit
+     */
+    public BufferAllocator getRootAllocator() {
+        if (rootAllocator == null) {
+            synchronized (this) {
+                if (rootAllocator == null) {
+                    rootAllocator = ROOT_ALLOCATOR.newChildAllocator("query", 0, configuration.getQueryMemoryLimit());
+                }
+            }
+        }
         return rootAllocator;
     }
 
     public int getBatchSize() {
-        return 8192 * 4;
+        return configuration.getMaxBatchRows();
+    }
+
+    /**
+     * 按schema的行宽换算的批次行数
+     */
+    public int getBatchSize(Schema schema) {
+        return configuration.getBatchRowCount(schema);
     }
 
     @NotNull
     public VectorSchemaRoot getVectorSchemaRoot(Schema schema) {
-        return getVectorSchemaRoot(schema, getBatchSize());
+        return getVectorSchemaRoot(schema, getBatchSize(schema));
     }
 
+    /**
+     * 分配容量为size行的批次,优先复用recycle归还的批次
+     */
     public VectorSchemaRoot getVectorSchemaRoot(Schema schema, int size) {
-        VectorSchemaRoot root = VectorSchemaRoot.create(schema, rootAllocator);
-        root.allocateNew();
+        int capacity = Math.max(size, 1);
+        Queue<VectorSchemaRoot> queue = batchPool.get(schema);
+        VectorSchemaRoot root = queue == null ? null : queue.poll();
+        if (root == null) {
+            root = VectorSchemaRoot.create(schema, getRootAllocator());
+            for (FieldVector vector : root.getFieldVectors()) {
+                allocate(vector, capacity);
+            }
+        } else {
+            for (FieldVector vector : root.getFieldVectors()) {
+                if (vector.getValueCapacity() < capacity) {
+                    allocate(vector, capacity);
+                }
+            }
+        }
         //  root.setRowCount(size);
         return root;
     }
 
+    private void allocate(FieldVector vector, int capacity) {
+        if (vector instanceof BaseVariableWidthVector) {
+            ((BaseVariableWidthVector) vector).setInitialCapacity(capacity, configuration.getVariableWidthBytes());
+        } else {
+            vector.setInitialCapacity(capacity);
+        }
+        vector.allocateNew();
+    }
+
+    /**
+     * 归还不再使用的批次,保留已分配的内存给下一次getVectorSchemaRoot.
+     * 内存仍被其他向量引用的批次直接关闭,避免复用时覆盖别人的数据
+     */
+    public void recycle(VectorSchemaRoot root) {
+        Queue<VectorSchemaRoot> queue = batchPool.computeIfAbsent(root.getSchema(), s -> new ConcurrentLinkedQueue<>());
+        if (queue.size() >= MAX_POOLED_BATCHES || isShared(root)) {
+            root.close();
+            return;
+        }
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.reset();
+        }
+        root.setRowCount(0);
+        queue.offer(root);
+    }
+
+    /**
+     * 定长向量的有效位与数据是同一次分配的切片,共用一个引用计数,
+     * 引用计数超过向量自身持有的切片数时才是被其他向量引用
+     */
+    private static boolean isShared(VectorSchemaRoot root) {
+        for (FieldVector vector : root.getFieldVectors()) {
+            Map<ReferenceManager, Integer> owned = new IdentityHashMap<>();
+            for (ArrowBuf buffer : vector.getFieldBuffers()) {
+                owned.merge(buffer.getReferenceManager(), 1, Integer::sum);
+            }
+            for (Map.Entry<ReferenceManager, Integer> entry : owned.entrySet()) {
+                if (entry.getKey().getRefCount() > entry.getValue()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public T getContext() {
         return context;
     }
+
+    public EngineConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public void setConfiguration(EngineConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * 分配器当前占用的字节数,关闭后仍有值表示发生了泄漏
+     */
+    public long getAllocatedMemory() {
+        BufferAllocator allocator = rootAllocator;
+        return allocator == null ? 0 : allocator.getAllocatedMemory();
+    }
+
+    /**
+     * 释放缓存的批次并关闭分配器,下游必须已经关闭收到的所有批次.
+     * 在doFinally中调用,仍有未释放的内存时只记录日志,不抛出异常
+     */
+    @Override
+    public void close() {
+        for (Queue<VectorSchemaRoot> queue : batchPool.values()) {
+            VectorSchemaRoot root;
+            while ((root = queue.poll()) != null) {
+                root.close();
+            }
+        }
+        BufferAllocator allocator = rootAllocator;
+        if (allocator != null) {
+            try {
+                allocator.close();
+            } catch (IllegalStateException e) {
+                LOGGER.error("query allocator leaked {} bytes", allocator.getAllocatedMemory(), e);
+            }
+        }
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+
+/**
+ * 四则运算,结果为整数类型时按long计算,否则按double计算,除数为0时结果为null
+ */
+public class ArithmeticKernel implements VectorKernel {
+    public static enum Op {
+        PLUS("+"),
+        MINUS("-"),
+        TIMES("*"),
+        DIVIDE("/");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private final Op op;
+    private final VectorKernel left;
+    private final VectorKernel right;
+    private final InnerType type;
+
+    public ArithmeticKernel(Op op, VectorKernel left, VectorKernel right, InnerType type) {
+        this.op = op;
+        this.left = left;
+        this.right = right;
+        this.type = type;
+    }
+
+    @Override
+    public InnerType getType() {
+        return type;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        FieldVector leftVector = left.eval(context, selection);
+        FieldVector rightVector = right.eval(context, selection);
+        FieldVector output = context.allocate(type);
+        boolean checkNull = Kernels.hasNull(leftVector, rightVector);
+        int size = selection.size();
+        if (Kernels.isIntegral(type)) {
+            if (!checkNull && op != Op.DIVIDE
+                    && leftVector instanceof BigIntVector
+                    && rightVector instanceof BigIntVector
+                    && output instanceof BigIntVector) {
+                evalBigInt((BigIntVector) leftVector, (BigIntVector) rightVector, (BigIntVector) output, selection);
+            } else {
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    if (checkNull && Kernels.isNull(leftVector, rightVector, rowId)) {
+                        continue;
+                    }
+                    long l = Kernels.getLong(leftVector, rowId);
+                    long r = Kernels.getLong(rightVector, rowId);
+                    long value;
+                    switch (op) {
+                        case PLUS:
+                            value = l + r;
+                            break;
+                        case MINUS:
+                            value = l - r;
+                            break;
+                        case TIMES:
+                            value = l * r;
+                            break;
+                        default:
+                            if (r == 0) {
+                                continue;
+                            }
+                            value = l / r;
+                    }
+                    Kernels.setLong(output, rowId, value);
+                }
+            }
+        } else {
+            if (!checkNull && op != Op.DIVIDE
+                    && leftVector instanceof Float8Vector
+                    && rightVector instanceof Float8Vector
+                    && output instanceof Float8Vector) {
+                evalFloat8((Float8Vector) leftVector, (Float8Vector) rightVector, (Float8Vector) output, selection);
+            } else {
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    if (checkNull && Kernels.isNull(leftVector, rightVector, rowId)) {
+                        continue;
+                    }
+                    double l = Kernels.getDouble(leftVector, rowId);
+                    double r = Kernels.getDouble(rightVector, rowId);
+                    double value;
+                    switch (op) {
+                        case PLUS:
+                            value = l + r;
+                            break;
+                        case MINUS:
+                            value = l - r;
+                            break;
+                        case TIMES:
+                            value = l * r;
+                            break;
+                        default:
+                            if (r == 0) {
+                                continue;
+                            }
+                            value = l / r;
+                    }
+                    Kernels.setDouble(output, rowId, value);
+                }
+            }
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    private void evalBigInt(BigIntVector leftVector, BigIntVector rightVector, BigIntVector output, SelectionVector selection) {
+        int size = selection.size();
+        switch (op) {
+            case PLUS:
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    output.set(rowId, leftVector.get(rowId) + rightVector.get(rowId));
+                }
+                break;
+            case MINUS:
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    output.set(rowId, leftVector.get(rowId) - rightVector.get(rowId));
+                }
+                break;
+            case TIMES:
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    output.set(rowId, leftVector.get(rowId) * rightVector.get(rowId));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value: " + op);
+        }
+    }
+
+    private void evalFloat8(Float8Vector leftVector, Float8Vector rightVector, Float8Vector output, SelectionVector selection) {
+        int size = selection.size();
+        switch (op) {
+            case PLUS:
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    output.set(rowId, leftVector.get(rowId) + rightVector.get(rowId));
+                }
+                break;
+            case MINUS:
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    output.set(rowId, leftVector.get(rowId) - rightVector.get(rowId));
+                }
+                break;
+            case TIMES:
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    output.set(rowId, leftVector.get(rowId) * rightVector.get(rowId));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value: " + op);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "(" + left + op.symbol + right + ")";
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * 数值与布尔之间的转换,以及整数转字符串,其余转换走行式函数
+ */
+public class CastKernel implements VectorKernel {
+    private final VectorKernel child;
+    private final InnerType type;
+
+    public CastKernel(VectorKernel child, InnerType type) {
+        this.child = child;
+        this.type = type;
+    }
+
+    public static boolean isSupported(InnerType from, InnerType to) {
+        boolean fromNumber = Kernels.isNumeric(from) || from == InnerType.BOOLEAN_TYPE;
+        if (Kernels.isNumeric(to) || to == InnerType.BOOLEAN_TYPE) {
+            return fromNumber;
+        }
+        return to == InnerType.STRING_TYPE && (Kernels.isIntegral(from) || from == InnerType.STRING_TYPE);
+    }
+
+    @Override
+    public InnerType getType() {
+        return type;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        FieldVector childVector = child.eval(context, selection);
+        InnerType from = child.getType();
+        if (from == type) {
+            return childVector;
+        }
+        FieldVector output = context.allocate(type);
+        boolean checkNull = childVector.getNullCount() > 0;
+        int size = selection.size();
+        for (int i = 0; i < size; i++) {
+            int rowId = selection.get(i);
+            if (checkNull && childVector.isNull(rowId)) {
+                continue;
+            }
+            if (type == InnerType.STRING_TYPE) {
+                Kernels.setString(output, rowId, String.valueOf(Kernels.getLong(childVector, rowId)));
+            } else if (Kernels.isIntegral(from) || from == InnerType.BOOLEAN_TYPE) {
+                Kernels.setLong(output, rowId, Kernels.getLong(childVector, rowId));
+            } else {
+                Kernels.setDouble(output, rowId, Kernels.getDouble(childVector, rowId));
+            }
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return "CAST(" + child + " AS " + type + ")";
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.FieldVector;
+
+public class ColumnKernel implements VectorKernel {
+    private final int columnIndex;
+    private final InnerType type;
+
+    public ColumnKernel(int columnIndex, InnerType type) {
+        this.columnIndex = columnIndex;
+        this.type = type;
+    }
+
+    @Override
+    public InnerType getType() {
+        return type;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        return context.getInput().getVector(columnIndex);
+    }
+
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "$" + columnIndex;
+    }
+}
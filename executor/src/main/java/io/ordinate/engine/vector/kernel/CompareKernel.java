@@ -0,0 +1,214 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * 比较运算,数值统一按long或double比较,字符串忽略大小写(与行式函数一致)
+ */
+public class CompareKernel implements VectorKernel {
+    public static enum Op {
+        EQ("="),
+        NE("<>"),
+        LT("<"),
+        LE("<="),
+        GT(">"),
+        GE(">=");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        boolean test(int compare) {
+            switch (this) {
+                case EQ:
+                    return compare == 0;
+                case NE:
+                    return compare != 0;
+                case LT:
+                    return compare < 0;
+                case LE:
+                    return compare <= 0;
+                case GT:
+                    return compare > 0;
+                default:
+                    return compare >= 0;
+            }
+        }
+    }
+
+    private final Op op;
+    private final VectorKernel left;
+    private final VectorKernel right;
+
+    public CompareKernel(Op op, VectorKernel left, VectorKernel right) {
+        this.op = op;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public InnerType getType() {
+        return InnerType.BOOLEAN_TYPE;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        FieldVector leftVector = left.eval(context, selection);
+        FieldVector rightVector = right.eval(context, selection);
+        BitVector output = (BitVector) context.allocate(InnerType.BOOLEAN_TYPE);
+        boolean checkNull = Kernels.hasNull(leftVector, rightVector);
+        int size = selection.size();
+        for (int i = 0; i < size; i++) {
+            int rowId = selection.get(i);
+            if (checkNull && Kernels.isNull(leftVector, rightVector, rowId)) {
+                continue;
+            }
+            output.set(rowId, compare(leftVector, rightVector, rowId) ? 1 : 0);
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    /**
+     * 直接产生选择向量,不需要物化布尔结果
+     */
+    @Override
+    public SelectionVector filter(KernelContext context, SelectionVector selection) {
+        FieldVector leftVector = left.eval(context, selection);
+        if (right instanceof ConstantKernel) {
+            return filterConstant(leftVector, ((ConstantKernel) right).getValue(), selection);
+        }
+        FieldVector rightVector = right.eval(context, selection);
+        boolean checkNull = Kernels.hasNull(leftVector, rightVector);
+        int size = selection.size();
+        SelectionVector.Builder builder = new SelectionVector.Builder(size);
+        if (!checkNull && leftVector instanceof BigIntVector && rightVector instanceof BigIntVector) {
+            BigIntVector l = (BigIntVector) leftVector;
+            BigIntVector r = (BigIntVector) rightVector;
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (op.test(Long.compare(l.get(rowId), r.get(rowId)))) {
+                    builder.add(rowId);
+                }
+            }
+            return builder.build();
+        }
+        for (int i = 0; i < size; i++) {
+            int rowId = selection.get(i);
+            if (checkNull && Kernels.isNull(leftVector, rightVector, rowId)) {
+                continue;
+            }
+            if (compare(leftVector, rightVector, rowId)) {
+                builder.add(rowId);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 与常量比较时不物化常量向量
+     */
+    private SelectionVector filterConstant(FieldVector leftVector, Object value, SelectionVector selection) {
+        int size = selection.size();
+        if (value == null) {
+            return SelectionVector.of(null, 0);
+        }
+        boolean checkNull = leftVector.getNullCount() > 0;
+        SelectionVector.Builder builder = new SelectionVector.Builder(size);
+        InnerType leftType = left.getType();
+        if (value instanceof String) {
+            String r = (String) value;
+            boolean equality = op == Op.EQ || op == Op.NE;
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (checkNull && leftVector.isNull(rowId)) {
+                    continue;
+                }
+                String l = Kernels.getString(leftVector, rowId);
+                int compare = equality ? (l.equalsIgnoreCase(r) ? 0 : 1) : l.compareToIgnoreCase(r);
+                if (op.test(compare)) {
+                    builder.add(rowId);
+                }
+            }
+        } else if (!(value instanceof Double) && (Kernels.isIntegral(leftType) || leftType == InnerType.BOOLEAN_TYPE)) {
+            long r = value instanceof Boolean ? ((Boolean) value ? 1 : 0) : (Long) value;
+            if (!checkNull && leftVector instanceof BigIntVector) {
+                BigIntVector l = (BigIntVector) leftVector;
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    if (op.test(Long.compare(l.get(rowId), r))) {
+                        builder.add(rowId);
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    int rowId = selection.get(i);
+                    if (checkNull && leftVector.isNull(rowId)) {
+                        continue;
+                    }
+                    if (op.test(Long.compare(Kernels.getLong(leftVector, rowId), r))) {
+                        builder.add(rowId);
+                    }
+                }
+            }
+        } else {
+            double r = value instanceof Boolean ? ((Boolean) value ? 1 : 0) : ((Number) value).doubleValue();
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (checkNull && leftVector.isNull(rowId)) {
+                    continue;
+                }
+                if (op.test(Double.compare(Kernels.getDouble(leftVector, rowId), r))) {
+                    builder.add(rowId);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private boolean compare(FieldVector leftVector, FieldVector rightVector, int rowId) {
+        InnerType leftType = left.getType();
+        InnerType rightType = right.getType();
+        int compare;
+        if (leftType == InnerType.STRING_TYPE || rightType == InnerType.STRING_TYPE) {
+            String l = Kernels.getString(leftVector, rowId);
+            String r = Kernels.getString(rightVector, rowId);
+            compare = op == Op.EQ || op == Op.NE
+                    ? (l.equalsIgnoreCase(r) ? 0 : 1)
+                    : l.compareToIgnoreCase(r);
+        } else if (Kernels.isIntegral(leftType) && Kernels.isIntegral(rightType)
+                || leftType == InnerType.BOOLEAN_TYPE || rightType == InnerType.BOOLEAN_TYPE) {
+            compare = Long.compare(Kernels.getLong(leftVector, rowId), Kernels.getLong(rightVector, rowId));
+        } else {
+            compare = Double.compare(Kernels.getDouble(leftVector, rowId), Kernels.getDouble(rightVector, rowId));
+        }
+        return op.test(compare);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + left + op.symbol + right + ")";
+    }
+}
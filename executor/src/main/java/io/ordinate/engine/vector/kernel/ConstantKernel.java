@@ -0,0 +1,107 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.function.Function;
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * 字面量或绑定参数,每批计算一次后填充选中的行
+ */
+public class ConstantKernel implements VectorKernel {
+    private final Function function;
+    private final InnerType type;
+
+    public ConstantKernel(Function function, InnerType type) {
+        this.function = function;
+        this.type = type;
+    }
+
+    @Override
+    public InnerType getType() {
+        return type;
+    }
+
+    /**
+     * @return 值为null时返回null,数值返回Long或Double,布尔返回Boolean,字符串返回String
+     */
+    public Object getValue() {
+        if (function.isNull(null)) {
+            return null;
+        }
+        Object value;
+        switch (type) {
+            case BOOLEAN_TYPE:
+                value = function.getBooleanType(null);
+                break;
+            case FLOAT_TYPE:
+            case DOUBLE_TYPE:
+                value = function.getDouble(null);
+                break;
+            case STRING_TYPE:
+                if (function.getType() == InnerType.CHAR_TYPE) {
+                    value = String.valueOf(function.getChar(null));
+                } else {
+                    CharSequence charSequence = function.getString(null);
+                    value = charSequence == null ? null : charSequence.toString();
+                }
+                break;
+            default:
+                value = function.getLong(null);
+        }
+        return value;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        FieldVector output = context.allocate(type);
+        Object value = getValue();
+        if (value != null) {
+            int size = selection.size();
+            if (value instanceof Boolean) {
+                long bool = (Boolean) value ? 1 : 0;
+                for (int i = 0; i < size; i++) {
+                    Kernels.setLong(output, selection.get(i), bool);
+                }
+            } else if (value instanceof Double) {
+                double d = (Double) value;
+                for (int i = 0; i < size; i++) {
+                    Kernels.setDouble(output, selection.get(i), d);
+                }
+            } else if (value instanceof String) {
+                String s = (String) value;
+                for (int i = 0; i < size; i++) {
+                    Kernels.setString(output, selection.get(i), s);
+                }
+            } else {
+                long l = (Long) value;
+                for (int i = 0; i < size; i++) {
+                    Kernels.setLong(output, selection.get(i), l);
+                }
+            }
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(function);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import com.carrotsearch.hppc.DoubleHashSet;
+import com.carrotsearch.hppc.LongHashSet;
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * x IN (常量列表),由同一个表达式上的多个等值OR转换而来.
+ * 常量可能是绑定参数,所以每批重新构造查找集合
+ */
+public class InKernel implements VectorKernel {
+    private final VectorKernel child;
+    private final List<ConstantKernel> values;
+
+    public InKernel(VectorKernel child, List<ConstantKernel> values) {
+        this.child = child;
+        this.values = values;
+    }
+
+    @Override
+    public InnerType getType() {
+        return InnerType.BOOLEAN_TYPE;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        SelectionVector hit = filter(context, selection);
+        BitVector output = (BitVector) context.allocate(InnerType.BOOLEAN_TYPE);
+        FieldVector childVector = child.eval(context, selection);
+        boolean hasNullValue = values.stream().anyMatch(v -> v.getValue() == null);
+        int size = selection.size();
+        for (int i = 0; i < size; i++) {
+            int rowId = selection.get(i);
+            if (!childVector.isNull(rowId) && !hasNullValue) {
+                output.set(rowId, 0);
+            }
+        }
+        for (int i = 0; i < hit.size(); i++) {
+            output.set(hit.get(i), 1);
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    @Override
+    public SelectionVector filter(KernelContext context, SelectionVector selection) {
+        FieldVector childVector = child.eval(context, selection);
+        boolean checkNull = childVector.getNullCount() > 0;
+        int size = selection.size();
+        SelectionVector.Builder builder = new SelectionVector.Builder(size);
+        InnerType type = child.getType();
+        if (type == InnerType.STRING_TYPE) {
+            TreeSet<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (ConstantKernel value : values) {
+                Object o = value.getValue();
+                if (o != null) {
+                    set.add(o.toString());
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (checkNull && childVector.isNull(rowId)) {
+                    continue;
+                }
+                if (set.contains(Kernels.getString(childVector, rowId))) {
+                    builder.add(rowId);
+                }
+            }
+        } else if (Kernels.isIntegral(type) || type == InnerType.BOOLEAN_TYPE) {
+            LongHashSet set = new LongHashSet(values.size());
+            for (ConstantKernel value : values) {
+                Object o = value.getValue();
+                if (o instanceof Boolean) {
+                    set.add((Boolean) o ? 1 : 0);
+                } else if (o instanceof Double) {
+                    double d = (Double) o;
+                    if (d == (long) d) {
+                        set.add((long) d);
+                    }
+                } else if (o != null) {
+                    set.add((Long) o);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (checkNull && childVector.isNull(rowId)) {
+                    continue;
+                }
+                if (set.contains(Kernels.getLong(childVector, rowId))) {
+                    builder.add(rowId);
+                }
+            }
+        } else {
+            DoubleHashSet set = new DoubleHashSet(values.size());
+            for (ConstantKernel value : values) {
+                Object o = value.getValue();
+                if (o != null) {
+                    set.add(((Number) o).doubleValue());
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (checkNull && childVector.isNull(rowId)) {
+                    continue;
+                }
+                if (set.contains(Kernels.getDouble(childVector, rowId))) {
+                    builder.add(rowId);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return child + " IN " + values;
+    }
+}
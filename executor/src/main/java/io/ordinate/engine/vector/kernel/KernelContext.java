@@ -0,0 +1,83 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.FieldBuilder;
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个输入批次上的kernel计算上下文,中间结果向量在close时释放
+ */
+public class KernelContext implements AutoCloseable {
+    private final VectorSchemaRoot input;
+    private final BufferAllocator allocator;
+    private final List<FieldVector> allocated = new ArrayList<>();
+
+    public KernelContext(VectorSchemaRoot input, BufferAllocator allocator) {
+        this.input = input;
+        this.allocator = allocator;
+    }
+
+    public VectorSchemaRoot getInput() {
+        return input;
+    }
+
+    public int getRowCount() {
+        return input.getRowCount();
+    }
+
+    /**
+     * 分配与输入批次等长的向量,未写入的行为null
+     */
+    public FieldVector allocate(InnerType type) {
+        FieldVector vector = FieldBuilder.of("", type.getArrowType(), true).toArrow().createVector(allocator);
+        vector.setInitialCapacity(Math.max(1, getRowCount()));
+        vector.allocateNew();
+        allocated.add(vector);
+        return vector;
+    }
+
+    /**
+     * 把计算结果的所有权转交给调用方
+     *
+     * @return 向量不是由该上下文分配(例如输入列)时返回false
+     */
+    public boolean release(FieldVector vector) {
+        for (int i = 0; i < allocated.size(); i++) {
+            if (allocated.get(i) == vector) {
+                allocated.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        for (FieldVector vector : allocated) {
+            vector.close();
+        }
+        allocated.clear();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.vector.VectorContext;
+import io.ordinate.engine.vector.VectorExpression;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把kernel适配为投影使用的VectorExpression
+ */
+public class KernelVectorExpression implements VectorExpression {
+    private final VectorKernel kernel;
+
+    public KernelVectorExpression(VectorKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    public VectorKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * 在整个批次上计算,返回的向量由调用方负责关闭
+     */
+    public FieldVector evaluate(KernelContext context) {
+        FieldVector vector = kernel.eval(context, SelectionVector.all(context.getRowCount()));
+        if (context.release(vector)) {
+            return vector;
+        }
+        FieldVector copy = context.allocate(kernel.getType());
+        copy(vector, copy, context.getRowCount());
+        context.release(copy);
+        return copy;
+    }
+
+    @Override
+    public void eval(VectorContext ctx) {
+        try (KernelContext context = new KernelContext(ctx.getVectorSchemaRoot(),
+                ctx.getOutputVector().getAllocator())) {
+            FieldVector vector = kernel.eval(context, SelectionVector.all(ctx.getRowCount()));
+            copy(vector, ctx.getOutputVector(), ctx.getRowCount());
+        }
+    }
+
+    private static void copy(FieldVector from, FieldVector to, int rowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            to.copyFromSafe(i, i, from);
+        }
+        to.setValueCount(rowCount);
+    }
+
+    @Override
+    public String signature() {
+        return kernel.toString();
+    }
+
+    @Override
+    public ArrowType getType() {
+        return kernel.getType().getArrowType();
+    }
+
+    @Override
+    public List<ArrowType> argTypes() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isNullable() {
+        return true;
+    }
+}
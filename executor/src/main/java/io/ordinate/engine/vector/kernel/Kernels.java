@@ -0,0 +1,118 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.*;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * kernel支持的类型与向量读写
+ */
+public class Kernels {
+
+    public static boolean isSupported(InnerType type) {
+        return isNumeric(type) || type == InnerType.BOOLEAN_TYPE || type == InnerType.STRING_TYPE;
+    }
+
+    public static boolean isIntegral(InnerType type) {
+        switch (type) {
+            case INT8_TYPE:
+            case INT16_TYPE:
+            case INT32_TYPE:
+            case INT64_TYPE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static boolean isNumeric(InnerType type) {
+        return isIntegral(type) || type == InnerType.FLOAT_TYPE || type == InnerType.DOUBLE_TYPE;
+    }
+
+    public static long getLong(FieldVector vector, int index) {
+        if (vector instanceof BigIntVector) {
+            return ((BigIntVector) vector).get(index);
+        }
+        if (vector instanceof BaseIntVector) {
+            return ((BaseIntVector) vector).getValueAsLong(index);
+        }
+        if (vector instanceof FloatingPointVector) {
+            return (long) ((FloatingPointVector) vector).getValueAsDouble(index);
+        }
+        if (vector instanceof BitVector) {
+            return ((BitVector) vector).get(index);
+        }
+        throw new UnsupportedOperationException(vector.getClass().getName());
+    }
+
+    public static double getDouble(FieldVector vector, int index) {
+        if (vector instanceof Float8Vector) {
+            return ((Float8Vector) vector).get(index);
+        }
+        if (vector instanceof FloatingPointVector) {
+            return ((FloatingPointVector) vector).getValueAsDouble(index);
+        }
+        return getLong(vector, index);
+    }
+
+    public static String getString(FieldVector vector, int index) {
+        return new String(((VarCharVector) vector).get(index), StandardCharsets.UTF_8);
+    }
+
+    public static void setLong(FieldVector vector, int index, long value) {
+        if (vector instanceof BigIntVector) {
+            ((BigIntVector) vector).set(index, value);
+        } else if (vector instanceof BaseIntVector) {
+            ((BaseIntVector) vector).setWithPossibleTruncate(index, value);
+        } else if (vector instanceof FloatingPointVector) {
+            ((FloatingPointVector) vector).setWithPossibleTruncate(index, value);
+        } else if (vector instanceof BitVector) {
+            ((BitVector) vector).set(index, value != 0 ? 1 : 0);
+        } else {
+            throw new UnsupportedOperationException(vector.getClass().getName());
+        }
+    }
+
+    public static void setDouble(FieldVector vector, int index, double value) {
+        if (vector instanceof Float8Vector) {
+            ((Float8Vector) vector).set(index, value);
+        } else if (vector instanceof FloatingPointVector) {
+            ((FloatingPointVector) vector).setWithPossibleTruncate(index, value);
+        } else {
+            setLong(vector, index, (long) value);
+        }
+    }
+
+    public static void setString(FieldVector vector, int index, String value) {
+        ((VarCharVector) vector).setSafe(index, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 任意一侧为null时结果为null,两侧都没有null时可以跳过逐行判断
+     */
+    public static boolean hasNull(FieldVector left, FieldVector right) {
+        return left.getNullCount() > 0 || (right != null && right.getNullCount() > 0);
+    }
+
+    public static boolean isNull(FieldVector left, FieldVector right, int index) {
+        return left.isNull(index) || (right != null && right.isNull(index));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+
+import java.util.regex.Pattern;
+
+/**
+ * LIKE,模式必须是常量或绑定参数,匹配忽略大小写.
+ * 前缀,后缀,包含与完全相等走快速路径,其余转换为正则.
+ * 编译结果缓存在kernel上,字面量模式只编译一次,绑定参数在值变化时重新编译
+ */
+public class LikeKernel implements VectorKernel {
+    private final VectorKernel child;
+    private final ConstantKernel pattern;
+    private final ConstantKernel escape;
+    private final boolean negated;
+    private volatile Matcher cached;
+
+    public LikeKernel(VectorKernel child, ConstantKernel pattern, ConstantKernel escape, boolean negated) {
+        this.child = child;
+        this.pattern = pattern;
+        this.escape = escape;
+        this.negated = negated;
+    }
+
+    @Override
+    public InnerType getType() {
+        return InnerType.BOOLEAN_TYPE;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        FieldVector childVector = child.eval(context, selection);
+        BitVector output = (BitVector) context.allocate(InnerType.BOOLEAN_TYPE);
+        Matcher matcher = compile();
+        if (matcher != null) {
+            int size = selection.size();
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (childVector.isNull(rowId)) {
+                    continue;
+                }
+                output.set(rowId, matcher.matches(Kernels.getString(childVector, rowId)) != negated ? 1 : 0);
+            }
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    @Override
+    public SelectionVector filter(KernelContext context, SelectionVector selection) {
+        FieldVector childVector = child.eval(context, selection);
+        Matcher matcher = compile();
+        int size = selection.size();
+        if (matcher == null) {
+            return SelectionVector.of(null, 0);
+        }
+        boolean checkNull = childVector.getNullCount() > 0;
+        SelectionVector.Builder builder = new SelectionVector.Builder(size);
+        for (int i = 0; i < size; i++) {
+            int rowId = selection.get(i);
+            if (checkNull && childVector.isNull(rowId)) {
+                continue;
+            }
+            if (matcher.matches(Kernels.getString(childVector, rowId)) != negated) {
+                builder.add(rowId);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return 模式为null时返回null
+     */
+    Matcher compile() {
+        Object patternValue = pattern.getValue();
+        if (patternValue == null) {
+            return null;
+        }
+        char escapeChar = '\\';
+        if (escape != null) {
+            Object escapeValue = escape.getValue();
+            if (escapeValue != null && !escapeValue.toString().isEmpty()) {
+                escapeChar = escapeValue.toString().charAt(0);
+            }
+        }
+        String patternText = patternValue.toString();
+        Matcher matcher = cached;
+        if (matcher != null && matcher.escapeChar == escapeChar && matcher.pattern.equals(patternText)) {
+            return matcher;
+        }
+        matcher = Matcher.compile(patternText, escapeChar);
+        cached = matcher;
+        return matcher;
+    }
+
+    @Override
+    public String toString() {
+        return child + (negated ? " NOT LIKE " : " LIKE ") + pattern;
+    }
+
+    static abstract class Matcher {
+        String pattern;
+        char escapeChar;
+
+        abstract boolean matches(String s);
+
+        static Matcher compile(String pattern, char escapeChar) {
+            Matcher matcher = compile0(pattern, escapeChar);
+            matcher.pattern = pattern;
+            matcher.escapeChar = escapeChar;
+            return matcher;
+        }
+
+        private static Matcher compile0(String pattern, char escapeChar) {
+            StringBuilder literal = new StringBuilder();
+            StringBuilder regex = new StringBuilder();
+            boolean leading = false;
+            boolean trailing = false;
+            boolean simple = true;
+            int length = pattern.length();
+            for (int i = 0; i < length; i++) {
+                char c = pattern.charAt(i);
+                if (c == escapeChar && i + 1 < length) {
+                    char next = pattern.charAt(++i);
+                    literal.append(next);
+                    regex.append(Pattern.quote(String.valueOf(next)));
+                } else if (c == '%') {
+                    if (i == 0) {
+                        leading = true;
+                    } else if (i == length - 1) {
+                        trailing = true;
+                    } else {
+                        simple = false;
+                    }
+                    regex.append(".*");
+                } else if (c == '_') {
+                    simple = false;
+                    regex.append('.');
+                } else {
+                    literal.append(c);
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            if (simple) {
+                String s = literal.toString();
+                if (leading && trailing) {
+                    String lower = s.toLowerCase();
+                    return new Matcher() {
+                        @Override
+                        boolean matches(String value) {
+                            return value.toLowerCase().contains(lower);
+                        }
+                    };
+                }
+                if (leading) {
+                    return new Matcher() {
+                        @Override
+                        boolean matches(String value) {
+                            return value.regionMatches(true, value.length() - s.length(), s, 0, s.length());
+                        }
+                    };
+                }
+                if (trailing) {
+                    return new Matcher() {
+                        @Override
+                        boolean matches(String value) {
+                            return value.regionMatches(true, 0, s, 0, s.length());
+                        }
+                    };
+                }
+                return new Matcher() {
+                    @Override
+                    boolean matches(String value) {
+                        return value.equalsIgnoreCase(s);
+                    }
+                };
+            }
+            Pattern compiled = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+            return new Matcher() {
+                @Override
+                boolean matches(String value) {
+                    return compiled.matcher(value).matches();
+                }
+            };
+        }
+    }
+}
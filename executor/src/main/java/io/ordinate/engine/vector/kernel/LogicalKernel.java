@@ -0,0 +1,122 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * AND/OR,按三值逻辑计算.
+ * 过滤时AND逐个缩小选择向量,OR只对尚未命中的行计算后续分支
+ */
+public class LogicalKernel implements VectorKernel {
+    private final boolean and;
+    private final List<VectorKernel> children;
+
+    public LogicalKernel(boolean and, List<VectorKernel> children) {
+        this.and = and;
+        this.children = children;
+    }
+
+    @Override
+    public InnerType getType() {
+        return InnerType.BOOLEAN_TYPE;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        BitVector output = (BitVector) context.allocate(InnerType.BOOLEAN_TYPE);
+        int size = selection.size();
+        for (int i = 0; i < size; i++) {
+            output.set(selection.get(i), and ? 1 : 0);
+        }
+        for (VectorKernel child : children) {
+            BitVector childVector = (BitVector) child.eval(context, selection);
+            for (int i = 0; i < size; i++) {
+                int rowId = selection.get(i);
+                if (childVector.isNull(rowId)) {
+                    if (and ? output.isNull(rowId) || output.get(rowId) != 0 : output.isNull(rowId) || output.get(rowId) == 0) {
+                        output.setNull(rowId);
+                    }
+                } else {
+                    boolean value = childVector.get(rowId) != 0;
+                    if (and != value) {
+                        output.set(rowId, value ? 1 : 0);
+                    }
+                }
+            }
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    @Override
+    public SelectionVector filter(KernelContext context, SelectionVector selection) {
+        if (and) {
+            SelectionVector current = selection;
+            for (VectorKernel child : children) {
+                if (current.isEmpty()) {
+                    break;
+                }
+                current = child.filter(context, current);
+            }
+            return current;
+        }
+        int rowCount = context.getRowCount();
+        boolean[] matched = new boolean[rowCount];
+        SelectionVector remaining = selection;
+        for (VectorKernel child : children) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            SelectionVector hit = child.filter(context, remaining);
+            if (hit.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < hit.size(); i++) {
+                matched[hit.get(i)] = true;
+            }
+            SelectionVector.Builder builder = new SelectionVector.Builder(remaining.size() - hit.size());
+            for (int i = 0; i < remaining.size(); i++) {
+                int rowId = remaining.get(i);
+                if (!matched[rowId]) {
+                    builder.add(rowId);
+                }
+            }
+            remaining = builder.build();
+        }
+        SelectionVector.Builder builder = new SelectionVector.Builder(selection.size() - remaining.size());
+        for (int i = 0; i < selection.size(); i++) {
+            int rowId = selection.get(i);
+            if (matched[rowId]) {
+                builder.add(rowId);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return children.stream().map(Object::toString)
+                .collect(Collectors.joining(and ? " AND " : " OR ", "(", ")"));
+    }
+}
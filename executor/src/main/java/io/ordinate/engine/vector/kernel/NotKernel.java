@@ -0,0 +1,55 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+
+public class NotKernel implements VectorKernel {
+    private final VectorKernel child;
+
+    public NotKernel(VectorKernel child) {
+        this.child = child;
+    }
+
+    @Override
+    public InnerType getType() {
+        return InnerType.BOOLEAN_TYPE;
+    }
+
+    @Override
+    public FieldVector eval(KernelContext context, SelectionVector selection) {
+        BitVector childVector = (BitVector) child.eval(context, selection);
+        BitVector output = (BitVector) context.allocate(InnerType.BOOLEAN_TYPE);
+        int size = selection.size();
+        for (int i = 0; i < size; i++) {
+            int rowId = selection.get(i);
+            if (!childVector.isNull(rowId)) {
+                output.set(rowId, childVector.get(rowId) != 0 ? 0 : 1);
+            }
+        }
+        output.setValueCount(context.getRowCount());
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return "NOT " + child;
+    }
+}
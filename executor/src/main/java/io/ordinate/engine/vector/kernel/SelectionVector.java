@@ -0,0 +1,74 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+/**
+ * 选择向量,按升序保存批次中参与计算的行号
+ */
+public final class SelectionVector {
+    /**
+     * 为null时表示选择了0到size-1的全部行
+     */
+    private final int[] positions;
+    private final int size;
+
+    private SelectionVector(int[] positions, int size) {
+        this.positions = positions;
+        this.size = size;
+    }
+
+    public static SelectionVector all(int rowCount) {
+        return new SelectionVector(null, rowCount);
+    }
+
+    public static SelectionVector of(int[] positions, int size) {
+        return new SelectionVector(positions, size);
+    }
+
+    public int get(int index) {
+        return positions == null ? index : positions[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 用于构造选择向量的缓冲
+     */
+    public static final class Builder {
+        private final int[] positions;
+        private int size;
+
+        public Builder(int capacity) {
+            this.positions = new int[capacity];
+        }
+
+        public void add(int position) {
+            positions[size++] = position;
+        }
+
+        public SelectionVector build() {
+            return new SelectionVector(positions, size);
+        }
+    }
+}
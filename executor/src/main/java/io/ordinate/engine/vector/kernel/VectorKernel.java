@@ -0,0 +1,51 @@
+/*
+ *     Copyright (C) <2021>  <Junwen Chen>
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * 按批计算的表达式.
+ * 结果向量与输入批次等长,只有选择向量中的行是有效值
+ */
+public interface VectorKernel {
+
+    InnerType getType();
+
+    /**
+     * @return 输入列或者由context分配的向量,调用方不需要关闭
+     */
+    FieldVector eval(KernelContext context, SelectionVector selection);
+
+    /**
+     * 布尔表达式,返回selection中结果为true的行,null与false都会被过滤
+     */
+    default SelectionVector filter(KernelContext context, SelectionVector selection) {
+        BitVector result = (BitVector) eval(context, selection);
+        SelectionVector.Builder builder = new SelectionVector.Builder(selection.size());
+        for (int i = 0; i < selection.size(); i++) {
+            int rowId = selection.get(i);
+            if (!result.isNull(rowId) && result.get(rowId) != 0) {
+                builder.add(rowId);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,48 @@
+package io.ordinate.engine.builder;
+
+import io.mycat.beans.mycat.ArrowTypes;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class EngineConfigurationTest {
+    /**
+     * int64 8字节,字符串4字节偏移量加估算的32字节,2列有效位1字节
+     */
+    private final Schema schema = SchemaBuilder.ofArrowType(ArrowTypes.INT64_TYPE, ArrowTypes.STRING_TYPE).toArrow();
+
+    @Test
+    public void testEstimateRowWidth() {
+        EngineConfiguration configuration = new EngineConfiguration();
+        Assert.assertEquals(45, configuration.estimateRowWidth(schema));
+        configuration.setVariableWidthBytes(100);
+        Assert.assertEquals(113, configuration.estimateRowWidth(schema));
+    }
+
+    @Test
+    public void testBatchRowCount() {
+        EngineConfiguration configuration = new EngineConfiguration();
+        configuration.setMinBatchRows(10);
+        configuration.setMaxBatchRows(100000);
+        configuration.setBatchBytes(45 * 2000);
+        Assert.assertEquals(2000, configuration.getBatchRowCount(schema));
+        //行越宽每批行数越少
+        configuration.setVariableWidthBytes(100);
+        Assert.assertEquals(45 * 2000 / 113, configuration.getBatchRowCount(schema));
+    }
+
+    @Test
+    public void testBatchRowCountBounds() {
+        EngineConfiguration configuration = new EngineConfiguration();
+        configuration.setMinBatchRows(1024);
+        configuration.setMaxBatchRows(4096);
+        configuration.setBatchBytes(45);
+        Assert.assertEquals(1024, configuration.getBatchRowCount(schema));
+        configuration.setBatchBytes(Long.MAX_VALUE);
+        Assert.assertEquals(4096, configuration.getBatchRowCount(schema));
+        //没有列时按1字节行宽计算
+        Assert.assertEquals(4096, configuration.getBatchRowCount(new Schema(Collections.emptyList())));
+    }
+}
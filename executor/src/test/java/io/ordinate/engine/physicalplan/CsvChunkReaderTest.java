@@ -0,0 +1,145 @@
+package io.ordinate.engine.physicalplan;
+
+import io.mycat.beans.mycat.ArrowTypes;
+import io.ordinate.engine.builder.SchemaBuilder;
+import io.ordinate.engine.record.RootContext;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class CsvChunkReaderTest {
+    /**
+     * 引号内的换行,转义的引号,非引用字段中的引号
+     */
+    private static final String CSV = "1,\"a\"\"\nb\"\n2,x\n3,\"c\"\"\"\n4,5\"\n5,e\n";
+    private static final List<String> STRINGS = Arrays.asList("a\"\nb", "x", "c\"", "5\"", "e");
+
+    private final Schema schema = SchemaBuilder.ofArrowType(ArrowTypes.INT64_TYPE, ArrowTypes.STRING_TYPE).toArrow();
+    private RootContext<Object> rootContext;
+    private Path path;
+
+    @Before
+    public void setUp() throws Exception {
+        rootContext = new RootContext<>(null);
+        path = Files.createTempFile("csvChunkReader", ".csv");
+        Files.write(path, CSV.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        //批次都已关闭,分配器不能有未释放的内存
+        rootContext.close();
+        Assert.assertEquals(0, rootContext.getAllocatedMemory());
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = CsvChunkReader.split(channel, channel.size(), 1);
+            //每行一个分片,第一行引号内的换行不是边界
+            Assert.assertArrayEquals(new long[]{0, 10, 14, 22, 27, 31}, bounds);
+        }
+    }
+
+    @Test
+    public void testReadChunks() throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = CsvChunkReader.split(channel, channel.size(), 1);
+            List<Long> longs = new ArrayList<>();
+            List<String> strings = new ArrayList<>();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                for (VectorSchemaRoot batch : new CsvChunkReader(schema, rootContext, 4)
+                        .read(channel, bounds[i], bounds[i + 1]).toList().blockingGet()) {
+                    collect(batch, longs, strings);
+                }
+            }
+            Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), longs);
+            Assert.assertEquals(STRINGS, strings);
+        }
+    }
+
+    @Test
+    public void testEmitEachBatch() throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<Integer> rowCounts = new ArrayList<>();
+            List<Long> longs = new ArrayList<>();
+            List<String> strings = new ArrayList<>();
+            new CsvChunkReader(schema, rootContext, 2)
+                    .read(channel, 0, channel.size())
+                    .blockingForEach(batch -> {
+                        rowCounts.add(batch.getRowCount());
+                        collect(batch, longs, strings);
+                    });
+            Assert.assertEquals(Arrays.asList(2, 2, 1), rowCounts);
+            Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), longs);
+            Assert.assertEquals(STRINGS, strings);
+        }
+    }
+
+    @Test
+    public void testDispose() throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            VectorSchemaRoot first = new CsvChunkReader(schema, rootContext, 2)
+                    .read(channel, 0, channel.size())
+                    .blockingFirst();
+            //取消后停止解析,不会再分配批次
+            Assert.assertEquals(2, first.getRowCount());
+            first.close();
+        }
+    }
+
+    @Test
+    public void testScanOrdered() {
+        long chunkBytes = CsvScanPlan.CHUNK_BYTES;
+        CsvScanPlan.CHUNK_BYTES = 1;
+        try {
+            PhysicalPlan ordered = new CsvScanPlan(path.toString(), schema);
+            List<Long> longs = new ArrayList<>();
+            List<String> strings = new ArrayList<>();
+            ordered.execute(rootContext).blockingForEach(batch -> collect(batch, longs, strings));
+            Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), longs);
+            Assert.assertEquals(STRINGS, strings);
+
+            //不要求顺序时分片解析完就发送,行集合不变
+            PhysicalPlan unordered = ordered.unordered();
+            Assert.assertNotSame(ordered, unordered);
+            Assert.assertSame(unordered, unordered.unordered());
+            longs.clear();
+            strings.clear();
+            unordered.execute(rootContext).blockingForEach(batch -> collect(batch, longs, strings));
+            Collections.sort(longs);
+            Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), longs);
+            Assert.assertEquals(new HashSet<>(STRINGS), new HashSet<>(strings));
+        } finally {
+            CsvScanPlan.CHUNK_BYTES = chunkBytes;
+        }
+    }
+
+    private static void collect(VectorSchemaRoot batch, List<Long> longs, List<String> strings) {
+        try (VectorSchemaRoot root = batch) {
+            BigIntVector ids = (BigIntVector) root.getVector(0);
+            VarCharVector values = (VarCharVector) root.getVector(1);
+            for (int i = 0; i < root.getRowCount(); i++) {
+                longs.add(ids.get(i));
+                strings.add(new String(values.get(i), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
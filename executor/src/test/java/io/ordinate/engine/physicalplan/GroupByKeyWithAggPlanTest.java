@@ -0,0 +1,106 @@
+package io.ordinate.engine.physicalplan;
+
+import io.mycat.beans.mycat.ArrowTypes;
+import io.ordinate.engine.builder.GroupKeys;
+import io.ordinate.engine.builder.SchemaBuilder;
+import io.ordinate.engine.function.aggregate.*;
+import io.ordinate.engine.function.aggregate.avg.AvgAggregateFunction;
+import io.ordinate.engine.function.aggregate.count.CountColumnAggregateFunction;
+import io.ordinate.engine.record.RootContext;
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+public class GroupByKeyWithAggPlanTest {
+    private static final int BATCH_ROWS = 1000;
+
+    private final Schema inputSchema = SchemaBuilder.ofArrowType(ArrowTypes.INT64_TYPE, ArrowTypes.INT64_TYPE, ArrowTypes.DOUBLE_TYPE).toArrow();
+    private final List<Object[]> rows = new ArrayList<>();
+    private RootContext<Object> serialContext;
+    private RootContext<Object> parallelContext;
+
+    @Before
+    public void setUp() {
+        //20个批次,每个批次都包含所有分组,null值分散在各批次中
+        for (long i = 0; i < 20 * BATCH_ROWS; i++) {
+            rows.add(new Object[]{i % 997, i % 13 == 0 ? null : i, i % 7 == 0 ? null : i * 0.5});
+        }
+        serialContext = new RootContext<>(null);
+        serialContext.getConfiguration().setMaxBatchRows(BATCH_ROWS);
+        serialContext.getConfiguration().setAggregateParallelism(1);
+        parallelContext = new RootContext<>(null);
+        parallelContext.getConfiguration().setMaxBatchRows(BATCH_ROWS);
+        parallelContext.getConfiguration().setAggregateParallelism(4);
+    }
+
+    @After
+    public void tearDown() {
+        //批次都已关闭,分配器不能有未释放的内存
+        serialContext.close();
+        parallelContext.close();
+        Assert.assertEquals(0, serialContext.getAllocatedMemory());
+        Assert.assertEquals(0, parallelContext.getAllocatedMemory());
+    }
+
+    @Test
+    public void testParallelSameAsSerial() {
+        List<String> serial = aggregate(serialContext);
+        List<String> parallel = aggregate(parallelContext);
+        Assert.assertEquals(997, serial.size());
+        Assert.assertEquals(serial, parallel);
+    }
+
+    @Test
+    public void testParallelSafe() {
+        for (AccumulatorFunction accumulator : accumulators()) {
+            Assert.assertTrue(accumulator.name(), accumulator.isParallelSafe());
+        }
+    }
+
+    /**
+     * 第一列max(k)即分组key,输出schema的第一列与key类型一致
+     */
+    private static AccumulatorFunction[] accumulators() {
+        return new AccumulatorFunction[]{
+                new MaxLongAggregateFunction(0),
+                new SumLongAggregateFunction(1),
+                new MinLongAggregateFunction(1),
+                new CountAggregateFunction(),
+                new CountColumnAggregateFunction(1, InnerType.INT64_TYPE),
+                new SumDoubleAggregateFunction(2),
+                new MaxDoubleAggregateByFunction(2),
+                new AvgAggregateFunction(2)};
+    }
+
+    private List<String> aggregate(RootContext<Object> rootContext) {
+        AccumulatorFunction[] accumulators = accumulators();
+        List<ArrowType> types = new ArrayList<>();
+        for (AccumulatorFunction accumulator : accumulators) {
+            types.add(accumulator.getType().getArrowType());
+        }
+        GroupByKeyWithAggPlan plan = new GroupByKeyWithAggPlan(ValuesPlan.create(inputSchema, rows),
+                new GroupKeys[]{GroupKeys.of(new int[]{0})}, accumulators, SchemaBuilder.ofArrowType(types).toArrow());
+        List<String> result = new ArrayList<>();
+        plan.execute(rootContext).blockingForEach(batch -> {
+            try (VectorSchemaRoot root = batch) {
+                for (int rowId = 0; rowId < root.getRowCount(); rowId++) {
+                    StringJoiner row = new StringJoiner(",");
+                    for (FieldVector vector : root.getFieldVectors()) {
+                        row.add(String.valueOf(vector.getObject(rowId)));
+                    }
+                    result.add(row.toString());
+                }
+            }
+        });
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,175 @@
+package io.ordinate.engine.physicalplan;
+
+import io.mycat.MetaClusterCurrent;
+import io.mycat.beans.mycat.ArrowTypes;
+import io.mycat.config.ServerConfig;
+import io.ordinate.engine.builder.SchemaBuilder;
+import io.ordinate.engine.record.RootContext;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.calcite.linq4j.JoinType;
+import org.apache.calcite.util.ImmutableIntList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class HeapHashJoinNPlanTest {
+    /**
+     * 重复key与null key
+     */
+    private static final List<Object[]> LEFT = Arrays.asList(
+            new Object[]{1L, "a"},
+            new Object[]{2L, "b"},
+            new Object[]{2L, "b2"},
+            new Object[]{3L, "c"},
+            new Object[]{null, "n"});
+    private static final List<Object[]> RIGHT = Arrays.asList(
+            new Object[]{1L, "x"},
+            new Object[]{2L, "y"},
+            new Object[]{2L, "y2"},
+            new Object[]{4L, "z"},
+            new Object[]{null, "rn"});
+
+    private final Schema inputSchema = SchemaBuilder.ofArrowType(ArrowTypes.INT64_TYPE, ArrowTypes.STRING_TYPE).toArrow();
+    private final Schema joinSchema = SchemaBuilder.ofArrowType(ArrowTypes.INT64_TYPE, ArrowTypes.STRING_TYPE,
+            ArrowTypes.INT64_TYPE, ArrowTypes.STRING_TYPE).toArrow();
+
+    private RootContext<Object> rootContext;
+    private Map<Class, Object> backup;
+    private long buildMemoryLimit;
+    private Path tempDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        rootContext = new RootContext<>(null);
+        backup = MetaClusterCurrent.copyContext();
+        buildMemoryLimit = HeapHashJoinNPlan.BUILD_MEMORY_LIMIT;
+        tempDirectory = Files.createTempDirectory("hashJoinTest");
+        ServerConfig serverConfig = new ServerConfig();
+        serverConfig.setTempDirectory(tempDirectory.toString());
+        MetaClusterCurrent.register(ServerConfig.class, serverConfig);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HeapHashJoinNPlan.BUILD_MEMORY_LIMIT = buildMemoryLimit;
+        MetaClusterCurrent.register(backup);
+        //批次都已关闭,分配器不能有未释放的内存
+        rootContext.close();
+        Assert.assertEquals(0, rootContext.getAllocatedMemory());
+        for (Path file : listFiles()) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(tempDirectory);
+    }
+
+    @Test
+    public void testInner() {
+        Assert.assertEquals(Arrays.asList(
+                "1,a,1,x",
+                "2,b,2,y",
+                "2,b,2,y2",
+                "2,b2,2,y",
+                "2,b2,2,y2"), join(LEFT, RIGHT, JoinType.INNER));
+    }
+
+    @Test
+    public void testLeft() {
+        //null key不匹配任何行,右侧补null
+        Assert.assertEquals(Arrays.asList(
+                "1,a,1,x",
+                "2,b,2,y",
+                "2,b,2,y2",
+                "2,b2,2,y",
+                "2,b2,2,y2",
+                "3,c,null,null",
+                "null,n,null,null"), join(LEFT, RIGHT, JoinType.LEFT));
+    }
+
+    @Test
+    public void testSemi() {
+        //右侧重复key不产生重复行
+        Assert.assertEquals(Arrays.asList(
+                "1,a",
+                "2,b",
+                "2,b2"), join(LEFT, RIGHT, JoinType.SEMI));
+    }
+
+    @Test
+    public void testAnti() {
+        Assert.assertEquals(Arrays.asList(
+                "3,c",
+                "null,n"), join(LEFT, RIGHT, JoinType.ANTI));
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        List<Object[]> left = new ArrayList<>();
+        List<Object[]> right = new ArrayList<>();
+        for (long i = 0; i < 3000; i++) {
+            left.add(new Object[]{i % 500 == 0 ? null : i % 700, "l" + i});
+        }
+        for (long i = 0; i < 1000; i++) {
+            right.add(new Object[]{i % 600 == 0 ? null : i % 600, "r" + i});
+        }
+        Map<JoinType, List<String>> expected = new HashMap<>();
+        for (JoinType joinType : Arrays.asList(JoinType.INNER, JoinType.LEFT, JoinType.SEMI, JoinType.ANTI)) {
+            expected.put(joinType, join(left, right, joinType));
+        }
+        Assert.assertTrue(listFiles().isEmpty());
+
+        //构建侧第一个批次就超过上限,全部落盘后按分区join
+        HeapHashJoinNPlan.BUILD_MEMORY_LIMIT = 0;
+        for (JoinType joinType : Arrays.asList(JoinType.INNER, JoinType.LEFT, JoinType.SEMI, JoinType.ANTI)) {
+            Assert.assertEquals(expected.get(joinType), join(left, right, joinType));
+            //join结束后落盘文件全部删除
+            Assert.assertEquals(Collections.emptyList(), listFiles());
+        }
+    }
+
+    private List<String> join(List<Object[]> left, List<Object[]> right, JoinType joinType) {
+        Schema schema = (joinType == JoinType.SEMI || joinType == JoinType.ANTI) ? inputSchema : joinSchema;
+        HeapHashJoinNPlan plan = new HeapHashJoinNPlan(
+                ValuesPlan.create(inputSchema, left),
+                ValuesPlan.create(inputSchema, right),
+                ImmutableIntList.of(0),
+                ImmutableIntList.of(0),
+                null,
+                schema,
+                joinType);
+        List<String> rows = new ArrayList<>();
+        plan.execute(rootContext).blockingForEach(batch -> collect(batch, rows));
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static void collect(VectorSchemaRoot batch, List<String> rows) {
+        try (VectorSchemaRoot root = batch) {
+            for (int rowId = 0; rowId < root.getRowCount(); rowId++) {
+                StringJoiner row = new StringJoiner(",");
+                for (FieldVector vector : root.getFieldVectors()) {
+                    row.add(String.valueOf(vector.getObject(rowId)));
+                }
+                rows.add(row.toString());
+            }
+        }
+    }
+
+    private List<Path> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempDirectory)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,96 @@
+package io.ordinate.engine.record;
+
+import io.mycat.beans.mycat.ArrowTypes;
+import io.ordinate.engine.builder.SchemaBuilder;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RootContextTest {
+    private final Schema schema = SchemaBuilder.ofArrowType(ArrowTypes.INT64_TYPE, ArrowTypes.STRING_TYPE).toArrow();
+    private RootContext<Object> rootContext;
+
+    @Before
+    public void setUp() {
+        rootContext = new RootContext<>(null);
+    }
+
+    @After
+    public void tearDown() {
+        rootContext.close();
+        Assert.assertEquals(0, rootContext.getAllocatedMemory());
+    }
+
+    @Test
+    public void testBatchSize() {
+        rootContext.getConfiguration().setMinBatchRows(10);
+        rootContext.getConfiguration().setMaxBatchRows(100000);
+        rootContext.getConfiguration().setBatchBytes(45 * 2000);
+        Assert.assertEquals(2000, rootContext.getBatchSize(schema));
+        VectorSchemaRoot root = rootContext.getVectorSchemaRoot(schema);
+        Assert.assertTrue(root.getVector(0).getValueCapacity() >= 2000);
+        root.close();
+    }
+
+    @Test
+    public void testRecycle() {
+        VectorSchemaRoot root = rootContext.getVectorSchemaRoot(schema, 16);
+        ((BigIntVector) root.getVector(0)).setSafe(0, 1);
+        root.setRowCount(1);
+        rootContext.recycle(root);
+
+        //复用归还的批次,内容已清空
+        VectorSchemaRoot reused = rootContext.getVectorSchemaRoot(schema, 16);
+        Assert.assertSame(root, reused);
+        Assert.assertEquals(0, reused.getRowCount());
+        Assert.assertEquals(0, reused.getVector(0).getValueCount());
+
+        //容量不足时重新分配
+        rootContext.recycle(reused);
+        VectorSchemaRoot larger = rootContext.getVectorSchemaRoot(schema, 4096);
+        Assert.assertSame(root, larger);
+        Assert.assertTrue(larger.getVector(0).getValueCapacity() >= 4096);
+        larger.close();
+    }
+
+    @Test
+    public void testRecycleLimit() {
+        VectorSchemaRoot[] roots = new VectorSchemaRoot[RootContext.MAX_POOLED_BATCHES + 1];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = rootContext.getVectorSchemaRoot(schema, 16);
+        }
+        for (VectorSchemaRoot root : roots) {
+            rootContext.recycle(root);
+        }
+        //超出上限的批次直接关闭
+        for (int i = 0; i < RootContext.MAX_POOLED_BATCHES; i++) {
+            Assert.assertSame(roots[i], rootContext.getVectorSchemaRoot(schema, 16));
+        }
+        VectorSchemaRoot fresh = rootContext.getVectorSchemaRoot(schema, 16);
+        Assert.assertNotSame(roots[roots.length - 1], fresh);
+        for (int i = 0; i < RootContext.MAX_POOLED_BATCHES; i++) {
+            roots[i].close();
+        }
+        fresh.close();
+    }
+
+    @Test
+    public void testRecycleShared() {
+        VectorSchemaRoot root = rootContext.getVectorSchemaRoot(schema, 16);
+        //模拟下游仍持有批次的内存,例如transfer之后的向量
+        ArrowBuf buffer = root.getVector(0).getDataBuffer();
+        buffer.getReferenceManager().retain();
+        rootContext.recycle(root);
+
+        VectorSchemaRoot other = rootContext.getVectorSchemaRoot(schema, 16);
+        Assert.assertNotSame(root, other);
+        Assert.assertEquals(1, buffer.refCnt());
+        buffer.getReferenceManager().release();
+        other.close();
+    }
+}
@@ -0,0 +1,79 @@
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.function.constant.StringConstant;
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+public class LikeKernelTest {
+
+    private static boolean like(String value, String pattern) {
+        return LikeKernel.Matcher.compile(pattern, '\\').matches(value);
+    }
+
+    private static LikeKernel likeKernel(String pattern) {
+        return new LikeKernel(new ColumnKernel(0, InnerType.STRING_TYPE),
+                new ConstantKernel(StringConstant.newInstance(pattern), InnerType.STRING_TYPE), null, false);
+    }
+
+    @Test
+    public void testMatcher() {
+        Assert.assertTrue(like("abcdef", "abc%"));
+        Assert.assertFalse(like("xabcdef", "abc%"));
+        Assert.assertTrue(like("abcdef", "%def"));
+        Assert.assertFalse(like("abcdefx", "%def"));
+        Assert.assertTrue(like("abcdef", "%cd%"));
+        Assert.assertFalse(like("abdcef", "%cd%"));
+        Assert.assertTrue(like("ABC", "abc"));
+        Assert.assertFalse(like("abcd", "abc"));
+        Assert.assertTrue(like("abc", "a_c"));
+        Assert.assertFalse(like("abbc", "a_c"));
+        Assert.assertTrue(like("a123c", "a%c"));
+        Assert.assertFalse(like("a123d", "a%c"));
+        //转义后的%按字面量匹配
+        Assert.assertTrue(like("100%", "100\\%"));
+        Assert.assertFalse(like("1000", "100\\%"));
+        //正则元字符按字面量匹配
+        Assert.assertTrue(like("a.b", "a.%"));
+        Assert.assertFalse(like("axb", "a._"));
+    }
+
+    @Test
+    public void testCompileOnce() {
+        LikeKernel kernel = likeKernel("abc%");
+        LikeKernel.Matcher first = kernel.compile();
+        Assert.assertSame(first, kernel.compile());
+        Assert.assertNull(likeKernel(null).compile());
+    }
+
+    @Test
+    public void testFilter() {
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+             VarCharVector vector = new VarCharVector("c0", allocator)) {
+            String[] values = {"mycat", "MySQL", null, "ordinate", "my"};
+            vector.allocateNew(values.length);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    vector.setSafe(i, values[i].getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            vector.setValueCount(values.length);
+            VectorSchemaRoot input = new VectorSchemaRoot(Collections.<FieldVector>singletonList(vector));
+            try (KernelContext context = new KernelContext(input, allocator)) {
+                SelectionVector selection = likeKernel("my%").filter(context, SelectionVector.all(values.length));
+                Assert.assertEquals(3, selection.size());
+                Assert.assertEquals(0, selection.get(0));
+                Assert.assertEquals(1, selection.get(1));
+                Assert.assertEquals(4, selection.get(2));
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package io.ordinate.engine.vector.kernel;
+
+import io.ordinate.engine.builder.ExecuteCompiler;
+import io.ordinate.engine.function.Function;
+import io.ordinate.engine.function.column.IntColumn;
+import io.ordinate.engine.function.column.LongColumn;
+import io.ordinate.engine.function.constant.IntConstant;
+import io.ordinate.engine.function.constant.LongConstant;
+import io.ordinate.engine.record.VectorBatchRecord;
+import io.ordinate.engine.schema.InnerType;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * kernel的null语义与行式函数一致
+ */
+public class VectorKernelTest {
+    /**
+     * a,b覆盖true/false/null的所有组合,c用于IN,d作为除数包含0
+     */
+    private static final Long[] A = {1L, 1L, 1L, 5L, 5L, 5L, null, null, null};
+    private static final Long[] B = {1L, 5L, null, 1L, 5L, null, 1L, 5L, null};
+    private static final Integer[] C = {1, 2, null, 1, 2, null, 1, 2, null};
+    private static final Long[] D = {0L, 2L, null, 0L, 2L, null, 0L, 2L, null};
+
+    private BufferAllocator allocator;
+    private VectorSchemaRoot input;
+    private KernelContext context;
+
+    @Before
+    public void setUp() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        List<FieldVector> vectors = new ArrayList<>();
+        vectors.add(bigInt("a", A));
+        vectors.add(bigInt("b", B));
+        IntVector c = new IntVector("c", allocator);
+        c.allocateNew(C.length);
+        for (int i = 0; i < C.length; i++) {
+            if (C[i] != null) {
+                c.set(i, C[i]);
+            }
+        }
+        c.setValueCount(C.length);
+        vectors.add(c);
+        vectors.add(bigInt("d", D));
+        input = new VectorSchemaRoot(vectors);
+        input.setRowCount(A.length);
+        context = new KernelContext(input, allocator);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+        input.close();
+        allocator.close();
+    }
+
+    @Test
+    public void testLogicalAnd() {
+        VectorKernel kernel = new LogicalKernel(true, Arrays.asList(gt(0, 2), gt(1, 2)));
+        Function function = ExecuteCompiler.call("and", gtFunction(0, 2), gtFunction(1, 2));
+        List<Boolean> expected = Arrays.asList(false, false, false, false, true, null, false, null, null);
+        Assert.assertEquals(expected, evalBoolean(kernel));
+        Assert.assertEquals(expected, evalBoolean(function));
+        assertFilter(kernel, function);
+    }
+
+    @Test
+    public void testLogicalOr() {
+        VectorKernel kernel = new LogicalKernel(false, Arrays.asList(gt(0, 2), gt(1, 2)));
+        Function function = ExecuteCompiler.call("or", gtFunction(0, 2), gtFunction(1, 2));
+        List<Boolean> expected = Arrays.asList(false, true, null, true, true, true, null, true, null);
+        Assert.assertEquals(expected, evalBoolean(kernel));
+        Assert.assertEquals(expected, evalBoolean(function));
+        assertFilter(kernel, function);
+    }
+
+    @Test
+    public void testCompareConstant() {
+        VectorKernel kernel = gt(0, 2);
+        Function function = gtFunction(0, 2);
+        Assert.assertEquals(evalBoolean(function), evalBoolean(kernel));
+        assertFilter(kernel, function);
+    }
+
+    @Test
+    public void testCompareNullConstant() {
+        VectorKernel kernel = new CompareKernel(CompareKernel.Op.GT, new ColumnKernel(0, InnerType.INT64_TYPE),
+                new ConstantKernel(LongConstant.NULL, InnerType.INT64_TYPE));
+        Function function = ExecuteCompiler.call(">", LongColumn.newInstance(0), LongConstant.NULL);
+        List<Boolean> expected = Arrays.asList(null, null, null, null, null, null, null, null, null);
+        Assert.assertEquals(expected, evalBoolean(kernel));
+        Assert.assertEquals(expected, evalBoolean(function));
+        Assert.assertEquals(0, kernel.filter(context, SelectionVector.all(A.length)).size());
+        assertFilter(kernel, function);
+    }
+
+    @Test
+    public void testInWithNullElement() {
+        //c IN (1, NULL): 不匹配的非null值结果为null而不是false
+        VectorKernel kernel = new InKernel(new ColumnKernel(2, InnerType.INT32_TYPE), Arrays.asList(
+                new ConstantKernel(IntConstant.newInstance(1), InnerType.INT32_TYPE),
+                new ConstantKernel(IntConstant.NULL, InnerType.INT32_TYPE)));
+        Function function = ExecuteCompiler.call("or",
+                ExecuteCompiler.call("=", IntColumn.newInstance(2), IntConstant.newInstance(1)),
+                ExecuteCompiler.call("=", IntColumn.newInstance(2), IntConstant.NULL));
+        List<Boolean> expected = Arrays.asList(true, null, null, true, null, null, true, null, null);
+        Assert.assertEquals(expected, evalBoolean(kernel));
+        Assert.assertEquals(expected, evalBoolean(function));
+        assertFilter(kernel, function);
+    }
+
+    @Test
+    public void testDivideByZero() {
+        VectorKernel kernel = new ArithmeticKernel(ArithmeticKernel.Op.DIVIDE,
+                new ColumnKernel(0, InnerType.INT64_TYPE), new ColumnKernel(3, InnerType.INT64_TYPE), InnerType.DOUBLE_TYPE);
+        Function function = ExecuteCompiler.call("/", LongColumn.newInstance(0), LongColumn.newInstance(3));
+        List<Double> expected = Arrays.asList(null, 0.5, null, null, 2.5, null, null, null, null);
+        Float8Vector vector = (Float8Vector) kernel.eval(context, SelectionVector.all(A.length));
+        List<Double> kernelValues = new ArrayList<>();
+        List<Double> functionValues = new ArrayList<>();
+        VectorBatchRecord record = new VectorBatchRecord(input);
+        for (int i = 0; i < A.length; i++) {
+            kernelValues.add(vector.isNull(i) ? null : vector.get(i));
+            record.setPosition(i);
+            double value = function.getDouble(record);
+            functionValues.add(function.isNull(record) ? null : value);
+        }
+        Assert.assertEquals(expected, kernelValues);
+        Assert.assertEquals(expected, functionValues);
+    }
+
+    private BigIntVector bigInt(String name, Long[] values) {
+        BigIntVector vector = new BigIntVector(name, allocator);
+        vector.allocateNew(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                vector.set(i, values[i]);
+            }
+        }
+        vector.setValueCount(values.length);
+        return vector;
+    }
+
+    private static VectorKernel gt(int columnIndex, long value) {
+        return new CompareKernel(CompareKernel.Op.GT, new ColumnKernel(columnIndex, InnerType.INT64_TYPE),
+                new ConstantKernel(LongConstant.newInstance(value), InnerType.INT64_TYPE));
+    }
+
+    private static Function gtFunction(int columnIndex, long value) {
+        return ExecuteCompiler.call(">", LongColumn.newInstance(columnIndex), LongConstant.newInstance(value));
+    }
+
+    private List<Boolean> evalBoolean(VectorKernel kernel) {
+        BitVector vector = (BitVector) kernel.eval(context, SelectionVector.all(A.length));
+        List<Boolean> values = new ArrayList<>();
+        for (int i = 0; i < A.length; i++) {
+            values.add(vector.isNull(i) ? null : vector.get(i) != 0);
+        }
+        return values;
+    }
+
+    /**
+     * 先取值再判断null
+     */
+    private List<Boolean> evalBoolean(Function function) {
+        VectorBatchRecord record = new VectorBatchRecord(input);
+        List<Boolean> values = new ArrayList<>();
+        for (int i = 0; i < A.length; i++) {
+            record.setPosition(i);
+            boolean value = function.getBooleanType(record);
+            values.add(function.isNull(record) ? null : value);
+        }
+        return values;
+    }
+
+    /**
+     * filter只保留行式函数结果为true的行,对全部行与部分行的选择向量都成立
+     */
+    private void assertFilter(VectorKernel kernel, Function function) {
+        List<Boolean> values = evalBoolean(function);
+        int[] odd = {1, 3, 5, 7};
+        for (SelectionVector selection : Arrays.asList(SelectionVector.all(A.length), SelectionVector.of(odd, odd.length))) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < selection.size(); i++) {
+                if (Boolean.TRUE.equals(values.get(selection.get(i)))) {
+                    expected.add(selection.get(i));
+                }
+            }
+            SelectionVector result = kernel.filter(context, selection);
+            List<Integer> actual = new ArrayList<>();
+            for (int i = 0; i < result.size(); i++) {
+                actual.add(result.get(i));
+            }
+            Assert.assertEquals(expected, actual);
+        }
+    }
+}
@@ -4,9 +4,9 @@ import cn.mycat.vertx.xa.MySQLManager;
 import cn.mycat.vertx.xa.XaSqlConnection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
-import hu.akarnokd.rxjava3.operators.Flowables;
 import io.mycat.beans.mycat.MycatRowMetaData;
 import io.mycat.calcite.*;
+import io.mycat.calcite.executor.MergeSortObservable;
 import io.mycat.calcite.executor.MycatPreparedStatementUtil;
 import io.mycat.calcite.logical.MycatView;
 import io.mycat.calcite.rewriter.Distribution;
@@ -17,11 +17,15 @@ import io.mycat.calcite.table.GlobalTable;
 import io.mycat.calcite.table.MycatTransientSQLTableScan;
 import io.mycat.calcite.table.NormalTable;
 import io.mycat.calcite.table.ShardingTable;
+import io.mycat.connectionschedule.ShardConnectionScheduler;
 import io.mycat.newquery.NewMycatConnection;
+import io.mycat.newquery.MultiplexSQLChecker;
+import io.mycat.newquery.NewMycatConnectionConfig;
 import io.mycat.prototypeserver.mysql.VisualTableHandler;
 import io.mycat.querycondition.QueryType;
 import io.mycat.router.CustomRuleFunction;
 import io.mycat.util.VertxUtil;
+import io.mycat.vertx.QueryFlowable;
 import io.mycat.vertx.VertxExecuter;
 import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Flowable;
@@ -44,7 +48,6 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Getter
@@ -53,10 +56,13 @@ public abstract class AsyncMycatDataContextImpl extends NewMycatDataContextImpl
     protected final static Logger FULL_TABLE_SCAN_LOGGER = LoggerFactory.getLogger("FULL_TABLE_SCAN_LOGGER");
     public static int FULL_TABLE_SCAN_LIMIT = 1024;
     public static boolean FULL_TABLE_SCAN_EXCEPTION;
-    final Map<String, Future<NewMycatConnection>> transactionConnnectionMap = new HashMap<>();// int transaction
-    final Map<String, LimitQueue> connectionlimitMap = new HashMap<>();//not int transaction
+    final Map<String, Future<NewMycatConnection>> transactionConnnectionMap = new ConcurrentHashMap<>();// int transaction
     final List<NewMycatConnection> connectionlList = Collections.synchronizedList(new ArrayList<>());//not int transaction
     final Map<String, List<Observable<Object[]>>> shareObservable = new HashMap<>();
+    private volatile Boolean multiplexable;
+    final ShardConnectionScheduler connectionScheduler = new ShardConnectionScheduler(
+            key -> newConnection(key).onSuccess(connectionlList::add),
+            key -> Math.min(AsyncMycatDataContextImpl.FULL_TABLE_SCAN_LIMIT, MetaClusterCurrent.wrapper(MySQLManager.class).getAvailableNumber(key)));
 
 
     public AsyncMycatDataContextImpl(MycatDataContext dataContext,
@@ -65,124 +71,88 @@ public abstract class AsyncMycatDataContextImpl extends NewMycatDataContextImpl
         super(dataContext, context, drdsSqlWithParams);
     }
 
-    static class LimitQueue {
-        ArrayList<LimitQueueItem> queue = new ArrayList<>();
-        int index = 0;
-
-        int tmpIndex;
-    }
-
-    static class LimitQueueItem {
-        Future<NewMycatConnection> future;
-        AtomicInteger countDown = new AtomicInteger();
-    }
-
-    public synchronized Future<NewMycatConnection> getConnection(String key) {
+    public Future<NewMycatConnection> getConnection(String key) {
         XaSqlConnection transactionSession = (XaSqlConnection) context.getTransactionSession();
         if (context.isInTransaction()) {
             return transactionConnnectionMap
                     .computeIfAbsent(key, s -> transactionSession.getConnection(key));
         }
+        return connectionScheduler.getConnection(key);
+    }
+
+    /**
+     * 自动提交下不改变会话状态的查询可以与其他会话共用后端连接
+     */
+    private Future<NewMycatConnection> newConnection(String key) {
         MySQLManager mySQLManager = MetaClusterCurrent.wrapper(MySQLManager.class);
-        int limit = Math.min(AsyncMycatDataContextImpl.FULL_TABLE_SCAN_LIMIT, mySQLManager.getAvailableNumber(key));
-        if (limit < 1) {
-            limit = 1;
+        if (NewMycatConnectionConfig.MULTIPLEX_SIZE > 0 && isMultiplexable()) {
+            return mySQLManager.getMultiplexConnection(key);
         }
-        LimitQueue limitQueue = connectionlimitMap.computeIfAbsent(key, s -> {
-            return new LimitQueue();
-        });
-
-        int index = limitQueue.queue.size();
-        Future<NewMycatConnection> connectionFuture;
-        if (index < limit) {
-            connectionFuture = mySQLManager.getConnection(key).flatMap(newMycatConnection -> {
-                connectionlList.add(newMycatConnection);
-                return Future.succeededFuture( newMycatConnection);
-            });
-            LimitQueueItem limitQueueItem = new LimitQueueItem();
-            limitQueueItem.future = connectionFuture;
-            limitQueueItem.countDown.incrementAndGet();
-            limitQueue.queue.add(index, limitQueueItem);
-        } else {
-            limitQueue.tmpIndex = (limitQueue.index++) % limitQueue.queue.size();
-            LimitQueueItem limitQueueItem = limitQueue.queue.get(limitQueue.tmpIndex);
-            return limitQueueItem.future;
+        return mySQLManager.getConnection(key);
+    }
+
+    private boolean isMultiplexable() {
+        if (!context.isAutocommit() || context.isInTransaction() || context.isBackendSessionPinned()) {
+            return false;
         }
-        return connectionFuture;
+        if (multiplexable == null) {
+            multiplexable = MultiplexSQLChecker.isMultiplexable(drdsSqlWithParams.getParameterizedStatement());
+        }
+        return multiplexable;
     }
 
-    public synchronized void recycleConnection(String key, Future<NewMycatConnection> connectionFuture) {
-        XaSqlConnection transactionSession = (XaSqlConnection) context.getTransactionSession();
+    public void recycleConnection(String key, Future<NewMycatConnection> connectionFuture) {
         if (context.isInTransaction()) {
             transactionConnnectionMap.put(key, connectionFuture);
             return;
         }
-        LimitQueue limitQueue = connectionlimitMap.get(key);
-        LimitQueueItem limitQueueItem = limitQueue.queue.get(limitQueue.tmpIndex);
-        limitQueueItem.future = connectionFuture.onComplete(newMycatConnectionAsyncResult -> {
-            if (newMycatConnectionAsyncResult.succeeded()) {
-                NewMycatConnection mycatConnection = newMycatConnectionAsyncResult.result();
-                if (limitQueueItem.countDown.decrementAndGet() < 1) {
-                    mycatConnection.close();
-                }
-            }
-        });
+        connectionFuture.onSuccess(connectionScheduler::recycleConnection);
     }
 
     public static interface Queryer<T> {
 
-        Observable<T> runQuery(Future<NewMycatConnection> sessionConnection, String sql, List<Object> extractParams, MycatRowMetaData calciteRowMetaData);
+        QueryFlowable<T> runQuery(Future<NewMycatConnection> sessionConnection, String sql, List<Object> extractParams, MycatRowMetaData calciteRowMetaData);
+    }
+
+    @NotNull
+    public <T> List<Observable<T>> getObservables(ImmutableMultimap<String, SqlString> expand, MycatRowMetaData calciteRowMetaData, Queryer<T> queryer) {
+        return getFlowables(expand, calciteRowMetaData, queryer).stream().map(Flowable::toObservable).collect(Collectors.toList());
     }
 
+    /**
+     * 每个分片一个按请求量读取的结果流,订阅时才获取连接,
+     * 查询结束后归还连接,下游取消时由QueryFlowable中止分片查询,连接在查询结束后照常归还
+     */
     @NotNull
-    public synchronized <T> List<Observable<T>> getObservables(ImmutableMultimap<String, SqlString> expand, MycatRowMetaData calciteRowMetaData, Queryer<T> queryer) {
-        LinkedList<Observable<T>> observables = new LinkedList<>();
+    public <T> List<Flowable<T>> getFlowables(ImmutableMultimap<String, SqlString> expand, MycatRowMetaData calciteRowMetaData, Queryer<T> queryer) {
+        LinkedList<Flowable<T>> flowables = new LinkedList<>();
         for (Map.Entry<String, SqlString> entry : expand.entries()) {
             String key = context.resolveDatasourceTargetName(entry.getKey());
             SqlString sqlString = entry.getValue();
-            Observable<T> observable = Observable.create(emitter -> {
+            Flowable<T> flowable = Flowable.defer(() -> {
                 Future<NewMycatConnection> sessionConnection = getConnection(key);
                 PromiseInternal<NewMycatConnection> promise = VertxUtil.newPromise();
-                Observable<T> innerObservable = Objects.requireNonNull(queryer.runQuery(sessionConnection,
-                        sqlString.getSql(),
-                        MycatPreparedStatementUtil.extractParams(drdsSqlWithParams.getParams(), sqlString.getDynamicParameters()), calciteRowMetaData));
-                innerObservable.subscribe(objects -> {
-                            emitter.onNext((objects));
-                        },
-                        throwable -> {
-                            sessionConnection.onSuccess(c -> {
-                                        //close connection?
-                                        emitter.onError(throwable);
-                                        promise.tryFail(throwable);
-                                    })
-                                    .onFailure(t -> {
-                                        emitter.onError(throwable);
-                                        promise.tryFail(t);
-                                    });
-                        }, () -> {
-                            sessionConnection.onSuccess(c -> {
-                                promise.tryComplete(c);
-                            }).onFailure(t -> {
-                                emitter.onError(t);
-                                promise.tryFail(t);
-                            });
-                            ;
+                //非事务下查询失败也要归还槽位,否则同一槽位上排队的子查询无法继续
+                Future<NewMycatConnection> recycleFuture = promise.future();
+                recycleConnection(key, context.isInTransaction() ? recycleFuture : recycleFuture.recover(t -> sessionConnection));
+                return Objects.requireNonNull(queryer.runQuery(sessionConnection,
+                                sqlString.getSql(),
+                                MycatPreparedStatementUtil.extractParams(drdsSqlWithParams.getParams(), sqlString.getDynamicParameters()), calciteRowMetaData))
+                        .onQueryEnd(throwable -> {
+                            if (throwable == null) {
+                                sessionConnection.onSuccess(promise::tryComplete).onFailure(promise::tryFail);
+                            } else {
+                                promise.tryFail(throwable);
+                            }
                         });
-                recycleConnection(key,
-                        promise.future()
-                                .onSuccess(c -> {
-                                    emitter.onComplete();
-                                })
-                                .onFailure(t -> {
-                                    emitter.onError(t);
-                                }));
             });
-            observables.add(observable);
+            flowables.add(flowable);
         }
-        return observables;
+        return flowables;
     }
 
-    public synchronized CompositeFuture endFuture() {
+    public CompositeFuture endFuture() {
+        queryMemoryBudget.close();
         return CompositeFuture.join((List) ImmutableList.builder()
                 .addAll(transactionConnnectionMap.values())
                 .addAll(connectionlList.stream().map(i->i.close()).collect(Collectors.toList())).build());
@@ -202,7 +172,7 @@ public abstract class AsyncMycatDataContextImpl extends NewMycatDataContextImpl
             MycatTransientSQLTableScan relNode = (MycatTransientSQLTableScan) mycatRelDatasourceSourceInfo.getRelNode();
             ImmutableMultimap<String, SqlString> multimap = ImmutableMultimap.of(relNode.getTargetName(), new SqlString(MycatSqlDialect.DEFAULT, relNode.getSql()));
             return getObservables(multimap, mycatRelDatasourceSourceInfo.getColumnInfo(),
-                    (sessionConnection, sql, extractParams, calciteRowMetaData) -> VertxExecuter.runQuery(sessionConnection, sql, extractParams, calciteRowMetaData)
+                    VertxExecuter::runQueryFlowable
             );
         }
 
@@ -230,6 +200,28 @@ public abstract class AsyncMycatDataContextImpl extends NewMycatDataContextImpl
             if (shareObservable.containsKey(node)) {
                 return (shareObservable.get(node));
             }
+            MycatRelDatasourceSourceInfo mycatRelDatasourceSourceInfo = this.codeExecuterContext.getRelContext().get(node);
+            boolean share = mycatRelDatasourceSourceInfo.refCount > 0;
+            List<Observable<Object[]>> observables = createFlowables(node).stream().map(Flowable::toObservable).collect(Collectors.toList());
+            if (share) {
+                observables = observables.stream().map(i -> i.share()).collect(Collectors.toList());
+                shareObservable.put(node, observables);
+            }
+            return observables;
+        }
+
+        /**
+         * 被多次引用的结果只能以共享的Observable读取,其余分片按请求量读取
+         */
+        public List<Flowable<Object[]>> getFlowableList(String node) {
+            MycatRelDatasourceSourceInfo mycatRelDatasourceSourceInfo = this.codeExecuterContext.getRelContext().get(node);
+            if (shareObservable.containsKey(node) || mycatRelDatasourceSourceInfo.refCount > 0) {
+                return getObservableList(node).stream().map(i -> i.toFlowable(BackpressureStrategy.BUFFER)).collect(Collectors.toList());
+            }
+            return createFlowables(node);
+        }
+
+        private List<Flowable<Object[]>> createFlowables(String node) {
             MycatRelDatasourceSourceInfo mycatRelDatasourceSourceInfo = this.codeExecuterContext.getRelContext().get(node);
             MycatView view = mycatRelDatasourceSourceInfo.getRelNode();
             List<PartitionGroup> sqlMap = getPartition(node).get();
@@ -240,16 +232,10 @@ public abstract class AsyncMycatDataContextImpl extends NewMycatDataContextImpl
                     throw new MycatException("FULL_TABLE_SCAN_EXCEPTION:{}", drdsSqlWithParams.toString());
                 }
             }
-            boolean share = mycatRelDatasourceSourceInfo.refCount > 0;
-            List<Observable<Object[]>> observables = getObservables((view
+            return getFlowables((view
                             .apply(dataContext.getMergeUnionSize(), mycatRelDatasourceSourceInfo.getSqlTemplate(), sqlMap, drdsSqlWithParams.getParams())), mycatRelDatasourceSourceInfo.getColumnInfo(),
-                    (sessionConnection, sql, extractParams, calciteRowMetaData) -> VertxExecuter.runQuery(sessionConnection, sql, extractParams, calciteRowMetaData)
+                    VertxExecuter::runQueryFlowable
             );
-            if (share) {
-                observables = observables.stream().map(i -> i.share()).collect(Collectors.toList());
-                shareObservable.put(node, observables);
-            }
-            return observables;
         }
 
         public Optional<List<PartitionGroup>> getPartition(String node) {
@@ -262,21 +248,12 @@ public abstract class AsyncMycatDataContextImpl extends NewMycatDataContextImpl
 
         @Override
         public Observable<Object[]> getObservable(String node, Function1 function1, Comparator comparator, int offset, int fetch) {
-            List<Observable<Object[]>> observableList = getObservableList(node).stream().map(i -> i.subscribeOn(Schedulers.computation())).collect(Collectors.toList());
-
-            Iterable<Flowable<Object[]>> collect = observableList.stream().map(s -> Flowable.fromObservable(s, BackpressureStrategy.BUFFER)).collect(Collectors.toList());
-            Flowable<Object[]> flowable = Flowables.orderedMerge(collect, (o1, o2) -> {
+            List<Flowable<Object[]>> flowableList = getFlowableList(node).stream().map(i -> i.subscribeOn(Schedulers.computation())).collect(Collectors.toList());
+            return MergeSortObservable.create(flowableList, (o1, o2) -> {
                 Object left = function1.apply(o1);
                 Object right = function1.apply(o2);
                 return comparator.compare(left, right);
-            });
-            if (offset > 0) {
-                flowable = flowable.skip(offset);
-            }
-            if (fetch > 0 && fetch != Integer.MAX_VALUE) {
-                flowable = flowable.take(fetch);
-            }
-            return flowable.toObservable();
+            }, offset, fetch > 0 ? fetch : -1);
         }
 
     }
@@ -276,8 +276,16 @@ public class DrdsExecutorCompiler {
     }
 
     @NotNull
-    @SneakyThrows
     public static CodeExecuterContext getCodeExecuterContext(Map<RexNode, RexNode> constantMap, MycatRel relNode, boolean forUpdate) {
+        return getCodeExecuterContext(constantMap, relNode, forUpdate, null);
+    }
+
+    /**
+     * @param codeContext 快照中已生成的代码,不为null时跳过代码生成
+     */
+    @NotNull
+    @SneakyThrows
+    public static CodeExecuterContext getCodeExecuterContext(Map<RexNode, RexNode> constantMap, MycatRel relNode, boolean forUpdate, CodeContext codeContext) {
         HashMap<String, Object> varContext = new HashMap<>(2);
         StreamMycatEnumerableRelImplementor mycatEnumerableRelImplementor = new StreamMycatEnumerableRelImplementor(varContext);
         HashMap<String,MycatRelDatasourceSourceInfo> stat= new HashMap<>();
@@ -314,13 +322,15 @@ public class DrdsExecutorCompiler {
             }
         });
 
-        ClassDeclaration classDeclaration = mycatEnumerableRelImplementor.implementHybridRoot(relNode, EnumerableRel.Prefer.ARRAY);
-        String code = Expressions.toString(classDeclaration.memberDeclarations, "\n", false);
-        if (log.isDebugEnabled()) {
-            log.debug("----------------------------------------code----------------------------------------");
-            log.debug(code);
+        if (codeContext == null) {
+            ClassDeclaration classDeclaration = mycatEnumerableRelImplementor.implementHybridRoot(relNode, EnumerableRel.Prefer.ARRAY);
+            String code = Expressions.toString(classDeclaration.memberDeclarations, "\n", false);
+            if (log.isDebugEnabled()) {
+                log.debug("----------------------------------------code----------------------------------------");
+                log.debug(code);
+            }
+            codeContext = new CodeContext(classDeclaration.name, code);
         }
-        CodeContext codeContext = new CodeContext(classDeclaration.name, code);
 
         CodeExecuterContext executerContext = CodeExecuterContext.of(constantMap,stat, varContext,relNode, codeContext);
         return executerContext;
@@ -17,6 +17,9 @@
 package io.mycat;
 
 import com.google.common.collect.ImmutableList;
+import io.mycat.statistic.ColumnStatistic;
+import io.mycat.statistic.StatisticCenter;
+import lombok.Getter;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelDistribution;
 import org.apache.calcite.rel.RelDistributionTraitDef;
@@ -26,17 +29,44 @@ import org.apache.calcite.util.ImmutableBitSet;
 
 import java.util.List;
 
+/**
+ * 逻辑表统计信息,行数与列统计来自StatisticCenter,没有analyze过的表行数为DEFAULT_ROW_COUNT
+ */
+@Getter
 public class MycatStatistic implements Statistic {
+    private final String schemaName;
+    private final String tableName;
+    private final List<SimpleColumnInfo> columns;
+    private final List<ImmutableBitSet> keys;
+
+    public MycatStatistic(String schemaName, String tableName, List<SimpleColumnInfo> columns, List<ImmutableBitSet> keys) {
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.keys = keys;
+    }
+
     public Double getRowCount() {
-        return null;
+        if (MetaClusterCurrent.exist(StatisticCenter.class)) {
+            StatisticCenter statisticCenter = MetaClusterCurrent.wrapper(StatisticCenter.class);
+            return statisticCenter.getLogicTableRow(schemaName, tableName);
+        }
+        return StatisticCenter.DEFAULT_ROW_COUNT;
     }
 
-    public boolean isKey(ImmutableBitSet columns) {
-        return false;
+    /**
+     * @return 没有analyze过的列返回null
+     */
+    public ColumnStatistic getColumnStatistic(int columnIndex) {
+        if (columnIndex < 0 || columnIndex >= columns.size() || !MetaClusterCurrent.exist(StatisticCenter.class)) {
+            return null;
+        }
+        StatisticCenter statisticCenter = MetaClusterCurrent.wrapper(StatisticCenter.class);
+        return statisticCenter.getColumnStatistic(schemaName, tableName, columns.get(columnIndex).getColumnName());
     }
 
-    public List<ImmutableBitSet> getKeys() {
-        return ImmutableList.of();
+    public boolean isKey(ImmutableBitSet columns) {
+        return keys.contains(columns);
     }
 
     public List<RelReferentialConstraint> getReferentialConstraints() {
@@ -51,4 +81,4 @@ public class MycatStatistic implements Statistic {
         return RelDistributionTraitDef.INSTANCE.getDefault();
     }
 
-}
\ No newline at end of file
+}
@@ -18,6 +18,7 @@ package io.mycat;
 
 import io.mycat.calcite.CodeExecuterContext;
 import io.mycat.config.MycatServerConfig;
+import io.mycat.serializable.QueryMemoryBudget;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import okhttp3.Response;
@@ -39,6 +40,7 @@ public abstract class NewMycatDataContextImpl implements NewMycatDataContext {
     protected final MycatDataContext context;
     protected final CodeExecuterContext codeExecuterContext;
     protected final DrdsSqlWithParams drdsSqlWithParams;
+    protected final QueryMemoryBudget queryMemoryBudget = QueryMemoryBudget.create();
 
     public NewMycatDataContextImpl(MycatDataContext dataContext,
                                    CodeExecuterContext context,
@@ -107,6 +109,11 @@ public abstract class NewMycatDataContextImpl implements NewMycatDataContext {
         return user.getUserName() + "@" + user.getHost();
     }
 
+    @Override
+    public QueryMemoryBudget getQueryMemoryBudget() {
+        return queryMemoryBudget;
+    }
+
     @Override
     public DrdsSqlWithParams getDrdsSql() {
         return drdsSqlWithParams;
@@ -80,6 +80,13 @@ public interface Response {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * 按客户端写缓冲的情况向上游请求数据,不支持背压的实现退化为Observable
+     */
+    default Future<Void> sendResultSet(Flowable<MysqlPayloadObject> mysqlPacketFlowable) {
+        return sendResultSet(mysqlPacketFlowable.toObservable());
+    }
+
 //
 
     Future<Void> rollback();
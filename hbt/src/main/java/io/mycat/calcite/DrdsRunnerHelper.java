@@ -22,6 +22,7 @@ import io.mycat.calcite.plan.PlanImplementor;
 import io.mycat.calcite.spm.*;
 import io.mycat.calcite.table.MycatLogicTable;
 import io.mycat.calcite.table.SchemaHandler;
+import io.mycat.ratelimiter.AdmissionController;
 import io.mycat.util.NameMap;
 import io.mycat.util.VertxUtil;
 import io.vertx.core.Future;
@@ -342,6 +343,9 @@ public class DrdsRunnerHelper {
     public static Future<Void> impl(Plan plan, PlanImplementor planImplementor) {
         switch (plan.getType()) {
             case PHYSICAL:
+                if (plan instanceof PlanImpl && AdmissionController.INSTANCE.hasHeavyLimit()) {
+                    return AdmissionController.INSTANCE.runHeavy(((PlanImpl) plan).getHeavyQueryType(), () -> planImplementor.executeQuery(plan));
+                }
                 return planImplementor.executeQuery(plan);
             case UPDATE:
                 return planImplementor.executeUpdate(plan);
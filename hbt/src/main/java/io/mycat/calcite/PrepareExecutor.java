@@ -8,6 +8,8 @@ import io.mycat.api.collector.MysqlPayloadObject;
 import io.mycat.api.collector.RowBaseIterator;
 import io.mycat.beans.mycat.MycatRowMetaData;
 import io.mycat.beans.mycat.ResultSetBuilder;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
@@ -97,6 +99,25 @@ public class PrepareExecutor {
         return rowObservable;
     }
 
+    /**
+     * 结果直接来自分片查询时按需读取,客户端写不过来时后端连接随之暂停
+     */
+    public static Flowable<MysqlPayloadObject> getMysqlPayloadObjectFlowable(
+            Flowable<Object[]> rows,
+            AsyncMycatDataContextImpl newMycatDataContext,
+            MycatRowMetaData rowMetaData) {
+        Flowable<MysqlPayloadObject> body = Flowable.concat(Flowable.just(new MySQLColumnDef(rowMetaData)),
+                rows.map(objects -> new MysqlObjectArrayRow(objects)));
+        return body
+                .onErrorResumeNext(throwable -> Completable.create(emitter -> newMycatDataContext.endFuture()
+                        .onComplete(event -> emitter.onError(throwable))).toFlowable())
+                .concatWith(Completable.create(emitter -> {
+                    CompositeFuture compositeFuture = newMycatDataContext.endFuture();
+                    compositeFuture.onSuccess(event -> emitter.onComplete());
+                    compositeFuture.onFailure(event -> emitter.onError(event));
+                }));
+    }
+
     @NotNull
     private static Observable<Object[]> toObservable(AsyncMycatDataContextImpl context, Enumerable<Object[]> enumerable) {
         Observable<Object[]> observable;
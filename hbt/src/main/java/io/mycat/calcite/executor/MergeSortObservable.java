@@ -0,0 +1,266 @@
+package io.mycat.calcite.executor;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Observer;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.internal.subscriptions.SubscriptionHelper;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多个已排序分片结果的k路归并,用小顶堆维护各分片的当前行.
+ * 分片按需读取:订阅时每个分片请求prefetch行,归并消费掉一部分后再补充请求,
+ * 分片缓存不会超过prefetch行,后端连接由QueryFlowable按请求量暂停与恢复,不阻塞线程.
+ * offset/fetch在归并时处理,满足fetch后立即取消所有分片查询
+ */
+public class MergeSortObservable<T> extends Observable<T> {
+    public static int PREFETCH = 256;
+
+    private final List<Flowable<T>> sources;
+    private final Comparator<T> comparator;
+    private final long offset;
+    private final long fetch;
+    private final int prefetch;
+
+    public MergeSortObservable(List<Flowable<T>> sources, Comparator<T> comparator, long offset, long fetch, int prefetch) {
+        this.sources = sources;
+        this.comparator = comparator;
+        this.offset = Math.max(0, offset);
+        this.fetch = fetch;
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    /**
+     * @param fetch 小于0或Integer.MAX_VALUE表示不限制
+     */
+    public static <T> Observable<T> create(List<Flowable<T>> sources, Comparator<T> comparator, long offset, long fetch) {
+        if (fetch == Integer.MAX_VALUE || fetch == Long.MAX_VALUE) {
+            fetch = -1;
+        }
+        return new MergeSortObservable<>(sources, comparator, offset, fetch, PREFETCH);
+    }
+
+    @Override
+    protected void subscribeActual(Observer<? super T> observer) {
+        MergeCoordinator<T> coordinator = new MergeCoordinator<>(observer, sources.size(), comparator, offset, fetch, prefetch);
+        observer.onSubscribe(coordinator);
+        if (fetch == 0 || sources.isEmpty()) {
+            coordinator.dispose();
+            observer.onComplete();
+            return;
+        }
+        coordinator.subscribe(sources);
+    }
+
+    static final class MergeCoordinator<T> extends AtomicInteger implements Disposable {
+        final Observer<? super T> downstream;
+        final ShardSubscriber<T>[] shards;
+        final PriorityQueue<ShardSubscriber<T>> heap;
+        final ArrayDeque<ShardSubscriber<T>> pending;
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        long skip;
+        long remain;
+        volatile boolean disposed;
+        boolean terminated;
+
+        MergeCoordinator(Observer<? super T> downstream, int count, Comparator<T> comparator,
+                         long offset, long fetch, int prefetch) {
+            this.downstream = downstream;
+            this.shards = new ShardSubscriber[count];
+            for (int i = 0; i < count; i++) {
+                shards[i] = new ShardSubscriber<>(this, i, prefetch);
+            }
+            //相等时按分片顺序输出,结果稳定
+            this.heap = new PriorityQueue<>(Math.max(1, count), (o1, o2) -> {
+                int c = comparator.compare(o1.head, o2.head);
+                return c != 0 ? c : Integer.compare(o1.index, o2.index);
+            });
+            this.pending = new ArrayDeque<>(count);
+            for (ShardSubscriber<T> shard : shards) {
+                pending.add(shard);
+            }
+            this.skip = offset;
+            this.remain = fetch;
+        }
+
+        void subscribe(List<Flowable<T>> sources) {
+            for (int i = 0; i < shards.length && !disposed; i++) {
+                sources.get(i).subscribe(shards[i]);
+            }
+        }
+
+        void onError(Throwable throwable) {
+            error.compareAndSet(null, throwable);
+            drain();
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                drainLoop();
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void drainLoop() {
+            for (; ; ) {
+                if (terminated) {
+                    return;
+                }
+                if (disposed) {
+                    clear();
+                    return;
+                }
+                Throwable throwable = error.get();
+                if (throwable != null) {
+                    terminated = true;
+                    dispose();
+                    downstream.onError(throwable);
+                    return;
+                }
+                //所有未结束的分片都有当前行时才能输出最小行
+                int size = pending.size();
+                for (int i = 0; i < size; i++) {
+                    ShardSubscriber<T> shard = pending.poll();
+                    boolean done = shard.done;
+                    T head = shard.poll();
+                    if (head != null) {
+                        shard.head = head;
+                        heap.add(shard);
+                    } else if (!done) {
+                        pending.add(shard);
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    return;
+                }
+                ShardSubscriber<T> shard = heap.poll();
+                if (shard == null) {
+                    terminated = true;
+                    downstream.onComplete();
+                    return;
+                }
+                T value = shard.head;
+                shard.head = null;
+                pending.add(shard);
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                downstream.onNext(value);
+                if (remain > 0 && --remain == 0) {
+                    terminated = true;
+                    dispose();
+                    downstream.onComplete();
+                    return;
+                }
+            }
+        }
+
+        private void clear() {
+            heap.clear();
+            pending.clear();
+            for (ShardSubscriber<T> shard : shards) {
+                shard.queue.clear();
+            }
+        }
+
+        @Override
+        public void dispose() {
+            if (disposed) {
+                return;
+            }
+            disposed = true;
+            for (ShardSubscriber<T> shard : shards) {
+                shard.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+
+    static final class ShardSubscriber<T> implements FlowableSubscriber<T> {
+        final MergeCoordinator<T> parent;
+        final int index;
+        final int prefetch;
+        /**
+         * 消费达到limit行后补充请求,减少request调用次数
+         */
+        final int limit;
+        final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+        final AtomicReference<Subscription> upstream = new AtomicReference<>();
+        volatile boolean done;
+        int consumed;
+        T head;
+
+        ShardSubscriber(MergeCoordinator<T> parent, int index, int prefetch) {
+            this.parent = parent;
+            this.index = index;
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.setOnce(upstream, s)) {
+                s.request(prefetch);
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (parent.disposed) {
+                return;
+            }
+            queue.offer(t);
+            parent.drain();
+        }
+
+        /**
+         * 只在归并的drain中调用
+         */
+        T poll() {
+            T t = queue.poll();
+            if (t != null && ++consumed == limit) {
+                consumed = 0;
+                upstream.get().request(limit);
+            }
+            return t;
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            done = true;
+            parent.onError(e);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        void cancel() {
+            SubscriptionHelper.cancel(upstream);
+        }
+    }
+}
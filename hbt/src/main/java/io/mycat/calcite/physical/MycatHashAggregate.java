@@ -16,6 +16,8 @@ package io.mycat.calcite.physical;
 
 import com.google.common.collect.ImmutableList;
 import io.mycat.calcite.*;
+import io.mycat.serializable.QueryMemoryGovernor;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.*;
 import org.apache.calcite.adapter.enumerable.impl.AggResultContextImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
@@ -35,6 +37,7 @@ import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.RxBuiltInMethod;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -277,20 +280,23 @@ public class MycatHashAggregate extends EnumerableAggregateBase implements Mycat
                                     resultBlock.toBlock(),
                                     key_,
                                     acc_));
+            final Expression reservation_ = appendReservation(builder);
             builder.add(
                     Expressions.return_(null,
-                            Expressions.call(
-                                    BuiltInMethod.GROUP_BY_MULTIPLE.method,
-                                    Expressions.list(childExp,
-                                            keySelectors_,
-                                            Expressions.call(lambdaFactory,
-                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
-                                            Expressions.call(lambdaFactory,
-                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
-                                            Expressions.call(lambdaFactory,
-                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
-                                                    resultSelector))
-                                            .appendIfNotNull(keyPhysType.comparer()))));
+                            Expressions.call(RxBuiltInMethod.MEMORY_RELEASE_ON_CLOSE.method, reservation_,
+                                    Expressions.call(
+                                            BuiltInMethod.GROUP_BY_MULTIPLE.method,
+                                            Expressions.list(childExp,
+                                                    keySelectors_,
+                                                    reserveEach(reservation_,
+                                                            Expressions.call(lambdaFactory,
+                                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method)),
+                                                    Expressions.call(lambdaFactory,
+                                                            BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+                                                    Expressions.call(lambdaFactory,
+                                                            BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                                                            resultSelector))
+                                                    .appendIfNotNull(keyPhysType.comparer())))));
         } else if (groupCount == 0) {
             final Expression resultSelector =
                     builder.append(
@@ -339,23 +345,41 @@ public class MycatHashAggregate extends EnumerableAggregateBase implements Mycat
                                     resultBlock.toBlock(),
                                     key_,
                                     acc_));
+            final Expression reservation_ = appendReservation(builder);
             builder.add(
                     Expressions.return_(null,
-                            Expressions.call(childExp,
-                                    BuiltInMethod.GROUP_BY2.method,
-                                    Expressions.list(keySelector_,
-                                            Expressions.call(lambdaFactory,
-                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
-                                            Expressions.call(lambdaFactory,
-                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
-                                            Expressions.call(lambdaFactory,
-                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
-                                                    resultSelector_))
-                                            .appendIfNotNull(keyPhysType.comparer()))));
+                            Expressions.call(RxBuiltInMethod.MEMORY_RELEASE_ON_CLOSE.method, reservation_,
+                                    Expressions.call(childExp,
+                                            BuiltInMethod.GROUP_BY2.method,
+                                            Expressions.list(keySelector_,
+                                                    reserveEach(reservation_,
+                                                            Expressions.call(lambdaFactory,
+                                                                    BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method)),
+                                                    Expressions.call(lambdaFactory,
+                                                            BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+                                                    Expressions.call(lambdaFactory,
+                                                            BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                                                            resultSelector_))
+                                                    .appendIfNotNull(keyPhysType.comparer())))));
         }
         return implementor.result(physType, builder.toBlock());
     }
 
+    private Expression appendReservation(BlockBuilder builder) {
+        return builder.append("reservation",
+                Expressions.call(RxBuiltInMethod.MEMORY_RESERVATION.method,
+                        DataContext.ROOT, Expressions.constant("MycatHashAggregate")));
+    }
+
+    /**
+     * 每个分组的累加器按分组列和聚合函数个数预留内存
+     */
+    private Expression reserveEach(Expression reservation_, Expression initializer) {
+        long groupBytes = QueryMemoryGovernor.estimateRowBytes(groupSet.cardinality() + aggCalls.size());
+        return Expressions.call(RxBuiltInMethod.MEMORY_RESERVE_EACH.method,
+                reservation_, Expressions.constant(groupBytes), initializer);
+    }
+
     @Override
     public boolean isSupportStream() {
         return false;
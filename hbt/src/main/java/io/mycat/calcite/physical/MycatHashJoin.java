@@ -17,6 +17,7 @@ package io.mycat.calcite.physical;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import io.mycat.calcite.*;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.*;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
@@ -36,6 +37,7 @@ import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.RxBuiltInMethod;
 import org.apache.calcite.util.Util;
 
 import java.lang.reflect.Method;
@@ -233,9 +235,10 @@ public class MycatHashJoin extends Join implements MycatRel {
                 physType,
                 builder.append(
                         Expressions.call(
-                                leftExpression,
-                                BuiltInMethod.HASH_JOIN.method,
+                                RxBuiltInMethod.ENUMERABLE_SPILL_HASH_JOIN.method,
                                 Expressions.list(
+                                        DataContext.ROOT,
+                                        leftExpression,
                                         rightExpression,
                                         leftResult.physType.generateAccessor(joinInfo.leftKeys),
                                         rightResult.physType.generateAccessor(joinInfo.rightKeys),
@@ -18,6 +18,7 @@ package io.mycat.calcite.physical;
 import io.mycat.calcite.ExplainWriter;
 import io.mycat.calcite.MycatConvention;
 import io.mycat.calcite.MycatRel;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
@@ -72,7 +73,7 @@ public class MycatMatierial extends SingleRel implements MycatRel {
                 input.implement(implementor, pref);
         Expression input = builder.append("child", result.block);
         final Expression childExp = toEnumerate(input);
-        builder.add(Expressions.call(RxBuiltInMethod.ENUMERABLE_MATIERIAL.method, childExp));
+        builder.add(Expressions.call(RxBuiltInMethod.ENUMERABLE_SPILL_MATIERIAL.method, DataContext.ROOT, childExp));
         return implementor.result(result.physType, builder.toBlock());
     }
 
@@ -129,10 +129,12 @@ public class MycatMemSort
         builder.add(
                 Expressions.return_(
                         null, Expressions.call(
-                                BuiltInMethod.ORDER_BY_WITH_FETCH_AND_OFFSET.method, Expressions.list(
+                                RxBuiltInMethod.ENUMERABLE_SPILL_ORDER_BY.method, Expressions.list(
+                                        DataContext.ROOT,
                                         childExp,
                                         builder.append("keySelector", pair.left))
-                                        .appendIfNotNull(builder.appendIfNotNull("comparator", pair.right))
+                                        .append(pair.right == null ? Expressions.constant(null)
+                                                : builder.append("comparator", pair.right))
                                         .appendIfNotNull(
                                                 builder.appendIfNotNull("offset",
                                                         Expressions.constant(offsetVal)))
@@ -17,6 +17,7 @@ package io.mycat.calcite.physical;
 import io.mycat.calcite.ExplainWriter;
 import io.mycat.calcite.MycatConvention;
 import io.mycat.calcite.MycatRel;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.*;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
@@ -32,6 +33,7 @@ import org.apache.calcite.rel.core.TableSpool;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.schema.ModifiableTable;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.RxBuiltInMethod;
 
 import java.util.Objects;
 
@@ -94,13 +96,17 @@ public class MycatTableSpool extends TableSpool implements MycatRel {
                 tableExp,
                 BuiltInMethod.MODIFIABLE_TABLE_GET_MODIFIABLE_COLLECTION.method);
 
-        Expression inputExp = toEnumerate(builder.append("input", inputResult.block));
+        Expression reservationExp = builder.append("reservation",
+                Expressions.call(RxBuiltInMethod.MEMORY_RESERVATION.method,
+                        DataContext.ROOT, Expressions.constant("MycatTableSpool")));
+        Expression inputExp = Expressions.call(RxBuiltInMethod.MEMORY_RESERVE_ROWS.method, reservationExp,
+                toEnumerate(builder.append("input", inputResult.block)));
 
         Expression spoolExp = Expressions.call(
                 BuiltInMethod.LAZY_COLLECTION_SPOOL.method,
                 collectionExp,
                 inputExp);
-        builder.add(spoolExp);
+        builder.add(Expressions.call(RxBuiltInMethod.MEMORY_RELEASE_ON_CLOSE.method, reservationExp, spoolExp));
 
         PhysType physType = PhysTypeImpl.of(
                 implementor.getTypeFactory(),
@@ -19,6 +19,7 @@ import io.mycat.calcite.ExplainWriter;
 import io.mycat.calcite.MycatConvention;
 import io.mycat.calcite.MycatEnumerableRelImplementor;
 import io.mycat.calcite.MycatRel;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.*;
 import org.apache.calcite.adapter.enumerable.impl.WinAggAddContextImpl;
 import org.apache.calcite.adapter.enumerable.impl.WinAggResetContextImpl;
@@ -47,6 +48,7 @@ import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.RxBuiltInMethod;
 import org.apache.calcite.util.Util;
 
 import java.lang.reflect.Modifier;
@@ -201,7 +203,12 @@ public class MycatWindow extends Window implements MycatRel {
         final EnumerableRel child = (EnumerableRel) getInput();
         final BlockBuilder builder = new BlockBuilder();
         final Result result = implementor.visitChild(this, 0, child, pref);
-        Expression source_ = toEnumerate(builder.append("source", result.block));
+        final Expression reservation_ = builder.append("reservation",
+                Expressions.call(RxBuiltInMethod.MEMORY_RESERVATION.method,
+                        DataContext.ROOT, Expressions.constant("MycatWindow")));
+        Expression source_ = builder.append("source",
+                Expressions.call(RxBuiltInMethod.MEMORY_RESERVE_ROWS.method, reservation_,
+                        toEnumerate(builder.append("source", result.block))));
 
         final List<Expression> translatedConstants =
                 new ArrayList<>(constants.size());
@@ -553,7 +560,8 @@ public class MycatWindow extends Window implements MycatRel {
 
         //   return Linq4j.asEnumerable(list);
         builder.add(
-                Expressions.return_(null, source_));
+                Expressions.return_(null,
+                        Expressions.call(RxBuiltInMethod.MEMORY_RELEASE_ON_CLOSE.method, reservation_, source_)));
         return implementor.result(inputPhysType, builder.toBlock());
     }
 
@@ -26,15 +26,19 @@ import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
 import io.mycat.*;
 import io.mycat.api.collector.MysqlPayloadObject;
 import io.mycat.calcite.ExecutorProvider;
+import io.mycat.calcite.MycatRel;
 import io.mycat.calcite.PrepareExecutor;
+import io.mycat.calcite.logical.MycatView;
 import io.mycat.calcite.physical.MycatInsertRel;
 import io.mycat.calcite.physical.MycatUpdateRel;
 import io.mycat.calcite.spm.Plan;
 import io.mycat.calcite.table.GlobalTable;
+import io.mycat.statistic.AutoAnalyzeScheduler;
 import io.mycat.util.MycatSQLExprTableSourceUtil;
 import io.mycat.util.Pair;
 import io.mycat.vertx.VertxExecuter;
 import io.mycat.vertx.VertxUpdateExecuter;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
 import io.vertx.core.Future;
 import org.apache.calcite.runtime.ArrayBindable;
@@ -66,8 +70,10 @@ public class ObservablePlanImplementorImpl implements PlanImplementor {
     @Override
     public Future<Void> executeUpdate(Plan plan) {
         MycatUpdateRel mycatRel = (MycatUpdateRel) plan.getMycatRel();
+        AutoAnalyzeScheduler.Key changedTable = AutoAnalyzeScheduler.resolveTable(mycatRel.getSqlStatement(), context.getDefaultSchema());
         Collection<VertxExecuter.EachSQL> eachSQLS = VertxUpdateExecuter.explainUpdate(drdsSqlWithParams, context);
-        Future<long[]> future = VertxExecuter.simpleUpdate(context, mycatRel.isInsert(), true, mycatRel.isGlobal(), eachSQLS);
+        Future<long[]> future = VertxExecuter.simpleUpdate(context, mycatRel.isInsert(), true, mycatRel.isGlobal(), eachSQLS)
+                .onSuccess(result -> AutoAnalyzeScheduler.recordChangedRows(changedTable, result[0]));
         return future.eventually(u -> context.getTransactionSession().closeStatementState())
                 .flatMap(result -> response.sendOk(result[0], result[1]));
     }
@@ -76,6 +82,7 @@ public class ObservablePlanImplementorImpl implements PlanImplementor {
     public Future<Void> executeInsert(Plan logical) {
         Future<long[]> future;
         MycatInsertRel mycatRel = (MycatInsertRel) logical.getMycatRel();
+        AutoAnalyzeScheduler.Key changedTable = AutoAnalyzeScheduler.resolveTable(mycatRel.getSqlStatement(), context.getDefaultSchema());
         List<VertxExecuter.EachSQL> insertSqls;
         if (mycatRel.isGlobal()) {
             switch (mycatRel.sequenceType) {
@@ -99,6 +106,7 @@ public class ObservablePlanImplementorImpl implements PlanImplementor {
                 future = VertxExecuter.simpleUpdate(context, true, false, mycatRel.isGlobal(), insertSqls);
             }
         }
+        future = future.onSuccess(result -> AutoAnalyzeScheduler.recordChangedRows(changedTable, result[0]));
         return future.eventually(u -> context.getTransactionSession().closeStatementState())
                 .flatMap(result -> response.sendOk(result[0], result[1]));
     }
@@ -233,6 +241,15 @@ public class ObservablePlanImplementorImpl implements PlanImplementor {
         AsyncMycatDataContextImpl.SqlMycatDataContextImpl sqlMycatDataContext = new AsyncMycatDataContextImpl.SqlMycatDataContextImpl(context, plan.getCodeExecuterContext(), drdsSqlWithParams);
         ExecutorProvider executorProvider = MetaClusterCurrent.wrapper(ExecutorProvider.class);
 
+        MycatRel mycatRel = plan.getMycatRel();
+        if (!context.isVector() && mycatRel instanceof MycatView && !((MycatView) mycatRel).isMergeSort()) {
+            //直接下推到分片的查询不经过生成代码,把Flowable一直传到客户端写出
+            String node = mycatRel.getDigest();
+            Flowable<Object[]> rows = Flowable.defer(() -> Flowable.merge(sqlMycatDataContext.getFlowableList(node)));
+            Flowable<MysqlPayloadObject> flowable = PrepareExecutor
+                    .getMysqlPayloadObjectFlowable(rows, sqlMycatDataContext, plan.getMetaData());
+            return response.sendResultSet(mapToTimeoutFlowable(flowable, drdsSqlWithParams));
+        }
         PrepareExecutor prepare = executorProvider.prepare(plan);
         if (context.isVector()) {
             PrepareExecutor.ArrowObservable observable1 = prepare.asObservableVector(sqlMycatDataContext, plan.getMetaData());
@@ -249,6 +266,14 @@ public class ObservablePlanImplementorImpl implements PlanImplementor {
         }
     }
 
+    public <T> Flowable<T> mapToTimeoutFlowable(Flowable<T> flowable, DrdsSqlWithParams drdsSqlWithParams) {
+        Optional<Long> timeout = drdsSqlWithParams.getTimeout();
+        if (timeout.isPresent()) {
+            return flowable.timeout(timeout.get(), TimeUnit.MILLISECONDS);
+        }
+        return flowable;
+    }
+
     public <T> Observable<T> mapToTimeoutObservable(Observable<T> observable, DrdsSqlWithParams drdsSqlWithParams) {
         Optional<Long> timeout = drdsSqlWithParams.getTimeout();
         if (timeout.isPresent()) {
@@ -29,6 +29,7 @@ import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.sql.SqlAggFunction;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.ImmutableIntList;
 
 import java.util.ArrayList;
@@ -40,6 +41,9 @@ import java.util.List;
  * com.alibaba.polardbx.optimizer.core.planner.rule.CBOPushAggRule#splitAgg
  *
  * Refactoring to fit mycat
+ *
+ * 含distinct聚合时,分片按原分组键加distinct参数分组(即各分片的去重集合),
+ * 全局聚合在合并后的分组上计算distinct聚合,其余聚合照常拆分为部分状态
  */
 @Getter
 public class AggregatePushContext {
@@ -47,12 +51,20 @@ public class AggregatePushContext {
     final List<RexNode> projectExprList;
     final List<AggregateCall> globalAggregateCallList;
     final List<AggregateCall> partialAggregateCallList;
+    ImmutableBitSet partialGroupSet;
+    List<ImmutableBitSet> partialGroupSets;
+    ImmutableBitSet globalGroupSet;
+    List<ImmutableBitSet> globalGroupSets;
 
     public AggregatePushContext(Aggregate aggregate) {
         this.aggregate = aggregate;
         this.projectExprList = createProjectFromAggregate(aggregate);
         this.globalAggregateCallList = new ArrayList<>();
         this.partialAggregateCallList = new ArrayList<>();
+        this.partialGroupSet = aggregate.getGroupSet();
+        this.partialGroupSets = aggregate.getGroupSets();
+        this.globalGroupSet = aggregate.getGroupSet();
+        this.globalGroupSets = aggregate.getGroupSets();
     }
 
     public static AggregatePushContext split(Aggregate aggregate){
@@ -62,7 +74,25 @@ public class AggregatePushContext {
     }
 
     public void split() {
+        ImmutableBitSet distinctKeys = getDistinctKeys();
+        if (!distinctKeys.isEmpty()) {
+            if (aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+                throw new UnsupportedOperationException("distinct aggregate with grouping sets");
+            }
+            this.partialGroupSet = aggregate.getGroupSet().union(distinctKeys);
+            this.partialGroupSets = ImmutableList.of(partialGroupSet);
+            ImmutableBitSet.Builder builder = ImmutableBitSet.builder();
+            for (Integer key : aggregate.getGroupSet()) {
+                builder.set(partialGroupSet.indexOf(key));
+            }
+            this.globalGroupSet = builder.build();
+            this.globalGroupSets = ImmutableList.of(globalGroupSet);
+        }
         for (AggregateCall aggregateCall : aggregate.getAggCallList()) {
+            if (aggregateCall.isDistinct()) {
+                splitDistinct(aggregateCall);
+                continue;
+            }
             SqlAggFunction function = aggregateCall.getAggregation();
             switch (function.getKind()) {
                 case COUNT:
@@ -87,6 +117,52 @@ public class AggregatePushContext {
         }
     }
 
+    /**
+     * 所有distinct聚合必须使用相同的参数且没有filter
+     */
+    private ImmutableBitSet getDistinctKeys() {
+        ImmutableBitSet distinctKeys = null;
+        for (AggregateCall aggregateCall : aggregate.getAggCallList()) {
+            if (!aggregateCall.isDistinct()) {
+                continue;
+            }
+            if (aggregateCall.filterArg >= 0) {
+                throw new UnsupportedOperationException("distinct aggregate with filter");
+            }
+            ImmutableBitSet args = ImmutableBitSet.of(aggregateCall.getArgList());
+            if (distinctKeys == null) {
+                distinctKeys = args;
+            } else if (!distinctKeys.equals(args)) {
+                throw new UnsupportedOperationException("distinct aggregate with different arguments");
+            }
+        }
+        return distinctKeys == null ? ImmutableBitSet.of() : distinctKeys;
+    }
+
+    /**
+     * 下一个部分聚合在分片输出中的位置
+     */
+    private int partialRef() {
+        return partialGroupSet.cardinality() + partialAggregateCallList.size();
+    }
+
+    /**
+     * 下一个全局聚合在全局聚合输出中的位置
+     */
+    private int globalRef() {
+        return aggregate.getGroupSet().cardinality() + globalAggregateCallList.size();
+    }
+
+    private void splitDistinct(AggregateCall aggCall) {
+        List<Integer> args = new ArrayList<>(aggCall.getArgList().size());
+        for (Integer arg : aggCall.getArgList()) {
+            args.add(partialGroupSet.indexOf(arg));
+        }
+        AggregateCall globalAggCall = aggCall.copy(args, -1, aggCall.getCollation());
+        projectExprList.add(new RexInputRef(globalRef(), aggCall.getType()));
+        globalAggregateCallList.add(globalAggCall);
+    }
+
     private static List<RexNode> createProjectFromAggregate(Aggregate aggregate) {
         List<RexNode> projectList = new ArrayList<>();
         for (int i = 0; i < aggregate.getGroupSet().cardinality(); i++) {
@@ -97,11 +173,10 @@ public class AggregatePushContext {
 
     private  void splitCommon(AggregateCall aggCall) {
         AggregateCall newAggCall =
-                aggCall.copy(ImmutableIntList.of(aggregate.getGroupSet().cardinality() + partialAggregateCallList.size()), -1, aggCall.getCollation());
+                aggCall.copy(ImmutableIntList.of(partialRef()), -1, aggCall.getCollation());
+        projectExprList.add(new RexInputRef(globalRef(), aggCall.getType()));
         globalAggregateCallList.add(newAggCall);
 
-        projectExprList.add(new RexInputRef(aggregate.getGroupSet().cardinality() + partialAggregateCallList.size(), aggCall.getType()));
-
         partialAggregateCallList.add(aggCall);
     }
 
@@ -117,8 +192,9 @@ public class AggregatePushContext {
                 aggregateCall.getType(),
                 "PartialSum");
 
+        int globalSumRef = globalRef();
         AggregateCall globalSumAggCall =
-                partialSumAggCall.copy(ImmutableIntList.of(aggregate.getGroupSet().cardinality() + partialAggregateCallList.size()),
+                partialSumAggCall.copy(ImmutableIntList.of(partialRef()),
                         -1,
                         aggregate.getTraitSet().getCollation());
 
@@ -140,8 +216,8 @@ public class AggregatePushContext {
                 partialCountAggCall.isDistinct(),
                 partialCountAggCall.isApproximate(),
                 false,
-                ImmutableIntList.of(aggregate.getGroupSet().cardinality() + partialAggregateCallList.size()),
-                partialCountAggCall.filterArg,
+                ImmutableIntList.of(partialRef()),
+                -1,
                 aggregateCall.getCollation(),
                 partialCountAggCall.getType(),
                 "GlobalSumCount");
@@ -149,9 +225,9 @@ public class AggregatePushContext {
         partialAggregateCallList.add(partialCountAggCall);
 
         RexInputRef partialSumRef =
-                new RexInputRef(globalSumAggCall.getArgList().get(0), partialSumAggCall.getType());
+                new RexInputRef(globalSumRef, partialSumAggCall.getType());
         RexInputRef partialCountRef =
-                new RexInputRef(globalCountAggCall.getArgList().get(0), partialCountAggCall.getType());
+                new RexInputRef(globalSumRef + 1, partialCountAggCall.getType());
 
         RexBuilder rexBuilder = aggregate.getCluster().getRexBuilder();
         RexCall divide = (RexCall) rexBuilder.makeCall(SqlStdOperatorTable.DIVIDE,
@@ -173,17 +249,17 @@ public class AggregatePushContext {
     private  void splitCount(AggregateCall aggCall) {
         AggregateCall sumAggregateCall = AggregateCall.create(
                 SqlStdOperatorTable.SUM0,
-                aggCall.isDistinct(),
+                false,
                 aggCall.isApproximate(),
                 false,
-                ImmutableList.of(aggregate.getGroupSet().cardinality() + partialAggregateCallList.size()),
-                aggCall.filterArg,
+                ImmutableList.of(partialRef()),
+                -1,
                 aggCall.getCollation(),
                 aggCall.getType(),
                 aggCall.getName());
 
+        projectExprList.add(new RexInputRef(globalRef(), aggCall.getType()));
         globalAggregateCallList.add(sumAggregateCall);
-        projectExprList.add(new RexInputRef(aggregate.getGroupSet().cardinality() + partialAggregateCallList.size(), aggCall.getType()));
         partialAggregateCallList.add(aggCall);
     }
-}
\ No newline at end of file
+}
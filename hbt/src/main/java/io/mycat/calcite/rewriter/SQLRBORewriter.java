@@ -623,13 +623,13 @@ public class SQLRBORewriter extends RelShuttleImpl {
             MycatView newView = viewNode.changeTo(
                     LogicalAggregate.create(viewNode.getRelNode(),
                             aggregate.getHints(),
-                            aggregate.getGroupSet(),
-                            aggregate.getGroupSets(),
+                            aggregateContext.getPartialGroupSet(),
+                            aggregateContext.getPartialGroupSets(),
                             aggregateContext.getPartialAggregateCallList()));
 
             LogicalAggregate globalAggregateRelNode = LogicalAggregate.create(newView, aggregate.getHints(),
-                    aggregate.getGroupSet(),
-                    aggregate.getGroupSets(),
+                    aggregateContext.getGlobalGroupSet(),
+                    aggregateContext.getGlobalGroupSets(),
                     aggregateContext.getGlobalAggregateCallList());
 
             MycatProject projectRelNode = MycatProject.create(globalAggregateRelNode,
@@ -7,6 +7,7 @@ import lombok.ToString;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
 
 @Data
 @ToString
@@ -19,6 +20,11 @@ public class Baseline {
     Set<BaselinePlan> planList;
     BaselinePlan fixPlan;
     ExtraConstraint extraConstraint;
+    /**
+     * 内存中的命中次数,不持久化
+     */
+    @ToString.Exclude
+    final transient LongAdder hitCount = new LongAdder();
 
     public Baseline(long baselineId, String sql, Constraint constraint, Set<BaselinePlan> planList, BaselinePlan fixPlan, ExtraConstraint extraConstraint) {
         this.baselineId = baselineId;
@@ -59,6 +59,14 @@ public class DbPlanManagerPersistorImpl implements PlanManagerPersistor {
                         "  PRIMARY KEY (`id`),\n" +
                         "  KEY `id` (`id`)\n" +
                         ") ENGINE=InnoDB AUTO_INCREMENT=0 DEFAULT CHARSET=utf8mb4");
+                JdbcUtils.execute(connection.getRawConnection(), "CREATE TABLE IF  NOT EXISTS mycat.`spm_plan_snapshot` (\n" +
+                        "  `plan_id` bigint(22) NOT NULL,\n" +
+                        "  `baseline_id` bigint(22) DEFAULT NULL,\n" +
+                        "  `fingerprint` varchar(64) DEFAULT NULL,\n" +
+                        "  `code` longtext,\n" +
+                        "  `hit_count` bigint(22) DEFAULT 0,\n" +
+                        "  PRIMARY KEY (`plan_id`)\n" +
+                        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
             } catch (Exception e) {
                 log.error("", e);
             }
@@ -125,6 +133,7 @@ public class DbPlanManagerPersistorImpl implements PlanManagerPersistor {
                 try (DefaultConnection connection = jdbcConnectionManager.getConnection(MetadataManager.getPrototype());) {
                     JdbcUtils.executeUpdate(connection.getRawConnection(), "delete  FROM mycat.spm_baseline where id = ?", Arrays.asList(baseline));
                     JdbcUtils.executeUpdate(connection.getRawConnection(), "delete  FROM mycat.spm_plan where baseline_id = ?", Arrays.asList(baseline));
+                    JdbcUtils.executeUpdate(connection.getRawConnection(), "delete  FROM mycat.spm_plan_snapshot where baseline_id = ?", Arrays.asList(baseline));
                 }
             }
         });
@@ -247,6 +256,7 @@ public class DbPlanManagerPersistorImpl implements PlanManagerPersistor {
         try (DefaultConnection connection = jdbcConnectionManager.getConnection(MetadataManager.getPrototype());) {
             JdbcUtils.execute(connection.getRawConnection(), "truncate mycat.spm_plan", Arrays.asList());
             JdbcUtils.execute(connection.getRawConnection(), "truncate mycat.spm_baseline", Arrays.asList());
+            JdbcUtils.execute(connection.getRawConnection(), "truncate mycat.spm_plan_snapshot", Arrays.asList());
         }
     }
 
@@ -345,6 +355,7 @@ public class DbPlanManagerPersistorImpl implements PlanManagerPersistor {
         try (DefaultConnection connection = manager.getConnection(MetadataManager.getPrototype());) {
             Connection rawConnection = connection.getRawConnection();
             JdbcUtils.execute(rawConnection, "delete from mycat.spm_plan where id = ?", Arrays.asList(planId));
+            JdbcUtils.execute(rawConnection, "delete from mycat.spm_plan_snapshot where plan_id = ?", Arrays.asList(planId));
             JdbcUtils.execute(rawConnection, "update  mycat.spm_baseline set  fix_plan_id = null where fix_plan_id = ?", Arrays.asList(planId));
         }
     }
@@ -389,6 +400,59 @@ public class DbPlanManagerPersistorImpl implements PlanManagerPersistor {
         }
     }
 
+    @Override
+    @SneakyThrows
+    public synchronized void saveSnapshot(Collection<PlanSnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        Optional<JdbcConnectionManager> managerOptional = getManagerOptional();
+        if (!managerOptional.isPresent()) {
+            return;
+        }
+        JdbcConnectionManager manager = managerOptional.get();
+        try (DefaultConnection connection = manager.getConnection(MetadataManager.getPrototype());) {
+            Connection rawConnection = connection.getRawConnection();
+            rawConnection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = rawConnection
+                    .prepareStatement("replace mycat.spm_plan_snapshot (`plan_id`,`baseline_id`,`fingerprint`,`code`,`hit_count`) values(?,?,?,?,?)");) {
+                for (PlanSnapshot snapshot : snapshots) {
+                    preparedStatement.setObject(1, snapshot.getPlanId());
+                    preparedStatement.setObject(2, snapshot.getBaselineId());
+                    preparedStatement.setObject(3, snapshot.getFingerprint());
+                    preparedStatement.setObject(4, snapshot.getCode());
+                    preparedStatement.setObject(5, snapshot.getHitCount());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+            rawConnection.commit();
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public synchronized Map<Long, PlanSnapshot> loadAllSnapshot() {
+        Optional<JdbcConnectionManager> managerOptional = getManagerOptional();
+        if (!managerOptional.isPresent()) {
+            return Collections.emptyMap();
+        }
+        JdbcConnectionManager manager = managerOptional.get();
+        try (DefaultConnection connection = manager.getConnection(MetadataManager.getPrototype());) {
+            List<Map<String, Object>> maps = JdbcUtils.executeQuery(connection.getRawConnection(), "SELECT * FROM mycat.spm_plan_snapshot", Collections.emptyList());
+            Map<Long, PlanSnapshot> res = new HashMap<>();
+            for (Map<String, Object> map : maps) {
+                long planId = ((Number) map.get("plan_id")).longValue();
+                long baselineId = ((Number) map.get("baseline_id")).longValue();
+                String fingerprint = (String) map.get("fingerprint");
+                String code = (String) map.get("code");
+                long hitCount = Optional.ofNullable((Number) map.get("hit_count")).map(Number::longValue).orElse(0L);
+                res.put(planId, new PlanSnapshot(planId, baselineId, fingerprint, code, hitCount));
+            }
+            return res;
+        }
+    }
+
     public static Optional<JdbcConnectionManager> getManagerOptional() {
         if (MetaClusterCurrent.exist(JdbcConnectionManager.class)) {
             return Optional.of(MetaClusterCurrent.wrapper(JdbcConnectionManager.class));
@@ -5,9 +5,14 @@ import com.alibaba.druid.sql.ast.SQLCommentHint;
 import com.alibaba.druid.sql.ast.SQLStatement;
 import com.alibaba.druid.sql.ast.statement.SQLExprTableSource;
 import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.mycat.*;
+import io.mycat.calcite.CodeContext;
 import io.mycat.calcite.CodeExecuterContext;
 import io.mycat.calcite.DrdsRunnerHelper;
 import io.mycat.calcite.MycatRel;
@@ -22,18 +27,76 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class MemPlanCache implements QueryPlanCache {
+    /**
+     * 计划缓存的估算字节上限,超出后按LRU淘汰未固定的baseline
+     */
+    public static long MAX_WEIGHT_BYTES = 64L * 1024 * 1024;
+    /**
+     * 编译后的RelNode对象图相对于json文本的膨胀系数
+     */
+    private static final int REL_EXPANSION = 4;
+
     private PlanIds planIds = new PlanIds();
     private PlanManagerPersistor persistor;
-    private ConcurrentHashMap<Constraint, Baseline> map = new ConcurrentHashMap<>();
+    private final Cache<Constraint, Baseline> cache;
+    private final ConcurrentMap<Constraint, Baseline> map;
+    /**
+     * 影响全部计划的操作(清空,全部重新加载)的版本号
+     */
+    private final AtomicLong globalVersion = new AtomicLong();
+    /**
+     * 按表记录的版本号,只让涉及该表的预处理语句失效
+     */
+    private final ConcurrentMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
     private final static Logger log = LoggerFactory.getLogger(MemPlanCache.class);
 
     public MemPlanCache(PlanManagerPersistor persistor) {
         this.persistor = persistor;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(MAX_WEIGHT_BYTES)
+                .weigher((Weigher<Constraint, Baseline>) (key, baseline) -> weigh(baseline))
+                .removalListener(notification -> {
+                    if (notification.wasEvicted()) {
+                        bumpVersion((Baseline) notification.getValue());
+                    }
+                })
+                .recordStats()
+                .build();
+        this.map = cache.asMap();
+    }
+
+    /**
+     * 估算baseline占用的字节数,固定计划的baseline权重为0,不会被淘汰
+     */
+    static int weigh(Baseline baseline) {
+        if (baseline.getFixPlan() != null) {
+            return 0;
+        }
+        long size = 256 + 2L * length(baseline.getSql());
+        for (BaselinePlan plan : baseline.getPlanList()) {
+            size += 128 + 2L * (length(plan.getSql()) + length(plan.getRel()));
+            Object attach = plan.attach;
+            if (attach instanceof CodeExecuterContext) {
+                size += 2L * REL_EXPANSION * length(plan.getRel());
+                CodeContext codeContext = ((CodeExecuterContext) attach).getCodeContext();
+                if (codeContext != null) {
+                    size += 2L * length(codeContext.getCode());
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
     }
 
     public void init() {
@@ -46,30 +109,20 @@ public class MemPlanCache implements QueryPlanCache {
 
     public Baseline getBaseline(DrdsSql baseLineSql) {
         Constraint constraint = baseLineSql.constraint();
-        return map.computeIfAbsent(constraint, s -> Optional.<Baseline>empty()
-                .orElseGet(() -> {
-                    SQLStatement parameterizedStatement = baseLineSql.getParameterizedStatement();
-                    List<String> uniqueNames = new LinkedList<>();
-                    parameterizedStatement.accept(new MySqlASTVisitorAdapter() {
-                        @Override
-                        public boolean visit(SQLCommentHint x) {
-                            return true;
-                        }
-
-                        @Override
-                        public boolean visit(SQLExprTableSource x) {
-                            String tableName = x.getTableName();
-                            if (tableName != null) {
-                                String schema = x.getSchema();
-                                uniqueNames.add(SQLUtils.normalize(schema).toLowerCase() + "." + SQLUtils.normalize(tableName).toLowerCase());
-                            }
-                            return super.visit(x);
-                        }
-                    });
-                    Baseline baseline = new Baseline(planIds.nextBaselineId(), parameterizedStatement.toString(), constraint, null,
-                            new ExtraConstraint(uniqueNames));
-                    return baseline;
-                }));
+        Baseline res;
+        try {
+            res = cache.get(constraint, () -> {
+                SQLStatement parameterizedStatement = baseLineSql.getParameterizedStatement();
+                List<String> uniqueNames = getUniqueTables(parameterizedStatement);
+                Baseline baseline = new Baseline(planIds.nextBaselineId(), parameterizedStatement.toString(), constraint, null,
+                        new ExtraConstraint(uniqueNames));
+                return baseline;
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        res.getHitCount().increment();
+        return res;
     }
 
     public PlanResultSet saveBaselinePlan(boolean fix, boolean persist, Baseline baseline, BaselinePlan newBaselinePlan) {
@@ -90,6 +143,7 @@ public class MemPlanCache implements QueryPlanCache {
         baseline.getPlanList().add(newBaselinePlan);
         if (fix) {
             baseline.setFixPlan(newBaselinePlan);
+            bumpVersion(baseline);
         }
         Constraint constraint = baseline.getConstraint();
         map.put(constraint, baseline);
@@ -111,21 +165,14 @@ public class MemPlanCache implements QueryPlanCache {
 
     @SneakyThrows
     public  CodeExecuterContext getCodeExecuterContext(Baseline baseline,BaselinePlan plan) {
-        boolean forUpdate = DrdsSql.isForUpdate(plan.getSql());
         Object attach = plan.attach;
 
         if (attach != null) {
             return (CodeExecuterContext) attach;
         }
-        String rel = plan.getRel();
-
         synchronized (plan) {
             try {
-                ImmutableMap<RexNode, RexNode> constantMap = getConstantMap(baseline);
-                RelJsonReader relJsonReader = new RelJsonReader(DrdsSqlCompiler.newCluster(),   MetaClusterCurrent.wrapper(DrdsSqlCompiler.class).newCalciteCatalogReader(), null);
-                MycatRel mycatRel = (MycatRel) relJsonReader.read(rel);
-                CodeExecuterContext codeExecuterContext = DrdsExecutorCompiler.getCodeExecuterContext(constantMap, mycatRel, forUpdate);
-                plan.setAttach(codeExecuterContext);
+                compile(baseline, plan, null);
             } catch (Throwable throwable) {
                 log.error("", throwable);
             }
@@ -134,6 +181,17 @@ public class MemPlanCache implements QueryPlanCache {
         return (CodeExecuterContext) plan.attach;
     }
 
+    @SneakyThrows
+    private CodeExecuterContext compile(Baseline baseline, BaselinePlan plan, CodeContext codeContext) {
+        boolean forUpdate = DrdsSql.isForUpdate(plan.getSql());
+        ImmutableMap<RexNode, RexNode> constantMap = getConstantMap(baseline);
+        RelJsonReader relJsonReader = new RelJsonReader(DrdsSqlCompiler.newCluster(),   MetaClusterCurrent.wrapper(DrdsSqlCompiler.class).newCalciteCatalogReader(), null);
+        MycatRel mycatRel = (MycatRel) relJsonReader.read(plan.getRel());
+        CodeExecuterContext codeExecuterContext = DrdsExecutorCompiler.getCodeExecuterContext(constantMap, mycatRel, forUpdate, codeContext);
+        plan.setAttach(codeExecuterContext);
+        return codeExecuterContext;
+    }
+
     private ImmutableMap<RexNode, RexNode> getConstantMap(Baseline baseline) {
         DrdsSqlCompiler drdsSqlCompiler = MetaClusterCurrent.wrapper(DrdsSqlCompiler.class);
 
@@ -210,6 +268,38 @@ public class MemPlanCache implements QueryPlanCache {
 
     public void clearCache() {
         map.clear();
+        globalVersion.incrementAndGet();
+    }
+
+    @Override
+    public void invalidate(String schemaName, String tableName) {
+        String uniqueName = schemaName.toLowerCase() + "." + tableName.toLowerCase();
+        map.values().removeIf(baseline -> baseline.getFixPlan() == null
+                && baseline.getExtraConstraint() != null
+                && baseline.getExtraConstraint().getTables().contains(uniqueName));
+        bumpVersion(uniqueName);
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public long weight() {
+        long sum = 0;
+        for (Baseline baseline : map.values()) {
+            sum += weigh(baseline);
+        }
+        return sum;
+    }
+
+    @Override
+    public List<Baseline> hotList(int limit) {
+        return map.values().stream()
+                .sorted(Comparator.comparingLong((Baseline b) -> b.getHitCount().sum()).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -218,6 +308,7 @@ public class MemPlanCache implements QueryPlanCache {
             @Override
             public void accept(Baseline baseline) {
                 map.put(baseline.getConstraint(), baseline);
+                bumpVersion(baseline);
             }
         });
     }
@@ -232,6 +323,8 @@ public class MemPlanCache implements QueryPlanCache {
                     @Override
                     public void accept(Baseline baseline) {
                         baseline.replace(baselinePlan);
+                        map.put(baseline.getConstraint(), baseline);
+                        bumpVersion(baseline);
                     }
                 });
             }
@@ -257,7 +350,7 @@ public class MemPlanCache implements QueryPlanCache {
     public void clearBaseline(long baselineId) {
         map.values().stream().filter(i -> i.getBaselineId() == baselineId).findFirst().ifPresent(baseline -> {
             Baseline remove = map.remove(baseline.getConstraint());
-
+            bumpVersion(baseline);
         });
     }
 
@@ -267,6 +360,7 @@ public class MemPlanCache implements QueryPlanCache {
             for (BaselinePlan baselinePlan : baseline.getPlanList()) {
                 if (baselinePlan.getId() == value) {
                     baseline.removePlanById(value);
+                    bumpVersion(baseline);
                 }
             }
         }
@@ -293,6 +387,7 @@ public class MemPlanCache implements QueryPlanCache {
     @Override
     public void loadBaselines() {
         this.map.putAll(persistor.loadAllBaseline());
+        globalVersion.incrementAndGet();
         IOExecutor ioExecutor = MetaClusterCurrent.wrapper(IOExecutor.class);
         for (Baseline baseline : new ArrayList<>(this.map.values())) {
             for (BaselinePlan baselinePlan : baseline.getPlanList()) {
@@ -308,8 +403,139 @@ public class MemPlanCache implements QueryPlanCache {
         }
     }
 
+    @Override
+    public int saveSnapshot(int limit) {
+        List<Baseline> baselines = hotList(limit);
+        if (baselines.isEmpty()) {
+            return 0;
+        }
+        persistor.saveBaseline(baselines);
+        List<PlanSnapshot> snapshots = new ArrayList<>();
+        for (Baseline baseline : baselines) {
+            String fingerprint = PlanSnapshot.fingerprint(baseline.getExtraConstraint());
+            if (fingerprint == null) {
+                continue;
+            }
+            for (BaselinePlan plan : baseline.getPlanList()) {
+                String code = null;
+                Object attach = plan.attach;
+                if (attach instanceof CodeExecuterContext) {
+                    CodeExecuterContext codeExecuterContext = (CodeExecuterContext) attach;
+                    //stash变量是运行期对象,无法随代码一起恢复
+                    if (codeExecuterContext.getVarContext().isEmpty() && codeExecuterContext.getCodeContext() != null) {
+                        code = codeExecuterContext.getCodeContext().toJson();
+                    }
+                }
+                snapshots.add(new PlanSnapshot(plan.getId(), baseline.getBaselineId(), fingerprint, code, baseline.getHitCount().sum()));
+            }
+        }
+        persistor.saveSnapshot(snapshots);
+        return snapshots.size();
+    }
+
+    @Override
+    public int loadSnapshot(int limit) {
+        Map<Long, PlanSnapshot> snapshots = persistor.loadAllSnapshot();
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> hitCounts = new HashMap<>();
+        for (PlanSnapshot snapshot : snapshots.values()) {
+            hitCounts.merge(snapshot.getBaselineId(), snapshot.getHitCount(), Math::max);
+        }
+        List<Baseline> baselines = persistor.loadAllBaseline().values().stream()
+                .filter(b -> hitCounts.containsKey(b.getBaselineId()))
+                .sorted(Comparator.comparingLong((Baseline b) -> hitCounts.get(b.getBaselineId())).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+        int count = 0;
+        for (Baseline baseline : baselines) {
+            if (map.containsKey(baseline.getConstraint())) {
+                continue;
+            }
+            String fingerprint = PlanSnapshot.fingerprint(baseline.getExtraConstraint());
+            for (BaselinePlan plan : baseline.getPlanList()) {
+                PlanSnapshot snapshot = snapshots.get(plan.getId());
+                boolean fixed = baseline.getFixPlan() != null && baseline.getFixPlan().getId() == plan.getId();
+                boolean stale = snapshot == null || fingerprint == null || !fingerprint.equals(snapshot.getFingerprint());
+                if (!stale) {
+                    try {
+                        compile(baseline, plan, snapshot.getCode() == null ? null : CodeContext.fromJson(snapshot.getCode()));
+                        count++;
+                        continue;
+                    } catch (Throwable throwable) {
+                        log.warn("load plan snapshot fail, planId:{}", plan.getId(), throwable);
+                    }
+                }
+                //元数据已变化,固定计划在首次使用时按rel重新编译,其余计划丢弃后重新优化
+                if (!fixed) {
+                    baseline.getPlanList().remove(plan);
+                }
+            }
+            baseline.getHitCount().add(hitCounts.get(baseline.getBaselineId()));
+            map.put(baseline.getConstraint(), baseline);
+        }
+        return count;
+    }
+
     public void unFix(long baselineId) {
-        map.values().stream().filter(b -> b.baselineId == baselineId).findFirst().ifPresent(baseline -> baseline.setFixPlan(null));
+        map.values().stream().filter(b -> b.baselineId == baselineId).findFirst().ifPresent(baseline -> {
+            baseline.setFixPlan(null);
+            map.put(baseline.getConstraint(), baseline);
+            bumpVersion(baseline);
+        });
+    }
+
+    @Override
+    public long version(Collection<String> uniqueTables) {
+        //各版本号只增不减,和不变即说明都没有变化
+        long sum = globalVersion.get();
+        for (String uniqueTable : uniqueTables) {
+            AtomicLong tableVersion = tableVersions.get(uniqueTable);
+            if (tableVersion != null) {
+                sum += tableVersion.get();
+            }
+        }
+        return sum;
+    }
+
+    private void bumpVersion(Baseline baseline) {
+        ExtraConstraint extraConstraint = baseline.getExtraConstraint();
+        if (extraConstraint == null) {
+            globalVersion.incrementAndGet();
+            return;
+        }
+        for (String uniqueTable : extraConstraint.getTables()) {
+            bumpVersion(uniqueTable);
+        }
+    }
+
+    private void bumpVersion(String uniqueTable) {
+        tableVersions.computeIfAbsent(uniqueTable, s -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 语句引用的表,格式与ExtraConstraint一致
+     */
+    public static List<String> getUniqueTables(SQLStatement statement) {
+        List<String> uniqueNames = new LinkedList<>();
+        statement.accept(new MySqlASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLCommentHint x) {
+                return true;
+            }
+
+            @Override
+            public boolean visit(SQLExprTableSource x) {
+                String tableName = x.getTableName();
+                if (tableName != null) {
+                    String schema = x.getSchema();
+                    uniqueNames.add(SQLUtils.normalize(schema).toLowerCase() + "." + SQLUtils.normalize(tableName).toLowerCase());
+                }
+                return super.visit(x);
+            }
+        });
+        return uniqueNames;
     }
 
     public Baseline getBaseline(long baselineId) {
@@ -30,12 +30,15 @@ import io.mycat.calcite.physical.MycatInsertRel;
 import io.mycat.calcite.physical.MycatSQLTableLookup;
 import io.mycat.calcite.physical.MycatUpdateRel;
 import io.mycat.calcite.plan.ColocatedPlanner;
+import io.mycat.calcite.rewriter.Distribution;
 import io.mycat.calcite.resultset.CalciteRowMetaData;
 import io.mycat.calcite.table.MycatTransientSQLTableScan;
+import io.mycat.ratelimiter.AdmissionController;
 import io.mycat.vertx.VertxExecuter;
 import io.mycat.vertx.VertxUpdateExecuter;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelShuttleImpl;
+import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.util.SqlString;
@@ -50,6 +53,8 @@ public class PlanImpl implements Plan {
     private final Type type;
     private final CodeExecuterContext executerContext;
     public final List<String> aliasList;
+    private AdmissionController.HeavyQueryType heavyQueryType;
+    private boolean heavyQueryTypeResolved;
     public static PlanImpl of(MycatRel relNode,
                               CodeExecuterContext executerContext,
                               List<String> aliasList) {
@@ -203,6 +208,53 @@ public class PlanImpl implements Plan {
         return res;
     }
 
+    /**
+     * 准入控制的重查询类别,没有条件的分片表扫描视为全表扫描,
+     * 在mycat中执行且涉及分片表的join视为跨分片join
+     */
+    public AdmissionController.HeavyQueryType getHeavyQueryType() {
+        if (!heavyQueryTypeResolved) {
+            AdmissionController.HeavyQueryType res = null;
+            if (type == Type.PHYSICAL) {
+                boolean[] flags = new boolean[3];
+                collectHeavyFlags(relNode, flags);
+                if (flags[0] && flags[1]) {
+                    res = AdmissionController.HeavyQueryType.CROSS_SHARD_JOIN;
+                } else if (flags[2]) {
+                    res = AdmissionController.HeavyQueryType.FULL_SCAN;
+                }
+            }
+            heavyQueryType = res;
+            heavyQueryTypeResolved = true;
+        }
+        return heavyQueryType;
+    }
+
+    /**
+     * @param flags join,分片表,分片表全表扫描
+     */
+    private static void collectHeavyFlags(RelNode relNode, boolean[] flags) {
+        if (relNode instanceof MycatView) {
+            MycatView view = (MycatView) relNode;
+            if (view.getDistribution().type() == Distribution.Type.SHARDING) {
+                flags[1] = true;
+                if (!view.getCondition().isPresent()) {
+                    flags[2] = true;
+                }
+            }
+            return;
+        }
+        if (relNode instanceof Join || relNode instanceof MycatSQLTableLookup) {
+            flags[0] = true;
+        }
+        if (relNode instanceof MycatSQLTableLookup) {
+            collectHeavyFlags(((MycatSQLTableLookup) relNode).getRight(), flags);
+        }
+        for (RelNode input : relNode.getInputs()) {
+            collectHeavyFlags(input, flags);
+        }
+    }
+
     @Override
     public MycatRowMetaData getMetaData() {
         MycatRel mycatRel = (MycatRel) relNode;
@@ -32,4 +32,8 @@ interface PlanManagerPersistor {
     Optional<Baseline> loadBaselineByBaseLineSql(String baseLineSql,Constraint constraint );
 
     void deleteBaselineByExtraConstraint(List<String> infos);
+
+    void saveSnapshot(Collection<PlanSnapshot> snapshots);
+
+    Map<Long, PlanSnapshot> loadAllSnapshot();
 }
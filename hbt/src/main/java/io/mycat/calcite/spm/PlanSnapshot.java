@@ -0,0 +1,99 @@
+package io.mycat.calcite.spm;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.MetadataManager;
+import io.mycat.Partition;
+import io.mycat.SimpleColumnInfo;
+import io.mycat.TableHandler;
+import io.mycat.calcite.table.GlobalTableHandler;
+import io.mycat.calcite.table.NormalTableHandler;
+import io.mycat.router.ShardingTableHandler;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+
+/**
+ * 已优化执行计划的快照,保存生成的代码和相关表结构的指纹,
+ * 重启后指纹一致的计划直接复用,不再经过优化器和代码生成
+ */
+@Data
+@AllArgsConstructor
+public class PlanSnapshot {
+    long planId;
+    long baselineId;
+    String fingerprint;
+    /**
+     * CodeContext的json,生成代码依赖stash变量时为null
+     */
+    String code;
+    long hitCount;
+
+    /**
+     * 根据baseline引用的表的定义计算指纹,任一表不存在时返回null
+     */
+    public static String fingerprint(ExtraConstraint extraConstraint) {
+        if (extraConstraint == null || !MetaClusterCurrent.exist(MetadataManager.class)) {
+            return null;
+        }
+        MetadataManager metadataManager = MetaClusterCurrent.wrapper(MetadataManager.class);
+        return fingerprint(extraConstraint.getTables(), metadataManager::getTable);
+    }
+
+    static String fingerprint(List<String> uniqueNames, BiFunction<String, String, TableHandler> tableLookup) {
+        List<String> tables = new ArrayList<>(uniqueNames);
+        Collections.sort(tables);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String uniqueName : tables) {
+            String[] split = uniqueName.split("\\.", 2);
+            if (split.length != 2) {
+                return null;
+            }
+            TableHandler tableHandler = tableLookup.apply(split[0], split[1]);
+            if (tableHandler == null) {
+                return null;
+            }
+            hasher.putString(uniqueName, StandardCharsets.UTF_8);
+            hasher.putString(tableHandler.getType().name(), StandardCharsets.UTF_8);
+            for (SimpleColumnInfo column : tableHandler.getColumns()) {
+                hasher.putString(column.getColumnName(), StandardCharsets.UTF_8);
+                hasher.putString(column.getJdbcType().name(), StandardCharsets.UTF_8);
+                hasher.putBoolean(column.isNullable());
+                hasher.putBoolean(column.isPrimaryKey());
+            }
+            if (tableHandler.getIndexes() != null) {
+                hasher.putString(String.valueOf(new TreeSet<>(tableHandler.getIndexes().keySet())), StandardCharsets.UTF_8);
+            }
+            if (tableHandler instanceof ShardingTableHandler) {
+                ShardingTableHandler shardingTableHandler = (ShardingTableHandler) tableHandler;
+                hasher.putString(String.valueOf(shardingTableHandler.function().getErUniqueID()), StandardCharsets.UTF_8);
+                putPartitions(hasher, shardingTableHandler.dataNodes());
+            } else if (tableHandler instanceof GlobalTableHandler) {
+                putPartitions(hasher, ((GlobalTableHandler) tableHandler).getGlobalDataNode());
+            } else if (tableHandler instanceof NormalTableHandler) {
+                putPartitions(hasher, Collections.singletonList(((NormalTableHandler) tableHandler).getDataNode()));
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putPartitions(Hasher hasher, List<Partition> partitions) {
+        if (partitions == null) {
+            return;
+        }
+        for (Partition partition : partitions) {
+            if (partition == null) {
+                continue;
+            }
+            hasher.putString(partition.getTargetName(), StandardCharsets.UTF_8);
+            hasher.putString(partition.getTargetSchemaTable(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.mycat.calcite.spm;
+
+import io.mycat.IOExecutor;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.ScheduleUtil;
+import io.vertx.core.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 定期把最热的计划写入快照,启动时批量加载,避免滚动发布后的冷启动重新优化
+ */
+public class PlanSnapshotScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlanSnapshotScheduler.class);
+    public static boolean ENABLE = false;
+    public static int LIMIT = 1000;
+    /**
+     * 启动时等待快照加载的最长时间,超时后不再等待,加载继续在后台进行
+     */
+    public static long LOAD_TIMEOUT_SECONDS = 60;
+
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+    private static ScheduledFuture<?> scheduledFuture;
+
+    public static synchronized void start(long period, TimeUnit unit) {
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(false);
+        }
+        scheduledFuture = ScheduleUtil.getTimer().scheduleAtFixedRate(PlanSnapshotScheduler::save, period, period, unit);
+    }
+
+    public static void save() {
+        if (!ENABLE || !MetaClusterCurrent.exist(QueryPlanner.class)) {
+            return;
+        }
+        if (!RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        getIOExecutor().executeBlocking(promise -> {
+            try {
+                int count = MetaClusterCurrent.wrapper(QueryPlanner.class).getPlanCache().saveSnapshot(LIMIT);
+                LOGGER.debug("save plan snapshot:{}", count);
+            } catch (Throwable throwable) {
+                LOGGER.error("save plan snapshot fail", throwable);
+            } finally {
+                promise.tryComplete();
+            }
+        }).onComplete(event -> RUNNING.set(false));
+    }
+
+    /**
+     * 启动时调用,阻塞到快照加载完成或者超时,保证开始接受连接前计划已经预热
+     */
+    public static void load() {
+        if (!ENABLE || !MetaClusterCurrent.exist(QueryPlanner.class)) {
+            return;
+        }
+        QueryPlanCache planCache = MetaClusterCurrent.wrapper(QueryPlanner.class).getPlanCache();
+        Future<Void> future = getIOExecutor().executeBlocking(promise -> {
+            try {
+                long startTime = System.currentTimeMillis();
+                int count = planCache.loadSnapshot(LIMIT);
+                LOGGER.info("load plan snapshot:{} cost:{}ms", count, System.currentTimeMillis() - startTime);
+            } catch (Throwable throwable) {
+                LOGGER.error("load plan snapshot fail", throwable);
+            } finally {
+                promise.tryComplete();
+            }
+        });
+        try {
+            future.toCompletionStage().toCompletableFuture().get(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("load plan snapshot not finished in {}s, continue starting", LOAD_TIMEOUT_SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("load plan snapshot fail", e);
+        }
+    }
+
+    private static IOExecutor getIOExecutor() {
+        return MetaClusterCurrent.exist(IOExecutor.class) ? MetaClusterCurrent.wrapper(IOExecutor.class) : IOExecutor.DEFAULT;
+    }
+}
@@ -0,0 +1,238 @@
+package io.mycat.calcite.spm;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLReplaceable;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
+import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+import com.alibaba.druid.sql.parser.SQLParserUtils;
+import com.alibaba.druid.sql.parser.SQLType;
+import io.mycat.BindValue;
+import io.mycat.DrdsSqlWithParams;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.MetadataManager;
+import io.mycat.MycatDataContext;
+import io.mycat.calcite.DrdsRunnerHelper;
+import io.mycat.prototypeserver.mysql.HackRouter;
+import lombok.Getter;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.commons.lang3.mutable.MutableInt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预处理语句(COM_STMT_PREPARE)绑定的执行计划.
+ * 准备时把?替换为标记值参数化一次,记录参数化后每个参数位置对应的绑定参数下标,
+ * 执行时只需按下标填入绑定参数,按参数类型直接取已解析的计划,不再解析sql和查找baseline.
+ * 元数据,涉及的表的计划版本或默认库变化后失效,需要重新准备
+ */
+@Getter
+public class PreparedPlan {
+    private final static Logger LOGGER = LoggerFactory.getLogger(PreparedPlan.class);
+    public static boolean ENABLE = true;
+    /**
+     * 每个预处理语句最多缓存的参数类型组合数
+     */
+    public static int MAX_TYPE_VARIANTS = 8;
+    private static final String MARKER = "\u0000mycat_prepared_param_";
+
+    private final SQLStatement statement;
+    private final String sql;
+    private final SQLType sqlType;
+    private final String defaultSchema;
+    private final MetadataManager metadataManager;
+    private final QueryPlanner queryPlanner;
+    /**
+     * 语句涉及的表,只有这些表相关的计划变化才使该语句失效
+     */
+    private final List<String> uniqueTables;
+    private final long version;
+    /**
+     * 为null时该语句不走快速路径
+     */
+    private final DrdsSqlWithParams template;
+    private final int[] bindIndexes;
+    private final Map<List<SqlTypeName>, PlanImpl> plans = new ConcurrentHashMap<>();
+    private final Set<List<SqlTypeName>> rejectedTypes = ConcurrentHashMap.newKeySet();
+
+    PreparedPlan(SQLStatement statement, String defaultSchema, DrdsSqlWithParams template, int[] bindIndexes, List<String> uniqueTables) {
+        this.statement = statement;
+        this.sql = statement.toString();
+        this.sqlType = SQLParserUtils.getSQLType(sql, DbType.mysql);
+        this.defaultSchema = defaultSchema;
+        this.metadataManager = MetaClusterCurrent.wrapper(MetadataManager.class);
+        this.queryPlanner = MetaClusterCurrent.wrapper(QueryPlanner.class);
+        this.uniqueTables = uniqueTables;
+        this.version = queryPlanner.getPlanCache().version(uniqueTables);
+        this.template = template;
+        this.bindIndexes = bindIndexes;
+    }
+
+    public static PreparedPlan create(SQLStatement statement, int parametersNumber, MycatDataContext dataContext) {
+        String defaultSchema = dataContext.getDefaultSchema();
+        DrdsSqlWithParams template = null;
+        int[] bindIndexes = null;
+        List<String> uniqueTables = Collections.emptyList();
+        if (statement instanceof SQLSelectStatement) {
+            try {
+                DrdsSqlWithParams drdsSqlWithParams = parameterize(statement, parametersNumber, defaultSchema);
+                if (drdsSqlWithParams != null) {
+                    bindIndexes = getBindIndexes(drdsSqlWithParams, parametersNumber);
+                    //单节点路由的语句直接下推,不经过计划缓存
+                    if (bindIndexes != null && drdsSqlWithParams.getHints().isEmpty()
+                            && !new HackRouter(drdsSqlWithParams.getParameterizedStatement(), dataContext).analyse()) {
+                        uniqueTables = MemPlanCache.getUniqueTables(drdsSqlWithParams.getParameterizedStatement());
+                        template = drdsSqlWithParams;
+                    }
+                }
+            } catch (Throwable throwable) {
+                LOGGER.debug("prepared statement:{} can not bind to plan", statement, throwable);
+            }
+        }
+        return new PreparedPlan(statement, defaultSchema, template, template == null ? null : bindIndexes, uniqueTables);
+    }
+
+    /**
+     * 把?替换为标记值后参数化,?的个数与参数个数不一致时返回null
+     */
+    static DrdsSqlWithParams parameterize(SQLStatement statement, int parametersNumber, String defaultSchema) {
+        SQLStatement markedStatement = SQLUtils.parseSingleMysqlStatement(statement.toString());
+        MutableInt count = new MutableInt();
+        markedStatement.accept(new MySqlASTVisitorAdapter() {
+            @Override
+            public void endVisit(SQLVariantRefExpr x) {
+                if ("?".equalsIgnoreCase(x.getName())) {
+                    SQLReplaceable parent = (SQLReplaceable) x.getParent();
+                    parent.replace(x, new SQLCharExpr(MARKER + count.getAndIncrement()));
+                }
+                super.endVisit(x);
+            }
+        });
+        if (count.intValue() != parametersNumber) {
+            return null;
+        }
+        return DrdsRunnerHelper.preParse(markedStatement, defaultSchema);
+    }
+
+    /**
+     * 参数化后的参数要么是常量,要么是恰好出现一次的绑定参数标记,否则返回null
+     */
+    static int[] getBindIndexes(DrdsSqlWithParams drdsSqlWithParams, int parametersNumber) {
+        if (drdsSqlWithParams.getParameterizedSQL().contains(MARKER)) {
+            return null;
+        }
+        List<Object> params = drdsSqlWithParams.getParams();
+        int[] bindIndexes = new int[params.size()];
+        boolean[] bound = new boolean[parametersNumber];
+        for (int i = 0; i < bindIndexes.length; i++) {
+            Object param = params.get(i);
+            bindIndexes[i] = -1;
+            if (param instanceof String && ((String) param).contains(MARKER)) {
+                String text = (String) param;
+                if (!text.startsWith(MARKER)) {
+                    return null;
+                }
+                int bindIndex = Integer.parseInt(text.substring(MARKER.length()));
+                if (bound[bindIndex]) {
+                    return null;
+                }
+                bound[bindIndex] = true;
+                bindIndexes[i] = bindIndex;
+            }
+        }
+        for (boolean b : bound) {
+            if (!b) {
+                return null;
+            }
+        }
+        return bindIndexes;
+    }
+
+    public boolean isApplicable() {
+        return template != null;
+    }
+
+    public boolean isValid(String defaultSchema) {
+        return Objects.equals(this.defaultSchema, defaultSchema)
+                && MetaClusterCurrent.wrapper(MetadataManager.class) == metadataManager
+                && MetaClusterCurrent.wrapper(QueryPlanner.class) == queryPlanner
+                && queryPlanner.getPlanCache().version(uniqueTables) == version;
+    }
+
+    /**
+     * 转换为与普通执行路径(绑定参数替换为字面量后参数化)相同的参数值,不支持的类型返回null
+     */
+    public static List<Object> toParams(BindValue[] values, int parametersNumber) {
+        List<Object> res = new ArrayList<>(parametersNumber);
+        for (int i = 0; i < parametersNumber; i++) {
+            Object o = null;
+            if (values != null && i < values.length && !values[i].isNull) {
+                o = values[i].getJavaObject(false);
+            }
+            if (o instanceof Boolean) {
+                o = (Boolean) o ? 1 : 0;
+            } else if (!(o == null || o instanceof String || o instanceof Number || o instanceof byte[])) {
+                return null;
+            }
+            res.add(o);
+        }
+        return res;
+    }
+
+    public DrdsSqlWithParams bind(List<Object> values) {
+        return bind(template, bindIndexes, values);
+    }
+
+    static DrdsSqlWithParams bind(DrdsSqlWithParams template, int[] bindIndexes, List<Object> values) {
+        List<Object> constants = template.getParams();
+        List<Object> params = new ArrayList<>(bindIndexes.length);
+        for (int i = 0; i < bindIndexes.length; i++) {
+            int bindIndex = bindIndexes[i];
+            params.add(bindIndex < 0 ? constants.get(i) : values.get(bindIndex));
+        }
+        return new DrdsSqlWithParams(template.getParameterizedSQL(),
+                params,
+                template.isComplex(),
+                DrdsRunnerHelper.getTypes(params),
+                template.getAliasList(),
+                Collections.emptyList());
+    }
+
+    /**
+     * 绑定结果与普通执行路径的参数化结果一致时才能复用计划
+     */
+    public static boolean isSameParameterized(DrdsSqlWithParams expect, DrdsSqlWithParams bound) {
+        return expect.getParameterizedSQL().equals(bound.getParameterizedSQL())
+                && expect.getHints().isEmpty()
+                && Arrays.deepEquals(expect.getParams().toArray(), bound.getParams().toArray());
+    }
+
+    /**
+     * @return null表示该参数类型组合的计划还未解析
+     */
+    public PlanImpl getPlan(List<SqlTypeName> typeNames) {
+        return plans.get(typeNames);
+    }
+
+    public void putPlan(List<SqlTypeName> typeNames, PlanImpl plan) {
+        if (plans.size() < MAX_TYPE_VARIANTS) {
+            plans.put(typeNames, plan);
+        }
+    }
+
+    public boolean isRejected(List<SqlTypeName> typeNames) {
+        return rejectedTypes.contains(typeNames);
+    }
+
+    public void reject(List<SqlTypeName> typeNames) {
+        if (rejectedTypes.size() < MAX_TYPE_VARIANTS) {
+            rejectedTypes.add(typeNames);
+        }
+    }
+}
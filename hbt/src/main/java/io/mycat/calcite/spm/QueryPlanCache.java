@@ -14,9 +14,11 @@
  */
 package io.mycat.calcite.spm;
 
+import com.google.common.cache.CacheStats;
 import io.mycat.DrdsSql;
 import io.mycat.calcite.CodeExecuterContext;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface QueryPlanCache {
@@ -37,6 +39,36 @@ public interface QueryPlanCache {
 
     public void clearCache();
 
+    /**
+     * 清除引用该表且未固定计划的baseline,下次执行时重新优化
+     */
+    public void invalidate(String schemaName, String tableName);
+
+    /**
+     * 缓存命中/未命中/淘汰计数
+     */
+    public CacheStats stats();
+
+    /**
+     * 当前缓存的估算字节数
+     */
+    public long weight();
+
+    /**
+     * 按命中次数降序返回内存中的baseline
+     */
+    public List<Baseline> hotList(int limit);
+
+    /**
+     * 保存最热的limit个baseline的计划快照,返回保存的计划数
+     */
+    public int saveSnapshot(int limit);
+
+    /**
+     * 加载计划快照,表结构指纹不一致的计划不复用,返回直接复用的计划数
+     */
+    public int loadSnapshot(int limit);
+
     void loadBaseline(long value);
 
     void loadPlan(long value);
@@ -61,5 +93,13 @@ public interface QueryPlanCache {
 
     public void loadBaselines();
 
+    /**
+     * 涉及这些表的计划版本号,相关baseline被清除/失效/固定/加载时变化,
+     * 预处理语句据此判断缓存的计划是否仍然有效
+     *
+     * @param uniqueTables 小写的schema.table
+     */
+    public long version(Collection<String> uniqueTables);
+
     <T> Object getCodeExecuterContext(Baseline baseline, BaselinePlan tBaselinePlan);
 }
\ No newline at end of file
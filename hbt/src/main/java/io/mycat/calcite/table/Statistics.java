@@ -19,6 +19,7 @@ package io.mycat.calcite.table;
 import com.google.common.collect.ImmutableList;
 import io.mycat.Partition;
 import io.mycat.MetaClusterCurrent;
+import io.mycat.MycatStatistic;
 import io.mycat.SimpleColumnInfo;
 import io.mycat.statistic.StatisticCenter;
 import org.apache.calcite.rel.RelCollation;
@@ -97,35 +98,7 @@ public class Statistics {
             String logicTableName,
             List<SimpleColumnInfo> columns) {
         List<ImmutableBitSet> immutableBitSets = getUniqueKeys(columns);
-        return new Statistic() {
-            public Double getRowCount() {
-                if(MetaClusterCurrent.exist(StatisticCenter.class)){
-                    StatisticCenter statisticCenter = MetaClusterCurrent.wrapper(StatisticCenter.class);
-                    return statisticCenter.getLogicTableRow(logicSchemaName, logicTableName);
-                }
-                return StatisticCenter.DEFAULT_ROW_COUNT;
-            }
-
-            public boolean isKey(ImmutableBitSet columns) {
-                return immutableBitSets.contains(columns);
-            }
-
-            public List<ImmutableBitSet> getKeys() {
-                return immutableBitSets;
-            }
-
-            public List<RelReferentialConstraint> getReferentialConstraints() {
-                return ImmutableList.of();
-            }
-
-            public List<RelCollation> getCollations() {
-                return ImmutableList.of();
-            }
-
-            public RelDistribution getDistribution() {
-                return RelDistributionTraitDef.INSTANCE.getDefault();
-            }
-        };
+        return new MycatStatistic(logicSchemaName, logicTableName, columns, immutableBitSets);
     }
 
 }
\ No newline at end of file
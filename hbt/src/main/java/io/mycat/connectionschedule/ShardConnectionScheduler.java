@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.mycat.connectionschedule;
+
+import io.mycat.newquery.NewMycatConnection;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 非事务下单个查询的分片连接调度器,无锁实现.
+ * 每个target一个槽位数组,槽位数由limitFunction按连接池当前可用数给出,
+ * 槽位满后新的分片子查询挂到等待数最少的槽位上,同一槽位上的子查询按顺序使用同一连接.
+ */
+public class ShardConnectionScheduler {
+    private static final Map<String, WaitStat> WAIT_STATS = new ConcurrentHashMap<>();
+
+    private final Map<String, TargetQueue> targets = new ConcurrentHashMap<>();
+    private final Map<NewMycatConnection, Slot> slotMap = new ConcurrentHashMap<>();
+    private final Function<String, Future<NewMycatConnection>> connectionFactory;
+    private final ToIntFunction<String> limitFunction;
+
+    public ShardConnectionScheduler(Function<String, Future<NewMycatConnection>> connectionFactory,
+                                    ToIntFunction<String> limitFunction) {
+        this.connectionFactory = connectionFactory;
+        this.limitFunction = limitFunction;
+    }
+
+    public Future<NewMycatConnection> getConnection(String target) {
+        long startTime = System.nanoTime();
+        TargetQueue targetQueue = targets.computeIfAbsent(target, s -> new TargetQueue(Math.max(1, limitFunction.applyAsInt(s))));
+        return targetQueue.select(target).borrow()
+                .onComplete(event -> WAIT_STATS.computeIfAbsent(target, s -> new WaitStat())
+                        .record(System.nanoTime() - startTime));
+    }
+
+    public void recycleConnection(NewMycatConnection connection) {
+        Slot slot = slotMap.get(connection);
+        if (slot != null) {
+            slot.release();
+        }
+    }
+
+    public static Map<String, WaitStat> getWaitStats() {
+        return Collections.unmodifiableMap(WAIT_STATS);
+    }
+
+    final class TargetQueue {
+        final int limit;
+        final AtomicReferenceArray<Slot> slots;
+        final AtomicInteger reserved = new AtomicInteger();
+        final AtomicInteger cursor = new AtomicInteger();
+
+        TargetQueue(int limit) {
+            this.limit = limit;
+            this.slots = new AtomicReferenceArray<>(limit);
+        }
+
+        Slot select(String target) {
+            for (; ; ) {
+                int index = reserved.get();
+                if (index < limit) {
+                    if (reserved.compareAndSet(index, index + 1)) {
+                        Slot slot = new Slot(connectionFactory.apply(target));
+                        slots.set(index, slot);
+                        slot.connectionFuture.onSuccess(connection -> slotMap.put(connection, slot));
+                        return slot;
+                    }
+                    continue;
+                }
+                int start = cursor.getAndIncrement() & Integer.MAX_VALUE;
+                Slot best = null;
+                for (int i = 0; i < limit; i++) {
+                    Slot slot = slots.get((start + i) % limit);
+                    if (slot == null) {
+                        continue;
+                    }
+                    if (best == null || slot.pending.get() < best.pending.get()) {
+                        best = slot;
+                    }
+                }
+                if (best != null) {
+                    return best;
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    static final class Slot {
+        final Future<NewMycatConnection> connectionFuture;
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicReference<Future<Void>> turn = new AtomicReference<>(Future.succeededFuture());
+        final AtomicReference<Promise<Void>> current = new AtomicReference<>();
+
+        Slot(Future<NewMycatConnection> connectionFuture) {
+            this.connectionFuture = connectionFuture;
+        }
+
+        Future<NewMycatConnection> borrow() {
+            pending.incrementAndGet();
+            Promise<Void> release = Promise.promise();
+            Future<Void> prev = turn.getAndSet(release.future());
+            return prev.transform(event -> {
+                current.set(release);
+                return connectionFuture.onFailure(throwable -> release());
+            });
+        }
+
+        void release() {
+            Promise<Void> promise = current.getAndSet(null);
+            if (promise != null) {
+                pending.decrementAndGet();
+                promise.tryComplete();
+            }
+        }
+    }
+
+    @Getter
+    public static final class WaitStat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public double getAvgMillis() {
+            long c = count.sum();
+            return c == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()) / c;
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package io.mycat.serializable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import lombok.SneakyThrows;
+import org.apache.calcite.avatica.util.ByteString;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按列打包的堆外行集合.
+ * 每PAGE_ROWS行编码为一页,定长类型(整数,浮点,布尔,日期,时间)每值8字节,其余类型写入变长区.
+ * 只支持运行时行中出现的基本类型,时间与数值类型都显式编码,不使用java序列化,遇到其他类型直接报错.
+ * 页面优先放在堆外内存,超出查询预算后写入临时文件,读取时通过mmap映射.
+ */
+public class ColumnarOffHeapObjectList implements OffHeapObjectList {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarOffHeapObjectList.class);
+    public static final int PAGE_ROWS = 4096;
+
+    private static final byte KIND_FIXED = 0;
+    private static final byte KIND_VARLEN = 1;
+
+    private static final byte TAG_LONG = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_SHORT = 3;
+    private static final byte TAG_BYTE = 4;
+    private static final byte TAG_BOOLEAN = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_FLOAT = 7;
+    private static final byte TAG_DATE = 8;
+    private static final byte TAG_TIME = 9;
+    private static final byte TAG_STRING = 20;
+    private static final byte TAG_DECIMAL = 21;
+    private static final byte TAG_BYTES = 22;
+    private static final byte TAG_BYTE_STRING = 23;
+    private static final byte TAG_DATETIME = 24;
+    private static final byte TAG_TIMESTAMP = 25;
+    private static final byte TAG_SQL_DATE = 26;
+    private static final byte TAG_SQL_TIME = 27;
+    private static final byte TAG_UTIL_DATE = 28;
+    private static final byte TAG_DURATION = 29;
+    private static final byte TAG_BIG_INTEGER = 30;
+    private static final byte TAG_INSTANT = 31;
+
+    private final MemoryReservation reservation;
+    private final Path tmpDir;
+    private final List<Page> pages = new ArrayList<>();
+    private List<Object[]> pending = new ArrayList<>();
+    private Path tmpFile;
+    private FileChannel channel;
+    private long fileSize;
+    private int size;
+    private boolean finished;
+    private boolean closed;
+
+    public ColumnarOffHeapObjectList(QueryMemoryBudget budget, Path tmpDir) {
+        this.reservation = budget.reservation(QueryMemoryBudget.OFF_HEAP);
+        this.tmpDir = tmpDir;
+    }
+
+    @Override
+    public void addObjects(Object[] objects) {
+        if (finished) {
+            throw new IllegalStateException("list is already finished");
+        }
+        pending.add(objects);
+        size++;
+        if (pending.size() >= PAGE_ROWS) {
+            flushPage();
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        if (!pending.isEmpty()) {
+            flushPage();
+        }
+        pending = null;
+        finished = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return tmpFile != null;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Object[]> iterator() {
+        if (closed) {
+            throw new IllegalStateException("this list has been closed");
+        }
+        if (!finished) {
+            throw new IllegalStateException("call finish() before read operations");
+        }
+        return new PageIterator();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Page page : pages) {
+            if (page.memory != null) {
+                page.memory.release();
+                page.memory = null;
+            }
+        }
+        pages.clear();
+        reservation.close();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("", e);
+            }
+            channel = null;
+        }
+        if (tmpFile != null) {
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException e) {
+                LOGGER.error("cannot delete tmp swap file {}", tmpFile, e);
+            }
+            tmpFile = null;
+        }
+    }
+
+    private void flushPage() {
+        int rowCount = pending.size();
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(rowCount * 64);
+        try {
+            encode(pending, buf);
+            int length = buf.readableBytes();
+            if (reservation.tryReserve(buf.capacity())) {
+                pages.add(new Page(rowCount, buf, -1, length));
+                buf = null;
+            } else {
+                long offset = spill(buf);
+                pages.add(new Page(rowCount, null, offset, length));
+            }
+        } finally {
+            if (buf != null) {
+                buf.release();
+            }
+        }
+        pending = new ArrayList<>(PAGE_ROWS);
+    }
+
+    @SneakyThrows
+    private long spill(ByteBuf buf) {
+        if (channel == null) {
+            tmpFile = Files.createTempFile(tmpDir, "columnar", ".tmp");
+            QueryMemoryGovernor.recordSpill();
+            channel = FileChannel.open(tmpFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            LOGGER.debug("opening tmp swap file {}", tmpFile);
+        }
+        long offset = fileSize;
+        ByteBuffer byteBuffer = buf.nioBuffer();
+        long position = offset;
+        while (byteBuffer.hasRemaining()) {
+            position += channel.write(byteBuffer, position);
+        }
+        fileSize = position;
+        return offset;
+    }
+
+    @SneakyThrows
+    private Object[][] readPage(Page page) {
+        if (page.memory != null) {
+            return decode(page.memory.duplicate());
+        }
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, page.fileOffset, page.length);
+        return decode(Unpooled.wrappedBuffer(mapped));
+    }
+
+    static void encode(List<Object[]> rows, ByteBuf out) {
+        int rowCount = rows.size();
+        int columnCount = rows.get(0).length;
+        boolean uniform = true;
+        for (Object[] row : rows) {
+            if (columnCount != row.length) {
+                uniform = false;
+                columnCount = Math.max(columnCount, row.length);
+            }
+        }
+        out.writeInt(rowCount);
+        out.writeInt(columnCount);
+        out.writeBoolean(uniform);
+        if (!uniform) {
+            for (Object[] row : rows) {
+                out.writeInt(row.length);
+            }
+        }
+        byte[] bitmap = new byte[(rowCount + 7) / 8];
+        for (int c = 0; c < columnCount; c++) {
+            Arrays.fill(bitmap, (byte) 0);
+            for (int i = 0; i < rowCount; i++) {
+                if (value(rows.get(i), c) == null) {
+                    bitmap[i >>> 3] |= 1 << (i & 7);
+                }
+            }
+            byte fixedTag = fixedTag(rows, c);
+            if (fixedTag > 0) {
+                out.writeByte(KIND_FIXED);
+                out.writeByte(fixedTag);
+                out.writeBytes(bitmap);
+                for (int i = 0; i < rowCount; i++) {
+                    Object v = value(rows.get(i), c);
+                    out.writeLong(v == null ? 0 : toLong(v));
+                }
+            } else {
+                out.writeByte(KIND_VARLEN);
+                out.writeByte(0);
+                out.writeBytes(bitmap);
+                int offsetsStart = out.writerIndex();
+                out.writeZero(4 * (rowCount + 1));
+                int heapStart = out.writerIndex();
+                for (int i = 0; i < rowCount; i++) {
+                    out.setInt(offsetsStart + 4 * i, out.writerIndex() - heapStart);
+                    Object v = value(rows.get(i), c);
+                    if (v != null) {
+                        writeValue(out, v);
+                    }
+                }
+                out.setInt(offsetsStart + 4 * rowCount, out.writerIndex() - heapStart);
+            }
+        }
+    }
+
+    static Object[][] decode(ByteBuf in) {
+        int rowCount = in.readInt();
+        int columnCount = in.readInt();
+        boolean uniform = in.readBoolean();
+        Object[][] rows = new Object[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = new Object[uniform ? columnCount : in.readInt()];
+        }
+        int bitmapLength = (rowCount + 7) / 8;
+        for (int c = 0; c < columnCount; c++) {
+            byte kind = in.readByte();
+            byte tag = in.readByte();
+            int bitmapStart = in.readerIndex();
+            in.skipBytes(bitmapLength);
+            if (kind == KIND_FIXED) {
+                for (int i = 0; i < rowCount; i++) {
+                    long l = in.readLong();
+                    if (!isNull(in, bitmapStart, i) && c < rows[i].length) {
+                        rows[i][c] = fromLong(tag, l);
+                    }
+                }
+            } else {
+                int offsetsStart = in.readerIndex();
+                in.skipBytes(4 * (rowCount + 1));
+                int heapStart = in.readerIndex();
+                for (int i = 0; i < rowCount; i++) {
+                    if (!isNull(in, bitmapStart, i) && c < rows[i].length) {
+                        int start = in.getInt(offsetsStart + 4 * i);
+                        int end = in.getInt(offsetsStart + 4 * (i + 1));
+                        rows[i][c] = readValue(in, heapStart + start, end - start);
+                    }
+                }
+                in.readerIndex(heapStart + in.getInt(offsetsStart + 4 * rowCount));
+            }
+        }
+        return rows;
+    }
+
+    private static boolean isNull(ByteBuf in, int bitmapStart, int i) {
+        return (in.getByte(bitmapStart + (i >>> 3)) & (1 << (i & 7))) != 0;
+    }
+
+    private static Object value(Object[] row, int c) {
+        return c < row.length ? row[c] : null;
+    }
+
+    private static byte fixedTag(List<Object[]> rows, int c) {
+        byte res = TAG_LONG;
+        boolean first = true;
+        for (Object[] row : rows) {
+            Object v = value(row, c);
+            if (v == null) {
+                continue;
+            }
+            byte tag = tagOf(v);
+            if (tag >= TAG_STRING) {
+                return -1;
+            }
+            if (first) {
+                res = tag;
+                first = false;
+            } else if (res != tag) {
+                return -1;
+            }
+        }
+        return res;
+    }
+
+    private static byte tagOf(Object v) {
+        if (v instanceof Long) {
+            return TAG_LONG;
+        } else if (v instanceof Integer) {
+            return TAG_INT;
+        } else if (v instanceof Short) {
+            return TAG_SHORT;
+        } else if (v instanceof Byte) {
+            return TAG_BYTE;
+        } else if (v instanceof Boolean) {
+            return TAG_BOOLEAN;
+        } else if (v instanceof Double) {
+            return TAG_DOUBLE;
+        } else if (v instanceof Float) {
+            return TAG_FLOAT;
+        } else if (v instanceof LocalDate) {
+            return TAG_DATE;
+        } else if (v instanceof LocalTime) {
+            return TAG_TIME;
+        } else if (v instanceof String) {
+            return TAG_STRING;
+        } else if (v instanceof BigDecimal) {
+            return TAG_DECIMAL;
+        } else if (v instanceof byte[]) {
+            return TAG_BYTES;
+        } else if (v instanceof ByteString) {
+            return TAG_BYTE_STRING;
+        } else if (v instanceof LocalDateTime) {
+            return TAG_DATETIME;
+        } else if (v instanceof Timestamp) {
+            return TAG_TIMESTAMP;
+        } else if (v instanceof java.sql.Date) {
+            return TAG_SQL_DATE;
+        } else if (v instanceof java.sql.Time) {
+            return TAG_SQL_TIME;
+        } else if (v instanceof java.util.Date) {
+            return TAG_UTIL_DATE;
+        } else if (v instanceof Duration) {
+            return TAG_DURATION;
+        } else if (v instanceof BigInteger) {
+            return TAG_BIG_INTEGER;
+        } else if (v instanceof Instant) {
+            return TAG_INSTANT;
+        }
+        throw new IllegalArgumentException("unsupported value type for columnar spill: " + v.getClass().getName());
+    }
+
+    private static long toLong(Object v) {
+        if (v instanceof Double) {
+            return Double.doubleToRawLongBits((Double) v);
+        } else if (v instanceof Float) {
+            return Float.floatToRawIntBits((Float) v);
+        } else if (v instanceof Boolean) {
+            return ((Boolean) v) ? 1 : 0;
+        } else if (v instanceof LocalDate) {
+            return ((LocalDate) v).toEpochDay();
+        } else if (v instanceof LocalTime) {
+            return ((LocalTime) v).toNanoOfDay();
+        }
+        return ((Number) v).longValue();
+    }
+
+    private static Object fromLong(byte tag, long l) {
+        switch (tag) {
+            case TAG_LONG:
+                return l;
+            case TAG_INT:
+                return (int) l;
+            case TAG_SHORT:
+                return (short) l;
+            case TAG_BYTE:
+                return (byte) l;
+            case TAG_BOOLEAN:
+                return l != 0;
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(l);
+            case TAG_FLOAT:
+                return Float.intBitsToFloat((int) l);
+            case TAG_DATE:
+                return LocalDate.ofEpochDay(l);
+            case TAG_TIME:
+                return LocalTime.ofNanoOfDay(l);
+            default:
+                throw new IllegalStateException("unknown tag " + tag);
+        }
+    }
+
+    private static void writeValue(ByteBuf out, Object v) {
+        byte tag = tagOf(v);
+        out.writeByte(tag);
+        switch (tag) {
+            case TAG_STRING:
+                out.writeCharSequence((String) v, StandardCharsets.UTF_8);
+                break;
+            case TAG_DECIMAL:
+                out.writeCharSequence(((BigDecimal) v).toString(), StandardCharsets.US_ASCII);
+                break;
+            case TAG_BYTES:
+                out.writeBytes((byte[]) v);
+                break;
+            case TAG_BYTE_STRING:
+                out.writeBytes(((ByteString) v).getBytes());
+                break;
+            case TAG_DATETIME: {
+                LocalDateTime dateTime = (LocalDateTime) v;
+                out.writeLong(dateTime.toLocalDate().toEpochDay());
+                out.writeLong(dateTime.toLocalTime().toNanoOfDay());
+                break;
+            }
+            case TAG_TIMESTAMP: {
+                Timestamp timestamp = (Timestamp) v;
+                out.writeLong(Math.floorDiv(timestamp.getTime(), 1000L));
+                out.writeInt(timestamp.getNanos());
+                break;
+            }
+            case TAG_SQL_DATE:
+            case TAG_SQL_TIME:
+            case TAG_UTIL_DATE:
+                out.writeLong(((java.util.Date) v).getTime());
+                break;
+            case TAG_DURATION: {
+                Duration duration = (Duration) v;
+                out.writeLong(duration.getSeconds());
+                out.writeInt(duration.getNano());
+                break;
+            }
+            case TAG_BIG_INTEGER:
+                out.writeBytes(((BigInteger) v).toByteArray());
+                break;
+            case TAG_INSTANT: {
+                Instant instant = (Instant) v;
+                out.writeLong(instant.getEpochSecond());
+                out.writeInt(instant.getNano());
+                break;
+            }
+            default:
+                out.writeLong(toLong(v));
+        }
+    }
+
+    private static Object readValue(ByteBuf in, int start, int length) {
+        byte tag = in.getByte(start);
+        int payload = length - 1;
+        switch (tag) {
+            case TAG_STRING:
+                return in.getCharSequence(start + 1, payload, StandardCharsets.UTF_8).toString();
+            case TAG_DECIMAL:
+                return new BigDecimal(in.getCharSequence(start + 1, payload, StandardCharsets.US_ASCII).toString());
+            case TAG_BYTES: {
+                byte[] bytes = new byte[payload];
+                in.getBytes(start + 1, bytes);
+                return bytes;
+            }
+            case TAG_BYTE_STRING: {
+                byte[] bytes = new byte[payload];
+                in.getBytes(start + 1, bytes);
+                return new ByteString(bytes);
+            }
+            case TAG_DATETIME:
+                return LocalDateTime.of(LocalDate.ofEpochDay(in.getLong(start + 1)), LocalTime.ofNanoOfDay(in.getLong(start + 9)));
+            case TAG_TIMESTAMP: {
+                Timestamp timestamp = new Timestamp(in.getLong(start + 1) * 1000L);
+                timestamp.setNanos(in.getInt(start + 9));
+                return timestamp;
+            }
+            case TAG_SQL_DATE:
+                return new java.sql.Date(in.getLong(start + 1));
+            case TAG_SQL_TIME:
+                return new java.sql.Time(in.getLong(start + 1));
+            case TAG_UTIL_DATE:
+                return new java.util.Date(in.getLong(start + 1));
+            case TAG_DURATION:
+                return Duration.ofSeconds(in.getLong(start + 1), in.getInt(start + 9));
+            case TAG_BIG_INTEGER: {
+                byte[] bytes = new byte[payload];
+                in.getBytes(start + 1, bytes);
+                return new BigInteger(bytes);
+            }
+            case TAG_INSTANT:
+                return Instant.ofEpochSecond(in.getLong(start + 1), in.getInt(start + 9));
+            default:
+                return fromLong(tag, in.getLong(start + 1));
+        }
+    }
+
+    private static final class Page {
+        final int rowCount;
+        ByteBuf memory;
+        final long fileOffset;
+        final int length;
+
+        Page(int rowCount, ByteBuf memory, long fileOffset, int length) {
+            this.rowCount = rowCount;
+            this.memory = memory;
+            this.fileOffset = fileOffset;
+            this.length = length;
+        }
+    }
+
+    private final class PageIterator implements Iterator<Object[]> {
+        int pageIndex;
+        Object[][] rows;
+        int rowIndex;
+
+        @Override
+        public boolean hasNext() {
+            while (rows == null || rowIndex >= rows.length) {
+                if (pageIndex >= pages.size()) {
+                    return false;
+                }
+                rows = readPage(pages.get(pageIndex++));
+                rowIndex = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return rows[rowIndex++];
+        }
+    }
+}
@@ -4,4 +4,9 @@ public interface MaterializedRecordSetFactory {
     public static final  MaterializedRecordSetFactory DEFAULT_FACTORY = new MaterializedRecordSetFactoryImpl();
     OffHeapObjectList createFixedSizeRecordSet(int expectSize);
     OffHeapObjectList createRecordSet();
+
+    /**
+     * 按列打包到堆外内存,超出预算后落盘
+     */
+    OffHeapObjectList createRecordSet(QueryMemoryBudget budget);
 }
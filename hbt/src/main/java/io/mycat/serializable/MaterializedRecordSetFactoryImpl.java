@@ -65,4 +65,9 @@ public class MaterializedRecordSetFactoryImpl implements MaterializedRecordSetFa
     public OffHeapObjectList createRecordSet() {
         return createFixedSizeRecordSet(DEFAULT_SWAP_THRESHOLD);
     }
+
+    @Override
+    public OffHeapObjectList createRecordSet(QueryMemoryBudget budget) {
+        return new ColumnarOffHeapObjectList(budget, this.tmpPath);
+    }
 }
@@ -0,0 +1,73 @@
+package io.mycat.serializable;
+
+import io.mycat.MycatException;
+import io.mycat.beans.mysql.MySQLErrorCode;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个物化算子在查询预算中的内存预留,close后归还全部预留
+ */
+public class MemoryReservation implements AutoCloseable {
+    private final QueryMemoryBudget budget;
+    @Getter
+    private final String operator;
+    private final AtomicLong reserved = new AtomicLong();
+    private volatile boolean closed;
+
+    MemoryReservation(QueryMemoryBudget budget, String operator) {
+        this.budget = budget;
+        this.operator = operator;
+    }
+
+    /**
+     * 预算不足时返回false,调用方应落盘
+     */
+    public boolean tryReserve(long bytes) {
+        if (closed || !budget.tryReserve(operator, bytes)) {
+            return false;
+        }
+        reserved.addAndGet(bytes);
+        if (closed) {
+            release(bytes);
+        }
+        return true;
+    }
+
+    /**
+     * 预算不足时抛出异常,用于不能落盘的算子
+     */
+    public void reserve(long bytes) {
+        if (!tryReserve(bytes)) {
+            QueryMemoryGovernor.recordReject();
+            throw new MycatException(MySQLErrorCode.ER_OUT_OF_RESOURCES,
+                    operator + " exceeds memory limit, query used:" + budget.getUsed() + " query limit:" + budget.getLimit()
+                            + " node used:" + QueryMemoryGovernor.getUsed() + " node limit:" + QueryMemoryGovernor.NODE_LIMIT);
+        }
+    }
+
+    public void release(long bytes) {
+        for (; ; ) {
+            long cur = reserved.get();
+            long released = Math.min(cur, bytes);
+            if (released <= 0) {
+                return;
+            }
+            if (reserved.compareAndSet(cur, cur - released)) {
+                budget.release(operator, released);
+                return;
+            }
+        }
+    }
+
+    public long getReserved() {
+        return reserved.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        release(Long.MAX_VALUE);
+    }
+}
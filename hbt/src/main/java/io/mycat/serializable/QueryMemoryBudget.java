@@ -0,0 +1,89 @@
+package io.mycat.serializable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个查询的物化内存预算,同时受节点级QueryMemoryGovernor限制.
+ * 物化算子通过reservation(operator)取得MemoryReservation后预留内存,
+ * 堆外页超出预算后落盘,堆内缓冲超出预算后由算子落盘或报错
+ */
+public class QueryMemoryBudget {
+    public static long QUERY_LIMIT = 256L * 1024 * 1024;
+    /**
+     * 排序,hash join在堆内缓存的最大行数,超出后转为堆外/落盘处理
+     */
+    public static int SPILL_ROW_THRESHOLD = 100000;
+    public static final String OFF_HEAP = "OffHeap";
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+    private final List<MemoryReservation> reservations = new ArrayList<>();
+    private boolean closed;
+
+    public QueryMemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+    public static QueryMemoryBudget create() {
+        return new QueryMemoryBudget(QUERY_LIMIT);
+    }
+
+    public synchronized MemoryReservation reservation(String operator) {
+        MemoryReservation reservation = new MemoryReservation(this, operator);
+        if (closed) {
+            reservation.close();
+        } else {
+            reservations.add(reservation);
+        }
+        return reservation;
+    }
+
+    boolean tryReserve(String operator, long bytes) {
+        for (; ; ) {
+            long cur = used.get();
+            long next = cur + bytes;
+            if (next > limit) {
+                return false;
+            }
+            if (used.compareAndSet(cur, next)) {
+                break;
+            }
+        }
+        if (!QueryMemoryGovernor.tryReserve(operator, bytes)) {
+            used.addAndGet(-bytes);
+            return false;
+        }
+        return true;
+    }
+
+    void release(String operator, long bytes) {
+        used.addAndGet(-bytes);
+        QueryMemoryGovernor.release(operator, bytes);
+    }
+
+    public long getUsed() {
+        return used.get();
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * 查询结束时归还所有未释放的内存
+     */
+    public void close() {
+        List<MemoryReservation> list;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            list = new ArrayList<>(reservations);
+            reservations.clear();
+        }
+        list.forEach(MemoryReservation::close);
+    }
+}
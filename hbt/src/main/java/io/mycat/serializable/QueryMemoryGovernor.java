@@ -0,0 +1,109 @@
+package io.mycat.serializable;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 节点级的查询内存管理,所有查询的QueryMemoryBudget都从这里预留内存.
+ * 可落盘的算子(排序,hash join,物化)预留失败时落盘,不能落盘的算子预留失败时直接报错,
+ * 避免单个分析查询把整个进程撑爆
+ */
+public class QueryMemoryGovernor {
+    public static long NODE_LIMIT = 1024L * 1024 * 1024;
+
+    private static final AtomicLong USED = new AtomicLong();
+    private static final Map<String, AtomicLong> OPERATOR_USED = new ConcurrentHashMap<>();
+    private static final LongAdder SPILL_COUNT = new LongAdder();
+    private static final LongAdder REJECT_COUNT = new LongAdder();
+
+    static boolean tryReserve(String operator, long bytes) {
+        for (; ; ) {
+            long cur = USED.get();
+            long next = cur + bytes;
+            if (next > NODE_LIMIT) {
+                return false;
+            }
+            if (USED.compareAndSet(cur, next)) {
+                OPERATOR_USED.computeIfAbsent(operator, s -> new AtomicLong()).addAndGet(bytes);
+                return true;
+            }
+        }
+    }
+
+    static void release(String operator, long bytes) {
+        USED.addAndGet(-bytes);
+        AtomicLong operatorUsed = OPERATOR_USED.get(operator);
+        if (operatorUsed != null) {
+            operatorUsed.addAndGet(-bytes);
+        }
+    }
+
+    public static void recordSpill() {
+        SPILL_COUNT.increment();
+    }
+
+    static void recordReject() {
+        REJECT_COUNT.increment();
+    }
+
+    public static long getUsed() {
+        return USED.get();
+    }
+
+    public static Map<String, AtomicLong> getOperatorUsed() {
+        return Collections.unmodifiableMap(OPERATOR_USED);
+    }
+
+    public static long getSpillCount() {
+        return SPILL_COUNT.sum();
+    }
+
+    public static long getRejectCount() {
+        return REJECT_COUNT.sum();
+    }
+
+    /**
+     * 估算一行在堆内占用的字节数
+     */
+    public static long estimateRowBytes(Object row) {
+        if (row instanceof Object[]) {
+            Object[] objects = (Object[]) row;
+            long size = 16 + 8L * objects.length;
+            for (Object object : objects) {
+                size += estimateValueBytes(object);
+            }
+            return size;
+        }
+        return 8 + estimateValueBytes(row);
+    }
+
+    /**
+     * 按列数估算一行(或一个分组的累加器)的字节数,用于无法在运行期看到行内容的场景
+     */
+    public static long estimateRowBytes(int fieldCount) {
+        return 16 + 32L * fieldCount;
+    }
+
+    private static long estimateValueBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        if (value instanceof BigDecimal) {
+            return 64;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        return 32;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.mycat.statistic;
+
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.SQLDeleteStatement;
+import com.alibaba.druid.sql.ast.statement.SQLExprTableSource;
+import com.alibaba.druid.sql.ast.statement.SQLInsertStatement;
+import com.alibaba.druid.sql.ast.statement.SQLTableSource;
+import com.alibaba.druid.sql.ast.statement.SQLUpdateStatement;
+import io.mycat.IOExecutor;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.MetadataManager;
+import io.mycat.ScheduleUtil;
+import io.mycat.TableHandler;
+import io.mycat.calcite.spm.QueryPlanner;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按DML影响行数触发的自动统计.
+ * 逻辑表累计变更行数超过阈值后,用information_schema估算行数并采样列统计,
+ * 同一时间只刷新一张表,避免与业务查询争抢连接.
+ * 只有行数变化超过PLAN_INVALIDATE_RATIO时才清除相关的执行计划缓存.
+ */
+public class AutoAnalyzeScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AutoAnalyzeScheduler.class);
+    public static boolean ENABLE = false;
+    public static long MIN_CHANGED_ROWS = 1000;
+    public static double CHANGED_RATIO = 0.1;
+    public static double PLAN_INVALIDATE_RATIO = 0.5;
+
+    private static final Map<Key, LongAdder> CHANGED_ROWS = new ConcurrentHashMap<>();
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+    private static ScheduledFuture<?> scheduledFuture;
+
+    public static synchronized void start(long period, TimeUnit unit) {
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(false);
+        }
+        scheduledFuture = ScheduleUtil.getTimer().scheduleAtFixedRate(AutoAnalyzeScheduler::tick, period, period, unit);
+    }
+
+    /**
+     * 在执行前解析DML的目标表,没有显式schema时使用会话的默认schema.
+     * 执行过程会改写语句(例如delete的schema会被置空),所以不能在执行后再解析
+     *
+     * @return 不能确定目标表时返回null
+     */
+    public static Key resolveTable(SQLStatement statement, String defaultSchema) {
+        if (!ENABLE) {
+            return null;
+        }
+        SQLTableSource tableSource = null;
+        if (statement instanceof SQLInsertStatement) {
+            tableSource = ((SQLInsertStatement) statement).getTableSource();
+        } else if (statement instanceof SQLUpdateStatement) {
+            tableSource = ((SQLUpdateStatement) statement).getTableSource();
+        } else if (statement instanceof SQLDeleteStatement) {
+            tableSource = ((SQLDeleteStatement) statement).getTableSource();
+        }
+        if (tableSource instanceof SQLExprTableSource) {
+            SQLExprTableSource exprTableSource = (SQLExprTableSource) tableSource;
+            String schemaName = exprTableSource.getSchema();
+            String tableName = exprTableSource.getTableName();
+            if (schemaName == null) {
+                schemaName = defaultSchema;
+            }
+            if (schemaName != null && tableName != null) {
+                return Key.of(SQLUtils.normalize(schemaName), SQLUtils.normalize(tableName));
+            }
+        }
+        return null;
+    }
+
+    public static void recordChangedRows(Key key, long rows) {
+        if (key == null || !ENABLE || rows <= 0) {
+            return;
+        }
+        CHANGED_ROWS.computeIfAbsent(key, k -> new LongAdder()).add(rows);
+    }
+
+    static void tick() {
+        if (!ENABLE || !MetaClusterCurrent.exist(StatisticCenter.class) || !MetaClusterCurrent.exist(MetadataManager.class)) {
+            return;
+        }
+        if (!RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            StatisticCenter statisticCenter = MetaClusterCurrent.wrapper(StatisticCenter.class);
+            MetadataManager metadataManager = MetaClusterCurrent.wrapper(MetadataManager.class);
+            Key candidate = null;
+            double candidateRatio = 0;
+            for (Map.Entry<Key, LongAdder> entry : CHANGED_ROWS.entrySet()) {
+                Key key = entry.getKey();
+                long changed = entry.getValue().sum();
+                TableHandler tableHandler = metadataManager.getTable(key.getSchemaName(), key.getTableName());
+                if (tableHandler == null) {
+                    CHANGED_ROWS.remove(key);
+                    continue;
+                }
+                double rowCount = statisticCenter.hasLogicTableRow(tableHandler.getSchemaName(), tableHandler.getTableName()) ?
+                        statisticCenter.getLogicTableRow(tableHandler.getSchemaName(), tableHandler.getTableName()) : 0;
+                if (changed < Math.max(MIN_CHANGED_ROWS, rowCount * CHANGED_RATIO)) {
+                    continue;
+                }
+                double ratio = changed / Math.max(1, rowCount);
+                if (candidate == null || ratio > candidateRatio) {
+                    candidate = key;
+                    candidateRatio = ratio;
+                }
+            }
+            if (candidate == null) {
+                RUNNING.set(false);
+                return;
+            }
+            Key key = candidate;
+            long changed = CHANGED_ROWS.get(key).sumThenReset();
+            IOExecutor ioExecutor = MetaClusterCurrent.exist(IOExecutor.class) ? MetaClusterCurrent.wrapper(IOExecutor.class) : IOExecutor.DEFAULT;
+            ioExecutor.executeBlocking(promise -> {
+                try {
+                    refresh(statisticCenter, key, changed);
+                } finally {
+                    promise.tryComplete();
+                }
+            }).onComplete(event -> RUNNING.set(false));
+        } catch (Throwable throwable) {
+            RUNNING.set(false);
+            LOGGER.error("auto analyze fail", throwable);
+        }
+    }
+
+    private static void refresh(StatisticCenter statisticCenter, Key key, long changed) {
+        MetadataManager metadataManager = MetaClusterCurrent.wrapper(MetadataManager.class);
+        TableHandler tableHandler = metadataManager.getTable(key.getSchemaName(), key.getTableName());
+        if (tableHandler == null) {
+            CHANGED_ROWS.remove(key);
+            return;
+        }
+        Double old = statisticCenter.refreshByEstimate(tableHandler);
+        Double now = statisticCenter.getLogicTableRow(tableHandler.getSchemaName(), tableHandler.getTableName());
+        LOGGER.info("auto analyze {} changed rows:{} row count:{} -> {}", key, changed, old, now);
+        if (old == null || Math.abs(now - old) > Math.max(1, old) * PLAN_INVALIDATE_RATIO) {
+            if (MetaClusterCurrent.exist(QueryPlanner.class)) {
+                MetaClusterCurrent.wrapper(QueryPlanner.class).getPlanCache().invalidate(key.getSchemaName(), key.getTableName());
+            }
+        }
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static class Key {
+        final String schemaName;
+        final String tableName;
+
+        private Key(String schemaName, String tableName) {
+            this.schemaName = schemaName.toLowerCase();
+            this.tableName = tableName.toLowerCase();
+        }
+
+        public static Key of(String schemaName, String tableName) {
+            return new Key(schemaName, tableName);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.mycat.statistic;
+
+import lombok.Data;
+
+/**
+ * 单列统计信息,由各分片采样合并而来
+ */
+@Data
+public class ColumnStatistic {
+    private String columnName;
+    private double ndv;
+    private double nullFraction;
+    private Histogram histogram;
+    private HyperLogLog hyperLogLog;
+
+    public double equalSelectivity() {
+        if (ndv < 1) {
+            return 1.0 - nullFraction;
+        }
+        return (1.0 - nullFraction) / ndv;
+    }
+
+    public Double rangeSelectivity(Double lower, Double upper) {
+        if (histogram == null) {
+            return null;
+        }
+        return (1.0 - nullFraction) * histogram.rangeSelectivity(lower, upper);
+    }
+}
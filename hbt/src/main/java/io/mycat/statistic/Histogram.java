@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.mycat.statistic;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 等深直方图,每个桶的行数近似相等,bounds[i]是第i个桶的上界(包含).
+ * 只用于数值列,值统一转换为double.
+ */
+@Getter
+public class Histogram {
+    public static final int DEFAULT_BUCKET_COUNT = 64;
+
+    private final double min;
+    private final double[] bounds;
+    private final double[] counts;
+    private final double total;
+
+    public Histogram(double min, double[] bounds, double[] counts) {
+        this.min = min;
+        this.bounds = bounds;
+        this.counts = counts;
+        this.total = Arrays.stream(counts).sum();
+    }
+
+    /**
+     * @param values  已排序的采样值
+     * @param weights 每个采样值代表的行数
+     */
+    public static Histogram build(double[] values, double[] weights, int bucketCount) {
+        if (values.length == 0) {
+            return null;
+        }
+        double total = Arrays.stream(weights).sum();
+        double depth = total / bucketCount;
+        double[] bounds = new double[bucketCount];
+        double[] counts = new double[bucketCount];
+        int bucket = 0;
+        double acc = 0;
+        for (int i = 0; i < values.length; i++) {
+            acc += weights[i];
+            boolean last = i == values.length - 1;
+            //相同的值不跨桶
+            boolean boundary = last || values[i + 1] != values[i];
+            if (boundary && (acc >= depth || last) && bucket < bucketCount) {
+                bounds[bucket] = values[i];
+                counts[bucket] = acc;
+                bucket++;
+                acc = 0;
+            } else if (last) {
+                bounds[bucket - 1] = values[i];
+                counts[bucket - 1] += acc;
+            }
+        }
+        return new Histogram(values[0], Arrays.copyOf(bounds, bucket), Arrays.copyOf(counts, bucket));
+    }
+
+    /**
+     * 估算 value 落在 [lower,upper] 区间的比例,null表示无界
+     */
+    public double rangeSelectivity(Double lower, Double upper) {
+        if (total <= 0) {
+            return 1.0;
+        }
+        double lo = lower == null ? Double.NEGATIVE_INFINITY : lower;
+        double hi = upper == null ? Double.POSITIVE_INFINITY : upper;
+        if (lo > hi) {
+            return 0;
+        }
+        double rows = 0;
+        double bucketLow = min;
+        for (int i = 0; i < bounds.length; i++) {
+            double bucketHigh = bounds[i];
+            rows += counts[i] * overlap(bucketLow, bucketHigh, lo, hi);
+            bucketLow = bucketHigh;
+        }
+        return Math.min(1.0, rows / total);
+    }
+
+    private static double overlap(double bucketLow, double bucketHigh, double lo, double hi) {
+        if (hi < bucketLow || lo > bucketHigh) {
+            return 0;
+        }
+        if (bucketHigh == bucketLow) {
+            return 1;
+        }
+        double from = Math.max(bucketLow, lo);
+        double to = Math.min(bucketHigh, hi);
+        return Math.max(0, (to - from) / (bucketHigh - bucketLow));
+    }
+
+    public String toText() {
+        return min + ";" + join(bounds) + ";" + join(counts);
+    }
+
+    public static Histogram fromText(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        String[] split = text.split(";", -1);
+        return new Histogram(Double.parseDouble(split[0]), parse(split[1]), parse(split[2]));
+    }
+
+    private static String join(double[] values) {
+        return Arrays.stream(values).mapToObj(Double::toString).collect(Collectors.joining(","));
+    }
+
+    private static double[] parse(String text) {
+        if (text.isEmpty()) {
+            return new double[0];
+        }
+        return Arrays.stream(text.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    public static Histogram build(List<double[]> sortedValueWeightPairs, int bucketCount) {
+        double[] values = new double[sortedValueWeightPairs.size()];
+        double[] weights = new double[sortedValueWeightPairs.size()];
+        for (int i = 0; i < values.length; i++) {
+            double[] pair = sortedValueWeightPairs.get(i);
+            values[i] = pair[0];
+            weights[i] = pair[1];
+        }
+        return build(values, weights, bucketCount);
+    }
+}
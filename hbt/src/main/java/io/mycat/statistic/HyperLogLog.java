@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.mycat.statistic;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * HyperLogLog基数估计,用于列的NDV统计,各分片的结果可以直接合并.
+ */
+public class HyperLogLog {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    public static final int DEFAULT_P = 12;
+
+    private final int p;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_P);
+    }
+
+    public HyperLogLog(int p) {
+        this(p, new byte[1 << p]);
+    }
+
+    private HyperLogLog(int p, byte[] registers) {
+        this.p = p;
+        this.registers = registers;
+    }
+
+    public void add(Object value) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value instanceof byte[] ? (byte[]) value : Objects.toString(value).getBytes(StandardCharsets.UTF_8);
+        addHash(HASH_FUNCTION.hashBytes(bytes).asLong());
+    }
+
+    void addHash(long hash) {
+        int index = (int) (hash >>> (64 - p));
+        long w = (hash << p) | (1L << (p - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.p != p) {
+            throw new IllegalArgumentException("can not merge HyperLogLog with different precision " + p + " " + other.p);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public double estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            //小基数使用线性计数修正
+            return m * Math.log((double) m / zeros);
+        }
+        return estimate;
+    }
+
+    public String toBase64() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) p;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    public static HyperLogLog fromBase64(String text) {
+        byte[] bytes = Base64.getDecoder().decode(text);
+        byte[] registers = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, registers, 0, registers.length);
+        return new HyperLogLog(bytes[0], registers);
+    }
+}
@@ -20,9 +20,11 @@ import com.alibaba.druid.DbType;
 import com.alibaba.druid.sql.builder.SQLBuilderFactory;
 import com.alibaba.druid.sql.builder.SQLSelectBuilder;
 import com.alibaba.druid.util.JdbcUtils;
+import io.mycat.IOExecutor;
 import io.mycat.MetadataManager;
 import io.mycat.Partition;
 import io.mycat.MetaClusterCurrent;
+import io.mycat.SimpleColumnInfo;
 import io.mycat.api.collector.RowBaseIterator;
 import io.mycat.calcite.table.NormalTable;
 import io.mycat.datasource.jdbc.datasource.DefaultConnection;
@@ -32,19 +34,31 @@ import io.mycat.calcite.table.ShardingTable;
 import io.mycat.TableHandler;
 import io.mycat.prototypeserver.mysql.PrototypeService;
 import io.mycat.replica.ReplicaSelectorManager;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
 import lombok.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class StatisticCenter {
     private static final Logger LOGGER = LoggerFactory.getLogger(StatisticCenter.class);
     private final ConcurrentHashMap<Key, StatisticObject> statisticMap = new ConcurrentHashMap<>();
     private boolean init = false;
     public static final Double DEFAULT_ROW_COUNT = Double.valueOf(8000000);
+    public static int SAMPLE_ROWS_PER_PARTITION = 10000;
+    public static long ANALYZE_TIMEOUT_SECONDS = 600;
+    private static final List<String> ANALYZE_TABLE_COLUMNS = Arrays.asList("schema_name", "table_name", "table_rows");
+    private static final List<String> ANALYZE_COLUMN_COLUMNS = Arrays.asList(
+            "schema_name", "table_name", "column_name", "ndv", "null_fraction", "histogram", "hll");
 
     public StatisticCenter() {
     }
@@ -58,22 +72,79 @@ public class StatisticCenter {
         JdbcConnectionManager jdbcConnectionManager = MetaClusterCurrent.wrapper(JdbcConnectionManager.class);
         try (DefaultConnection prototype = jdbcConnectionManager.getConnection(MetadataManager.getPrototype())) {
             Connection rawConnection = prototype.getRawConnection();
-            JdbcUtils.execute(rawConnection, "CREATE TABLE `analyze_table` (\n" +
+            migrate(rawConnection, "analyze_table", ANALYZE_TABLE_COLUMNS);
+            JdbcUtils.execute(rawConnection, "CREATE TABLE IF NOT EXISTS mycat.`analyze_table` (\n" +
+                    "  `schema_name` varchar(64) NOT NULL,\n" +
+                    "  `table_name` varchar(64) NOT NULL,\n" +
                     "  `table_rows` bigint(20) NOT NULL,\n" +
-                    "  `name` varchar(64) NOT NULL,\n" +
-                    "  PRIMARY KEY (`name`)\n" +
+                    "  PRIMARY KEY (`schema_name`,`table_name`)\n" +
                     ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci");
-            List<Map<String, Object>> maps = JdbcUtils.executeQuery(rawConnection, "select table_rows as `table_rows`,name from mycat.`analyze_table`", Collections.emptyList());
+            List<Map<String, Object>> maps = JdbcUtils.executeQuery(rawConnection,
+                    "select schema_name as `schema_name`,table_name as `table_name`,table_rows as `table_rows` from mycat.`analyze_table`", Collections.emptyList());
             for (Map<String, Object> map : maps) {
                 Number table_rows = (Number) map.get("table_rows");
-                String name = (String) map.get("name");
-                String[] strings = name.split("_");
                 StatisticObject statisticObject = new StatisticObject();
                 statisticObject.setRowCount(table_rows.doubleValue());
-                statisticMap.put(Key.of(strings[0], strings[1]), statisticObject);
+                statisticMap.put(Key.of((String) map.get("schema_name"), (String) map.get("table_name")), statisticObject);
             }
+            migrate(rawConnection, "analyze_column", ANALYZE_COLUMN_COLUMNS);
+            JdbcUtils.execute(rawConnection, "CREATE TABLE IF NOT EXISTS mycat.`analyze_column` (\n" +
+                    "  `schema_name` varchar(64) NOT NULL,\n" +
+                    "  `table_name` varchar(64) NOT NULL,\n" +
+                    "  `column_name` varchar(64) NOT NULL,\n" +
+                    "  `ndv` double NOT NULL,\n" +
+                    "  `null_fraction` double NOT NULL,\n" +
+                    "  `histogram` longtext,\n" +
+                    "  `hll` longtext,\n" +
+                    "  PRIMARY KEY (`schema_name`,`table_name`,`column_name`)\n" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci");
+            List<Map<String, Object>> columns = JdbcUtils.executeQuery(rawConnection,
+                    "select schema_name as `schema_name`,table_name as `table_name`,column_name as `column_name`,ndv,null_fraction,histogram,hll from mycat.`analyze_column`", Collections.emptyList());
+            for (Map<String, Object> map : columns) {
+                ColumnStatistic columnStatistic = new ColumnStatistic();
+                columnStatistic.setColumnName((String) map.get("column_name"));
+                columnStatistic.setNdv(((Number) map.get("ndv")).doubleValue());
+                columnStatistic.setNullFraction(((Number) map.get("null_fraction")).doubleValue());
+                columnStatistic.setHistogram(Histogram.fromText((String) map.get("histogram")));
+                Optional.ofNullable((String) map.get("hll")).filter(i -> !i.isEmpty())
+                        .map(HyperLogLog::fromBase64).ifPresent(columnStatistic::setHyperLogLog);
+                statisticMap.computeIfAbsent(Key.of((String) map.get("schema_name"), (String) map.get("table_name")), key -> new StatisticObject())
+                        .getColumnStatistics().put(columnStatistic.getColumnName(), columnStatistic);
+            }
+        }
+    }
+
+    /**
+     * 旧版本的统计表结构不同,CREATE TABLE IF NOT EXISTS不会升级.
+     * 统计数据可以重新收集,结构不一致时直接删除重建
+     */
+    private static void migrate(Connection connection, String tableName, List<String> columns) throws SQLException {
+        List<Map<String, Object>> existing = JdbcUtils.executeQuery(connection,
+                "select column_name as `column_name` from information_schema.columns where table_schema = 'mycat' and table_name = ?",
+                Collections.singletonList(tableName));
+        if (existing.isEmpty()) {
+            return;
+        }
+        Set<String> existingColumns = existing.stream()
+                .map(i -> ((String) i.get("column_name")).toLowerCase())
+                .collect(Collectors.toSet());
+        if (!existingColumns.equals(new HashSet<>(columns))) {
+            LOGGER.warn("统计表mycat.{}的结构{}与当前版本{}不一致,删除重建", tableName, existingColumns, columns);
+            JdbcUtils.execute(connection, "DROP TABLE mycat.`" + tableName + "`");
+        }
+    }
 
+    public ColumnStatistic getColumnStatistic(String schemaName, String tableName, String columnName) {
+        StatisticObject statisticObject = statisticMap.get(Key.of(schemaName, tableName));
+        if (statisticObject != null) {
+            return statisticObject.getColumnStatistics().get(columnName);
         }
+        return null;
+    }
+
+    public boolean hasLogicTableRow(String schemaName, String tableName) {
+        StatisticObject statisticObject = statisticMap.get(Key.of(schemaName, tableName));
+        return statisticObject != null && statisticObject.getRowCount() != null;
     }
 
     public Double getLogicTableRow(String schemaName, String tableName) {
@@ -92,6 +163,201 @@ public class StatisticCenter {
         return null;
     }
 
+    /**
+     * 行数统计之外,对每个物理分片并行采样,合并出每列的NDV,空值比例与等深直方图
+     */
+    public void analyze(TableHandler tableHandler) {
+        fetchTableRowCount(tableHandler);
+        fetchColumnStatistic(tableHandler);
+    }
+
+    public void fetchColumnStatistic(TableHandler tableHandler) {
+        try {
+            Map<String, ColumnStatistic> columnStatisticMap = computeColumnStatistic(tableHandler);
+            if (columnStatisticMap != null) {
+                updateColumnStatistic(Key.of(tableHandler.getSchemaName(), tableHandler.getTableName()), columnStatisticMap);
+            }
+        } catch (Throwable e) {
+            LOGGER.error("统计列信息失败 " + tableHandler.getSchemaName() + "." + tableHandler.getTableName(), e);
+        }
+    }
+
+    @SneakyThrows
+    public Map<String, ColumnStatistic> computeColumnStatistic(TableHandler tableHandler) {
+        List<Partition> partitions = getSamplePartitions(tableHandler);
+        if (partitions.isEmpty()) {
+            return null;
+        }
+        List<SimpleColumnInfo> columns = tableHandler.getColumns();
+        IOExecutor ioExecutor = MetaClusterCurrent.exist(IOExecutor.class) ? MetaClusterCurrent.wrapper(IOExecutor.class) : IOExecutor.DEFAULT;
+        List<Future> futures = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions) {
+            futures.add(ioExecutor.executeBlocking(promise -> promise.tryComplete(samplePartition(partition, columns))));
+        }
+        CompositeFuture compositeFuture = CompositeFuture.join(futures);
+        compositeFuture.toCompletionStage().toCompletableFuture().get(ANALYZE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        List<PartitionSample> samples = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            PartitionSample sample = compositeFuture.resultAt(i);
+            if (sample != null) {
+                samples.add(sample);
+            }
+        }
+        if (samples.isEmpty()) {
+            return null;
+        }
+        Map<String, ColumnStatistic> res = new HashMap<>();
+        for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++) {
+            SimpleColumnInfo column = columns.get(columnIndex);
+            res.put(column.getColumnName(), mergeColumnStatistic(column, columnIndex, samples));
+        }
+        return res;
+    }
+
+    private List<Partition> getSamplePartitions(TableHandler tableHandler) {
+        if (tableHandler instanceof GlobalTable) {
+            return Collections.singletonList(((GlobalTable) tableHandler).getGlobalDataNode().iterator().next());
+        } else if (tableHandler instanceof ShardingTable) {
+            return ((ShardingTable) tableHandler).getBackends();
+        } else if (tableHandler instanceof NormalTable) {
+            return Collections.singletonList(((NormalTable) tableHandler).getDataNode());
+        }
+        return Collections.emptyList();
+    }
+
+    private PartitionSample samplePartition(Partition partition, List<SimpleColumnInfo> columns) {
+        Double estimate = fetchRowCount(partition.getTargetName(), makeEstimateSql(partition));
+        if (estimate == null) {
+            return null;
+        }
+        String sql = makeSampleSql(partition, columns, estimate);
+        try {
+            ReplicaSelectorManager runtime = MetaClusterCurrent.wrapper(ReplicaSelectorManager.class);
+            String datasourceName = runtime.getDatasourceNameByReplicaName(partition.getTargetName(), false, null);
+            JdbcConnectionManager jdbcConnectionManager = MetaClusterCurrent.wrapper(JdbcConnectionManager.class);
+            try (DefaultConnection connection = jdbcConnectionManager.getConnection(datasourceName);
+                 RowBaseIterator rowBaseIterator = connection.executeQuery(sql)) {
+                List<Object[]> rows = new ArrayList<>();
+                while (rowBaseIterator.next()) {
+                    rows.add(rowBaseIterator.getObjects(columns.size()));
+                }
+                //table_rows是估算值,小表可能为0
+                return new PartitionSample(Math.max(estimate, rows.size()), rows);
+            }
+        } catch (Throwable e) {
+            LOGGER.error("不能采样 " + partition.getUniqueName() + " " + sql, e);
+            return null;
+        }
+    }
+
+    /**
+     * 只读取有界的一段行,不做全表扫描.
+     * 有单列整数主键时从主键范围内的随机位置开始取,否则取前SAMPLE_ROWS_PER_PARTITION行
+     */
+    private String makeSampleSql(Partition partition, List<SimpleColumnInfo> columns, double estimate) {
+        String columnList = columns.stream().map(i -> "`" + i.getColumnName() + "`").collect(Collectors.joining(","));
+        String sql = "select " + columnList + " from " + partition.getTargetSchemaTable();
+        List<SimpleColumnInfo> primaryKeys = columns.stream().filter(SimpleColumnInfo::isPrimaryKey).collect(Collectors.toList());
+        if (estimate > SAMPLE_ROWS_PER_PARTITION && primaryKeys.size() == 1 && isIntegerType(primaryKeys.get(0).getJdbcType())) {
+            String primaryKey = "`" + primaryKeys.get(0).getColumnName() + "`";
+            Double min = fetchRowCount(partition.getTargetName(), "select min(" + primaryKey + ") from " + partition.getTargetSchemaTable());
+            Double max = fetchRowCount(partition.getTargetName(), "select max(" + primaryKey + ") from " + partition.getTargetSchemaTable());
+            if (min != null && max != null) {
+                //窗口起点留出约SAMPLE_ROWS_PER_PARTITION行的主键跨度
+                double span = Math.max(0, (max - min) * (1 - SAMPLE_ROWS_PER_PARTITION / estimate));
+                long start = (long) (min + ThreadLocalRandom.current().nextDouble() * span);
+                sql += " where " + primaryKey + " >= " + start + " order by " + primaryKey;
+            }
+        }
+        return sql + " limit " + SAMPLE_ROWS_PER_PARTITION;
+    }
+
+    private static boolean isIntegerType(JDBCType jdbcType) {
+        switch (jdbcType) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static ColumnStatistic mergeColumnStatistic(SimpleColumnInfo column, int columnIndex, List<PartitionSample> samples) {
+        boolean number = column.getType() == SimpleColumnInfo.Type.NUMBER;
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        List<double[]> valueWeightPairs = new ArrayList<>();
+        double totalRows = 0;
+        double nullRows = 0;
+        double sampleRows = 0;
+        for (PartitionSample sample : samples) {
+            if (sample.getRows().isEmpty()) {
+                totalRows += sample.getRowCount();
+                continue;
+            }
+            double weight = sample.getRowCount() / sample.getRows().size();
+            HyperLogLog partitionHyperLogLog = new HyperLogLog();
+            for (Object[] row : sample.getRows()) {
+                Object value = row[columnIndex];
+                if (value == null) {
+                    nullRows += weight;
+                    continue;
+                }
+                partitionHyperLogLog.add(value);
+                if (number && value instanceof Number) {
+                    valueWeightPairs.add(new double[]{((Number) value).doubleValue(), weight});
+                }
+            }
+            hyperLogLog.merge(partitionHyperLogLog);
+            totalRows += sample.getRowCount();
+            sampleRows += sample.getRows().size();
+        }
+        ColumnStatistic columnStatistic = new ColumnStatistic();
+        columnStatistic.setColumnName(column.getColumnName());
+        columnStatistic.setHyperLogLog(hyperLogLog);
+        double sampleNdv = Math.min(hyperLogLog.estimate(), sampleRows);
+        //采样中几乎都是不同值时,按采样比例放大,否则认为采样已覆盖大部分不同值
+        if (sampleRows > 0 && sampleNdv >= 0.9 * sampleRows) {
+            columnStatistic.setNdv(Math.max(1, sampleNdv * (totalRows - nullRows) / sampleRows));
+        } else {
+            columnStatistic.setNdv(Math.max(1, sampleNdv));
+        }
+        columnStatistic.setNullFraction(totalRows <= 0 ? 0 : Math.min(1.0, nullRows / totalRows));
+        if (!valueWeightPairs.isEmpty()) {
+            valueWeightPairs.sort(Comparator.comparingDouble(i -> i[0]));
+            columnStatistic.setHistogram(Histogram.build(valueWeightPairs, Histogram.DEFAULT_BUCKET_COUNT));
+        }
+        return columnStatistic;
+    }
+
+    @SneakyThrows
+    private void updateColumnStatistic(Key key1, Map<String, ColumnStatistic> columnStatisticMap) {
+        statisticMap.compute(key1, (key, statisticObject) -> {
+            if (statisticObject == null) {
+                statisticObject = new StatisticObject();
+            }
+            statisticObject.getColumnStatistics().putAll(columnStatisticMap);
+            return statisticObject;
+        });
+        JdbcConnectionManager jdbcConnectionManager = MetaClusterCurrent.wrapper(JdbcConnectionManager.class);
+        try (DefaultConnection connection = jdbcConnectionManager.getConnection(MetadataManager.getPrototype())) {
+            Connection rawConnection = connection.getRawConnection();
+            for (ColumnStatistic columnStatistic : columnStatisticMap.values()) {
+                Histogram histogram = columnStatistic.getHistogram();
+                JdbcUtils.execute(rawConnection, "replace into mycat.analyze_column (schema_name,table_name,column_name,ndv,null_fraction,histogram,hll) values(?,?,?,?,?,?,?)",
+                        Arrays.asList(key1.getSchemaName(),
+                                key1.getTableName(),
+                                columnStatistic.getColumnName(),
+                                columnStatistic.getNdv(),
+                                columnStatistic.getNullFraction(),
+                                histogram == null ? null : histogram.toText(),
+                                columnStatistic.getHyperLogLog().toBase64()));
+            }
+        }
+        LOGGER.info("列统计更新  tableName:" + key1 + " " + columnStatisticMap.keySet());
+    }
+
     public void fetchTableRowCount(TableHandler tableHandler) {
         Double aDouble = computeTableRowCount(tableHandler);
         if (aDouble != null) {
@@ -99,6 +365,34 @@ public class StatisticCenter {
         }
     }
 
+    /**
+     * 使用information_schema.tables的table_rows估算行数,不扫描物理表,用于自动统计
+     */
+    public Double estimateTableRowCount(TableHandler tableHandler) {
+        Double sum = null;
+        for (Partition partition : getSamplePartitions(tableHandler)) {
+            Double onePhyRowCount = fetchRowCount(partition.getTargetName(), makeEstimateSql(partition));
+            if (onePhyRowCount != null) {
+                sum = (sum == null ? 0 : sum) + onePhyRowCount;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 刷新行数估算与列统计
+     *
+     * @return 刷新前的行数,没有统计过返回null
+     */
+    public Double refreshByEstimate(TableHandler tableHandler) {
+        Key key = Key.of(tableHandler.getSchemaName(), tableHandler.getTableName());
+        StatisticObject statisticObject = statisticMap.get(key);
+        Double old = statisticObject == null ? null : statisticObject.getRowCount();
+        updateRowCount(key, estimateTableRowCount(tableHandler));
+        fetchColumnStatistic(tableHandler);
+        return old;
+    }
+
     public Double computeTableRowCount(TableHandler tableHandler) {
         try {
             if (tableHandler instanceof GlobalTable) {
@@ -162,13 +456,19 @@ public class StatisticCenter {
         JdbcConnectionManager jdbcConnectionManager = MetaClusterCurrent.wrapper(JdbcConnectionManager.class);
         try (DefaultConnection connection = jdbcConnectionManager.getConnection(MetadataManager.getPrototype())) {
             Connection rawConnection = connection.getRawConnection();
-            JdbcUtils.execute(rawConnection, "insert into mycat.analyze_table (table_rows,name) values(?,?)",
-                    Arrays.asList(value, key1.getSchemaName() + key1.getTableName()));
+            JdbcUtils.execute(rawConnection, "replace into mycat.analyze_table (schema_name,table_name,table_rows) values(?,?,?)",
+                    Arrays.asList(key1.getSchemaName(), key1.getTableName(), value));
         }
 
         LOGGER.info("行统计更新  tableName:" + key1 + " " + res);
     }
 
+    private String makeEstimateSql(Partition partition) {
+        return "select ifnull(sum(table_rows),0) from information_schema.tables where table_schema = '"
+                + partition.getSchema().replace("'", "''") + "' and table_name = '"
+                + partition.getTable().replace("'", "''") + "'";
+    }
+
     private String makeCountSql(Partition schemaInfo) {
         SQLSelectBuilder selectSQLBuilder = SQLBuilderFactory.createSelectSQLBuilder(DbType.mysql);
         return selectSQLBuilder.from(schemaInfo.getTargetSchemaTable()).select("count(1)").toString();
@@ -225,6 +525,14 @@ public class StatisticCenter {
     @Data
     static class StatisticObject {
         private Double rowCount;
+        private final Map<String, ColumnStatistic> columnStatistics = new ConcurrentHashMap<>();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class PartitionSample {
+        private final double rowCount;
+        private final List<Object[]> rows;
     }
 
 
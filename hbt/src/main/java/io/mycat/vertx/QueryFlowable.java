@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.mycat.vertx;
+
+import io.mycat.beans.mycat.MycatRowMetaData;
+import io.mycat.newquery.MysqlCollector;
+import io.mycat.newquery.NewMycatConnection;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.internal.subscriptions.SubscriptionHelper;
+import io.reactivex.rxjava3.internal.util.BackpressureHelper;
+import io.vertx.core.Future;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 带背压的后端查询结果流.
+ * 下游请求量耗尽后缓存的行超过水位时暂停读取后端连接,消费到水位一半时恢复,
+ * 以Long.MAX_VALUE请求(toObservable)时不会暂停,与原来的Observable一致
+ */
+public class QueryFlowable<T> extends Flowable<T> {
+    public static int HIGH_WATERMARK = 128;
+
+    private final Future<NewMycatConnection> connectionFuture;
+    private final String sql;
+    private final List<Object> values;
+    /**
+     * 为null时不输出字段信息
+     */
+    private final Function<MycatRowMetaData, T> columnDefMapper;
+    private final BiFunction<MycatRowMetaData, Object[], T> rowMapper;
+    private Consumer<Throwable> queryEndHandler;
+
+    public QueryFlowable(Future<NewMycatConnection> connectionFuture,
+                         String sql,
+                         List<Object> values,
+                         Function<MycatRowMetaData, T> columnDefMapper,
+                         BiFunction<MycatRowMetaData, Object[], T> rowMapper) {
+        this.connectionFuture = connectionFuture;
+        this.sql = sql;
+        this.values = values;
+        this.columnDefMapper = columnDefMapper;
+        this.rowMapper = rowMapper;
+    }
+
+    /**
+     * 后端查询结束(成功为null,失败为异常)时回调,下游取消时中止后端查询,查询结束后仍会回调,用于归还连接
+     */
+    public QueryFlowable<T> onQueryEnd(Consumer<Throwable> queryEndHandler) {
+        this.queryEndHandler = queryEndHandler;
+        return this;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> subscriber) {
+        QuerySubscription<T> subscription = new QuerySubscription<>(subscriber, columnDefMapper, rowMapper, Math.max(2, HIGH_WATERMARK), queryEndHandler);
+        subscriber.onSubscribe(subscription);
+        // 连接到达
+        connectionFuture.onSuccess(connection -> {
+            subscription.connection = connection;
+            // 预编译到达
+            connection.prepareQuery(sql, values, subscription);
+        });
+        connectionFuture.onFailure(subscription::onError);
+    }
+
+    static final class QuerySubscription<T> extends AtomicInteger implements Subscription, MysqlCollector {
+        final Subscriber<? super T> downstream;
+        final Function<MycatRowMetaData, T> columnDefMapper;
+        final BiFunction<MycatRowMetaData, Object[], T> rowMapper;
+        final int highWatermark;
+        final Consumer<Throwable> queryEndHandler;
+        final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicLong requested = new AtomicLong();
+        volatile NewMycatConnection connection;
+        MycatRowMetaData mycatRowMetaData;
+        volatile boolean done;
+        Throwable error;
+        volatile boolean cancelled;
+        volatile boolean paused;
+
+        QuerySubscription(Subscriber<? super T> downstream,
+                          Function<MycatRowMetaData, T> columnDefMapper,
+                          BiFunction<MycatRowMetaData, Object[], T> rowMapper,
+                          int highWatermark,
+                          Consumer<Throwable> queryEndHandler) {
+            this.downstream = downstream;
+            this.columnDefMapper = columnDefMapper;
+            this.rowMapper = rowMapper;
+            this.highWatermark = highWatermark;
+            this.queryEndHandler = queryEndHandler;
+        }
+
+        @Override
+        public void onColumnDef(MycatRowMetaData mycatRowMetaData) {
+            this.mycatRowMetaData = mycatRowMetaData;
+            if (columnDefMapper != null) {
+                offer(columnDefMapper.apply(mycatRowMetaData));
+            }
+        }
+
+        @Override
+        public void onRow(Object[] row) {
+            offer(rowMapper.apply(mycatRowMetaData, row));
+        }
+
+        @Override
+        public void onComplete() {
+            if (queryEndHandler != null) {
+                queryEndHandler.accept(null);
+            }
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if (queryEndHandler != null) {
+                queryEndHandler.accept(e);
+            }
+            error = e;
+            done = true;
+            drain();
+        }
+
+        private void offer(T value) {
+            if (cancelled) {
+                return;
+            }
+            queue.offer(value);
+            size.incrementAndGet();
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                BackpressureHelper.add(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            resume();
+            //中止后端查询,而不是读完并丢弃剩余的行
+            NewMycatConnection connection = this.connection;
+            if (!done && connection != null) {
+                connection.abandonQuery();
+            }
+            if (getAndIncrement() == 0) {
+                queue.clear();
+            }
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                long r = requested.get();
+                long e = 0;
+                while (e != r) {
+                    if (cancelled) {
+                        queue.clear();
+                        return;
+                    }
+                    boolean d = done;
+                    T value = queue.poll();
+                    if (value == null) {
+                        if (d) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    size.decrementAndGet();
+                    downstream.onNext(value);
+                    e++;
+                }
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+                if (done && queue.isEmpty()) {
+                    terminate();
+                    return;
+                }
+                if (e != 0) {
+                    BackpressureHelper.produced(requested, e);
+                }
+                flowControl();
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * 在drain中串行执行,避免暂停和恢复交错
+         */
+        private void flowControl() {
+            NewMycatConnection connection = this.connection;
+            if (connection == null) {
+                return;
+            }
+            int n = size.get();
+            if (!paused) {
+                if (n >= highWatermark) {
+                    paused = true;
+                    connection.pauseQuery();
+                }
+            } else if (n <= highWatermark / 2) {
+                resume();
+            }
+        }
+
+        private void resume() {
+            NewMycatConnection connection = this.connection;
+            if (paused && connection != null) {
+                paused = false;
+                connection.resumeQuery();
+            }
+        }
+
+        private void terminate() {
+            resume();
+            Throwable throwable = error;
+            if (throwable != null) {
+                downstream.onError(throwable);
+            } else {
+                downstream.onComplete();
+            }
+        }
+    }
+}
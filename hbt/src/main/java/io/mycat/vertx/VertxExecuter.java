@@ -45,11 +45,10 @@ import io.mycat.calcite.table.NormalTable;
 import io.mycat.calcite.table.ShardingTable;
 import io.mycat.config.GlobalTableConfig;
 import io.mycat.config.ServerConfig;
-import io.mycat.newquery.MysqlCollector;
 import io.mycat.newquery.NewMycatConnection;
 import io.mycat.newquery.SqlResult;
 import io.mycat.util.MycatSQLExprTableSourceUtil;
-import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.mysqlclient.MySQLClient;
@@ -816,89 +815,32 @@ public class VertxExecuter {
     }
 
 
-    public static Observable<MysqlPayloadObject> runQueryOutputAsMysqlPayloadObject(Future<NewMycatConnection> connectionFuture,
+    /**
+     * 按下游请求量读取后端结果,下游消费不过来时暂停读取后端连接
+     */
+    public static Flowable<MysqlPayloadObject> runQueryOutputAsMysqlPayloadFlowable(Future<NewMycatConnection> connectionFuture,
                                                                                     String sql,
                                                                                     List<Object> values) {
-        return Observable.create(emitter -> {
-            // 连接到达
-            connectionFuture.onSuccess(connection -> {
-                // 预编译到达
-                connection.prepareQuery(sql, values, new MysqlCollector() {
-
-                    MycatRowMetaData mycatRowMetaData;
-
-                    @Override
-                    public void onColumnDef(MycatRowMetaData mycatRowMetaData) {
-                        emitter.onNext(new MySQLColumnDef(this.mycatRowMetaData = mycatRowMetaData));
-                    }
-
-                    @Override
-                    public void onRow(Object[] row) {
-                        emitter.onNext(new MysqlObjectArrayRow(BaseRowObservable.getObjects(row, this.mycatRowMetaData)));
-                    }
-
-                    @Override
-                    public void onComplete() {
-                        emitter.onComplete();
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                        emitter.onError(e);
-                    }
-                });
-            });
-            connectionFuture.onFailure(i -> emitter.onError(i));
-        });
+        return new QueryFlowable<>(connectionFuture, sql, values,
+                mycatRowMetaData -> new MySQLColumnDef(mycatRowMetaData),
+                (mycatRowMetaData, row) -> new MysqlObjectArrayRow(BaseRowObservable.getObjects(row, mycatRowMetaData)));
     }
 
 
-    public static interface Queryer<T> {
-        Observable<T> runQuery(Future<NewMycatConnection> connectionFuture,
-                               String sql,
-                               List<Object> values,
-                               MycatRowMetaData rowMetaDataArg);
-    }
-
-    public static Observable<Object[]> runQuery(Future<NewMycatConnection> connectionFuture,
-                                                String sql,
-                                                List<Object> values,
-                                                MycatRowMetaData rowMetaDataArg) {
-        return Observable.create(emitter -> {
-            // 连接到达
-            connectionFuture.onSuccess(connection -> {
-                // 预编译到达
-                connection.prepareQuery(sql, values, new MysqlCollector() {
-
-                    MycatRowMetaData mycatRowMetaData;
-
-                    @Override
-                    public void onColumnDef(MycatRowMetaData mycatRowMetaData) {
-                        this.mycatRowMetaData = Optional.ofNullable(rowMetaDataArg).orElse(mycatRowMetaData);
-                    }
-
-                    @Override
-                    public void onRow(Object[] row) {
-                        try {
-                            emitter.onNext(BaseRowObservable.getObjects(row, this.mycatRowMetaData));
-                        } catch (Exception e) {
-                            LOGGER.error("", e);
-                            throw e;
-                        }
-                    }
-
-                    @Override
-                    public void onComplete() {
-                        emitter.onComplete();
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                        emitter.onError(e);
-                    }
-                });
-            });
-            connectionFuture.onFailure(i -> emitter.onError(i));
+    /**
+     * 按下游请求量读取后端结果,不再提供Observable版本,避免以Long.MAX_VALUE请求后失去背压
+     */
+    public static QueryFlowable<Object[]> runQueryFlowable(Future<NewMycatConnection> connectionFuture,
+                                                      String sql,
+                                                      List<Object> values,
+                                                      MycatRowMetaData rowMetaDataArg) {
+        return new QueryFlowable<>(connectionFuture, sql, values, null, (mycatRowMetaData, row) -> {
+            try {
+                return BaseRowObservable.getObjects(row, Optional.ofNullable(rowMetaDataArg).orElse(mycatRowMetaData));
+            } catch (Exception e) {
+                LOGGER.error("", e);
+                throw e;
+            }
         });
     }
 
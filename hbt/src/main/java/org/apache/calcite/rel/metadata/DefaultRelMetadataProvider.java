@@ -57,7 +57,9 @@ public class DefaultRelMetadataProvider extends ChainedRelMetadataProvider {
             RelMdDistribution.SOURCE,
             RelMdLowerBoundCost.SOURCE,
             RelMdMemory.SOURCE,
+            MycatRelMdDistinctRowCount.SOURCE,
             RelMdDistinctRowCount.SOURCE,
+            MycatRelMdSelectivity.SOURCE,
             RelMdSelectivity.SOURCE,
             RelMdExplainVisibility.SOURCE,
             RelMdPredicates.SOURCE,
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import io.mycat.MycatStatistic;
+import io.mycat.statistic.ColumnStatistic;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.NumberUtil;
+
+/**
+ * 使用StatisticCenter中各列的NDV估算表扫描上的不同值个数,
+ * 没有统计信息时与RelMdDistinctRowCount一样只处理唯一键.
+ */
+public class MycatRelMdDistinctRowCount
+    implements MetadataHandler<BuiltInMetadata.DistinctRowCount> {
+  public static final RelMetadataProvider SOURCE =
+      ReflectiveRelMetadataProvider.reflectiveSource(
+          BuiltInMethod.DISTINCT_ROW_COUNT.method, new MycatRelMdDistinctRowCount());
+
+  public MetadataDef<BuiltInMetadata.DistinctRowCount> getDef() {
+    return BuiltInMetadata.DistinctRowCount.DEF;
+  }
+
+  public Double getDistinctRowCount(TableScan rel, RelMetadataQuery mq,
+      ImmutableBitSet groupKey, RexNode predicate) {
+    MycatStatistic statistic = MycatRelMdSelectivity.getMycatStatistic(rel.getTable());
+    if (statistic == null || groupKey.isEmpty()) {
+      boolean uniq = RelMdUtil.areColumnsDefinitelyUnique(mq, rel, groupKey);
+      if (uniq) {
+        return NumberUtil.multiply(mq.getRowCount(rel), mq.getSelectivity(rel, predicate));
+      }
+      return null;
+    }
+    Double rowCount = mq.getRowCount(rel);
+    if (rowCount == null) {
+      return null;
+    }
+    double selectivity = 1.0;
+    if (predicate != null && !predicate.isAlwaysTrue()) {
+      Double s = mq.getSelectivity(rel, predicate);
+      selectivity = s == null ? RelMdUtil.guessSelectivity(predicate) : s;
+    }
+    double rows = rowCount * selectivity;
+    if (statistic.isKey(groupKey) || RelMdUtil.areColumnsDefinitelyUnique(mq, rel, groupKey)) {
+      return rows;
+    }
+    double ndv = 1.0;
+    for (int index : groupKey) {
+      ColumnStatistic columnStatistic = statistic.getColumnStatistic(index);
+      if (columnStatistic == null) {
+        return null;
+      }
+      ndv *= columnStatistic.getNdv();
+    }
+    ndv = Math.min(ndv, rowCount);
+    return RelMdUtil.numDistinctVals(ndv, rows);
+  }
+}
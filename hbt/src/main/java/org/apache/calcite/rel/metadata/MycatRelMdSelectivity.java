@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import io.mycat.MycatStatistic;
+import io.mycat.calcite.spm.ParamHolder;
+import io.mycat.statistic.ColumnStatistic;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 使用StatisticCenter中的列统计(NDV,空值比例,直方图)估算表扫描上谓词的选择率,
+ * 没有统计信息的谓词与RelMdSelectivity一样使用guessSelectivity.
+ */
+public class MycatRelMdSelectivity
+    implements MetadataHandler<BuiltInMetadata.Selectivity> {
+  public static final RelMetadataProvider SOURCE =
+      ReflectiveRelMetadataProvider.reflectiveSource(
+          BuiltInMethod.SELECTIVITY.method, new MycatRelMdSelectivity());
+
+  public MetadataDef<BuiltInMetadata.Selectivity> getDef() {
+    return BuiltInMetadata.Selectivity.DEF;
+  }
+
+  public Double getSelectivity(TableScan rel, RelMetadataQuery mq, RexNode predicate) {
+    MycatStatistic statistic = getMycatStatistic(rel.getTable());
+    if (statistic == null || predicate == null || predicate.isAlwaysTrue()) {
+      return RelMdUtil.guessSelectivity(predicate);
+    }
+    double selectivity = 1.0;
+    for (RexNode conjunction : RelOptUtil.conjunctions(predicate)) {
+      Double s = estimate(statistic, conjunction);
+      selectivity *= s != null ? s : RelMdUtil.guessSelectivity(conjunction);
+    }
+    return selectivity;
+  }
+
+  public static MycatStatistic getMycatStatistic(RelOptTable relOptTable) {
+    if (relOptTable == null) {
+      return null;
+    }
+    Table table = relOptTable.unwrap(Table.class);
+    if (table == null) {
+      return null;
+    }
+    Statistic statistic = table.getStatistic();
+    if (statistic instanceof MycatStatistic) {
+      return (MycatStatistic) statistic;
+    }
+    return null;
+  }
+
+  private static Double estimate(MycatStatistic statistic, RexNode rexNode) {
+    if (!(rexNode instanceof RexCall)) {
+      return null;
+    }
+    RexCall call = (RexCall) rexNode;
+    List<RexNode> operands = call.getOperands();
+    SqlKind kind = call.getKind();
+    switch (kind) {
+      case IS_NULL:
+      case IS_NOT_NULL: {
+        ColumnStatistic columnStatistic = getColumnStatistic(statistic, operands.get(0));
+        if (columnStatistic == null) {
+          return null;
+        }
+        double nullFraction = columnStatistic.getNullFraction();
+        return kind == SqlKind.IS_NULL ? nullFraction : 1.0 - nullFraction;
+      }
+      case EQUALS:
+      case NOT_EQUALS:
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL: {
+        if (operands.size() != 2) {
+          return null;
+        }
+        RexNode column = operands.get(0);
+        RexNode value = operands.get(1);
+        if (!(column instanceof RexInputRef)) {
+          column = operands.get(1);
+          value = operands.get(0);
+          kind = kind.reverse();
+        }
+        ColumnStatistic columnStatistic = getColumnStatistic(statistic, column);
+        if (columnStatistic == null) {
+          return null;
+        }
+        if (kind == SqlKind.EQUALS) {
+          return columnStatistic.equalSelectivity();
+        }
+        if (kind == SqlKind.NOT_EQUALS) {
+          return 1.0 - columnStatistic.getNullFraction() - columnStatistic.equalSelectivity();
+        }
+        Double number = getNumber(value);
+        if (number == null) {
+          return null;
+        }
+        if (kind == SqlKind.LESS_THAN || kind == SqlKind.LESS_THAN_OR_EQUAL) {
+          return columnStatistic.rangeSelectivity(null, number);
+        }
+        return columnStatistic.rangeSelectivity(number, null);
+      }
+      default:
+        return null;
+    }
+  }
+
+  private static ColumnStatistic getColumnStatistic(MycatStatistic statistic, RexNode rexNode) {
+    if (rexNode instanceof RexInputRef) {
+      return statistic.getColumnStatistic(((RexInputRef) rexNode).getIndex());
+    }
+    return null;
+  }
+
+  private static Double getNumber(RexNode rexNode) {
+    Object value = null;
+    if (rexNode instanceof RexLiteral && SqlTypeUtil.isNumeric(rexNode.getType())) {
+      value = ((RexLiteral) rexNode).getValueAs(BigDecimal.class);
+    } else if (rexNode instanceof RexDynamicParam) {
+      List<Object> params = ParamHolder.CURRENT_THREAD_LOCAL.get().getParams();
+      int index = ((RexDynamicParam) rexNode).getIndex();
+      if (params != null && index < params.size()) {
+        value = params.get(index);
+      }
+    }
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    return null;
+  }
+}
@@ -6,6 +6,7 @@ import io.mycat.DrdsSqlWithParams;
 import io.mycat.MetaClusterCurrent;
 import io.mycat.MycatDataContext;
 import io.mycat.newquery.NewMycatConnection;
+import io.mycat.serializable.QueryMemoryBudget;
 import io.reactivex.rxjava3.core.Observable;
 import io.vertx.core.Future;
 import org.apache.arrow.vector.VectorSchemaRoot;
@@ -61,4 +62,9 @@ public interface NewMycatDataContext extends DataContext {
     public Integer releaseLock(String name);
 
     public Integer isFreeLock(String name);
+
+    /**
+     * 当前查询的物化内存预算,物化算子通过它预留内存
+     */
+    public QueryMemoryBudget getQueryMemoryBudget();
 }
@@ -2,12 +2,18 @@ package org.apache.calcite.util;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import io.mycat.serializable.MemoryReservation;
 import io.reactivex.rxjava3.core.Observable;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.ExtendedEnumerable;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Predicate1;
+import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.Types;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.runtime.NewMycatDataContext;
@@ -36,6 +42,16 @@ public enum RxBuiltInMethod {
     OBSERVABLE_MERGE_SORT2(RxBuiltInMethodImpl.class, "mergeSort", List.class, Comparator.class),
 //    OBSERVABLE_MATIERIAL(RxBuiltInMethodImpl.class, "matierial", Observable.class),
     ENUMERABLE_MATIERIAL(RxBuiltInMethodImpl.class, "matierial", Enumerable.class),
+    ENUMERABLE_SPILL_MATIERIAL(RxBuiltInMethodImpl.class, "matierial", DataContext.class, Enumerable.class),
+    ENUMERABLE_SPILL_ORDER_BY(RxBuiltInMethodImpl.class, "orderBy", DataContext.class, Enumerable.class,
+            Function1.class, Comparator.class, int.class, int.class),
+    ENUMERABLE_SPILL_HASH_JOIN(RxBuiltInMethodImpl.class, "hashJoin", DataContext.class, Enumerable.class, Enumerable.class,
+            Function1.class, Function1.class, Function2.class, EqualityComparer.class,
+            boolean.class, boolean.class, Predicate2.class),
+    MEMORY_RESERVATION(RxBuiltInMethodImpl.class, "reservation", DataContext.class, String.class),
+    MEMORY_RESERVE_ROWS(RxBuiltInMethodImpl.class, "reserveRows", MemoryReservation.class, Enumerable.class),
+    MEMORY_RESERVE_EACH(RxBuiltInMethodImpl.class, "reserveEach", MemoryReservation.class, long.class, Function0.class),
+    MEMORY_RELEASE_ON_CLOSE(RxBuiltInMethodImpl.class, "releaseOnClose", MemoryReservation.class, Enumerable.class),
 //    OBSERVABLE_BIND(Bindable.class, "bindObservable", NewMycatDataContext.class),
     AS_OBSERVABLE(RxBuiltInMethodImpl.class, "asObservable", Object[][].class),
     AS_GATHER(RxBuiltInMethodImpl.class, "asGather", Enumerable.class),
@@ -2,21 +2,35 @@ package org.apache.calcite.util;
 
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import hu.akarnokd.rxjava3.operators.Flowables;
 import io.mycat.MycatRxJavaUtl;
+import io.mycat.calcite.executor.MergeSortObservable;
 import io.mycat.serializable.MaterializedRecordSetFactory;
+import io.mycat.serializable.MemoryReservation;
 import io.mycat.serializable.OffHeapObjectList;
+import io.mycat.serializable.QueryMemoryBudget;
+import io.mycat.serializable.QueryMemoryGovernor;
 import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Predicate1;
+import org.apache.calcite.linq4j.function.Predicate2;
+import org.apache.calcite.runtime.NewMycatDataContext;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -138,14 +152,9 @@ public class RxBuiltInMethodImpl {
     public static <T> Observable<T> mergeSort(List<Observable<T>> inputs,
                                               Comparator<T> sortFunction,
                                               long skip, long limit) {
-        Observable<T> observable = mergeSort(inputs, sortFunction);
-        if (skip > 0) {
-            observable = observable.skip(skip);
-        }
-        if (limit > 0) {
-            observable = observable.take(limit);
-        }
-        return observable;
+        //生成代码的输入是Observable,不能按请求量读取,只能缓存
+        List<Flowable<T>> flowables = inputs.stream().map(i -> i.toFlowable(BackpressureStrategy.BUFFER)).collect(Collectors.toList());
+        return MergeSortObservable.create(flowables, sortFunction, skip, limit > 0 ? limit : -1);
     }
 
     public static <T> Observable<T> mergeSort(List<Observable<T>> inputs, Comparator<T> sortFunction) {
@@ -155,11 +164,19 @@ public class RxBuiltInMethodImpl {
     }
 
     public static Enumerable<Object[]> matierial(Enumerable<Object[]> input) {
+        return matierial(input, () -> MaterializedRecordSetFactory.DEFAULT_FACTORY.createRecordSet());
+    }
+
+    public static Enumerable<Object[]> matierial(DataContext root, Enumerable<Object[]> input) {
+        return matierial(input, () -> MaterializedRecordSetFactory.DEFAULT_FACTORY.createRecordSet(getQueryMemoryBudget(root)));
+    }
+
+    private static Enumerable<Object[]> matierial(Enumerable<Object[]> input, Supplier<OffHeapObjectList> recordSetSupplier) {
         return new AbstractEnumerable<Object[]>() {
 
             @Override
             public Enumerator<Object[]> enumerator() {
-                OffHeapObjectList recordSet = MaterializedRecordSetFactory.DEFAULT_FACTORY.createRecordSet();
+                OffHeapObjectList recordSet = recordSetSupplier.get();
                 Enumerator<Object[]> enumerator = input.enumerator();
                 while (enumerator.moveNext()) {
                     recordSet.addObjects(enumerator.current());
@@ -193,6 +210,385 @@ public class RxBuiltInMethodImpl {
         };
     }
 
+    /**
+     * 排序,行数超过QueryMemoryBudget.SPILL_ROW_THRESHOLD或内存预留失败时把有序段写入堆外列式存储,最后多路归并
+     */
+    public static <T, K> Enumerable<T> orderBy(DataContext root, Enumerable<T> source,
+                                               Function1<T, K> keySelector, Comparator<K> comparator,
+                                               int offset, int fetch) {
+        if (fetch < Integer.MAX_VALUE && (long) offset + fetch <= QueryMemoryBudget.SPILL_ROW_THRESHOLD) {
+            return EnumerableDefaults.orderBy(source, keySelector, comparator, offset, fetch);
+        }
+        Comparator<K> keyComparator = comparator != null ? comparator : (Comparator) Comparator.naturalOrder();
+        Comparator<T> rowComparator = (o1, o2) -> keyComparator.compare(keySelector.apply(o1), keySelector.apply(o2));
+        return new AbstractEnumerable<T>() {
+            @Override
+            public Enumerator<T> enumerator() {
+                QueryMemoryBudget budget = getQueryMemoryBudget(root);
+                MemoryReservation reservation = budget.reservation("MycatMemSort");
+                List<OffHeapObjectList> runs = new ArrayList<>();
+                List<T> buffer = new ArrayList<>();
+                long bufferBytes = 0;
+                boolean scalar = false;
+                try (Enumerator<T> enumerator = source.enumerator()) {
+                    while (enumerator.moveNext()) {
+                        T current = enumerator.current();
+                        if (buffer.isEmpty() && runs.isEmpty()) {
+                            scalar = !(current instanceof Object[]);
+                        }
+                        long rowBytes = QueryMemoryGovernor.estimateRowBytes(current);
+                        boolean reserved = reservation.tryReserve(rowBytes);
+                        if (!reserved && !buffer.isEmpty()) {
+                            runs.add(writeSortedRun(buffer, rowComparator, budget, scalar));
+                            buffer.clear();
+                            reservation.release(bufferBytes);
+                            bufferBytes = 0;
+                            reserved = reservation.tryReserve(rowBytes);
+                        }
+                        buffer.add(current);
+                        if (reserved) {
+                            bufferBytes += rowBytes;
+                        }
+                        if (buffer.size() >= QueryMemoryBudget.SPILL_ROW_THRESHOLD) {
+                            runs.add(writeSortedRun(buffer, rowComparator, budget, scalar));
+                            buffer.clear();
+                            reservation.release(bufferBytes);
+                            bufferBytes = 0;
+                        }
+                    }
+                } catch (Throwable throwable) {
+                    runs.forEach(OffHeapObjectList::close);
+                    reservation.close();
+                    throw throwable;
+                }
+                List<T> sorted;
+                if (runs.isEmpty()) {
+                    buffer.sort(rowComparator);
+                    sorted = buffer;
+                } else {
+                    if (!buffer.isEmpty()) {
+                        runs.add(writeSortedRun(buffer, rowComparator, budget, scalar));
+                    }
+                    sorted = null;
+                    reservation.close();
+                }
+                boolean scalarRows = scalar;
+                //reset时重新遍历内存中的有序结果或重新打开有序段归并
+                return new SpillEnumerator<>(() -> {
+                    Iterator<T> iterator = sorted != null ? sorted.iterator() : mergeRuns(runs, rowComparator, scalarRows);
+                    for (int i = 0; i < offset && iterator.hasNext(); i++) {
+                        iterator.next();
+                    }
+                    return Linq4j.iterableEnumerator(limit(iterator, fetch));
+                }, runs, reservation);
+            }
+        };
+    }
+
+    /**
+     * hash join,build侧行数超过QueryMemoryBudget.SPILL_ROW_THRESHOLD或内存预留失败时两侧按join key分区写入堆外列式存储,
+     * 再逐个分区做hash join(grace hash join)
+     */
+    public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+            DataContext root,
+            Enumerable<TSource> outer, Enumerable<TInner> inner,
+            Function1<TSource, TKey> outerKeySelector,
+            Function1<TInner, TKey> innerKeySelector,
+            Function2<TSource, TInner, TResult> resultSelector,
+            EqualityComparer<TKey> comparer,
+            boolean generateNullsOnLeft, boolean generateNullsOnRight,
+            Predicate2<TSource, TInner> predicate) {
+        return new AbstractEnumerable<TResult>() {
+            @Override
+            public Enumerator<TResult> enumerator() {
+                QueryMemoryBudget budget = getQueryMemoryBudget(root);
+                MemoryReservation reservation = budget.reservation("MycatHashJoin");
+                List<TInner> buffer = new ArrayList<>();
+                Enumerator<TInner> innerEnumerator = inner.enumerator();
+                boolean overflow = false;
+                try {
+                    while (innerEnumerator.moveNext()) {
+                        TInner current = innerEnumerator.current();
+                        buffer.add(current);
+                        if (buffer.size() > QueryMemoryBudget.SPILL_ROW_THRESHOLD
+                                || !reservation.tryReserve(QueryMemoryGovernor.estimateRowBytes(current))) {
+                            overflow = true;
+                            break;
+                        }
+                    }
+                    if (!overflow) {
+                        Enumerable<TResult> join = EnumerableDefaults.hashJoin(outer, Linq4j.asEnumerable(buffer), outerKeySelector, innerKeySelector,
+                                resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight, predicate);
+                        return new SpillEnumerator<>(join::enumerator, Collections.emptyList(), reservation);
+                    }
+                    List<OffHeapObjectList> lists = new ArrayList<>();
+                    try {
+                        OffHeapObjectList[] innerPartitions = newPartitions(budget, lists);
+                        OffHeapObjectList[] outerPartitions = newPartitions(budget, lists);
+                        boolean innerScalar = !(buffer.get(0) instanceof Object[]);
+                        for (TInner row : buffer) {
+                            innerPartitions[partition(innerKeySelector.apply(row), comparer)].addObjects(toRow(row, innerScalar));
+                        }
+                        buffer = null;
+                        reservation.close();
+                        while (innerEnumerator.moveNext()) {
+                            TInner row = innerEnumerator.current();
+                            innerPartitions[partition(innerKeySelector.apply(row), comparer)].addObjects(toRow(row, innerScalar));
+                        }
+                        boolean outerScalar = false;
+                        boolean first = true;
+                        try (Enumerator<TSource> outerEnumerator = outer.enumerator()) {
+                            while (outerEnumerator.moveNext()) {
+                                TSource row = outerEnumerator.current();
+                                if (first) {
+                                    outerScalar = !(row instanceof Object[]);
+                                    first = false;
+                                }
+                                outerPartitions[partition(outerKeySelector.apply(row), comparer)].addObjects(toRow(row, outerScalar));
+                            }
+                        }
+                        List<Enumerable<TResult>> joins = new ArrayList<>(SPILL_PARTITIONS);
+                        for (int i = 0; i < SPILL_PARTITIONS; i++) {
+                            innerPartitions[i].finish();
+                            outerPartitions[i].finish();
+                            joins.add(EnumerableDefaults.hashJoin(
+                                    fromRows(outerPartitions[i], outerScalar),
+                                    fromRows(innerPartitions[i], innerScalar),
+                                    outerKeySelector, innerKeySelector,
+                                    resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight, predicate));
+                        }
+                        Enumerable<TResult> join = Linq4j.concat(joins);
+                        return new SpillEnumerator<>(join::enumerator, lists, reservation);
+                    } catch (Throwable throwable) {
+                        lists.forEach(OffHeapObjectList::close);
+                        throw throwable;
+                    }
+                } catch (Throwable throwable) {
+                    reservation.close();
+                    throw throwable;
+                } finally {
+                    innerEnumerator.close();
+                }
+            }
+        };
+    }
+
+    public static MemoryReservation reservation(DataContext root, String operator) {
+        return getQueryMemoryBudget(root).reservation(operator);
+    }
+
+    /**
+     * 不能落盘的算子按输入行预留内存,预算不足时报错
+     */
+    public static <T> Enumerable<T> reserveRows(MemoryReservation reservation, Enumerable<T> input) {
+        return new AbstractEnumerable<T>() {
+            @Override
+            public Enumerator<T> enumerator() {
+                Enumerator<T> enumerator = input.enumerator();
+                return new Enumerator<T>() {
+                    @Override
+                    public T current() {
+                        return enumerator.current();
+                    }
+
+                    @Override
+                    public boolean moveNext() {
+                        if (enumerator.moveNext()) {
+                            reservation.reserve(QueryMemoryGovernor.estimateRowBytes(enumerator.current()));
+                            return true;
+                        }
+                        return false;
+                    }
+
+                    @Override
+                    public void reset() {
+                        enumerator.reset();
+                    }
+
+                    @Override
+                    public void close() {
+                        enumerator.close();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * 每创建一个分组的累加器预留一次内存,预算不足时报错
+     */
+    public static <T> Function0<T> reserveEach(MemoryReservation reservation, long bytes, Function0<T> initializer) {
+        return () -> {
+            reservation.reserve(bytes);
+            return initializer.apply();
+        };
+    }
+
+    /**
+     * 结果消费完毕后归还算子的预留内存
+     */
+    public static <T> Enumerable<T> releaseOnClose(MemoryReservation reservation, Enumerable<T> output) {
+        return new AbstractEnumerable<T>() {
+            @Override
+            public Enumerator<T> enumerator() {
+                return new SpillEnumerator<>(null, output.enumerator(), Collections.emptyList(), reservation);
+            }
+        };
+    }
+
+    private static final int SPILL_PARTITIONS = 16;
+
+    private static QueryMemoryBudget getQueryMemoryBudget(DataContext root) {
+        if (root instanceof NewMycatDataContext) {
+            return ((NewMycatDataContext) root).getQueryMemoryBudget();
+        }
+        return QueryMemoryBudget.create();
+    }
+
+    private static OffHeapObjectList[] newPartitions(QueryMemoryBudget budget, List<OffHeapObjectList> lists) {
+        OffHeapObjectList[] partitions = new OffHeapObjectList[SPILL_PARTITIONS];
+        for (int i = 0; i < SPILL_PARTITIONS; i++) {
+            partitions[i] = MaterializedRecordSetFactory.DEFAULT_FACTORY.createRecordSet(budget);
+            lists.add(partitions[i]);
+        }
+        return partitions;
+    }
+
+    private static <TKey> int partition(TKey key, EqualityComparer<TKey> comparer) {
+        if (key == null) {
+            return 0;
+        }
+        int h = comparer != null ? comparer.hashCode(key) : key.hashCode();
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % SPILL_PARTITIONS;
+    }
+
+    private static Object[] toRow(Object row, boolean scalar) {
+        return scalar ? new Object[]{row} : (Object[]) row;
+    }
+
+    private static <T> Enumerable<T> fromRows(OffHeapObjectList list, boolean scalar) {
+        Iterable<T> iterable = () -> Iterators.transform(list.iterator(), row -> scalar ? (T) row[0] : (T) row);
+        return Linq4j.asEnumerable(iterable);
+    }
+
+    private static <T> OffHeapObjectList writeSortedRun(List<T> buffer, Comparator<T> comparator,
+                                                        QueryMemoryBudget budget, boolean scalar) {
+        buffer.sort(comparator);
+        OffHeapObjectList run = MaterializedRecordSetFactory.DEFAULT_FACTORY.createRecordSet(budget);
+        for (T t : buffer) {
+            run.addObjects(toRow(t, scalar));
+        }
+        run.finish();
+        return run;
+    }
+
+    private static <T> Iterator<T> mergeRuns(List<OffHeapObjectList> runs, Comparator<T> comparator, boolean scalar) {
+        class Cursor {
+            final int index;
+            final Iterator<Object[]> iterator;
+            T current;
+
+            Cursor(int index, Iterator<Object[]> iterator) {
+                this.index = index;
+                this.iterator = iterator;
+            }
+
+            boolean advance() {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                Object[] row = iterator.next();
+                current = scalar ? (T) row[0] : (T) row;
+                return true;
+            }
+        }
+        //相等时按段的先后顺序输出,保持排序稳定
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(runs.size(), (o1, o2) -> {
+            int c = comparator.compare(o1.current, o2.current);
+            return c != 0 ? c : Integer.compare(o1.index, o2.index);
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            Cursor cursor = new Cursor(i, runs.get(i).iterator());
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Cursor cursor = queue.poll();
+                if (cursor == null) {
+                    throw new NoSuchElementException();
+                }
+                T res = cursor.current;
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+                return res;
+            }
+        };
+    }
+
+    private static <T> Iterable<T> limit(Iterator<T> iterator, int fetch) {
+        return () -> Iterators.limit(iterator, fetch);
+    }
+
+    /**
+     * 关闭时释放落盘数据与预留内存.
+     * reset时关闭当前的enumerator并通过factory重新打开,物化的结果仍然保留,不会重新执行输入;
+     * 没有factory时交给原enumerator处理
+     */
+    private static final class SpillEnumerator<T> implements Enumerator<T> {
+        private final Function0<Enumerator<T>> factory;
+        private Enumerator<T> enumerator;
+        private final List<OffHeapObjectList> lists;
+        private final MemoryReservation reservation;
+
+        SpillEnumerator(Function0<Enumerator<T>> factory, List<OffHeapObjectList> lists, MemoryReservation reservation) {
+            this(factory, factory.apply(), lists, reservation);
+        }
+
+        SpillEnumerator(Function0<Enumerator<T>> factory, Enumerator<T> enumerator, List<OffHeapObjectList> lists, MemoryReservation reservation) {
+            this.factory = factory;
+            this.enumerator = enumerator;
+            this.lists = lists;
+            this.reservation = reservation;
+        }
+
+        @Override
+        public T current() {
+            return enumerator.current();
+        }
+
+        @Override
+        public boolean moveNext() {
+            return enumerator.moveNext();
+        }
+
+        @Override
+        public void reset() {
+            if (factory == null) {
+                enumerator.reset();
+                return;
+            }
+            enumerator.close();
+            enumerator = factory.apply();
+        }
+
+        @Override
+        public void close() {
+            enumerator.close();
+            lists.forEach(OffHeapObjectList::close);
+            reservation.close();
+        }
+    }
+
 
     public static Observable<Object[]> asObservable(Object[][] input) {
         return Observable.fromArray(input);
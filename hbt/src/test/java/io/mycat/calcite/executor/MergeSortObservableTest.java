@@ -0,0 +1,117 @@
+package io.mycat.calcite.executor;
+
+import io.reactivex.rxjava3.core.Flowable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class MergeSortObservableTest {
+
+    /**
+     * 记录请求量与已发出行数之差,用于检查分片的缓存上限
+     */
+    static final class Shard {
+        final List<Integer> rows;
+        final AtomicLong requested = new AtomicLong();
+        final AtomicLong emitted = new AtomicLong();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        long maxOutstanding;
+
+        Shard(List<Integer> rows) {
+            this.rows = rows;
+        }
+
+        Flowable<Integer> flowable() {
+            return Flowable.fromIterable(rows)
+                    .doOnNext(i -> emitted.incrementAndGet())
+                    .doOnRequest(n -> {
+                        requested.addAndGet(n);
+                        maxOutstanding = Math.max(maxOutstanding, requested.get() - emitted.get());
+                    })
+                    .doOnCancel(() -> cancelled.set(true));
+        }
+    }
+
+    private static List<Shard> shards(int count, int rowsPerShard) {
+        List<Shard> shards = new ArrayList<>();
+        for (int s = 0; s < count; s++) {
+            int shard = s;
+            shards.add(new Shard(IntStream.range(0, rowsPerShard).map(i -> i * count + shard).boxed().collect(Collectors.toList())));
+        }
+        return shards;
+    }
+
+    private static List<Integer> merge(List<Shard> shards, long offset, long fetch, int prefetch) {
+        List<Flowable<Integer>> sources = shards.stream().map(Shard::flowable).collect(Collectors.toList());
+        return new MergeSortObservable<>(sources, Comparator.<Integer>naturalOrder(), offset, fetch, prefetch)
+                .toList().blockingGet();
+    }
+
+    @Test
+    public void testMerge() {
+        List<Shard> shards = shards(4, 1000);
+        List<Integer> res = merge(shards, 0, -1, 16);
+        Assert.assertEquals(IntStream.range(0, 4000).boxed().collect(Collectors.toList()), res);
+    }
+
+    @Test
+    public void testBoundedDemand() {
+        List<Shard> shards = shards(3, 5000);
+        merge(shards, 0, -1, 32);
+        for (Shard shard : shards) {
+            Assert.assertTrue("outstanding " + shard.maxOutstanding, shard.maxOutstanding <= 32);
+            Assert.assertEquals(5000, shard.emitted.get());
+        }
+    }
+
+    @Test
+    public void testOffsetFetchCancelsShards() {
+        List<Shard> shards = shards(4, 10000);
+        List<Integer> res = merge(shards, 10, 20, 8);
+        Assert.assertEquals(IntStream.range(10, 30).boxed().collect(Collectors.toList()), res);
+        for (Shard shard : shards) {
+            Assert.assertTrue(shard.cancelled.get());
+            Assert.assertTrue(shard.emitted.get() < 100);
+        }
+    }
+
+    @Test
+    public void testStableForEqualKeys() {
+        List<Flowable<int[]>> sources = Arrays.asList(
+                Flowable.just(new int[]{1, 0}, new int[]{2, 0}),
+                Flowable.just(new int[]{1, 1}, new int[]{2, 1}));
+        List<int[]> res = new MergeSortObservable<>(sources, Comparator.<int[]>comparingInt(i -> i[0]), 0, -1, 4)
+                .toList().blockingGet();
+        Assert.assertEquals(Arrays.asList("1:0", "1:1", "2:0", "2:1"),
+                res.stream().map(i -> i[0] + ":" + i[1]).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testEmptyAndUnevenShards() {
+        List<Flowable<Integer>> sources = Arrays.asList(Flowable.empty(), Flowable.just(3), Flowable.just(1, 2, 4, 5));
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5),
+                MergeSortObservable.create(sources, Comparator.<Integer>naturalOrder(), 0, Integer.MAX_VALUE).toList().blockingGet());
+        Assert.assertTrue(MergeSortObservable.create(Collections.<Flowable<Integer>>emptyList(), Comparator.<Integer>naturalOrder(), 0, -1)
+                .toList().blockingGet().isEmpty());
+    }
+
+    @Test
+    public void testError() {
+        List<Shard> shards = shards(2, 100);
+        List<Flowable<Integer>> sources = new ArrayList<>();
+        sources.add(shards.get(0).flowable());
+        sources.add(Flowable.concat(Flowable.just(1), Flowable.error(new IllegalStateException("shard fail"))));
+        try {
+            new MergeSortObservable<>(sources, Comparator.<Integer>naturalOrder(), 0, -1, 8).toList().blockingGet();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("shard fail", e.getMessage());
+        }
+        Assert.assertTrue(shards.get(0).cancelled.get());
+    }
+}
@@ -0,0 +1,128 @@
+package io.mycat.calcite.spm;
+
+import io.mycat.BackendTableInfo;
+import io.mycat.IndexInfo;
+import io.mycat.LogicTableType;
+import io.mycat.Partition;
+import io.mycat.SimpleColumnInfo;
+import io.mycat.TableHandler;
+import io.mycat.calcite.table.GlobalTableHandler;
+import io.mycat.calcite.table.NormalTableHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.JDBCType;
+import java.util.*;
+import java.util.function.BiFunction;
+
+public class PlanSnapshotTest {
+
+    private static SimpleColumnInfo column(String name, JDBCType jdbcType, boolean primaryKey) {
+        return new SimpleColumnInfo(name, 0, 0, jdbcType, !primaryKey, false, primaryKey, primaryKey, 0, true);
+    }
+
+    private static TableHandler table(LogicTableType type, List<SimpleColumnInfo> columns, Map<String, IndexInfo> indexes) {
+        return (TableHandler) Proxy.newProxyInstance(PlanSnapshotTest.class.getClassLoader(), new Class[]{TableHandler.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getType":
+                    return type;
+                case "getColumns":
+                    return columns;
+                case "getIndexes":
+                    return indexes;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static TableHandler normalTable(Partition dataNode) {
+        return (TableHandler) Proxy.newProxyInstance(PlanSnapshotTest.class.getClassLoader(), new Class[]{NormalTableHandler.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getType":
+                    return LogicTableType.NORMAL;
+                case "getColumns":
+                    return Collections.singletonList(column("id", JDBCType.BIGINT, true));
+                case "getDataNode":
+                    return dataNode;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static TableHandler globalTable(List<Partition> dataNodes) {
+        return (TableHandler) Proxy.newProxyInstance(PlanSnapshotTest.class.getClassLoader(), new Class[]{GlobalTableHandler.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getType":
+                    return LogicTableType.GLOBAL;
+                case "getColumns":
+                    return Collections.singletonList(column("id", JDBCType.BIGINT, true));
+                case "getGlobalDataNode":
+                    return dataNodes;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static BiFunction<String, String, TableHandler> lookup(Map<String, TableHandler> tables) {
+        return (schema, table) -> tables.get(schema + "." + table);
+    }
+
+    @Test
+    public void testStableAndOrderIndependent() {
+        Map<String, TableHandler> tables = new HashMap<>();
+        tables.put("db1.a", table(LogicTableType.NORMAL, Arrays.asList(column("id", JDBCType.BIGINT, true), column("name", JDBCType.VARCHAR, false)), null));
+        tables.put("db1.b", table(LogicTableType.GLOBAL, Collections.singletonList(column("id", JDBCType.BIGINT, true)), null));
+        String fingerprint = PlanSnapshot.fingerprint(Arrays.asList("db1.a", "db1.b"), lookup(tables));
+        Assert.assertNotNull(fingerprint);
+        Assert.assertEquals(fingerprint, PlanSnapshot.fingerprint(Arrays.asList("db1.b", "db1.a"), lookup(tables)));
+    }
+
+    @Test
+    public void testChangesWithTableDefinition() {
+        Map<String, TableHandler> tables = new HashMap<>();
+        tables.put("db1.a", table(LogicTableType.NORMAL, Collections.singletonList(column("id", JDBCType.BIGINT, true)), null));
+        String fingerprint = PlanSnapshot.fingerprint(Collections.singletonList("db1.a"), lookup(tables));
+
+        tables.put("db1.a", table(LogicTableType.NORMAL, Collections.singletonList(column("id", JDBCType.VARCHAR, true)), null));
+        Assert.assertNotEquals(fingerprint, PlanSnapshot.fingerprint(Collections.singletonList("db1.a"), lookup(tables)));
+
+        tables.put("db1.a", table(LogicTableType.NORMAL, Arrays.asList(column("id", JDBCType.BIGINT, true), column("name", JDBCType.VARCHAR, false)), null));
+        Assert.assertNotEquals(fingerprint, PlanSnapshot.fingerprint(Collections.singletonList("db1.a"), lookup(tables)));
+
+        tables.put("db1.a", table(LogicTableType.GLOBAL, Collections.singletonList(column("id", JDBCType.BIGINT, true)), null));
+        Assert.assertNotEquals(fingerprint, PlanSnapshot.fingerprint(Collections.singletonList("db1.a"), lookup(tables)));
+
+        tables.put("db1.a", table(LogicTableType.NORMAL, Collections.singletonList(column("id", JDBCType.BIGINT, true)), null));
+        Assert.assertEquals(fingerprint, PlanSnapshot.fingerprint(Collections.singletonList("db1.a"), lookup(tables)));
+    }
+
+    @Test
+    public void testChangesWithDataNode() {
+        Map<String, TableHandler> tables = new HashMap<>();
+        List<String> names = Collections.singletonList("db1.a");
+        tables.put("db1.a", normalTable(new BackendTableInfo("c0", "db1", "a")));
+        String fingerprint = PlanSnapshot.fingerprint(names, lookup(tables));
+        tables.put("db1.a", normalTable(new BackendTableInfo("c1", "db1", "a")));
+        Assert.assertNotEquals(fingerprint, PlanSnapshot.fingerprint(names, lookup(tables)));
+        tables.put("db1.a", normalTable(new BackendTableInfo("c0", "db1", "a")));
+        Assert.assertEquals(fingerprint, PlanSnapshot.fingerprint(names, lookup(tables)));
+
+        tables.put("db1.a", globalTable(Arrays.asList(new BackendTableInfo("c0", "db1", "a"), new BackendTableInfo("c1", "db1", "a"))));
+        fingerprint = PlanSnapshot.fingerprint(names, lookup(tables));
+        tables.put("db1.a", globalTable(Collections.singletonList(new BackendTableInfo("c0", "db1", "a"))));
+        Assert.assertNotEquals(fingerprint, PlanSnapshot.fingerprint(names, lookup(tables)));
+    }
+
+    @Test
+    public void testMissingTable() {
+        Map<String, TableHandler> tables = new HashMap<>();
+        tables.put("db1.a", table(LogicTableType.NORMAL, Collections.singletonList(column("id", JDBCType.BIGINT, true)), null));
+        Assert.assertNull(PlanSnapshot.fingerprint(Arrays.asList("db1.a", "db1.b"), lookup(tables)));
+        Assert.assertNull(PlanSnapshot.fingerprint(Collections.singletonList("a"), lookup(tables)));
+        Assert.assertNull(PlanSnapshot.fingerprint(null));
+    }
+}
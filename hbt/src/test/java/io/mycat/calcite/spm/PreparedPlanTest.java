@@ -0,0 +1,114 @@
+package io.mycat.calcite.spm;
+
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import io.mycat.DrdsSqlWithParams;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.MetadataManager;
+import io.mycat.calcite.DrdsRunnerHelper;
+import io.mycat.config.ServerConfig;
+import io.mycat.prototypeserver.mysql.PrototypeService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.*;
+
+public class PreparedPlanTest {
+    private static final String SQL = "select id, 1 from db1.travelrecord where id = ? and user_id = ? limit 10";
+
+    private Map<Class, Object> backup;
+    private MemPlanCache planCache;
+
+    @Before
+    public void setUp() {
+        backup = MetaClusterCurrent.copyContext();
+        MetaClusterCurrent.register(ServerConfig.class, new ServerConfig());
+        planCache = new MemPlanCache((PlanManagerPersistor) Proxy.newProxyInstance(PreparedPlanTest.class.getClassLoader(),
+                new Class[]{PlanManagerPersistor.class}, (proxy, method, args) -> null));
+        Map<Class, Object> context = MetaClusterCurrent.copyContext();
+        context.put(MetadataManager.class, new MetadataManager(new PrototypeService()));
+        context.put(QueryPlanner.class, new QueryPlanner(planCache));
+        MetaClusterCurrent.register(context);
+    }
+
+    @After
+    public void tearDown() {
+        MetaClusterCurrent.register(backup);
+    }
+
+    /**
+     * 普通执行路径:绑定参数替换为字面量后参数化
+     */
+    private static DrdsSqlWithParams textPath(String text) {
+        return DrdsRunnerHelper.preParse(SQLUtils.parseSingleMysqlStatement(text), "db1");
+    }
+
+    private static DrdsSqlWithParams bind(Object... values) {
+        SQLStatement statement = SQLUtils.parseSingleMysqlStatement(SQL);
+        DrdsSqlWithParams template = PreparedPlan.parameterize(statement, values.length, "db1");
+        int[] bindIndexes = PreparedPlan.getBindIndexes(template, values.length);
+        Assert.assertNotNull(bindIndexes);
+        return PreparedPlan.bind(template, bindIndexes, Arrays.asList(values));
+    }
+
+    @Test
+    public void testSameAsTextPath() {
+        Assert.assertTrue(PreparedPlan.isSameParameterized(
+                textPath("select id, 1 from db1.travelrecord where id = 1 and user_id = 'a' limit 10"), bind(1, "a")));
+        Assert.assertTrue(PreparedPlan.isSameParameterized(
+                textPath("select id, 1 from db1.travelrecord where id = 2 and user_id = 'b' limit 10"), bind(2, "b")));
+        Assert.assertTrue(PreparedPlan.isSameParameterized(
+                textPath("select id, 1 from db1.travelrecord where id = 1.5 and user_id = 'c' limit 10"), bind(new BigDecimal("1.5"), "c")));
+        Assert.assertTrue(PreparedPlan.isSameParameterized(
+                textPath("select id, 1 from db1.travelrecord where id = 'x' and user_id = 3 limit 10"), bind("x", 3)));
+    }
+
+    @Test
+    public void testDifferentValuesDoNotMatch() {
+        Assert.assertFalse(PreparedPlan.isSameParameterized(
+                textPath("select id, 1 from db1.travelrecord where id = 1 and user_id = 'a' limit 10"), bind(1, "b")));
+        //字面量与绑定值的类型不同时不复用计划
+        Assert.assertFalse(PreparedPlan.isSameParameterized(
+                textPath("select id, 1 from db1.travelrecord where id = 1 and user_id = 'a' limit 10"), bind("1", "a")));
+    }
+
+    @Test
+    public void testParameterCountMismatch() {
+        Assert.assertNull(PreparedPlan.parameterize(SQLUtils.parseSingleMysqlStatement(SQL), 3, "db1"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        SQLStatement statement = SQLUtils.parseSingleMysqlStatement(SQL);
+        DrdsSqlWithParams template = PreparedPlan.parameterize(statement, 2, "db1");
+        int[] bindIndexes = PreparedPlan.getBindIndexes(template, 2);
+        List<String> uniqueTables = MemPlanCache.getUniqueTables(template.getParameterizedStatement());
+        PreparedPlan preparedPlan = new PreparedPlan(statement, "db1", template, bindIndexes, uniqueTables);
+        Assert.assertTrue(preparedPlan.isApplicable());
+        Assert.assertTrue(preparedPlan.isValid("db1"));
+        Assert.assertFalse(preparedPlan.isValid("db2"));
+
+        //其他表的计划变化不影响
+        planCache.invalidate("db1", "other");
+        Assert.assertTrue(preparedPlan.isValid("db1"));
+
+        planCache.invalidate("db1", "travelrecord");
+        Assert.assertFalse(preparedPlan.isValid("db1"));
+    }
+
+    @Test
+    public void testInvalidateOnMetadataChange() {
+        SQLStatement statement = SQLUtils.parseSingleMysqlStatement(SQL);
+        DrdsSqlWithParams template = PreparedPlan.parameterize(statement, 2, "db1");
+        PreparedPlan preparedPlan = new PreparedPlan(statement, "db1", template, PreparedPlan.getBindIndexes(template, 2),
+                MemPlanCache.getUniqueTables(template.getParameterizedStatement()));
+        Assert.assertTrue(preparedPlan.isValid("db1"));
+
+        MetaClusterCurrent.register(MetadataManager.class, new MetadataManager(new PrototypeService()));
+        Assert.assertFalse(preparedPlan.isValid("db1"));
+    }
+}
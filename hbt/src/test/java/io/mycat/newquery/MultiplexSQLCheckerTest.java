@@ -0,0 +1,54 @@
+package io.mycat.newquery;
+
+import com.alibaba.druid.sql.SQLUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiplexSQLCheckerTest {
+
+    private static boolean multiplexable(String sql) {
+        return MultiplexSQLChecker.isMultiplexable(SQLUtils.parseSingleMysqlStatement(sql));
+    }
+
+    private static boolean sessionAltering(String sql) {
+        return MultiplexSQLChecker.isSessionAltering(SQLUtils.parseSingleMysqlStatement(sql));
+    }
+
+    @Test
+    public void testMultiplexable() {
+        Assert.assertTrue(multiplexable("select id from db1.travelrecord where id = ?"));
+        Assert.assertTrue(multiplexable("select count(1) from db1.travelrecord where user_id in (?, ?)"));
+        //字符串里的关键字不影响判断
+        Assert.assertTrue(multiplexable("select 'a@b for update temporary' from db1.travelrecord"));
+    }
+
+    @Test
+    public void testNotMultiplexable() {
+        Assert.assertFalse(multiplexable("select id from db1.travelrecord where id = ? for update"));
+        Assert.assertFalse(multiplexable("select id from db1.travelrecord where id = ? lock in share mode"));
+        Assert.assertFalse(multiplexable("select @a"));
+        Assert.assertFalse(multiplexable("select @@session.sql_mode"));
+        Assert.assertFalse(multiplexable("select get_lock('a', 1)"));
+        Assert.assertFalse(multiplexable("select last_insert_id()"));
+        Assert.assertFalse(multiplexable("select id into @a from db1.travelrecord limit 1"));
+        Assert.assertFalse(multiplexable("update db1.travelrecord set user_id = 1"));
+    }
+
+    @Test
+    public void testSessionAltering() {
+        Assert.assertTrue(sessionAltering("set @a = 1"));
+        Assert.assertTrue(sessionAltering("create temporary table t1 (id int)"));
+        Assert.assertTrue(sessionAltering("drop temporary table t1"));
+        Assert.assertTrue(sessionAltering("lock tables db1.travelrecord read"));
+        Assert.assertTrue(sessionAltering("select get_lock('a', 1)"));
+        Assert.assertTrue(sessionAltering("select id into @a from db1.travelrecord limit 1"));
+        Assert.assertTrue(sessionAltering("select @a := 1"));
+        //由mycat保存的设置不改变后端会话
+        Assert.assertFalse(sessionAltering("set names utf8mb4"));
+        Assert.assertFalse(sessionAltering("set autocommit = 0"));
+        Assert.assertFalse(sessionAltering("set @@session.sql_mode = ''"));
+        Assert.assertFalse(sessionAltering("create table t1 (id int)"));
+        Assert.assertFalse(sessionAltering("select id from db1.travelrecord"));
+        Assert.assertFalse(sessionAltering("select last_insert_id()"));
+    }
+}
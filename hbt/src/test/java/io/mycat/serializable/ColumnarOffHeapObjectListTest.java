@@ -0,0 +1,147 @@
+package io.mycat.serializable;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class ColumnarOffHeapObjectListTest {
+
+    private static Object[] row(int i) {
+        Timestamp timestamp = new Timestamp(1600000000000L + i * 1000L);
+        timestamp.setNanos(123456789);
+        return new Object[]{
+                (long) i,
+                i,
+                (short) i,
+                (byte) i,
+                i % 2 == 0,
+                i * 1.5d,
+                i * 0.5f,
+                LocalDate.of(2021, 1, 1).plusDays(i),
+                LocalTime.of(12, 30, 15, 1000).plusSeconds(i),
+                i % 3 == 0 ? null : "s" + i,
+                new BigDecimal("123456789012345678901234567890." + i),
+                new byte[]{(byte) i, 1, 2},
+                new ByteString(new byte[]{(byte) i}),
+                LocalDateTime.of(2021, 6, 1, 8, 0, 0, 999).plusMinutes(i),
+                timestamp,
+                new java.sql.Date(1600000000000L + i),
+                new java.sql.Time(3600000L + i),
+                new java.util.Date(1600000000000L - i),
+                Duration.ofSeconds(i, 500),
+                BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(i + 1)),
+                Instant.ofEpochSecond(1600000000L + i, 42)
+        };
+    }
+
+    private static void assertRow(Object[] expected, Object[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] instanceof byte[]) {
+                Assert.assertArrayEquals((byte[]) expected[i], (byte[]) actual[i]);
+            } else {
+                Assert.assertEquals(expected[i], actual[i]);
+                if (expected[i] != null) {
+                    Assert.assertEquals(expected[i].getClass(), actual[i].getClass());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInMemoryRoundTrip() {
+        QueryMemoryBudget budget = new QueryMemoryBudget(Long.MAX_VALUE);
+        int count = ColumnarOffHeapObjectList.PAGE_ROWS + 10;
+        ColumnarOffHeapObjectList list = new ColumnarOffHeapObjectList(budget, null);
+        try {
+            for (int i = 0; i < count; i++) {
+                list.addObjects(row(i));
+            }
+            list.finish();
+            Assert.assertFalse(list.isSpilled());
+            Assert.assertEquals(count, list.size());
+            int i = 0;
+            for (Object[] objects : list) {
+                assertRow(row(i++), objects);
+            }
+            Assert.assertEquals(count, i);
+        } finally {
+            list.close();
+            budget.close();
+        }
+    }
+
+    @Test
+    public void testSpillRoundTrip() throws Exception {
+        Path tmpDir = Files.createTempDirectory("columnar");
+        QueryMemoryBudget budget = new QueryMemoryBudget(0);
+        int count = 2 * ColumnarOffHeapObjectList.PAGE_ROWS + 1;
+        ColumnarOffHeapObjectList list = new ColumnarOffHeapObjectList(budget, tmpDir);
+        try {
+            for (int i = 0; i < count; i++) {
+                list.addObjects(row(i));
+            }
+            list.finish();
+            Assert.assertTrue(list.isSpilled());
+            //可以重复遍历
+            for (int round = 0; round < 2; round++) {
+                Iterator<Object[]> iterator = list.iterator();
+                for (int i = 0; i < count; i++) {
+                    Assert.assertTrue(iterator.hasNext());
+                    assertRow(row(i), iterator.next());
+                }
+                Assert.assertFalse(iterator.hasNext());
+            }
+        } finally {
+            list.close();
+            budget.close();
+            Files.deleteIfExists(tmpDir);
+        }
+    }
+
+    @Test
+    public void testNonUniformRows() {
+        QueryMemoryBudget budget = new QueryMemoryBudget(Long.MAX_VALUE);
+        ColumnarOffHeapObjectList list = new ColumnarOffHeapObjectList(budget, null);
+        try {
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{1L});
+            rows.add(new Object[]{2L, "a"});
+            rows.add(new Object[]{});
+            rows.add(new Object[]{null, 1, 2.0d});
+            rows.forEach(list::addObjects);
+            list.finish();
+            Iterator<Object[]> iterator = list.iterator();
+            for (Object[] expected : rows) {
+                assertRow(expected, iterator.next());
+            }
+            Assert.assertFalse(iterator.hasNext());
+        } finally {
+            list.close();
+            budget.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectUnknownType() {
+        QueryMemoryBudget budget = new QueryMemoryBudget(Long.MAX_VALUE);
+        ColumnarOffHeapObjectList list = new ColumnarOffHeapObjectList(budget, null);
+        try {
+            list.addObjects(new Object[]{new Object()});
+            list.finish();
+        } finally {
+            list.close();
+            budget.close();
+        }
+    }
+}
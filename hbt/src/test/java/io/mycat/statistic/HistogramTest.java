@@ -0,0 +1,74 @@
+package io.mycat.statistic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class HistogramTest {
+
+    private static Histogram uniform(int n, int bucketCount) {
+        double[] values = new double[n];
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+            weights[i] = 1;
+        }
+        return Histogram.build(values, weights, bucketCount);
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertNull(Histogram.build(new double[0], new double[0], 8));
+    }
+
+    @Test
+    public void testUniformRangeSelectivity() {
+        Histogram histogram = uniform(10000, Histogram.DEFAULT_BUCKET_COUNT);
+        Assert.assertEquals(10000, histogram.getTotal(), 0.0001);
+        Assert.assertEquals(1.0, histogram.rangeSelectivity(null, null), 0.0001);
+        Assert.assertEquals(0.5, histogram.rangeSelectivity(null, 5000d), 0.02);
+        Assert.assertEquals(0.5, histogram.rangeSelectivity(5000d, null), 0.02);
+        Assert.assertEquals(0.1, histogram.rangeSelectivity(1000d, 2000d), 0.02);
+        Assert.assertEquals(0.0, histogram.rangeSelectivity(20000d, null), 0.0001);
+        Assert.assertEquals(0.0, histogram.rangeSelectivity(null, -1d), 0.0001);
+        Assert.assertEquals(0.0, histogram.rangeSelectivity(3000d, 2000d), 0.0001);
+    }
+
+    @Test
+    public void testSkewedSelectivity() {
+        //90%的行都是0,其余均匀分布在[1,1000]
+        int n = 10000;
+        double[] values = new double[n];
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i < 9000 ? 0 : (i - 8999);
+            weights[i] = 1;
+        }
+        Histogram histogram = Histogram.build(values, weights, 16);
+        Assert.assertEquals(0.9, histogram.rangeSelectivity(0d, 0d), 0.01);
+        Assert.assertEquals(0.1, histogram.rangeSelectivity(1d, null), 0.02);
+    }
+
+    @Test
+    public void testSameValueNotSplitAcrossBuckets() {
+        double[] values = new double[100];
+        Arrays.fill(values, 7);
+        double[] weights = new double[100];
+        Arrays.fill(weights, 2);
+        Histogram histogram = Histogram.build(values, weights, 8);
+        Assert.assertEquals(1, histogram.getBounds().length);
+        Assert.assertEquals(200, histogram.getTotal(), 0.0001);
+        Assert.assertEquals(1.0, histogram.rangeSelectivity(7d, 7d), 0.0001);
+    }
+
+    @Test
+    public void testTextRoundTrip() {
+        Histogram histogram = uniform(1000, 10);
+        Histogram copy = Histogram.fromText(histogram.toText());
+        Assert.assertEquals(histogram.getMin(), copy.getMin(), 0);
+        Assert.assertArrayEquals(histogram.getBounds(), copy.getBounds(), 0);
+        Assert.assertArrayEquals(histogram.getCounts(), copy.getCounts(), 0);
+        Assert.assertNull(Histogram.fromText(null));
+    }
+}
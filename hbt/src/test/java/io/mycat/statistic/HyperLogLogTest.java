@@ -0,0 +1,65 @@
+package io.mycat.statistic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    private static void assertRelativeError(double expected, double actual, double error) {
+        Assert.assertTrue("expected " + expected + " but " + actual,
+                Math.abs(actual - expected) <= expected * error);
+    }
+
+    @Test
+    public void testSmallCardinality() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        Assert.assertEquals(0, hyperLogLog.estimate(), 0.0001);
+        for (int i = 0; i < 100; i++) {
+            hyperLogLog.add(i);
+            hyperLogLog.add(i);
+        }
+        hyperLogLog.add(null);
+        assertRelativeError(100, hyperLogLog.estimate(), 0.05);
+    }
+
+    @Test
+    public void testEstimationError() {
+        //p=12时标准误差约为1.6%
+        for (int n : new int[]{1000, 10000, 100000, 1000000}) {
+            HyperLogLog hyperLogLog = new HyperLogLog();
+            for (int i = 0; i < n; i++) {
+                hyperLogLog.add("value" + i);
+            }
+            assertRelativeError(n, hyperLogLog.estimate(), 0.05);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        for (int i = 0; i < 60000; i++) {
+            left.add(i);
+        }
+        for (int i = 30000; i < 90000; i++) {
+            right.add(i);
+        }
+        left.merge(right);
+        assertRelativeError(90000, left.estimate(), 0.05);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentPrecision() {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+
+    @Test
+    public void testBase64RoundTrip() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        for (int i = 0; i < 5000; i++) {
+            hyperLogLog.add(i);
+        }
+        HyperLogLog copy = HyperLogLog.fromBase64(hyperLogLog.toBase64());
+        Assert.assertEquals(hyperLogLog.estimate(), copy.estimate(), 0);
+    }
+}
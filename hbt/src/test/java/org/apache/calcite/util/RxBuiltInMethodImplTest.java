@@ -0,0 +1,75 @@
+package org.apache.calcite.util;
+
+import io.mycat.serializable.QueryMemoryBudget;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Functions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class RxBuiltInMethodImplTest {
+
+    private static List<Integer> drain(Enumerator<Integer> enumerator) {
+        List<Integer> res = new ArrayList<>();
+        while (enumerator.moveNext()) {
+            res.add(enumerator.current());
+        }
+        return res;
+    }
+
+    private static void testSortReset(int rowCount, int offset, int fetch) {
+        int threshold = QueryMemoryBudget.SPILL_ROW_THRESHOLD;
+        QueryMemoryBudget.SPILL_ROW_THRESHOLD = 10;
+        try {
+            List<Integer> input = new ArrayList<>();
+            for (int i = 0; i < rowCount; i++) {
+                input.add((i * 7919) % rowCount);
+            }
+            List<Integer> expected = new ArrayList<>(input);
+            expected.sort(Comparator.reverseOrder());
+            expected = expected.subList(Math.min(offset, expected.size()), Math.min(expected.size(), offset + Math.min(fetch, rowCount)));
+
+            Enumerator<Integer> enumerator = RxBuiltInMethodImpl.orderBy(null, Linq4j.asEnumerable(input),
+                    Functions.identitySelector(), Comparator.<Integer>reverseOrder(), offset, fetch).enumerator();
+            try {
+                Assert.assertEquals(expected, drain(enumerator));
+                enumerator.reset();
+                Assert.assertEquals(expected, drain(enumerator));
+            } finally {
+                enumerator.close();
+            }
+        } finally {
+            QueryMemoryBudget.SPILL_ROW_THRESHOLD = threshold;
+        }
+    }
+
+    @Test
+    public void testSortResetInMemory() {
+        testSortReset(5, 0, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testSortResetSpilled() {
+        testSortReset(35, 0, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testSortResetSpilledWithOffset() {
+        testSortReset(35, 3, 20);
+    }
+
+    @Test
+    public void testSortEmpty() {
+        Enumerator<Integer> enumerator = RxBuiltInMethodImpl.orderBy(null, Linq4j.asEnumerable(Collections.<Integer>emptyList()),
+                Functions.identitySelector(), Comparator.<Integer>naturalOrder(), 0, Integer.MAX_VALUE).enumerator();
+        Assert.assertFalse(enumerator.moveNext());
+        enumerator.reset();
+        Assert.assertFalse(enumerator.moveNext());
+        enumerator.close();
+    }
+}
@@ -114,6 +114,61 @@ public class DistinctTest extends DrdsTest {
         Assert.assertEquals("MycatProject(avg(fee)=[/(CAST(CASE(=($2, 0), null:DECIMAL(19, 0), $1)):DOUBLE, $2)])   MycatHashAggregate(group=[{0}], agg#0=[$SUM0($1)], agg#1=[$SUM0($2)])     MycatView(distribution=[[db1.distinct_sharding]])",explain.dumpPlan().toString());
         System.out.println();
     }
+    @Test
+    public void testCountDistinctNoShardingKey() throws Exception {
+        Explain explain = parse("SELECT count(distinct fee)  from db1.distinct_sharding");
+        String sql = explain.specificSql().toString();
+        String plan = explain.dumpPlan().toString();
+
+        //分片只返回各自的去重集合,不能把分片的COUNT(DISTINCT)结果相加
+        Assert.assertTrue(sql, sql.contains("GROUP BY `distinct_sharding`.`fee`"));
+        Assert.assertFalse(sql, sql.contains("COUNT(DISTINCT"));
+        Assert.assertTrue(plan, plan.contains("MycatView(distribution=[[db1.distinct_sharding]])"));
+        Assert.assertTrue(plan, plan.contains("COUNT("));
+        System.out.println();
+    }
+
+    @Test
+    public void testCountDistinctGroupByNoShardingKey() throws Exception {
+        Explain explain = parse("SELECT traveldate,count(distinct fee)  from db1.distinct_sharding group by traveldate");
+        String sql = explain.specificSql().toString();
+        String plan = explain.dumpPlan().toString();
+
+        Assert.assertTrue(sql, sql.contains("GROUP BY `distinct_sharding`.`traveldate`, `distinct_sharding`.`fee`"));
+        Assert.assertFalse(sql, sql.contains("COUNT(DISTINCT"));
+        Assert.assertTrue(plan, plan.contains("MycatView(distribution=[[db1.distinct_sharding]])"));
+        Assert.assertTrue(plan, plan.contains("COUNT("));
+        System.out.println();
+    }
+
+    @Test
+    public void testAvgAndCountDistinctNoShardingKey() throws Exception {
+        Explain explain = parse("SELECT traveldate,avg(days),count(distinct fee)  from db1.distinct_sharding group by traveldate");
+        String sql = explain.specificSql().toString();
+        String plan = explain.dumpPlan().toString();
+
+        //avg仍拆分为分片的SUM与COUNT,distinct参数加入分片的分组键
+        Assert.assertTrue(sql, sql.contains("SUM(`distinct_sharding`.`days`)"));
+        Assert.assertTrue(sql, sql.contains("COUNT(`distinct_sharding`.`days`)"));
+        Assert.assertTrue(sql, sql.contains("`distinct_sharding`.`fee`"));
+        Assert.assertFalse(sql, sql.contains("COUNT(DISTINCT"));
+        Assert.assertTrue(plan, plan.contains("MycatView(distribution=[[db1.distinct_sharding]])"));
+        System.out.println();
+    }
+
+    @Test
+    public void testCountDistinctDifferentArgs() throws Exception {
+        Explain explain = parse("SELECT count(distinct fee),count(distinct days)  from db1.distinct_sharding");
+        String sql = explain.specificSql().toString();
+        String plan = explain.dumpPlan().toString();
+
+        //不同的distinct参数不拆分,分片不计算COUNT(DISTINCT)
+        Assert.assertFalse(sql, sql.contains("COUNT(DISTINCT"));
+        Assert.assertTrue(plan, plan.contains("MycatView(distribution=[[db1.distinct_sharding]])"));
+        Assert.assertTrue(plan, plan.contains("COUNT("));
+        System.out.println();
+    }
+
     @Test
     public void testMaxNoShardingKey() throws Exception {
         Explain explain = parse("SELECT max(fee)  from db1.distinct_sharding group by fee");
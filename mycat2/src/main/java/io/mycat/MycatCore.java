@@ -16,6 +16,7 @@ package io.mycat;
 
 import io.mycat.beans.mysql.MySQLVersion;
 import io.mycat.calcite.ExecutorProvider;
+import io.mycat.calcite.executor.MergeSortObservable;
 import io.mycat.config.*;
 import io.mycat.executor.ExecutorProviderImpl;
 import io.mycat.exporter.PrometheusExporter;
@@ -29,6 +30,16 @@ import io.mycat.sqlhandler.ConfigUpdater;
 import io.mycat.sqlhandler.config.FileStorageManagerImpl;
 import io.mycat.sqlhandler.config.StdStorageManagerImpl;
 import io.mycat.sqlhandler.config.StorageManager;
+import io.mycat.calcite.spm.MemPlanCache;
+import io.mycat.calcite.spm.PreparedPlan;
+import io.mycat.calcite.spm.PlanSnapshotScheduler;
+import io.mycat.serializable.QueryMemoryBudget;
+import io.mycat.serializable.QueryMemoryGovernor;
+import io.mycat.statistic.AutoAnalyzeScheduler;
+import io.mycat.ratelimiter.AdmissionController;
+import io.ordinate.engine.builder.EngineConfiguration;
+import io.mycat.vertx.PacketWriteAggregator;
+import io.mycat.vertx.QueryFlowable;
 import io.mycat.vertx.VertxMycatServer;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
@@ -106,9 +117,38 @@ public class MycatCore {
         AsyncMycatDataContextImpl.FULL_TABLE_SCAN_EXCEPTION = serverConfiguration.serverConfig().getServer().isFullTableScanException();
         HackRouter.PUSH_DOWN_SELECT_DUAL ="hackRouter".equalsIgnoreCase(serverConfiguration.serverConfig().getServer().getPushDownSelectDual());
         HackRouter.PUSH_SHOW = serverConfiguration.serverConfig().getServer().isPushShowOnPrototype();
+        AutoAnalyzeScheduler.ENABLE = serverConfig.getServer().isAutoAnalyze();
+        AutoAnalyzeScheduler.MIN_CHANGED_ROWS = serverConfig.getServer().getAutoAnalyzeMinChangedRows();
+        AutoAnalyzeScheduler.CHANGED_RATIO = serverConfig.getServer().getAutoAnalyzeChangedRatio();
+        AutoAnalyzeScheduler.PLAN_INVALIDATE_RATIO = serverConfig.getServer().getAutoAnalyzePlanInvalidateRatio();
+        MemPlanCache.MAX_WEIGHT_BYTES = serverConfig.getServer().getPlanCacheMaxBytes();
+        PlanSnapshotScheduler.ENABLE = serverConfig.getServer().isPlanSnapshot();
+        PlanSnapshotScheduler.LIMIT = serverConfig.getServer().getPlanSnapshotLimit();
+        PlanSnapshotScheduler.LOAD_TIMEOUT_SECONDS = serverConfig.getServer().getPlanSnapshotLoadTimeoutSecond();
+        PreparedPlan.ENABLE = serverConfig.getServer().isPreparedPlanCache();
+        PreparedPlan.MAX_TYPE_VARIANTS = serverConfig.getServer().getPreparedPlanTypeVariants();
+        QueryMemoryBudget.QUERY_LIMIT = serverConfig.getServer().getQueryMemoryBytes();
+        QueryMemoryBudget.SPILL_ROW_THRESHOLD = serverConfig.getServer().getSpillRowThreshold();
+        QueryMemoryGovernor.NODE_LIMIT = serverConfig.getServer().getNodeQueryMemoryBytes();
+        EngineConfiguration.DEFAULT_AGGREGATE_PARALLELISM = serverConfig.getServer().getAggregateParallelism();
+        EngineConfiguration.DEFAULT_BATCH_BYTES = serverConfig.getServer().getVectorBatchBytes();
+        EngineConfiguration.DEFAULT_QUERY_MEMORY_LIMIT = serverConfig.getServer().getQueryMemoryBytes();
+        MergeSortObservable.PREFETCH = serverConfig.getServer().getMergeSortPrefetch();
+        QueryFlowable.HIGH_WATERMARK = serverConfig.getServer().getResultSetPauseWatermark();
+        PacketWriteAggregator.MAX_BATCH_BYTES = serverConfig.getServer().getWriteBatchBytes();
+        PacketWriteAggregator.MAX_BATCH_PACKETS = serverConfig.getServer().getWriteBatchPackets();
+        if (PlanSnapshotScheduler.ENABLE) {
+            PlanSnapshotScheduler.start(serverConfig.getServer().getPlanSnapshotPeriodSecond(), TimeUnit.SECONDS);
+        }
+        if (AutoAnalyzeScheduler.ENABLE) {
+            AutoAnalyzeScheduler.start(serverConfig.getServer().getAutoAnalyzePeriodSecond(), TimeUnit.SECONDS);
+        }
 
         NewMycatConnectionConfig.FORCE_NATIVE_DATASOURCE = "native".equalsIgnoreCase(System.getProperty("server"));
         NewMycatConnectionConfig.CLIENT_DEPRECATE_EOF = serverConfig.getServer().computeClientDeprecateEof();
+        NewMycatConnectionConfig.MULTIPLEX_SIZE = serverConfig.getServer().getBackendMultiplexSize();
+        NewMycatConnectionConfig.MULTIPLEX_MAX_PENDING = serverConfig.getServer().getBackendMultiplexMaxPending();
+        AdmissionController.INSTANCE.configure(serverConfig.getServer().getAdmissionControl());
 
         VertxOptions vertxOptions = new VertxOptions();
         vertxOptions.setWorkerPoolSize(workerPool.getMaxPoolSize());
@@ -70,7 +70,10 @@ public class MycatMySQLManagerImpl extends AbstractMySQLManagerImpl {
                 case NATIVE_JDBC:
                     MycatDatasourcePool nativeDatasourcePool = createNativeDatasourcePool(datasource, name);
                     futureList.add(nativeDatasourcePool.getConnection()
-                            .flatMap(c -> c.close().map(nativeDatasourcePool))
+                            .flatMap(c -> c.close())
+                            .flatMap(u -> ((MycatNativeDatasourcePool) nativeDatasourcePool).warmUp()
+                                    .otherwise(throwable -> null)
+                                    .map(nativeDatasourcePool))
                             .recover(throwable -> Future.succeededFuture(createJdbcDatasourcePool(name))));
                     break;
                 case JDBC:
@@ -118,6 +121,12 @@ public class MycatMySQLManagerImpl extends AbstractMySQLManagerImpl {
         config.setTimer(datasource.getIdleTimeout());
         config.setClientDeprecateEof(NewMycatConnectionConfig.CLIENT_DEPRECATE_EOF);
         config.setRemoveAbandonedTimeoutSecond(datasource.getRemoveAbandonedTimeoutSecond());
+        config.setName(targetName);
+        config.setMaxCon(datasource.getMaxCon());
+        config.setMinCon(datasource.getMinCon());
+        config.setAcquireTimeoutMillis(datasource.acquireTimeoutOrDefault());
+        config.setMultiplexSize(NewMycatConnectionConfig.MULTIPLEX_SIZE);
+        config.setMultiplexMaxPending(NewMycatConnectionConfig.MULTIPLEX_MAX_PENDING);
         Vertx vertx = MetaClusterCurrent.wrapper(Vertx.class);
         VertxPoolConnectionImpl vertxConnectionPool = new VertxPoolConnectionImpl(config, vertx);
         return new MycatNativeDatasourcePool(vertxConnectionPool, targetName);
@@ -135,6 +144,15 @@ public class MycatMySQLManagerImpl extends AbstractMySQLManagerImpl {
         return mycatDatasourcePool.getConnection();
     }
 
+    @Override
+    public Future<NewMycatConnection> getMultiplexConnection(String targetName) {
+        MycatDatasourcePool mycatDatasourcePool = Objects.requireNonNull(map.get(targetName));
+        if (mycatDatasourcePool instanceof MycatNativeDatasourcePool) {
+            return ((MycatNativeDatasourcePool) mycatDatasourcePool).getMultiplexConnection();
+        }
+        return mycatDatasourcePool.getConnection();
+    }
+
     @Override
     public int getAvailableNumber(String targetName) {
         return map.get(targetName).getAvailableNumber();
@@ -34,12 +34,14 @@ import com.alibaba.druid.sql.parser.SQLType;
 import com.alibaba.druid.sql.visitor.SQLASTOutputVisitor;
 import com.google.common.collect.ImmutableClassToInstanceMap;
 import io.mycat.*;
+import io.mycat.newquery.MultiplexSQLChecker;
 import io.mycat.api.collector.MysqlPayloadObject;
 import io.mycat.beans.mycat.MycatErrorCode;
 import io.mycat.beans.mycat.ResultSetBuilder;
 import io.mycat.calcite.CodeExecuterContext;
 import io.mycat.calcite.DrdsRunnerHelper;
 import io.mycat.calcite.MycatHint;
+import io.mycat.calcite.plan.PlanImplementor;
 import io.mycat.calcite.spm.*;
 import io.mycat.monitor.LogEntryHolder;
 import io.mycat.monitor.MycatSQLLogMonitor;
@@ -57,6 +59,7 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import lombok.SneakyThrows;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -265,6 +268,14 @@ public enum MycatdbCommand {
                 queryPlanCache.loadPlan(Long.parseLong(text));
                 return response.sendOk();
             }
+            if (text.startsWith("LOAD_SNAPSHOT")) {
+                queryPlanCache.loadSnapshot(PlanSnapshotScheduler.LIMIT);
+                return response.sendOk();
+            }
+            if (text.startsWith("PERSIST_SNAPSHOT")) {
+                queryPlanCache.saveSnapshot(PlanSnapshotScheduler.LIMIT);
+                return response.sendOk();
+            }
             if (text.startsWith("LOAD_ALL_BASELINES")) {
                 queryPlanCache.loadBaselines();
                 return response.sendOk();
@@ -382,6 +393,12 @@ public enum MycatdbCommand {
                             map.put("VECTOR", null);
                             continue;
                         }
+                        case "AGGREGATE_PARALLELISM": {
+                            MycatHint.Argument argument = function.getArguments().get(0);
+                            SQLNumericLiteralExpr value = (SQLNumericLiteralExpr) argument.getValue();
+                            map.put("AGGREGATE_PARALLELISM", value.getNumber().intValue());
+                            continue;
+                        }
                         case "MASTER": {
                             map.put("REP_BALANCE_TYPE", ReplicaBalanceType.MASTER);
                             continue;
@@ -440,6 +457,9 @@ public enum MycatdbCommand {
         MycatSQLLogMonitor logMonitor = MetaClusterCurrent.wrapper(MycatSQLLogMonitor.class);
         //////////////////////////////////////////////////////////////////////////////////////
         dataContext.putProcessStateMap(Collections.emptyMap());
+        if (!dataContext.isBackendSessionPinned() && MultiplexSQLChecker.isSessionAltering(sqlStatement)) {
+            dataContext.setBackendSessionPinned(true);
+        }
         sqlStatement.setAfterSemi(false);//remove semi
         boolean existSqlResultSetService = MetaClusterCurrent.exist(SqlResultSetService.class);
         //////////////////////////////////apply transaction///////////////////////////////////
@@ -508,6 +528,10 @@ public enum MycatdbCommand {
             }
         });
 
+        return recordSQLEnd(dataContext, logRecord, future);
+    }
+
+    private static Future<Void> recordSQLEnd(MycatDataContext dataContext, LogEntryHolder logRecord, Future future) {
         future = future.onComplete((Handler<AsyncResult>) event -> {
             dataContext.setHolder(null);
             if (event.succeeded()) {
@@ -520,6 +544,92 @@ public enum MycatdbCommand {
         return future;
     }
 
+    /**
+     * 执行预处理语句.
+     * 查询语句绑定参数后直接使用准备时解析的计划,跳过sql解析与baseline查找,
+     * 计划失效或者参数化结果与普通路径不一致时按普通语句执行
+     */
+    public static Future<Void> executePrepared(MycatDataContext dataContext, Response receiver, PreparedStatement preparedStatement) {
+        BindValue[] values = preparedStatement.getBindValues();
+        PreparedPlan preparedPlan = getPreparedPlan(dataContext, preparedStatement);
+        if (preparedPlan != null && dataContext.getReadyToCloseSQL() == null && !dataContext.isDebug()
+                && !(MetaClusterCurrent.exist(SqlResultSetService.class) && MetaClusterCurrent.wrapper(SqlResultSetService.class).isWorking())) {
+            try {
+                List<Object> params = PreparedPlan.toParams(values, preparedStatement.getParametersNumber());
+                if (params != null) {
+                    DrdsSqlWithParams drdsSqlWithParams = preparedPlan.bind(params);
+                    List<SqlTypeName> typeNames = drdsSqlWithParams.getTypeNames();
+                    PlanImpl plan = preparedPlan.getPlan(typeNames);
+                    if (plan == null && !preparedPlan.isRejected(typeNames)) {
+                        //该参数类型组合首次执行,与普通路径参数化的结果一致才缓存计划
+                        SQLStatement statement = preparedStatement.getSQLStatementByBindValue(values);
+                        DrdsSqlWithParams expect = DrdsRunnerHelper.preParse(statement, dataContext.getDefaultSchema());
+                        if (PreparedPlan.isSameParameterized(expect, drdsSqlWithParams)) {
+                            plan = DrdsRunnerHelper.getPlan(drdsSqlWithParams);
+                            preparedPlan.putPlan(typeNames, plan);
+                        } else {
+                            preparedPlan.reject(typeNames);
+                        }
+                    }
+                    if (plan != null) {
+                        return executePlan(dataContext, receiver, preparedPlan, drdsSqlWithParams, plan);
+                    }
+                }
+            } catch (Throwable throwable) {
+                logger.debug("prepared statement:{} fallback", preparedPlan.getSql(), throwable);
+            }
+        }
+        SQLStatement statement = preparedStatement.getSQLStatementByBindValue(values);
+        if (logger.isDebugEnabled()) {
+            logger.debug("preparestatement:{}", statement);
+        }
+        MetadataManager metadataManager = MetaClusterCurrent.wrapper(MetadataManager.class);
+        SQLStatement typeStatement = metadataManager.typeInferenceUpdate(statement, dataContext.getDefaultSchema());
+        return execute(dataContext, receiver, typeStatement);
+    }
+
+    private static PreparedPlan getPreparedPlan(MycatDataContext dataContext, PreparedStatement preparedStatement) {
+        if (!PreparedPlan.ENABLE || !preparedStatement.isQuery()) {
+            return null;
+        }
+        PreparedPlan preparedPlan = (PreparedPlan) preparedStatement.getAttach();
+        String defaultSchema = dataContext.getDefaultSchema();
+        if (preparedPlan == null || !preparedPlan.isValid(defaultSchema)) {
+            preparedPlan = PreparedPlan.create(preparedStatement.getStatement(), preparedStatement.getParametersNumber(), dataContext);
+            preparedStatement.setAttach(preparedPlan);
+        }
+        return preparedPlan.isApplicable() ? preparedPlan : null;
+    }
+
+    private static Future<Void> executePlan(MycatDataContext dataContext,
+                                            Response receiver,
+                                            PreparedPlan preparedPlan,
+                                            DrdsSqlWithParams drdsSqlWithParams,
+                                            PlanImpl plan) {
+        SQLType sqlType = preparedPlan.getSqlType();
+        if (!dataContext.checkSQLType(sqlType, dataContext.getDefaultSchema(), preparedPlan.getStatement())) {
+            return receiver.sendError(String.format("%s is sqlType:%s,for the user %s, it is forbidden.", preparedPlan.getSql(), sqlType, dataContext.getUser().getUserName()), MycatErrorCode.ERR_NOT_SUPPORT);
+        }
+        MycatSQLLogMonitor logMonitor = MetaClusterCurrent.wrapper(MycatSQLLogMonitor.class);
+        dataContext.putProcessStateMap(Collections.emptyMap());
+        TransactionSession transactionSession = dataContext.getTransactionSession();
+        Future future = transactionSession.openStatementState();
+        LogEntryHolder logRecord = logMonitor.startRecord(dataContext, null, sqlType, preparedPlan.getSql());
+        dataContext.setHolder(logRecord);
+        future = future.flatMap(unused -> {
+            try {
+                ParamHolder paramHolder = ParamHolder.CURRENT_THREAD_LOCAL.get();
+                paramHolder.setData(drdsSqlWithParams.getParams(), drdsSqlWithParams.getTypeNames());
+                PlanImplementor planImplementor = DrdsRunnerHelper.getPlanImplementor(dataContext, receiver, drdsSqlWithParams);
+                return DrdsRunnerHelper.impl(plan, planImplementor);
+            } catch (Throwable throwable) {
+                logger.error("", throwable);
+                return Future.failedFuture(throwable);
+            }
+        });
+        return recordSQLEnd(dataContext, logRecord, future);
+    }
+
     @NotNull
     public LinkedList<SQLStatement> parse(String text) {
         text = text.trim();
@@ -18,20 +18,26 @@ public class ProxyReceiverImpl extends ReceiverImpl {
         super(session, stmtSize, binary);
     }
 
+    /**
+     * 最后一条语句且客户端与后端协议格式一致时,后端报文不经过解码直接转发给客户端,
+     * 只把包序号改写为接着客户端当前的序号
+     */
     @Override
     public Future<Void> execute(ExplainDetail detail) {
         MycatDataContext dataContext = session.getDataContext();
-        if (count == 0 && !binary && !dataContext.isInTransaction() &&
+        if (count + 1 >= stmtSize && !binary && !dataContext.isInTransaction() &&
                 (detail.getExecuteType() == ExecuteType.QUERY || detail.getExecuteType() == ExecuteType.QUERY_MASTER)
                 && detail.getTargets().size() == 1
                 && MySQLServerCapabilityFlags.isDeprecateEOF(dataContext.getServerCapabilities()) == NewMycatConnectionConfig.CLIENT_DEPRECATE_EOF) {
+            count++;
+            int packetIdOffset = (session.getNextPacketId() - 1) & 0xff;
+            session.setPacketId(packetIdOffset);
             String targetName = dataContext.resolveDatasourceTargetName(detail.getTargets().get(0));
             MySQLManager mySQLManager = MetaClusterCurrent.wrapper(MySQLManager.class);
             Future<NewMycatConnection> connection = mySQLManager.getConnection(targetName);
             return connection.flatMap(connection1 -> {
-                Observable<Buffer> bufferObservable = connection1.prepareQuery(detail.getSql(), detail.getParams(),session.getServerStatusValue());
-                bufferObservable= bufferObservable.doOnComplete(() -> connection1.close());
-                bufferObservable=  bufferObservable;
+                Observable<Buffer> bufferObservable = connection1.prepareQuery(detail.getSql(), detail.getParams(), session.getServerStatusValue(), packetIdOffset);
+                bufferObservable = bufferObservable.doOnComplete(() -> connection1.close());
                 return swapBuffer(bufferObservable);
             });
         }
@@ -21,6 +21,7 @@ import io.mycat.beans.mycat.MycatRowMetaData;
 import io.mycat.beans.resultset.ResultSetWriter;
 import io.mycat.beans.resultset.SimpleBinaryWriterImpl;
 import io.mycat.beans.resultset.SimpleTextWriterImpl;
+import io.mycat.config.ServerConfig;
 import io.mycat.newquery.NewMycatConnection;
 import io.mycat.newquery.RowSet;
 import io.mycat.newquery.SqlResult;
@@ -32,6 +33,8 @@ import io.ordinate.engine.builder.SchemaBuilder;
 import io.ordinate.engine.schema.InnerType;
 import io.ordinate.engine.util.ResultWriterUtil;
 import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.ObservableSource;
 import io.reactivex.rxjava3.core.Observer;
@@ -39,10 +42,12 @@ import io.reactivex.rxjava3.disposables.Disposable;
 import io.vertx.core.*;
 import io.vertx.core.buffer.Buffer;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -130,6 +135,20 @@ public class ReceiverImpl implements Response {
 
     }
 
+    /**
+     * 客户端写缓冲满时停止请求,后端随之暂停读取
+     */
+    @Override
+    public Future<Void> sendResultSet(Flowable<MysqlPayloadObject> mysqlPacketFlowable) {
+        count++;
+        boolean hasMoreResult = hasMoreResultSet();
+        IOExecutor ioExecutor = MetaClusterCurrent.wrapper(IOExecutor.class);
+        int prefetch = (MetaClusterCurrent.exist(ServerConfig.class) ? MetaClusterCurrent.wrapper(ServerConfig.class) : new ServerConfig()).getResultSetPrefetch();
+
+        return ioExecutor.executeBlocking(promise1 -> mysqlPacketFlowable.subscribe(
+                new MysqlPayloadObjectSubscriber(new MysqlPayloadObjectObserver(promise1, hasMoreResult, binary, session), session, prefetch)));
+    }
+
     @Override
     public Future<Void> rollback() {
         count++;
@@ -198,18 +217,18 @@ public class ReceiverImpl implements Response {
         switch (detail.getExecuteType()) {
             case QUERY:
             case QUERY_MASTER: {
-                List<Observable<MysqlPayloadObject>> outputs = new LinkedList<>();
+                List<Flowable<MysqlPayloadObject>> outputs = new LinkedList<>();
                 for (int i = 0; i < targetOrderList.size(); i++) {
                     String datasource = targetOrderList.get(i);
                     Future<NewMycatConnection> connectionFuture = transactionSession.getConnection(datasource);
                     if (i == 0) {
-                        outputs.add(VertxExecuter.runQueryOutputAsMysqlPayloadObject(connectionFuture, sql.toString(), detail.getParams()));
+                        outputs.add(VertxExecuter.runQueryOutputAsMysqlPayloadFlowable(connectionFuture, sql.toString(), detail.getParams()));
                     } else {
-                        outputs.add(VertxExecuter.runQuery(connectionFuture, sql.toString(), Collections.emptyList(), null)
+                        outputs.add(VertxExecuter.runQueryFlowable(connectionFuture, sql.toString(), Collections.emptyList(), null)
                                 .map(row -> new MysqlObjectArrayRow(row)));
                     }
                 }
-                return sendResultSet(Observable.concat(outputs));
+                return sendResultSet(Flowable.concat(outputs));
             }
             case UPDATE:
             case INSERT:
@@ -356,6 +375,72 @@ public class ReceiverImpl implements Response {
         }
     }
 
+    /**
+     * 预取prefetch行(server.resultSetPrefetch),之后每写出一行再请求一行,写缓冲满时暂停请求,drain后补齐.
+     * 下游取消时上游中止后端查询,不再读取剩余的行
+     */
+    public static class MysqlPayloadObjectSubscriber implements FlowableSubscriber<MysqlPayloadObject> {
+        private final int prefetch;
+        private final MysqlPayloadObjectObserver observer;
+        private final MySQLServerSession session;
+        private final AtomicLong unrequested = new AtomicLong();
+        private final AtomicBoolean waitingDrain = new AtomicBoolean();
+        private Subscription subscription;
+
+        public MysqlPayloadObjectSubscriber(MysqlPayloadObjectObserver observer, MySQLServerSession session, int prefetch) {
+            this.observer = observer;
+            this.session = session;
+            this.prefetch = Math.max(1, prefetch);
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Subscription s) {
+            this.subscription = s;
+            observer.onSubscribe(Disposable.fromSubscription(s));
+            s.request(prefetch);
+        }
+
+        @Override
+        public void onNext(MysqlPayloadObject next) {
+            observer.onNext(next);
+            unrequested.incrementAndGet();
+            if (session.isWriteQueueFull()) {
+                if (waitingDrain.compareAndSet(false, true)) {
+                    session.writeDrainHandler(this::onDrain);
+                    //注册前可能已经drain
+                    if (!session.isWriteQueueFull()) {
+                        onDrain();
+                    }
+                }
+            } else if (!waitingDrain.get()) {
+                requestMore();
+            }
+        }
+
+        private void onDrain() {
+            if (waitingDrain.compareAndSet(true, false)) {
+                requestMore();
+            }
+        }
+
+        private void requestMore() {
+            long n = unrequested.getAndSet(0);
+            if (n > 0) {
+                subscription.request(n);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            observer.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            observer.onComplete();
+        }
+    }
+
     @Override
     public Future<Void> sendVectorResultSet(MycatRowMetaData mycatRowMetaData,
                                             Observable<VectorSchemaRoot> rootObservable) {
@@ -364,17 +449,20 @@ public class ReceiverImpl implements Response {
 
             @Override
             public ObservableSource<? extends MysqlPayloadObject> apply(VectorSchemaRoot vectorRowBatch) throws Throwable {
-                int rowCount = vectorRowBatch.getRowCount();
-                ArrayList<MysqlPayloadObject> objects = new ArrayList<>(rowCount);
-                if (types == null) {
-                    types = SchemaBuilder.getInnerTypes(vectorRowBatch);
-                }
-                for (int rowId = 0; rowId < rowCount; rowId++) {
-                    ResultSetWriter newWriter = binary ? new SimpleBinaryWriterImpl() : new SimpleTextWriterImpl();
-                    ResultWriterUtil.vectorRowBatchToResultSetWriter(vectorRowBatch, newWriter, types, rowId);
-                    objects.add(MysqlByteArrayPayloadRow.of(newWriter.build()));
+                //行已经写成字节数组,批次用完即关闭,查询结束时分配器不能有未释放的内存
+                try (VectorSchemaRoot batch = vectorRowBatch) {
+                    int rowCount = batch.getRowCount();
+                    ArrayList<MysqlPayloadObject> objects = new ArrayList<>(rowCount);
+                    if (types == null) {
+                        types = SchemaBuilder.getInnerTypes(batch);
+                    }
+                    for (int rowId = 0; rowId < rowCount; rowId++) {
+                        ResultSetWriter newWriter = binary ? new SimpleBinaryWriterImpl() : new SimpleTextWriterImpl();
+                        ResultWriterUtil.vectorRowBatchToResultSetWriter(batch, newWriter, types, rowId);
+                        objects.add(MysqlByteArrayPayloadRow.of(newWriter.build()));
+                    }
+                    return Observable.fromIterable(objects);
                 }
-                return Observable.fromIterable(objects);
             }
         }
         ;
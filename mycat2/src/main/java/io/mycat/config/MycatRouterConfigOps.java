@@ -34,6 +34,7 @@ import io.mycat.*;
 import io.mycat.beans.mycat.TransactionType;
 import io.mycat.calcite.spm.DbPlanManagerPersistorImpl;
 import io.mycat.calcite.spm.MemPlanCache;
+import io.mycat.calcite.spm.PlanSnapshotScheduler;
 import io.mycat.calcite.spm.QueryPlanner;
 import io.mycat.calcite.spm.UpdatePlanCache;
 import io.mycat.calcite.table.DualCustomTableHandler;
@@ -596,6 +597,7 @@ public class MycatRouterConfigOps implements AutoCloseable, ConfigOps {
                 recoveryXA();
                 DbPlanManagerPersistorImpl dbPlanManagerPersistor = new DbPlanManagerPersistorImpl();
                 dbPlanManagerPersistor.checkStore();
+                PlanSnapshotScheduler.load();
             }
             QueryPlanner planner = MetaClusterCurrent.wrapper(QueryPlanner.class);
 //            planner.innerComputeMinCostCodeExecuterContext( DrdsRunnerHelper.preParse("select 1",null));
@@ -244,6 +244,16 @@ public class JdbcMycatDataContext implements MycatDataContext {
 
     }
 
+    @Override
+    public boolean isBackendSessionPinned() {
+        return false;
+    }
+
+    @Override
+    public void setBackendSessionPinned(boolean value) {
+
+    }
+
     @Override
     public Integer getLock(String name, long time) {
         return null;
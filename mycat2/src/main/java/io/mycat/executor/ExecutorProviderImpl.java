@@ -74,7 +74,11 @@ public class ExecutorProviderImpl implements ExecutorProvider {
                                 new AsyncMycatDataContextImpl.SqlMycatDataContextImpl(newMycatDataContext.getContext(), plan.getCodeExecuterContext(), drdsSql);
 
                         RootContext rootContext = new RootContext(sqlMycatDataContext);
-                        Observable<VectorSchemaRoot> schemaRootObservable = factory.execute(rootContext);
+                        int aggregateParallelism = newMycatDataContext.getContext().getAggregateParallelism();
+                        if (aggregateParallelism > 0) {
+                            rootContext.getConfiguration().setAggregateParallelism(aggregateParallelism);
+                        }
+                        Observable<VectorSchemaRoot> schemaRootObservable = factory.execute(rootContext).doFinally(rootContext::close);
                         return PrepareExecutor.ArrowObservable.of(mycatRowMetaData, schemaRootObservable);
                     },
                     getArrayBindable(codeExecuterContext));
@@ -0,0 +1,45 @@
+package io.mycat.exporter;
+
+import com.google.common.collect.ImmutableList;
+import io.mycat.ratelimiter.AdmissionController;
+import io.mycat.ratelimiter.ConcurrencyLimiter;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 准入控制的拒绝次数,排队次数与重查询的并发数
+ */
+public class AdmissionControlCollector extends Collector {
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        AdmissionController admissionController = AdmissionController.INSTANCE;
+        CounterMetricFamily rejectCount = new CounterMetricFamily("admission_reject_total",
+                "statements rejected by admission control", Arrays.asList("dimension", "key"));
+        for (Map.Entry<String, Map<String, LongAdder>> dimension : admissionController.getRejectCounts().entrySet()) {
+            for (Map.Entry<String, LongAdder> entry : dimension.getValue().entrySet()) {
+                rejectCount.addMetric(Arrays.asList(dimension.getKey(), entry.getKey()), entry.getValue().sum());
+            }
+        }
+        CounterMetricFamily queuedCount = new CounterMetricFamily("admission_queued_total",
+                "statements delayed by qps limit", Collections.emptyList());
+        queuedCount.addMetric(Collections.emptyList(), admissionController.getQueuedCount());
+        GaugeMetricFamily heavyRunning = new GaugeMetricFamily("admission_heavy_query_running",
+                "running heavy queries", Collections.singletonList("type"));
+        GaugeMetricFamily heavyQueued = new GaugeMetricFamily("admission_heavy_query_queued",
+                "heavy queries waiting for concurrency slot", Collections.singletonList("type"));
+        for (Map.Entry<AdmissionController.HeavyQueryType, ConcurrencyLimiter> entry : admissionController.getHeavyLimiters().entrySet()) {
+            List<String> labels = Collections.singletonList(entry.getKey().name().toLowerCase());
+            heavyRunning.addMetric(labels, entry.getValue().getRunning());
+            heavyQueued.addMetric(labels, entry.getValue().getQueued());
+        }
+        return ImmutableList.of(rejectCount, queuedCount, heavyRunning, heavyQueued);
+    }
+}
@@ -0,0 +1,59 @@
+package io.mycat.exporter;
+
+import com.google.common.collect.ImmutableList;
+import io.mycat.mysqlclient.PoolWaitStat;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 原生连接池获取连接的等待时间直方图,用于按数据调整maxCon
+ */
+public class PoolWaitCollector extends Collector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PoolWaitCollector.class);
+    private static final String NAME = "datasource_connection_wait_seconds";
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        try {
+            List<String> columnList = ImmutableList.of("datasource");
+            List<String> bucketColumnList = ImmutableList.of("datasource", "le");
+            List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+            GaugeMetricFamily timeout = new GaugeMetricFamily("datasource_connection_wait_timeout_count",
+                    "native datasource connection acquire timeout count", columnList);
+            GaugeMetricFamily reject = new GaugeMetricFamily("datasource_connection_wait_reject_count",
+                    "native datasource connection acquire rejected by full wait queue count", columnList);
+            for (Map.Entry<String, PoolWaitStat> entry : PoolWaitStat.getStats().entrySet()) {
+                String datasource = entry.getKey();
+                PoolWaitStat stat = entry.getValue();
+                long cumulative = 0;
+                for (int i = 0; i < PoolWaitStat.BUCKET_MILLIS.length; i++) {
+                    cumulative += stat.getBuckets()[i].sum();
+                    samples.add(new MetricFamilySamples.Sample(NAME + "_bucket", bucketColumnList,
+                            ImmutableList.of(datasource, doubleToGoString(PoolWaitStat.BUCKET_MILLIS[i] / 1000.0)), cumulative));
+                }
+                long count = stat.getCount().sum();
+                samples.add(new MetricFamilySamples.Sample(NAME + "_bucket", bucketColumnList,
+                        ImmutableList.of(datasource, "+Inf"), count));
+                samples.add(new MetricFamilySamples.Sample(NAME + "_count", columnList,
+                        ImmutableList.of(datasource), count));
+                samples.add(new MetricFamilySamples.Sample(NAME + "_sum", columnList,
+                        ImmutableList.of(datasource), stat.getTotalNanos().sum() / (double) TimeUnit.SECONDS.toNanos(1)));
+                timeout.addMetric(ImmutableList.of(datasource), stat.getTimeoutCount().sum());
+                reject.addMetric(ImmutableList.of(datasource), stat.getRejectCount().sum());
+            }
+            MetricFamilySamples histogram = new MetricFamilySamples(NAME, Type.HISTOGRAM,
+                    "native datasource connection acquire wait time", samples);
+            return ImmutableList.of(histogram, timeout, reject);
+        } catch (Throwable e) {
+            LOGGER.error("", e);
+            throw e;
+        }
+    }
+}
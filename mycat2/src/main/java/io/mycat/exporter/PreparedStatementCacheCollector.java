@@ -0,0 +1,56 @@
+package io.mycat.exporter;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.google.common.collect.ImmutableList;
+import io.mycat.MetaClusterCurrent;
+import io.mycat.datasource.jdbc.datasource.JdbcConnectionManager;
+import io.mycat.datasource.jdbc.datasource.JdbcDataSource;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * jdbc数据源的预处理语句缓存,count用于对照后端max_prepared_stmt_count
+ */
+public class PreparedStatementCacheCollector extends Collector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreparedStatementCacheCollector.class);
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        try {
+            List<String> columnList = ImmutableList.of("datasource");
+            GaugeMetricFamily count = new GaugeMetricFamily("datasource_prepared_statement_cache_count",
+                    "cached server prepared statement count", columnList);
+            GaugeMetricFamily hit = new GaugeMetricFamily("datasource_prepared_statement_cache_hit_count",
+                    "prepared statement cache hit count", columnList);
+            GaugeMetricFamily miss = new GaugeMetricFamily("datasource_prepared_statement_cache_miss_count",
+                    "prepared statement cache miss count", columnList);
+            GaugeMetricFamily evict = new GaugeMetricFamily("datasource_prepared_statement_cache_evict_count",
+                    "prepared statement cache evict count", columnList);
+            if (MetaClusterCurrent.exist(JdbcConnectionManager.class)) {
+                JdbcConnectionManager jdbcConnectionManager = MetaClusterCurrent.wrapper(JdbcConnectionManager.class);
+                for (JdbcDataSource jdbcDataSource : jdbcConnectionManager.getDatasourceInfo().values()) {
+                    if (!(jdbcDataSource.getDataSource() instanceof DruidDataSource)) {
+                        continue;
+                    }
+                    DruidDataSource druidDataSource = (DruidDataSource) jdbcDataSource.getDataSource();
+                    if (!druidDataSource.isPoolPreparedStatements()) {
+                        continue;
+                    }
+                    List<String> labels = ImmutableList.of(jdbcDataSource.getName());
+                    count.addMetric(labels, druidDataSource.getCachedPreparedStatementCount());
+                    hit.addMetric(labels, druidDataSource.getCachedPreparedStatementHitCount());
+                    miss.addMetric(labels, druidDataSource.getCachedPreparedStatementMissCount());
+                    evict.addMetric(labels, druidDataSource.getCachedPreparedStatementDeleteCount());
+                }
+            }
+            return ImmutableList.of(count, hit, miss, evict);
+        } catch (Throwable e) {
+            LOGGER.error("", e);
+            throw e;
+        }
+    }
+}
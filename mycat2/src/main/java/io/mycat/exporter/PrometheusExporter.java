@@ -35,7 +35,13 @@ public class PrometheusExporter implements Runnable {
                                 new ConnectionCounterCollector(),
                                 new HeartbeatCollector(),
                                 new InstanceCollector(),
-                                new ThreadPoolCollector()
+                                new ThreadPoolCollector(),
+                                new ShardConnectionWaitCollector(),
+                                new QueryMemoryCollector(),
+                                new PoolWaitCollector(),
+                                new SessionWriteCollector(),
+                                new PreparedStatementCacheCollector(),
+                                new AdmissionControlCollector()
                         );
                         collectorList.register();
                         LOGGER.info("PrometheusExporter start server port:"+port);
@@ -0,0 +1,45 @@
+package io.mycat.exporter;
+
+import com.google.common.collect.ImmutableList;
+import io.mycat.serializable.QueryMemoryGovernor;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class QueryMemoryCollector extends Collector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryMemoryCollector.class);
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        try {
+            GaugeMetricFamily used = new GaugeMetricFamily("query_memory_reserved_bytes",
+                    "query memory reserved by materializing operators on this node", Collections.emptyList());
+            used.addMetric(Collections.emptyList(), QueryMemoryGovernor.getUsed());
+            GaugeMetricFamily limit = new GaugeMetricFamily("query_memory_limit_bytes",
+                    "query memory limit of this node", Collections.emptyList());
+            limit.addMetric(Collections.emptyList(), QueryMemoryGovernor.NODE_LIMIT);
+            List<String> columnList = ImmutableList.of("operator");
+            GaugeMetricFamily operatorUsed = new GaugeMetricFamily("query_memory_operator_reserved_bytes",
+                    "query memory reserved per operator", columnList);
+            for (Map.Entry<String, AtomicLong> entry : QueryMemoryGovernor.getOperatorUsed().entrySet()) {
+                operatorUsed.addMetric(ImmutableList.of(entry.getKey()), entry.getValue().get());
+            }
+            GaugeMetricFamily spill = new GaugeMetricFamily("query_memory_spill_count",
+                    "materialized data spilled to disk", Collections.emptyList());
+            spill.addMetric(Collections.emptyList(), QueryMemoryGovernor.getSpillCount());
+            GaugeMetricFamily reject = new GaugeMetricFamily("query_memory_reject_count",
+                    "queries failed because memory limit was exceeded", Collections.emptyList());
+            reject.addMetric(Collections.emptyList(), QueryMemoryGovernor.getRejectCount());
+            return ImmutableList.of(used, limit, operatorUsed, spill, reject);
+        } catch (Throwable e) {
+            LOGGER.error("", e);
+            throw e;
+        }
+    }
+}
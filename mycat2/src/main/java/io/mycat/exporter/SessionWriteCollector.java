@@ -0,0 +1,31 @@
+package io.mycat.exporter;
+
+import com.google.common.collect.ImmutableList;
+import io.mycat.vertx.PacketWriteAggregator;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 客户端socket写次数与合并的报文数,packets_per_write越大合并效果越好
+ */
+public class SessionWriteCollector extends Collector {
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        long writes = PacketWriteAggregator.WRITE_COUNT.sum();
+        long packets = PacketWriteAggregator.PACKET_COUNT.sum();
+        GaugeMetricFamily writeCount = new GaugeMetricFamily("client_socket_write_count",
+                "client socket write count", Collections.emptyList());
+        writeCount.addMetric(Collections.emptyList(), writes);
+        GaugeMetricFamily packetCount = new GaugeMetricFamily("client_socket_write_packet_count",
+                "mysql packet count written to client socket", Collections.emptyList());
+        packetCount.addMetric(Collections.emptyList(), packets);
+        GaugeMetricFamily packetsPerWrite = new GaugeMetricFamily("client_socket_packets_per_write",
+                "average mysql packet count per client socket write", Collections.emptyList());
+        packetsPerWrite.addMetric(Collections.emptyList(), writes == 0 ? 0 : packets / (double) writes);
+        return ImmutableList.of(writeCount, packetCount, packetsPerWrite);
+    }
+}
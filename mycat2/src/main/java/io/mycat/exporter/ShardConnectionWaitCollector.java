@@ -0,0 +1,40 @@
+package io.mycat.exporter;
+
+import com.google.common.collect.ImmutableList;
+import io.mycat.connectionschedule.ShardConnectionScheduler;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ShardConnectionWaitCollector extends Collector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardConnectionWaitCollector.class);
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        try {
+            List<String> columnList = ImmutableList.of("datasource");
+            GaugeMetricFamily count = new GaugeMetricFamily("shard_connection_wait_count",
+                    "shard subquery connection acquire count", columnList);
+            GaugeMetricFamily avg = new GaugeMetricFamily("shard_connection_wait_avg_ms",
+                    "shard subquery connection queue wait avg time", columnList);
+            GaugeMetricFamily max = new GaugeMetricFamily("shard_connection_wait_max_ms",
+                    "shard subquery connection queue wait max time", columnList);
+            for (Map.Entry<String, ShardConnectionScheduler.WaitStat> entry : ShardConnectionScheduler.getWaitStats().entrySet()) {
+                List<String> labels = ImmutableList.of(entry.getKey());
+                ShardConnectionScheduler.WaitStat waitStat = entry.getValue();
+                count.addMetric(labels, waitStat.getCount().sum());
+                avg.addMetric(labels, waitStat.getAvgMillis());
+                max.addMetric(labels, TimeUnit.NANOSECONDS.toMillis(waitStat.getMaxNanos().get()));
+            }
+            return ImmutableList.of(count, avg, max);
+        } catch (Throwable e) {
+            LOGGER.error("", e);
+            throw e;
+        }
+    }
+}
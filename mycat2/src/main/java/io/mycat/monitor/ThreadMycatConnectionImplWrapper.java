@@ -72,8 +72,8 @@ public class ThreadMycatConnectionImplWrapper implements NewMycatConnection {
     }
 
     @Override
-    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus) {
-        return newMycatConnection.prepareQuery(sql, params, serverstatus);
+    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus, int packetIdOffset) {
+        return newMycatConnection.prepareQuery(sql, params, serverstatus, packetIdOffset);
     }
 
     @Override
@@ -192,6 +192,16 @@ public class ThreadMycatConnectionImplWrapper implements NewMycatConnection {
         });
     }
 
+    @Override
+    public void pauseQuery() {
+        this.newMycatConnection.pauseQuery();
+    }
+
+    @Override
+    public void resumeQuery() {
+        this.newMycatConnection.resumeQuery();
+    }
+
     @Override
     public boolean isQuerying() {
         return this.newMycatConnection.isQuerying();
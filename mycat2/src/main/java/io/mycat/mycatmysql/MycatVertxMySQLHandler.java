@@ -18,12 +18,14 @@ import io.mycat.beans.mycat.MycatRowMetaData;
 import io.mycat.beans.mycat.ResultSetBuilder;
 import io.mycat.beans.mysql.MySQLCommandType;
 import io.mycat.beans.mysql.packet.DefaultPreparedOKPacket;
+import io.mycat.calcite.spm.PreparedPlan;
 import io.mycat.commands.MycatdbCommand;
 import io.mycat.commands.ProxyReceiverImpl;
 import io.mycat.commands.ReceiverImpl;
 import io.mycat.config.MySQLServerCapabilityFlags;
 import io.mycat.config.ServerConfig;
 import io.mycat.prototypeserver.mysql.PrototypeService;
+import io.mycat.ratelimiter.AdmissionController;
 import io.mycat.util.VertxUtil;
 import io.mycat.vertx.ReadView;
 import io.vertx.core.Future;
@@ -39,6 +41,7 @@ import java.nio.charset.StandardCharsets;
 import java.sql.JDBCType;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static io.mycat.beans.mysql.packet.AuthPacket.calcLenencLength;
 
@@ -93,7 +96,7 @@ public class MycatVertxMySQLHandler {
                     process.setQuery(sql);
                     process.setState(Process.State.INIT);
                     IOExecutor vertx = MetaClusterCurrent.wrapper(IOExecutor.class);
-                    promise = vertx.executeBlocking((Handler<Promise<Void>>) event1 -> handleQuery(sql, session).onComplete(event1));
+                    promise = admit(() -> sql).compose(unused -> vertx.executeBlocking((Handler<Promise<Void>>) event1 -> handleQuery(sql, session).onComplete(event1)));
                     break;
                 }
                 case MySQLCommandType.COM_INIT_DB: {
@@ -137,18 +140,18 @@ public class MycatVertxMySQLHandler {
                     break;
                 }
                 case MySQLCommandType.COM_STMT_EXECUTE: {
-                    MycatDataContext dataContext = this.session.getDataContext();
-                    Map<Long, PreparedStatement> prepareInfo = dataContext.getPrepareInfo();
                     long statementId = readView.readFixInt(4);
                     byte flags = readView.readByte();
                     long iteration = readView.readFixInt(4);
                     assert iteration == 1;
-                    int numParams = getNumParamsByStatementId(statementId, this.session);
+                    //未知的statementId在这里报错,之后只使用这次取到的预处理语句
+                    PreparedStatement preparedStatement = getPreparedStatement(statementId);
+                    int numParams = preparedStatement.getParametersNumber();
                     byte[] nullMap = null;
                     if (numParams > 0) {
                         nullMap = readView.readBytes((numParams + 7) / 8);
                     }
-                    int[] params = prepareInfo.get(statementId).getParametersType();
+                    int[] params = preparedStatement.getParametersType();
                     BindValue[] values = new BindValue[numParams];
 
                     boolean newParameterBoundFlag = !readView.readFinished() && readView.readByte() == 1;
@@ -176,8 +179,8 @@ public class MycatVertxMySQLHandler {
                         values[i] = bv;
                     }
                     saveBindValue(statementId, values, this.session);
-                    promise = handlePrepareStatementExecute(statementId, flags, params, values,
-                            this.session);
+                    promise = admit(() -> preparedStatement.getStatement().toString())
+                            .compose(unused -> handlePrepareStatementExecute(statementId, flags, params, values, this.session));
                     break;
                 }
                 case MySQLCommandType.COM_STMT_CLOSE: {
@@ -336,6 +339,18 @@ public class MycatVertxMySQLHandler {
         }
     }
 
+    /**
+     * 准入控制,在解析与获取后端连接之前按用户,库和sql限流
+     */
+    private Future<Void> admit(Supplier<String> sqlSupplier) {
+        AdmissionController admissionController = AdmissionController.INSTANCE;
+        if (!admissionController.isEnable()) {
+            return Future.succeededFuture();
+        }
+        MycatUser user = mycatDataContext.getUser();
+        return admissionController.admit(user == null ? null : user.getUserName(), mycatDataContext.getDefaultSchema(), sqlSupplier);
+    }
+
     private void saveBindValue(long statementId, BindValue[] values, MycatVertxMysqlSession MycatMysqlSession) {
         Map<Long, io.mycat.PreparedStatement> prepareInfo = mycatDataContext.getPrepareInfo();
         io.mycat.PreparedStatement preparedStatement = prepareInfo.get(statementId);
@@ -355,21 +370,12 @@ public class MycatVertxMySQLHandler {
     }
 
     private Future<Void> handlePrepareStatementExecute(long statementId, byte flags, int[] params, BindValue[] values, MycatVertxMysqlSession MycatMysqlSession) throws Exception {
-        MetadataManager metadataManager = MetaClusterCurrent.wrapper(MetadataManager.class);
         MycatDataContext dataContext = session.getDataContext();
         Map<Long, io.mycat.PreparedStatement> longPreparedStatementMap = dataContext.getPrepareInfo();
         io.mycat.PreparedStatement preparedStatement = longPreparedStatementMap.get(statementId);
-        SQLStatement statement = preparedStatement.getSQLStatementByBindValue(values);
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("preparestatement:{}", statement);
-        }
-        SQLStatement typeStatement = metadataManager.typeInferenceUpdate(statement, dataContext.getDefaultSchema());
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("typeInferenceUpdate:{}", typeStatement);
-        }
         Response receiver = new ReceiverImpl(session, 1, true);
         IOExecutor ioExecutor = MetaClusterCurrent.wrapper(IOExecutor.class);
-        return ioExecutor.executeBlocking(event -> MycatdbCommand.execute(dataContext, receiver, typeStatement).onComplete(event));
+        return ioExecutor.executeBlocking(event -> MycatdbCommand.executePrepared(dataContext, receiver, preparedStatement).onComplete(event));
     }
 
     private byte[] getLongData(long statementId, int i, MycatVertxMysqlSession MycatMysqlSession) {
@@ -382,13 +388,12 @@ public class MycatVertxMySQLHandler {
         return longData.toByteArray();
     }
 
-    private int getNumParamsByStatementId(long statementId, MycatVertxMysqlSession MycatMysqlSession) {
+    private io.mycat.PreparedStatement getPreparedStatement(long statementId) {
         Map<Long, io.mycat.PreparedStatement> preparedStatementMap = mycatDataContext.getPrepareInfo();
-        io.mycat.PreparedStatement preparedStatement = Objects.requireNonNull(
+        return Objects.requireNonNull(
                 preparedStatementMap.get(statementId),
                 () -> "preparedStatement:" + statementId + "  not exist"
         );
-        return preparedStatement.getParametersNumber();
     }
 
     private Future<Void> handlePrepareStatementReset(long statementId, MycatVertxMysqlSession MycatMysqlSession) {
@@ -475,6 +480,9 @@ public class MycatVertxMySQLHandler {
             preparedStatement.getParametersType()[i] = MysqlDefs.FIELD_TYPE_STRING;
         }
 
+        if (PreparedPlan.ENABLE && preparedStatement.isQuery()) {
+            preparedStatement.setAttach(PreparedPlan.create(sqlStatement, params.getColumnCount(), mysqlSession.getDataContext()));
+        }
         statementMap.put(stmtId, preparedStatement);
 
         DefaultPreparedOKPacket info = new DefaultPreparedOKPacket(stmtId, fields.getColumnCount(), params.getColumnCount(), session.getWarningCount());
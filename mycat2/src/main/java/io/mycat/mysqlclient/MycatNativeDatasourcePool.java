@@ -37,57 +37,84 @@ public class MycatNativeDatasourcePool extends AbstractMycatDatasourcePool {
 
     @Override
     public Future<NewMycatConnection> getConnection() {
-        return vertxPoolConnection.getConnection().map(connection -> {
-            DatabaseInstanceEntry stat = DatabaseInstanceEntry.stat(targetName);
+        return vertxPoolConnection.getConnection().map(this::wrap);
+    }
+
+    /**
+     * 共用连接按顺序执行各会话的查询,共用连接不足或者排队过多时退回独占连接
+     */
+    public Future<NewMycatConnection> getMultiplexConnection() {
+        if (vertxPoolConnection.config.getMultiplexSize() <= 0) {
+            return getConnection();
+        }
+        return vertxPoolConnection.getMultiplexConnection().map(this::wrap);
+    }
+
+    /**
+     * 共用连接上的每个会话只是一个逻辑句柄,不计入占用的连接数
+     */
+    private NewMycatConnection wrap(VertxConnection connection) {
+        DatabaseInstanceEntry stat = DatabaseInstanceEntry.stat(targetName);
+        boolean exclusive = !connection.isMultiplexed();
+        if (exclusive) {
             stat.plusCon();
-            stat.plusQps();
-            return new RemoveAbandonedTimeoutConnectionImpl(new VertxMycatConnectionPool(targetName,connection, vertxPoolConnection){
-                long start;
-
-                @Override
-                public void onSend() {
-                    start = System.currentTimeMillis();
-                    onActiveTimestamp(start);
-                }
+        }
+        stat.plusQps();
+        return new RemoveAbandonedTimeoutConnectionImpl(new VertxMycatConnectionPool(targetName,connection, vertxPoolConnection){
+            long start;
 
-                @Override
-                public void onRev() {
-                    long end = System.currentTimeMillis();
-                    onActiveTimestamp(end);
-                    InstanceMonitor.plusPrt(end - start);
-                }
+            @Override
+            public void onSend() {
+                start = System.currentTimeMillis();
+                onActiveTimestamp(start);
+            }
 
-                @Override
-                public Future<Void> close() {
-                    stat.decCon();
-                    return super.close();
-                }
+            @Override
+            public void onRev() {
+                long end = System.currentTimeMillis();
+                onActiveTimestamp(end);
+                InstanceMonitor.plusPrt(end - start);
+            }
 
-                @Override
-                public Observable<VectorSchemaRoot> prepareQuery(String sql, List<Object> params, BufferAllocator allocator) {
-                    return Observable.create(emitter -> {
-                        JdbcDatasourcePoolImpl jdbcDatasourcePool = new JdbcDatasourcePoolImpl(targetName);
-                        Future<NewMycatConnection> connectionFuture = jdbcDatasourcePool.getConnection();
-                        connectionFuture.onSuccess(event -> {
-                            Observable<VectorSchemaRoot> observable = event.prepareQuery(sql, params, allocator);
-                            observable.subscribe(vectorSchemaRoot -> emitter.onNext(vectorSchemaRoot),
-                                    throwable -> emitter.onError(throwable),
-                                    () -> emitter.onComplete());
-                        });
-                        connectionFuture.onFailure(event -> emitter.onError(event));
-                    });
+            @Override
+            public Future<Void> close() {
+                if (exclusive) {
+                    stat.decCon();
                 }
+                return super.close();
+            }
 
-                @Override
-                public Future<List<Object>> call(String sql) {
+            @Override
+            public Observable<VectorSchemaRoot> prepareQuery(String sql, List<Object> params, BufferAllocator allocator) {
+                return Observable.create(emitter -> {
                     JdbcDatasourcePoolImpl jdbcDatasourcePool = new JdbcDatasourcePoolImpl(targetName);
                     Future<NewMycatConnection> connectionFuture = jdbcDatasourcePool.getConnection();
-                    return connectionFuture.flatMap(connection -> connection.call(sql));
-                }
-            });
+                    connectionFuture.onSuccess(event -> {
+                        Observable<VectorSchemaRoot> observable = event.prepareQuery(sql, params, allocator);
+                        observable.subscribe(vectorSchemaRoot -> emitter.onNext(vectorSchemaRoot),
+                                throwable -> emitter.onError(throwable),
+                                () -> emitter.onComplete());
+                    });
+                    connectionFuture.onFailure(event -> emitter.onError(event));
+                });
+            }
+
+            @Override
+            public Future<List<Object>> call(String sql) {
+                JdbcDatasourcePoolImpl jdbcDatasourcePool = new JdbcDatasourcePoolImpl(targetName);
+                Future<NewMycatConnection> connectionFuture = jdbcDatasourcePool.getConnection();
+                return connectionFuture.flatMap(jdbcConnection -> jdbcConnection.call(sql));
+            }
         });
     }
 
+    /**
+     * 预先创建minCon个连接
+     */
+    public Future<Void> warmUp() {
+        return vertxPoolConnection.warmUp(vertxPoolConnection.config.getMinCon());
+    }
+
     @Override
     public int getAvailableNumber() {
         return vertxPoolConnection.getAvailableNumber();
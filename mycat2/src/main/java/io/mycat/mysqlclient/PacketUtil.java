@@ -31,6 +31,7 @@ import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.time.temporal.ChronoField.*;
 
 public class PacketUtil {
+    public static final byte COM_PING = 0x0e;
     private static final java.time.format.DateTimeFormatter DATETIME_FORMAT = new DateTimeFormatterBuilder()
             .parseCaseInsensitive()
             .append(ISO_LOCAL_DATE)
@@ -70,6 +71,11 @@ public class PacketUtil {
         return (byte) 0;
     }
 
+    public static byte writePing(NetSocket socket) {
+        socket.write(Buffer.buffer(MySQLPacketUtil.generateMySQLPacket(0, new byte[]{COM_PING})));
+        return (byte) 0;
+    }
+
     public static long decodeDecStringToLong(int index, int len, Buffer buff) {
         long value = 0;
         if (len > 0) {
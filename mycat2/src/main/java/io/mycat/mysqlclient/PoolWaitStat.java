@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) <2022>  <chen junwen>
+ * <p>
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with this program.  If
+ * not, see <http://www.gnu.org/licenses/>.
+ */
+package io.mycat.mysqlclient;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池获取连接的等待时间直方图,按数据源统计,每个连接池实例一份
+ */
+@Getter
+public class PoolWaitStat {
+    public static final long[] BUCKET_MILLIS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000, 30000};
+    private static final Map<String, PoolWaitStat> STATS = new ConcurrentHashMap<>();
+
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder rejectCount = new LongAdder();
+
+    public PoolWaitStat() {
+        this.buckets = new LongAdder[BUCKET_MILLIS.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 每个连接池实例独立统计,重建同名连接池时新实例替换旧实例
+     */
+    public static PoolWaitStat register(String datasource) {
+        PoolWaitStat stat = new PoolWaitStat();
+        STATS.put(datasource, stat);
+        return stat;
+    }
+
+    /**
+     * 只移除本实例,旧连接池关闭时不影响已替换它的新连接池
+     */
+    public static void remove(String datasource, PoolWaitStat stat) {
+        STATS.remove(datasource, stat);
+    }
+
+    public static Map<String, PoolWaitStat> getStats() {
+        return STATS;
+    }
+
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            if (millis <= BUCKET_MILLIS[i]) {
+                buckets[i].increment();
+                break;
+            }
+        }
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public void recordTimeout() {
+        timeoutCount.increment();
+    }
+
+    public void recordReject() {
+        rejectCount.increment();
+    }
+}
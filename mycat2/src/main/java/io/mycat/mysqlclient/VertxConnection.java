@@ -17,6 +17,7 @@ package io.mycat.mysqlclient;
 
 import io.mycat.beans.mysql.MySQLServerStatusFlags;
 import io.mycat.mysqlclient.command.OkCommand;
+import io.mycat.mysqlclient.command.PingCommand;
 import io.mycat.mysqlclient.command.QueryCommand;
 import io.mycat.mysqlclient.command.ResponseBufferCommand;
 import io.mycat.mysqlclient.decoder.ByteArrayDecoder;
@@ -46,6 +47,21 @@ public class VertxConnection {
     private VertxConnectionPool vertxConnectionPool;
     private int serverstatus;
     Future<Void> future = Future.succeededFuture();
+    /**
+     * 由连接池维护,用于按空闲时间回收和统计占用时间,校验连接不算使用
+     */
+    volatile long lastUsedTime = System.currentTimeMillis();
+    volatile long lastValidatedTime = lastUsedTime;
+    volatile long acquireTime;
+    /**
+     * 多个会话共用的连接,由连接池维护,不回收到空闲队列
+     */
+    boolean multiplexed;
+    int multiplexPending;
+    /**
+     * 不再分配给新会话的共用连接,排队的查询结束后关闭
+     */
+    boolean draining;
 
 
     public VertxConnection(NetSocket netSocket, long connectionId, VertxPoolConnectionImpl.Config config, VertxConnectionPool vertxConnectionPool) {
@@ -64,6 +80,17 @@ public class VertxConnection {
     }
 
     public Future<SqlResult> update(String sql) {
+        return runOkCommand(promise -> new OkCommand(sql, netSocket, promise));
+    }
+
+    /**
+     * COM_PING,同时刷新serverstatus
+     */
+    public Future<Void> ping() {
+        return runOkCommand(promise -> new PingCommand(netSocket, promise)).mapEmpty();
+    }
+
+    private Future<SqlResult> runOkCommand(Function<Promise<SqlResult>, OkCommand> commandFactory) {
         return Future.future(promise -> {
             synchronized (VertxConnection.this) {
                 if (future.isComplete()) {
@@ -73,7 +100,7 @@ public class VertxConnection {
                     try {
                         checkException();
                         Future<SqlResult> resultFuture = promise.future();
-                        OkCommand queryCommand = new OkCommand(sql, netSocket, promise);
+                        OkCommand queryCommand = commandFactory.apply(promise);
                         resultFuture.onComplete(event -> {
                             VertxConnection.this.serverstatus = queryCommand.serverstatus;
                         });
@@ -130,6 +157,13 @@ public class VertxConnection {
 
 
     public Observable<Buffer> query(String sql) {
+        return query(sql, 0);
+    }
+
+    /**
+     * 原样输出后端报文,只改写包序号
+     */
+    public Observable<Buffer> query(String sql, int packetIdOffset) {
         Observable<Buffer> objectObservable = Observable.create(emitter -> {
             synchronized (VertxConnection.this) {
                 future = future.flatMap(new Function<Void, Future<Void>>() {
@@ -137,7 +171,7 @@ public class VertxConnection {
                     public Future<Void> apply(Void unused) {
                         return Future.future((promise) -> {
                             checkException();
-                            ResponseBufferCommand bufferedResponseHandler = new ResponseBufferCommand(netSocket, sql, config, !NewMycatConnectionConfig.PASS_HALF_PACKET, emitter) {
+                            ResponseBufferCommand bufferedResponseHandler = new ResponseBufferCommand(netSocket, sql, config, !NewMycatConnectionConfig.PASS_HALF_PACKET, packetIdOffset, emitter) {
                                 @Override
                                 public void onEnd() {
                                     super.onEnd();
@@ -40,18 +40,22 @@ import io.vertx.core.Promise;
 import io.vertx.core.buffer.Buffer;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
 
 public class VertxMycatConnectionPool implements NewMycatConnection {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VertxMycatConnectionPool.class);
     private String targetName;
     VertxConnection connection;
     private VertxPoolConnectionImpl vertxConnectionPool;
     Future<Void> queryCloseFuture = Future.succeededFuture();
 
     private boolean close = false;
+    private volatile boolean paused = false;
 
     private long activeTimeStamp;
 
@@ -136,10 +140,12 @@ public class VertxMycatConnectionPool implements NewMycatConnection {
             Observable<Object[]> query = connection.query(sql, objectArrayDecoder);
             query.subscribe(objects -> collector.onRow(objects),
                     throwable -> {
+                        resumeQuery();
                         promise.tryFail(throwable);
                         collector.onError(throwable);
                     },
                     () -> {
+                        resumeQuery();
                         onRev();
                         promise.tryComplete();
                         collector.onComplete();
@@ -182,7 +188,7 @@ public class VertxMycatConnectionPool implements NewMycatConnection {
     }
 
     @Override
-    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus) {
+    public Observable<Buffer> prepareQuery(String sql, List<Object> params, int serverstatus, int packetIdOffset) {
         return Observable.create(emitter -> {
             synchronized (VertxMycatConnectionPool.this) {
                 if (queryCloseFuture.isComplete()) {
@@ -191,7 +197,7 @@ public class VertxMycatConnectionPool implements NewMycatConnection {
                 VertxMycatConnectionPool.this.queryCloseFuture = VertxMycatConnectionPool.this.queryCloseFuture
                         .transform(voidAsyncResult -> {
                             return Future.future((Handler<Promise<Observable<Buffer>>>) promise -> {
-                                Observable<Buffer> observable = connection.query(deparameterize(sql, params));
+                                Observable<Buffer> observable = connection.query(deparameterize(sql, params), packetIdOffset);
                                 observable.subscribe(buffer -> emitter.onNext(buffer),
                                         throwable -> emitter.onError(throwable),
                                         () -> {
@@ -264,6 +270,9 @@ public class VertxMycatConnectionPool implements NewMycatConnection {
     @Override
     public Future<Void> close() {
         close = true;
+        if (connection.isMultiplexed()) {
+            return queryCloseFuture.onComplete(event -> vertxConnectionPool.releaseMultiplex(connection, event.failed()));
+        }
         return queryCloseFuture
                 .onSuccess(event -> vertxConnectionPool.recycle(connection))
                 .onFailure(event -> vertxConnectionPool.kill(connection));
@@ -277,18 +286,64 @@ public class VertxMycatConnectionPool implements NewMycatConnection {
     @Override
     public void abandonConnection() {
         close = true;
+        if (connection.isMultiplexed()) {
+            vertxConnectionPool.releaseMultiplex(connection, true);
+            return;
+        }
         vertxConnectionPool.kill(connection);
     }
 
+    /**
+     * 用另一条连接发送KILL QUERY中止正在执行的查询,后端随即以错误结束结果集,不再传输剩余的行.
+     * 共用连接上正在执行的可能是其他会话的命令,不发送KILL
+     */
     @Override
     public synchronized Future<Void> abandonQuery() {
         Future<Void> queryCloseFuture = this.queryCloseFuture;
-        if (queryCloseFuture == null) {
+        if (queryCloseFuture == null || queryCloseFuture.isComplete()) {
             return Future.succeededFuture();
         }
+        if (!connection.isMultiplexed()) {
+            killQuery();
+        }
         return queryCloseFuture;
     }
 
+    private void killQuery() {
+        resumeQuery();
+        long threadId = connection.getConnectionId();
+        vertxConnectionPool.getConnection()
+                .onSuccess(killer -> killer.update("KILL QUERY " + threadId).onComplete(event -> {
+                    if (event.failed()) {
+                        LOGGER.warn("kill query {} on {} fail", threadId, targetName, event.cause());
+                    }
+                    vertxConnectionPool.recycle(killer);
+                }))
+                .onFailure(throwable -> LOGGER.warn("kill query {} on {} fail", threadId, targetName, throwable));
+    }
+
+    /**
+     * 共用连接上还有其他会话的结果,不暂停读取,结果行缓存在本会话的QueryFlowable中
+     */
+    @Override
+    public void pauseQuery() {
+        if (connection.isMultiplexed()) {
+            return;
+        }
+        if (!paused) {
+            paused = true;
+            connection.getNetSocket().pause();
+        }
+    }
+
+    @Override
+    public void resumeQuery() {
+        if (paused) {
+            paused = false;
+            connection.getNetSocket().resume();
+        }
+    }
+
     @Override
     public boolean isQuerying() {
         return !this.queryCloseFuture.isComplete();
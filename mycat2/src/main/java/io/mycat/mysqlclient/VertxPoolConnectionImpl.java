@@ -16,6 +16,8 @@
 package io.mycat.mysqlclient;
 
 import io.mycat.MycatCore;
+import io.mycat.MycatException;
+import io.mycat.beans.mysql.MySQLErrorCode;
 import io.mycat.mysqlclient.command.ConnectHandler;
 import io.reactivex.rxjava3.core.Observable;
 import io.vertx.core.*;
@@ -27,14 +29,16 @@ import lombok.SneakyThrows;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 public class VertxPoolConnectionImpl implements VertxConnectionPool {
@@ -42,10 +46,35 @@ public class VertxPoolConnectionImpl implements VertxConnectionPool {
     Config config;
     ConcurrentLinkedQueue<VertxConnection> connections = new ConcurrentLinkedQueue<>();
     ConcurrentHashMap<Long,VertxConnection> usedConnections = new ConcurrentHashMap<>();
+    /**
+     * 连接数达到maxCon时按先后顺序排队,回收的连接直接交给最早的等待者
+     */
+    final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    int creating;
+    final PoolWaitStat waitStat;
     Vertx vertx;
-    boolean closed;
+    /**
+     * 所有连接共用,新连接绑定到发起创建的事件循环
+     */
+    final NetClient netClient;
+    volatile boolean closed;
+    final long periodicId;
 
     long lastActiveTime = System.currentTimeMillis();
+    /**
+     * 获取连接速率和连接占用时间的移动平均,用于预先创建连接
+     */
+    final LongAdder acquireCount = new LongAdder();
+    volatile double acquireRate;
+    volatile double holdMillis;
+    public static double EWMA_ALPHA = 0.3;
+    public static double PRE_CREATE_RATIO = 1.2;
+    /**
+     * 自动提交只读查询共用的连接,计入usedConnections,
+     * 同一连接上的命令由VertxConnection按顺序写出并按顺序接收结果
+     */
+    final List<VertxConnection> multiplexConnections = new ArrayList<>();
+    int multiplexCreating;
 
     @Data
     public static class Config {
@@ -62,6 +91,34 @@ public class VertxPoolConnectionImpl implements VertxConnectionPool {
         int retry = 3;
 
         int removeAbandonedTimeoutSecond=180;//秒
+
+        String name = "default";
+        long acquireTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+        int maxWaitQueueSize = 1000;
+
+        long maintenanceMillis = TimeUnit.SECONDS.toMillis(1);
+        /**
+         * 空闲超过该时间的连接在下次使用前发送COM_PING校验
+         */
+        long validateIdleMillis = TimeUnit.SECONDS.toMillis(30);
+        /**
+         * 每次维护最多预先创建的连接数
+         */
+        int maxPreCreate = 8;
+
+        int multiplexSize = 0;
+        int multiplexMaxPending = 32;
+    }
+
+    static class Waiter {
+        final Promise<VertxConnection> promise = Promise.promise();
+        final Context context;
+        final long startTime = System.nanoTime();
+        long timerId = -1;
+
+        Waiter(Context context) {
+            this.context = context;
+        }
     }
 
     @SneakyThrows
@@ -125,51 +182,107 @@ public class VertxPoolConnectionImpl implements VertxConnectionPool {
     public VertxPoolConnectionImpl(Config config, Vertx vertx) {
         this.config = config;
         this.vertx = vertx;
-        this.vertx.setPeriodic(config.timer, event -> {
-            long dur = System.currentTimeMillis() - lastActiveTime;
-            if (dur > TimeUnit.MINUTES.toMillis(1)) {
-                synchronized (VertxPoolConnectionImpl.this) {
-                    Integer availableNumber = getAvailableNumber();
-                    int minCon = config.getMinCon();
-                    int distance = availableNumber - minCon;
-
-                    //async
-                    List<Future<VertxConnection>> idleConnections = new ArrayList<>();
-                    for (int i = 0; i < distance; i++) {
-                        idleConnections.add(getConnectionWithMaxCountLimit());
-                    }
-                    CompositeFuture compositeFuture = CompositeFuture.join((List) idleConnections).onSuccess(event12 -> {
-                        for (Future<VertxConnection> idleConnection : idleConnections) {
-                            idleConnection.onSuccess(event1 -> kill(event1));
-                        }
-                    });
-                    compositeFuture.onComplete(event13 -> {
-                        for (int i = 0; i < config.getMinCon(); i++) {
-                            Future<VertxConnection> connectionFuture = getConnectionWithMaxCountLimit();
-                            connectionFuture.onSuccess(vertxConnection -> {
-                                Observable<Object[]> observable = vertxConnection.queryAsObjectArray("select 1");
-                                AtomicBoolean success = new AtomicBoolean(false);
-                                observable.subscribe(objects -> success.set(true), throwable -> {
-                                    logger.error("",throwable);
-                                    success.set(false);
-                                }, () -> {
-                                    if (success.get()) {
-                                        recycle(vertxConnection);
-                                    } else {
-                                        kill(vertxConnection);
-                                    }
-                                });
-                            }).onFailure(event14 -> logger.error("", event14));
-                        }
-                    });
-                }
+        this.waitStat = PoolWaitStat.register(config.getName());
+        this.netClient = vertx.createNetClient();
+        this.periodicId = this.vertx.setPeriodic(config.maintenanceMillis, event -> maintain());
+    }
+
+    /**
+     * 启动时创建到指定数量的连接,完成后再对外提供服务
+     */
+    public Future<Void> warmUp(int size) {
+        int create;
+        synchronized (this) {
+            create = Math.min(size, config.maxCon) - getTotalNumber();
+            if (create <= 0) {
+                return Future.succeededFuture();
+            }
+            creating += create;
+        }
+        List<Future> futures = new ArrayList<>(create);
+        for (int i = 0; i < create; i++) {
+            futures.add(createConnection().flatMap(this::validate));
+        }
+        return CompositeFuture.join(futures).mapEmpty();
+    }
+
+    private void maintain() {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        double seconds = config.maintenanceMillis / 1000.0;
+        acquireRate = EWMA_ALPHA * (acquireCount.sumThenReset() / seconds) + (1 - EWMA_ALPHA) * acquireRate;
+
+        List<VertxConnection> closeList = new ArrayList<>();
+        List<VertxConnection> validateList = new ArrayList<>();
+        int create;
+        synchronized (this) {
+            collectIdle(now, closeList, validateList);
+            create = Math.max(0, Math.min(config.maxPreCreate, getTargetNumber() - getTotalNumber()));
+            creating += create;
+        }
+        for (VertxConnection connection : closeList) {
+            connection.close();
+        }
+        for (VertxConnection connection : validateList) {
+            validate(connection);
+        }
+        for (int i = 0; i < create; i++) {
+            createConnection().onSuccess(this::validate);
+        }
+    }
+
+    /**
+     * 超过目标连接数时关闭空闲超过timer的连接,其余距上次使用或校验超过validateIdleMillis的连接取出校验
+     */
+    synchronized void collectIdle(long now, List<VertxConnection> closeList, List<VertxConnection> validateList) {
+        int target = getTargetNumber();
+        int total = getTotalNumber();
+        Iterator<VertxConnection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            VertxConnection connection = iterator.next();
+            if (now - connection.lastUsedTime >= config.timer && total > target) {
+                iterator.remove();
+                closeList.add(connection);
+                total--;
+            } else if (now - Math.max(connection.lastUsedTime, connection.lastValidatedTime) >= config.validateIdleMillis) {
+                iterator.remove();
+                usedConnections.put(connection.getConnectionId(), connection);
+                validateList.add(connection);
+            }
+        }
+    }
+
+    /**
+     * 按获取速率和占用时间预测需要的连接数
+     */
+    private int getTargetNumber() {
+        int predicted = (int) Math.ceil(acquireRate * holdMillis / 1000.0 * PRE_CREATE_RATIO);
+        return Math.max(config.minCon, Math.min(config.maxCon, predicted));
+    }
+
+    private int getTotalNumber() {
+        return getUsedNumber() + connections.size() + creating;
+    }
+
+    /**
+     * 连接已经计入usedConnections,校验成功后回收到池中
+     */
+    private Future<Void> validate(VertxConnection connection) {
+        return connection.ping().onComplete(result -> {
+            if (result.succeeded()) {
+                connection.lastValidatedTime = System.currentTimeMillis();
+                recycle(connection);
+            } else {
+                logger.warn("datasource:{} connectionId:{} validate fail", config.getName(), connection.getConnectionId(), result.cause());
+                kill(connection);
             }
         });
     }
 
     private Future<VertxConnection> innerCreateConnection() {
         return Future.future(promise -> {
-            NetClient netClient = vertx.createNetClient();
             Future<NetSocket> netSocketFuture = netClient.connect(config.getPort(), config.getHost());
             netSocketFuture = netSocketFuture.onSuccess(netSocket -> {
                 netSocket.exceptionHandler(event -> {
@@ -189,83 +302,294 @@ public class VertxPoolConnectionImpl implements VertxConnectionPool {
     @Override
     public Future<VertxConnection> getConnection() {
         lastActiveTime = System.currentTimeMillis();
+        acquireCount.increment();
         Future<VertxConnection> tryGetFuture = getConnectionWithMaxCountLimit();
-        return tryGetFuture.recover(throwable -> {
+        return tryGetFuture.map(connection -> {
+            connection.acquireTime = System.currentTimeMillis();
+            return connection;
+        }).recover(throwable -> {
+            //排队超时或者队列已满不再重试
+            if (throwable instanceof MycatException) {
+                return Future.failedFuture(throwable);
+            }
             logger.error("try get connection fail", throwable);
             Future<VertxConnection> future = Future.failedFuture(throwable);
             for (int i = 0; i < config.retry; i++) {
                 int count = i;
                 future = future.recover(throwable1 -> {
+                    if (throwable1 instanceof MycatException) {
+                        return Future.failedFuture(throwable1);
+                    }
                     logger.error("try get connection fail try count:{}", count, throwable);
-                    return getConnectionWithMaxCountLimit();
+                    return getConnectionWithMaxCountLimit().map(connection -> {
+                        connection.acquireTime = System.currentTimeMillis();
+                        return connection;
+                    });
                 });
             }
             return future;
         });
     }
 
+    /**
+     * 优先使用排队最少的共用连接,没有空闲的共用连接且未达到multiplexSize时新建共用连接,
+     * 共用连接都在创建中或者排队超过multiplexMaxPending时返回独占连接
+     */
+    public Future<VertxConnection> getMultiplexConnection() {
+        VertxConnection best = null;
+        boolean create = false;
+        synchronized (this) {
+            if (closed) {
+                return Future.failedFuture("pool has closed");
+            }
+            for (VertxConnection connection : multiplexConnections) {
+                if (best == null || connection.multiplexPending < best.multiplexPending) {
+                    best = connection;
+                }
+            }
+            if ((best == null || best.multiplexPending > 0)
+                    && multiplexConnections.size() + multiplexCreating < config.multiplexSize) {
+                multiplexCreating++;
+                create = true;
+            } else if (best != null && best.multiplexPending < config.multiplexMaxPending) {
+                best.multiplexPending++;
+                lastActiveTime = System.currentTimeMillis();
+                return Future.succeededFuture(best);
+            }
+        }
+        if (!create) {
+            return getConnection();
+        }
+        return getConnection().transform(result -> {
+            synchronized (this) {
+                multiplexCreating--;
+                if (result.succeeded() && !closed) {
+                    VertxConnection connection = result.result();
+                    connection.multiplexed = true;
+                    connection.multiplexPending++;
+                    multiplexConnections.add(connection);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 共用连接上的查询结束,出错或者会话状态被改变(例如开启了事务)时不再分配该连接,
+     * 等其他会话排队的查询都结束后再关闭,协议错误由连接的异常处理直接关闭
+     */
+    public void releaseMultiplex(VertxConnection connection, boolean drain) {
+        boolean kill;
+        synchronized (this) {
+            connection.multiplexPending--;
+            if (drain || !connection.checkVaildForRecycle()) {
+                connection.draining = true;
+                multiplexConnections.remove(connection);
+            }
+            kill = (connection.draining || closed) && connection.multiplexPending <= 0;
+        }
+        if (kill) {
+            kill(connection);
+        }
+    }
+
     private Future<VertxConnection> getConnectionWithMaxCountLimit() {
-        return Future.future(new Handler<Promise<VertxConnection>>() {
+        VertxConnection connection = null;
+        Future<VertxConnection> queued = null;
+        synchronized (this) {
+            if (closed) {
+                return Future.failedFuture("pool has closed");
+            }
+            //已经有人排队时新请求排在队尾,空出的连接或名额按先来先得交给队首
+            if (waiters.isEmpty()) {
+                connection = connections.poll();
+            }
+            if (connection != null) {
+                usedConnections.put(connection.getConnectionId(), connection);
+            } else if (waiters.isEmpty() && getUsedNumber() + creating < config.maxCon) {
+                creating++;
+            } else if (waiters.size() >= config.maxWaitQueueSize) {
+                waitStat.recordReject();
+                return Future.failedFuture(new MycatException(MySQLErrorCode.ER_CON_COUNT_ERROR,
+                        "datasource:" + config.getName() + " connection wait queue is full, maxCon:" + config.maxCon
+                                + " maxWaitQueueSize:" + config.maxWaitQueueSize));
+            } else {
+                queued = enqueueWaiter();
+            }
+        }
+        if (queued != null) {
+            serveWaiters();
+            return queued;
+        }
+        if (connection != null) {
+            waitStat.record(0);
+            return Future.succeededFuture(connection);
+        }
+        long startTime = System.nanoTime();
+        return createConnection().onSuccess(c -> waitStat.record(System.nanoTime() - startTime));
+    }
 
-            @Override
-            public void handle(Promise<VertxConnection> promise) {
-                if (closed) {
-                    promise.tryFail("pool has closed");
-                    return;
+    private Future<VertxConnection> enqueueWaiter() {
+        Waiter waiter = new Waiter(vertx.getOrCreateContext());
+        if (config.acquireTimeoutMillis > 0) {
+            waiter.timerId = vertx.setTimer(config.acquireTimeoutMillis, id -> {
+                boolean removed;
+                synchronized (this) {
+                    removed = waiters.remove(waiter);
                 }
-                VertxConnection connection = connections.poll();
-                if (connection == null) {
-                    synchronized (this) {
-                        Integer usedNumber = getUsedNumber();
-                        int maxCon = config.maxCon;
-                        if (usedNumber < maxCon) {
-                            innerCreateConnection().map(c -> {
-                                return c;
-                            }).onComplete(promise);
-                        } else {
-                            promise.tryFail("pool has closed");
-                        }
-                        return;
+                if (removed) {
+                    waitStat.recordTimeout();
+                    waiter.promise.tryFail(new MycatException(MySQLErrorCode.ER_CON_COUNT_ERROR,
+                            "datasource:" + config.getName() + " acquire connection timeout:" + config.acquireTimeoutMillis + "ms"));
+                }
+            });
+        }
+        waiters.offer(waiter);
+        return waiter.promise.future();
+    }
+
+    /**
+     * 调用前已经在creating中占位
+     */
+    private Future<VertxConnection> createConnection() {
+        return innerCreateConnection().transform(result -> {
+            synchronized (this) {
+                creating--;
+                if (result.succeeded()) {
+                    if (closed) {
+                        result.result().close();
+                        return Future.failedFuture("pool has closed");
                     }
+                    usedConnections.put(result.result().getConnectionId(), result.result());
                 }
-                promise.tryComplete(connection);
+            }
+            if (result.failed()) {
+                serveWaiters();
+                return Future.failedFuture(result.cause());
+            }
+            return Future.succeededFuture(result.result());
+        });
+    }
+
+    /**
+     * 连接被关闭或者创建失败后空出的名额交给等待者
+     */
+    private void serveWaiters() {
+        Waiter waiter;
+        VertxConnection connection;
+        synchronized (this) {
+            if (closed || waiters.isEmpty()) {
                 return;
             }
-        }).map(connection -> {
-            usedConnections.put(connection.getConnectionId(),connection);
-            return connection;
+            connection = connections.poll();
+            if (connection == null && getUsedNumber() + creating >= config.maxCon) {
+                return;
+            }
+            waiter = waiters.poll();
+            if (connection != null) {
+                usedConnections.put(connection.getConnectionId(), connection);
+            } else {
+                creating++;
+            }
+        }
+        if (connection != null) {
+            handOff(waiter, connection);
+            return;
+        }
+        createConnection().onComplete(result -> {
+            if (result.succeeded()) {
+                handOff(waiter, result.result());
+            } else {
+                vertx.cancelTimer(waiter.timerId);
+                waiter.promise.tryFail(result.cause());
+            }
+        });
+    }
+
+    /**
+     * 在等待者的事件循环上交付连接,连接已经计入usedConnections
+     */
+    private void handOff(Waiter waiter, VertxConnection connection) {
+        if (waiter.timerId != -1) {
+            vertx.cancelTimer(waiter.timerId);
+        }
+        waitStat.record(System.nanoTime() - waiter.startTime);
+        waiter.context.runOnContext(unused -> {
+            if (!waiter.promise.tryComplete(connection)) {
+                recycle(connection);
+            }
         });
     }
 
     @Override
-    public synchronized void close() {
-        closed = true;
-        for (VertxConnection connection : connections) {
-            connection.close();
+    public void close() {
+        List<Waiter> waiterList;
+        synchronized (this) {
+            closed = true;
+            for (VertxConnection connection : connections) {
+                connection.close();
+            }
+            usedConnections.clear();
+            for (VertxConnection connection : multiplexConnections) {
+                if (connection.multiplexPending <= 0) {
+                    connection.close();
+                }
+            }
+            multiplexConnections.clear();
+            waiterList = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        vertx.cancelTimer(periodicId);
+        //关闭NetClient会断开它创建的所有连接,等正在使用的连接超时回收后再关闭
+        vertx.setTimer(TimeUnit.SECONDS.toMillis(config.removeAbandonedTimeoutSecond) + 1, id -> netClient.close());
+        for (Waiter waiter : waiterList) {
+            vertx.cancelTimer(waiter.timerId);
+            waiter.promise.tryFail("pool has closed");
         }
-        usedConnections.clear();
+        PoolWaitStat.remove(config.getName(), waitStat);
     }
 
     @Override
     public void recycle(VertxConnection connection) {
+        if (!connection.checkVaildForRecycle()) {
+            logger.info("because connectionId:{} maybe have transcation,so kill it in recycling connection", connection.getConnectionId());
+            kill(connection);
+            return;
+        }
+        Waiter waiter;
         synchronized (this) {
-            if(connection.checkVaildForRecycle()){
+            usedConnections.remove(connection.getConnectionId());
+            long now = System.currentTimeMillis();
+            if (connection.acquireTime > 0) {
+                holdMillis = EWMA_ALPHA * (now - connection.acquireTime) + (1 - EWMA_ALPHA) * holdMillis;
+                connection.acquireTime = 0;
+                connection.lastUsedTime = now;
+            }
+            if (closed) {
+                connection.close();
+                return;
+            }
+            waiter = waiters.poll();
+            if (waiter != null) {
+                usedConnections.put(connection.getConnectionId(), connection);
+            } else {
                 connections.offer(connection);
-                usedConnections.remove(connection.getConnectionId());
-            }else {
-                logger.info("because connectionId:{} maybe have transcation,so kill it in recycling connection",connection.getConnectionId());
-                kill(connection);
             }
         }
+        if (waiter != null) {
+            handOff(waiter, connection);
+        }
     }
 
     @Override
     public void kill(VertxConnection connection) {
         synchronized (this) {
+            multiplexConnections.remove(connection);
             usedConnections.remove(connection.getConnectionId());
             connections.remove(connection);
             connection.close();
         }
+        serveWaiters();
     }
 
     public Integer getAvailableNumber() {
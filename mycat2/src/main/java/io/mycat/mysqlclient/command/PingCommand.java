@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) <2022>  <chen junwen>
+ * <p>
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with this program.  If
+ * not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.mycat.mysqlclient.command;
+
+import io.mycat.mysqlclient.PacketUtil;
+import io.mycat.newquery.SqlResult;
+import io.vertx.core.Promise;
+import io.vertx.core.net.NetSocket;
+
+/**
+ * COM_PING,响应与OkCommand相同
+ */
+public class PingCommand extends OkCommand {
+
+    public PingCommand(NetSocket socket, Promise<SqlResult> promise) {
+        super("COM_PING", socket, promise);
+    }
+
+    @Override
+    public void write() {
+        packetId = PacketUtil.writePing(socket);
+    }
+}
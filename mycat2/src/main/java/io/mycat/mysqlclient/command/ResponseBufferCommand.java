@@ -44,10 +44,15 @@ public class ResponseBufferCommand implements Handler<Buffer>, Command {
 
 
     public ResponseBufferCommand(NetSocket socket, String text, VertxPoolConnectionImpl.Config config, boolean fullPacket, ObservableEmitter<Buffer> emitter) {
+        this(socket, text, config, fullPacket, 0, emitter);
+    }
+
+    public ResponseBufferCommand(NetSocket socket, String text, VertxPoolConnectionImpl.Config config, boolean fullPacket, int packetIdOffset, ObservableEmitter<Buffer> emitter) {
         this.socket = socket;
         this.text = text;
         this.config = config;
         this.fullPacket = fullPacket;
+        this.packetIdOffset = packetIdOffset;
         this.emitter = emitter;
     }
 
@@ -61,6 +66,10 @@ public class ResponseBufferCommand implements Handler<Buffer>, Command {
 
     private VertxPoolConnectionImpl.Config config;
     private final boolean fullPacket;
+    /**
+     * 转发时报文序号的偏移,只在报文被完整识别后改写一次
+     */
+    private final int packetIdOffset;
     byte parsePacketId;
     int payloadLength;
     int remainsBytes;
@@ -180,6 +189,7 @@ public class ResponseBufferCommand implements Handler<Buffer>, Command {
             this.multiPacket = (packetLength == MySQLPacketSplitter.MAX_PACKET_SIZE);
             if (packetLength == 0) {
                 this.checkPacketId();
+                rewritePacketId(startIndex);
                 this.startPos = startIndex;
                 this.endPos = (startIndex + 4);
                 this.remainsBytes = 0;
@@ -196,6 +206,7 @@ public class ResponseBufferCommand implements Handler<Buffer>, Command {
                     == 0xfe) && packetLength < 0xFFFFFF) {//for row end
                 return readFullPacket();
             }
+            rewritePacketId(startIndex);
 
             if ((packetLength + 4) <= receiveSize) {
                 startPos = (startIndex);
@@ -227,6 +238,12 @@ public class ResponseBufferCommand implements Handler<Buffer>, Command {
         return true;
     }
 
+    private void rewritePacketId(int headerIndex) {
+        if (packetIdOffset != 0) {
+            this.curBuffer.setByte(headerIndex + 3, (byte) (this.parsePacketId + packetIdOffset));
+        }
+    }
+
     public void checkPacketId() {
         if ((this.parsePacketId - this.packetId) > 1) {
             throw new IllegalArgumentException("packet error " + this.packetId + " to " + parsePacketId);
@@ -270,6 +287,7 @@ public class ResponseBufferCommand implements Handler<Buffer>, Command {
             this.payloadLength = packetLength;
             this.multiPacket = packetLength == MySQLPacketSplitter.MAX_PACKET_SIZE;
             if ((packetLength + 4) <= reveiceSize) {
+                rewritePacketId(this.startPos);
                 this.remainsBytes = 0;
                 this.startPos = this.startPos;
                 this.endPos = this.startPos + packetLength + 4;
@@ -68,9 +68,21 @@ public class DbStorageManagerImpl extends AbstractStorageManagerImpl {
                             "USE `mycat`;\n" +
                             "DROP TABLE IF EXISTS `analyze_table`;\n" +
                             "CREATE TABLE `analyze_table` (\n" +
+                            "  `schema_name` varchar(64) NOT NULL,\n" +
+                            "  `table_name` varchar(64) NOT NULL,\n" +
                             "  `table_rows` bigint(20) NOT NULL,\n" +
-                            "  `name` varchar(64) NOT NULL,\n" +
-                            "  PRIMARY KEY (`name`)\n" +
+                            "  PRIMARY KEY (`schema_name`,`table_name`)\n" +
+                            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci\n" +
+                            "DROP TABLE IF EXISTS `analyze_column`;\n" +
+                            "CREATE TABLE `analyze_column` (\n" +
+                            "  `schema_name` varchar(64) NOT NULL,\n" +
+                            "  `table_name` varchar(64) NOT NULL,\n" +
+                            "  `column_name` varchar(64) NOT NULL,\n" +
+                            "  `ndv` double NOT NULL,\n" +
+                            "  `null_fraction` double NOT NULL,\n" +
+                            "  `histogram` longtext,\n" +
+                            "  `hll` longtext,\n" +
+                            "  PRIMARY KEY (`schema_name`,`table_name`,`column_name`)\n" +
                             ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci\n" +
                             "DROP TABLE IF EXISTS `config`;\n" +
                             "CREATE TABLE `config` (\n" +
@@ -110,6 +122,15 @@ public class DbStorageManagerImpl extends AbstractStorageManagerImpl {
                             "  PRIMARY KEY (`id`),\n" +
                             "  KEY `id` (`id`)\n" +
                             ") ENGINE=InnoDB AUTO_INCREMENT=0 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci\n" +
+                            "DROP TABLE IF EXISTS `spm_plan_snapshot`;\n" +
+                            "CREATE TABLE `spm_plan_snapshot` (\n" +
+                            "  `plan_id` bigint(22) NOT NULL,\n" +
+                            "  `baseline_id` bigint(22) DEFAULT NULL,\n" +
+                            "  `fingerprint` varchar(64) DEFAULT NULL,\n" +
+                            "  `code` longtext,\n" +
+                            "  `hit_count` bigint(22) DEFAULT 0,\n" +
+                            "  PRIMARY KEY (`plan_id`)\n" +
+                            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci\n" +
                             "DROP TABLE IF EXISTS `sql_log`;\n" +
                             "CREATE TABLE `sql_log` (\n" +
                             "  `instanceId` bigint(20) DEFAULT NULL,\n" +
@@ -67,7 +67,7 @@ public class AnalyzeHanlder extends AbstractSQLHandler<MySqlAnalyzeStatement> {
                     return response.sendError(new MycatException(tableSource + "不存在"));
                 }
                 StatisticCenter statisticCenter = MetaClusterCurrent.wrapper(StatisticCenter.class);
-                statisticCenter.fetchTableRowCount(tableHandler);
+                statisticCenter.analyze(tableHandler);
             }
             return response.sendResultSet(resultSetBuilder.build());
         }
@@ -12,6 +12,7 @@ import com.alibaba.druid.sql.ast.statement.SQLInsertStatement;
 import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlHintStatement;
 import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
 import com.alibaba.druid.util.JdbcUtils;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.UnmodifiableIterator;
@@ -437,6 +438,39 @@ public class HintHandler extends AbstractSQLHandler<MySqlHintStatement> {
                         }
                         return response.sendResultSet(() -> builder.build());
                     }
+                    if ("showBaselineCache".equalsIgnoreCase(cmd)) {
+                        ResultSetBuilder builder = ResultSetBuilder.create();
+                        QueryPlanCache queryPlanCache = MetaClusterCurrent.wrapper(QueryPlanCache.class);
+                        CacheStats stats = queryPlanCache.stats();
+                        builder.addColumnInfo("HIT_COUNT", JDBCType.BIGINT)
+                                .addColumnInfo("MISS_COUNT", JDBCType.BIGINT)
+                                .addColumnInfo("HIT_RATE", JDBCType.DOUBLE)
+                                .addColumnInfo("EVICTION_COUNT", JDBCType.BIGINT)
+                                .addColumnInfo("WEIGHT_BYTES", JDBCType.BIGINT)
+                                .addColumnInfo("MAX_WEIGHT_BYTES", JDBCType.BIGINT);
+                        builder.addObjectRowPayload(Arrays.asList(stats.hitCount(), stats.missCount(), stats.hitRate(),
+                                stats.evictionCount(), queryPlanCache.weight(), MemPlanCache.MAX_WEIGHT_BYTES));
+                        return response.sendResultSet(() -> builder.build());
+                    }
+                    if ("showHotBaselines".equalsIgnoreCase(cmd)) {
+                        Map<String, Object> map = JsonUtil.from(body, Map.class);
+                        int limit = Integer.parseInt(map.getOrDefault("limit", "100").toString());
+                        ResultSetBuilder builder = ResultSetBuilder.create();
+                        QueryPlanCache queryPlanCache = MetaClusterCurrent.wrapper(QueryPlanCache.class);
+                        builder.addColumnInfo("BASELINE_ID", JDBCType.VARCHAR)
+                                .addColumnInfo("PARAMETERIZED_SQL", JDBCType.VARCHAR)
+                                .addColumnInfo("HIT_COUNT", JDBCType.BIGINT)
+                                .addColumnInfo("PLAN_COUNT", JDBCType.BIGINT)
+                                .addColumnInfo("FIXED", JDBCType.VARCHAR);
+                        for (Baseline baseline : queryPlanCache.hotList(limit)) {
+                            builder.addObjectRowPayload(Arrays.asList(String.valueOf(baseline.getBaselineId()),
+                                    baseline.getSql(),
+                                    baseline.getHitCount().sum(),
+                                    baseline.getPlanList().size(),
+                                    baseline.getFixPlan() != null ? "true" : "false"));
+                        }
+                        return response.sendResultSet(() -> builder.build());
+                    }
                     if ("showConfigText".equalsIgnoreCase(cmd)) {
                         MycatRouterConfig mycatRouterConfig = MetaClusterCurrent.wrapper(MycatRouterConfig.class);
                         String text = JsonUtil.toJson(mycatRouterConfig);
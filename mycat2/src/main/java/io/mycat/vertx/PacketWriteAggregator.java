@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) <2022>  <chen junwen>
+ * <p>
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with this program.  If
+ * not, see <http://www.gnu.org/licenses/>.
+ */
+package io.mycat.vertx;
+
+import io.mycat.MySQLPacketUtil;
+import io.mycat.beans.mysql.packet.MySQLPacketSplitter;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把多个mysql报文合并成一次socket写,
+ * 超过字节数或报文数阈值,结果集结束,或者写入方空闲(当前事件循环任务结束)时写出
+ */
+public class PacketWriteAggregator {
+    public static int MAX_BATCH_BYTES = 64 * 1024;
+    public static int MAX_BATCH_PACKETS = 1024;
+    private static final int INIT_CAPACITY = 4096;
+
+    public static final LongAdder WRITE_COUNT = new LongAdder();
+    public static final LongAdder PACKET_COUNT = new LongAdder();
+
+    private final NetSocket socket;
+    /**
+     * 为null时不合并
+     */
+    private final Context context;
+    private Buffer buffer;
+    private Promise<Void> promise;
+    private int packets;
+    private boolean flushScheduled;
+
+    public PacketWriteAggregator(NetSocket socket, Context context) {
+        this.socket = socket;
+        this.context = context;
+    }
+
+    /**
+     * @param flush 是否立即写出
+     * @return 该报文所在批次写出的结果
+     */
+    public synchronized Future<Void> write(int packetId, byte[] payload, boolean flush) {
+        if (buffer == null) {
+            buffer = Buffer.buffer(Math.min(MAX_BATCH_BYTES, Math.max(INIT_CAPACITY, payload.length + 4)));
+            promise = Promise.promise();
+        }
+        if (payload.length < MySQLPacketSplitter.MAX_PACKET_SIZE) {
+            buffer.appendMediumLE(payload.length);
+            buffer.appendByte((byte) packetId);
+            buffer.appendBytes(payload);
+        } else {
+            buffer.appendBytes(MySQLPacketUtil.generateMySQLPacket(packetId, payload));
+        }
+        packets++;
+        Future<Void> future = promise.future();
+        if (flush || context == null || buffer.length() >= MAX_BATCH_BYTES || packets >= MAX_BATCH_PACKETS) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            context.runOnContext(unused -> {
+                synchronized (PacketWriteAggregator.this) {
+                    flushScheduled = false;
+                    flush();
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * 先写出缓存的报文,保证与原样转发的报文顺序一致
+     */
+    public synchronized Future<Void> writeRaw(Buffer raw) {
+        flush();
+        WRITE_COUNT.increment();
+        return socket.write(raw);
+    }
+
+    public synchronized Future<Void> flush() {
+        if (buffer == null) {
+            return Future.succeededFuture();
+        }
+        Buffer curBuffer = this.buffer;
+        Promise<Void> curPromise = this.promise;
+        WRITE_COUNT.increment();
+        PACKET_COUNT.add(packets);
+        this.buffer = null;
+        this.promise = null;
+        this.packets = 0;
+        socket.write(curBuffer, curPromise);
+        return curPromise.future();
+    }
+}
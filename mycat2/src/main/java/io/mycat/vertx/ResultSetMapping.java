@@ -14,7 +14,6 @@
  */
 package io.mycat.vertx;
 
-import io.mycat.MySQLPacketUtil;
 import io.mycat.beans.mycat.MycatRowMetaData;
 import io.mycat.resultset.BinaryResultSetResponse;
 import io.mycat.resultset.TextConvertorImpl;
@@ -22,6 +21,7 @@ import org.apache.calcite.avatica.util.ByteString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -32,154 +32,227 @@ import java.time.LocalTime;
 import java.util.Objects;
 import java.util.function.Function;
 
+/**
+ * 行转换为mysql报文.
+ * 每列的编码器按列类型在创建时确定一次,行数据直接写入复用的RowPayloadWriter
+ */
 public class ResultSetMapping {
     private static final Logger LOGGER = LoggerFactory.getLogger(ResultSetMapping.class);
+    private static final byte NULL_MARK = (byte) 251;
+    private static final int ESTIMATE_COLUMN_SIZE = 16;
+
+    interface ColumnEncoder {
+        /**
+         * @param o 非null
+         * @return false表示按null输出
+         */
+        boolean encode(Object o, RowPayloadWriter writer);
+    }
 
     public static Function<Object[], byte[]> concertToDirectTextResultSet(MycatRowMetaData rowMetaData) {
         int columnCount = rowMetaData.getColumnCount();
-        return new Function<Object[], byte[]>() {
-            @Override
-            public byte[] apply(Object[] objects) {
-                byte[][] row = new byte[columnCount][];
-                for (int columnIndex = 0, rowIndex = 0; rowIndex < columnCount; columnIndex++, rowIndex++) {
-
-                    int columnType = rowMetaData.getColumnType(columnIndex);
-                    switch (columnType) {
-                        case Types.VARBINARY:
-                        case Types.LONGVARBINARY:
-                        case 2004://blob
-                        case Types.BINARY: {
-                            Object o = objects[columnIndex];
-                            byte[] bytes = null;
-                            if (o == null) {
-
-                            } else if (o instanceof byte[]) {
-                                bytes = (byte[]) o;
-                            } else if (o instanceof ByteString) {
-                                bytes = ((ByteString) o).getBytes();
-                            }
-                            row[rowIndex] = bytes == null ? null : bytes;
-                            break;
-                        }
-                        case Types.TIME: {
-                            Object o = objects[columnIndex];
-                            if (o == null) {
-                                row[rowIndex] = null;
-                            } else if (o instanceof Duration) {
-                                row[rowIndex] = TextConvertorImpl.getBytes((Duration) o);
-                            } else if (o instanceof LocalTime) {
-                                row[rowIndex] = TextConvertorImpl.getBytes((LocalTime) o);
-                            } else if (o instanceof Time) {
-                                row[rowIndex] = TextConvertorImpl.getBytes(((Time) o).toLocalTime());
-                            } else if (o instanceof String) {
-                                row[rowIndex] = ((String) o).getBytes();
-                            } else {
-                                LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
-                                throw new UnsupportedOperationException();
-                            }
-                            break;
-                        }
-                        case Types.TIMESTAMP_WITH_TIMEZONE:
-                        case Types.TIMESTAMP: {
-                            Object o = objects[columnIndex];
-                            if (o == null) {
-                                row[rowIndex] = null;
-                            } else if (o instanceof Timestamp) {
-                                row[rowIndex] = TextConvertorImpl.getBytes(((Timestamp) o).toLocalDateTime());
-                            } else if (o instanceof LocalDateTime) {
-                                row[rowIndex] = TextConvertorImpl.getBytes((LocalDateTime) o);
-                            } else {
-                                LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
-                                throw new UnsupportedOperationException();
-                            }
-                            break;
-                        }
-                        case Types.BIT: {
-                            Object o = objects[columnIndex];
-                            if (o == null) {
-                                row[rowIndex] = null;
-                            } else if (o instanceof Boolean) {
-                                row[rowIndex] = ((Boolean) o).booleanValue() ? new byte[]{1} : new byte[]{0};
-                            } else if (o instanceof Number) {
-                                row[rowIndex] = new byte[]{((Number) o).byteValue()};
-                            } else {
-                                LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
-                                throw new UnsupportedOperationException();
-                            }
-                            break;
-                        }
-                        case Types.BOOLEAN: {
-                            Object o = objects[columnIndex];
-                            if (o == null) {
-                                row[rowIndex] = null;
-                            } else if (o instanceof Boolean) {
-                                row[rowIndex] = TextConvertorImpl.INSTANCE.convertBoolean((Boolean) o);
-                            } else if (o instanceof Number) {
-                                long l = ((Number) o).longValue();
-                                if ((l == -1 || l > 0)) {
-                                    row[rowIndex] = TextConvertorImpl.ONE;
-                                } else {
-                                    row[rowIndex] = TextConvertorImpl.ZERO;
-                                }
-                            } else if (o instanceof String) {
-                                row[rowIndex] = ((String) o).getBytes();
-                            } else {
-                                LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
-                                throw new UnsupportedOperationException();
-                            }
-                            break;
-                        }
-                        case Types.REAL:
-                        case Types.FLOAT:
-                        case Types.DOUBLE: {
-                            Object o = objects[columnIndex];
-                            if (o == null) {
-                                row[rowIndex] = null;
-                            } else {
-                                if (o instanceof Float) {
-
-                                    Float aFloat = (Float) o;
-                                    if (aFloat.longValue() == aFloat.floatValue()) {
-                                        row[rowIndex] = Objects.toString(aFloat.longValue()).getBytes();
-                                    } else {
-                                        row[rowIndex] = Objects.toString(aFloat).getBytes();
-                                    }
-                                } else if (o instanceof Double) {
-                                    Double aDouble = (Double) o;
-                                    if (aDouble.longValue() == aDouble.doubleValue()) {
-                                        row[rowIndex] = Objects.toString(aDouble.longValue()).getBytes();
-                                    } else {
-                                        row[rowIndex] = Objects.toString(aDouble).getBytes();
-                                    }
-                                } else {
-                                    row[rowIndex] = Objects.toString(o).getBytes();
-                                }
-                            }
-                            break;
-                        }
-                        default:
-                            Object object = objects[columnIndex];
-                            row[rowIndex] = (object == null ? null : Objects.toString(object).getBytes(StandardCharsets.UTF_8));
-                            break;
-                    }
-
+        ColumnEncoder[] encoders = new ColumnEncoder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            encoders[i] = createTextEncoder(rowMetaData.getColumnType(i));
+        }
+        RowPayloadWriter writer = new RowPayloadWriter(Math.max(64, columnCount * ESTIMATE_COLUMN_SIZE));
+        return objects -> {
+            writer.reset();
+            for (int i = 0; i < columnCount; i++) {
+                Object o = objects[i];
+                if (o == null || !encoders[i].encode(o, writer)) {
+                    writer.writeByte(NULL_MARK);
                 }
-                return MySQLPacketUtil.generateTextRow(row);
             }
+            return writer.copyBytes();
         };
     }
 
     public static Function<Object[], byte[]> concertToDirectBinaryResultSet(MycatRowMetaData rowMetaData) {
+        int columnCount = rowMetaData.getColumnCount();
+        ColumnEncoder[] encoders = new ColumnEncoder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            encoders[i] = createBinaryEncoder(rowMetaData.getColumnType(i));
+        }
+        RowPayloadWriter writer = new RowPayloadWriter(Math.max(64, columnCount * ESTIMATE_COLUMN_SIZE));
         return objects -> {
-            byte[][] bytes = new byte[objects.length][];
+            writer.reset();
+            writer.write(0);
+            int nullMapStart = writer.position();
+            writer.writeReserved((objects.length + 7 + 2) / 8);
             for (int i = 0; i < objects.length; i++) {
-                if (objects[i] == null) {
-                    bytes[i] = null;
-                } else {
-                    bytes[i] = BinaryResultSetResponse.getBytes(rowMetaData.getColumnType(i), objects[i]);
+                Object o = objects[i];
+                if (o == null || !encoders[i].encode(o, writer)) {
+                    writer.setBit(nullMapStart + (i + 2) / 8, (i + 2) % 8);
                 }
             }
-            return MySQLPacketUtil.generateBinaryRow(bytes);
+            return writer.copyBytes();
         };
     }
+
+    private static ColumnEncoder createTextEncoder(int columnType) {
+        switch (columnType) {
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case 2004://blob
+            case Types.BINARY:
+                return (o, writer) -> {
+                    if (o instanceof byte[]) {
+                        writer.writeLenencBytes((byte[]) o);
+                    } else if (o instanceof ByteString) {
+                        writer.writeLenencBytes(((ByteString) o).getBytes());
+                    } else {
+                        return false;
+                    }
+                    return true;
+                };
+            case Types.TIME:
+                return (o, writer) -> {
+                    if (o instanceof Duration) {
+                        writer.writeLenencBytes(TextConvertorImpl.getBytes((Duration) o));
+                    } else if (o instanceof LocalTime) {
+                        writer.writeLenencBytes(TextConvertorImpl.getBytes((LocalTime) o));
+                    } else if (o instanceof Time) {
+                        writer.writeLenencBytes(TextConvertorImpl.getBytes(((Time) o).toLocalTime()));
+                    } else if (o instanceof String) {
+                        writer.writeLenencBytes(((String) o).getBytes());
+                    } else {
+                        LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
+                        throw new UnsupportedOperationException();
+                    }
+                    return true;
+                };
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+            case Types.TIMESTAMP:
+                return (o, writer) -> {
+                    if (o instanceof Timestamp) {
+                        writer.writeLenencBytes(TextConvertorImpl.getBytes(((Timestamp) o).toLocalDateTime()));
+                    } else if (o instanceof LocalDateTime) {
+                        writer.writeLenencBytes(TextConvertorImpl.getBytes((LocalDateTime) o));
+                    } else {
+                        LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
+                        throw new UnsupportedOperationException();
+                    }
+                    return true;
+                };
+            case Types.BIT:
+                return (o, writer) -> {
+                    if (o instanceof Boolean) {
+                        writer.writeLenencInt(1);
+                        writer.write(((Boolean) o) ? 1 : 0);
+                    } else if (o instanceof Number) {
+                        writer.writeLenencInt(1);
+                        writer.write(((Number) o).byteValue());
+                    } else {
+                        LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
+                        throw new UnsupportedOperationException();
+                    }
+                    return true;
+                };
+            case Types.BOOLEAN:
+                return (o, writer) -> {
+                    if (o instanceof Boolean) {
+                        writer.writeLenencBytes(TextConvertorImpl.INSTANCE.convertBoolean((Boolean) o));
+                    } else if (o instanceof Number) {
+                        long l = ((Number) o).longValue();
+                        writer.writeLenencBytes((l == -1 || l > 0) ? TextConvertorImpl.ONE : TextConvertorImpl.ZERO);
+                    } else if (o instanceof String) {
+                        writer.writeLenencBytes(((String) o).getBytes());
+                    } else {
+                        LOGGER.error(" unsupport type:{}  value:{}", o.getClass(), o);
+                        throw new UnsupportedOperationException();
+                    }
+                    return true;
+                };
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return (o, writer) -> {
+                    if (o instanceof Float) {
+                        float aFloat = (Float) o;
+                        if ((long) aFloat == aFloat) {
+                            writer.writeLongText((long) aFloat);
+                        } else {
+                            writer.writeLenencBytes(Float.toString(aFloat).getBytes());
+                        }
+                    } else if (o instanceof Double) {
+                        double aDouble = (Double) o;
+                        if ((long) aDouble == aDouble) {
+                            writer.writeLongText((long) aDouble);
+                        } else {
+                            writer.writeLenencBytes(Double.toString(aDouble).getBytes());
+                        }
+                    } else {
+                        writer.writeLenencBytes(Objects.toString(o).getBytes());
+                    }
+                    return true;
+                };
+            default:
+                return (o, writer) -> {
+                    if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) {
+                        writer.writeLongText(((Number) o).longValue());
+                    } else if (!(o instanceof BigDecimal) || !writer.writeDecimalText((BigDecimal) o)) {
+                        writer.writeLenencBytes(Objects.toString(o).getBytes(StandardCharsets.UTF_8));
+                    }
+                    return true;
+                };
+        }
+    }
+
+    private static ColumnEncoder createBinaryEncoder(int columnType) {
+        switch (columnType) {
+            case Types.SMALLINT:
+                return (o, writer) -> {
+                    if (!(o instanceof Number)) {
+                        return writeBinaryBytes(columnType, o, writer);
+                    }
+                    writer.writeShort(((Number) o).shortValue());
+                    return true;
+                };
+            case Types.INTEGER:
+                return (o, writer) -> {
+                    if (!(o instanceof Number)) {
+                        return writeBinaryBytes(columnType, o, writer);
+                    }
+                    writer.writeInt(((Number) o).intValue());
+                    return true;
+                };
+            case Types.BIGINT:
+                return (o, writer) -> {
+                    if (!(o instanceof Number)) {
+                        return writeBinaryBytes(columnType, o, writer);
+                    }
+                    writer.writeLong(((Number) o).longValue());
+                    return true;
+                };
+            case Types.FLOAT:
+            case Types.REAL:
+                return (o, writer) -> {
+                    if (!(o instanceof Number)) {
+                        return writeBinaryBytes(columnType, o, writer);
+                    }
+                    writer.writeInt(Float.floatToRawIntBits(((Number) o).floatValue()));
+                    return true;
+                };
+            case Types.DOUBLE:
+                return (o, writer) -> {
+                    if (!(o instanceof Number)) {
+                        return writeBinaryBytes(columnType, o, writer);
+                    }
+                    writer.writeDouble(((Number) o).doubleValue());
+                    return true;
+                };
+            default:
+                return (o, writer) -> writeBinaryBytes(columnType, o, writer);
+        }
+    }
+
+    private static boolean writeBinaryBytes(int columnType, Object o, RowPayloadWriter writer) {
+        byte[] bytes = BinaryResultSetResponse.getBytes(columnType, o);
+        if (bytes == null) {
+            return false;
+        }
+        writer.writeBytes(bytes);
+        return true;
+    }
 }
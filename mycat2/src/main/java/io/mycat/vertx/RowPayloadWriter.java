@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) <2022>  <chen junwen>
+ * <p>
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with this program.  If
+ * not, see <http://www.gnu.org/licenses/>.
+ */
+package io.mycat.vertx;
+
+import io.mycat.beans.mysql.MySQLPayloadWriter;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * 结果集行的可复用写缓冲,整数和小数直接按十进制写入,不经过String
+ */
+public class RowPayloadWriter extends MySQLPayloadWriter {
+
+    public RowPayloadWriter(int size) {
+        super(size);
+    }
+
+    /**
+     * 父类toByteArray在缓冲区刚好写满时返回缓冲区本身,复用时必须复制
+     */
+    public byte[] copyBytes() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public int position() {
+        return count;
+    }
+
+    public void setBit(int index, int bit) {
+        buf[index] |= (byte) (1 << bit);
+    }
+
+    /**
+     * 以lenenc字符串写入,与Long.toString一致
+     */
+    public void writeLongText(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeLenencBytes(Long.toString(value).getBytes());
+            return;
+        }
+        boolean negative = value < 0;
+        long abs = negative ? -value : value;
+        int len = digitCount(abs) + (negative ? 1 : 0);
+        writeTextDigits(abs, 0, negative, len);
+    }
+
+    /**
+     * 以lenenc字符串写入,与BigDecimal.toString一致,
+     * 精度超过long或者需要科学计数法时返回false,由调用者按字符串写入
+     */
+    public boolean writeDecimalText(BigDecimal value) {
+        int scale = value.scale();
+        if (scale < 0 || value.precision() > 18) {
+            return false;
+        }
+        if (scale == 0) {
+            writeLongText(value.longValue());
+            return true;
+        }
+        long unscaled = value.unscaledValue().longValue();
+        boolean negative = unscaled < 0;
+        long abs = negative ? -unscaled : unscaled;
+        int digits = digitCount(abs);
+        if (digits - 1 - scale < -6) {
+            return false;
+        }
+        int len = (negative ? 1 : 0) + (digits > scale ? digits + 1 : scale + 2);
+        writeTextDigits(abs, scale, negative, len);
+        return true;
+    }
+
+    private void writeTextDigits(long abs, int scale, boolean negative, int len) {
+        writeLenencInt(len);
+        ensureCapacity(count + len);
+        int pos = count + len - 1;
+        if (scale > 0) {
+            for (int i = 0; i < scale; i++) {
+                buf[pos--] = (byte) ('0' + abs % 10);
+                abs /= 10;
+            }
+            buf[pos--] = '.';
+        }
+        do {
+            buf[pos--] = (byte) ('0' + abs % 10);
+            abs /= 10;
+        } while (abs != 0);
+        if (negative) {
+            buf[pos] = '-';
+        }
+        count += len;
+    }
+
+    private static int digitCount(long abs) {
+        long p = 10;
+        for (int i = 1; i < 19; i++) {
+            if (abs < p) {
+                return i;
+            }
+            p = 10 * p;
+        }
+        return 19;
+    }
+}
@@ -16,28 +16,35 @@ package io.mycat.vertx;
 
 import io.mycat.beans.mysql.packet.MySQLPacketSplitter;
 import io.mycat.mycatmysql.MycatVertxMySQLHandler;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetSocket;
 
-import static io.mycat.vertx.VertxMySQLPacketResolver.State.HEAD;
-import static io.mycat.vertx.VertxMySQLPacketResolver.State.PAYLOAD;
-
+/**
+ * 客户端报文拆包.
+ * 完整落在一次读取中的报文直接切片,不复制;
+ * 只有跨越多次读取的报文或者16M拆分的多个子报文才用CompositeByteBuf把切片拼接起来
+ */
 public class VertxMySQLPacketResolver implements Handler<Buffer> {
-    Buffer head;
-    Buffer payload;
-    State state = HEAD;
-    int currentPacketLength;
-    int reveicePacketLength = 0;
-    MycatVertxMySQLHandler mySQLHandler;
-    NetSocket socket;
-    private short packetId;
-
-    public static enum State {
-        HEAD,
-        PAYLOAD
-    }
+    /**
+     * 超过后CompositeByteBuf会合并(复制)已有的分片
+     */
+    private static final int MAX_COMPONENTS = 1024;
 
+    private final MycatVertxMySQLHandler mySQLHandler;
+    private final NetSocket socket;
+    /**
+     * 跨越读取的报文头按字节累积,避免分配缓冲区
+     */
+    private int header;
+    private int headerBytes;
+    private boolean readingPayload;
+    private int currentPacketLength;
+    private int receivePacketLength;
+    private int packetId;
+    private CompositeByteBuf fragments;
 
     public VertxMySQLPacketResolver(NetSocket socket, MycatVertxMySQLHandler mySQLHandler) {
         this.mySQLHandler = mySQLHandler;
@@ -46,67 +53,65 @@ public class VertxMySQLPacketResolver implements Handler<Buffer> {
 
     @Override
     public void handle(Buffer event) {
-        for (; ; ) {
-            if (event.length()==0)return;
-            switch (state) {
-                case HEAD: {
-                    if (head == null) {
-                        head = Buffer.buffer();
+        int pos = 0;
+        int length = event.length();
+        while (pos < length || readingPayload) {
+            if (!readingPayload) {
+                if (headerBytes == 0 && length - pos >= 4) {
+                    currentPacketLength = event.getMediumLE(pos);
+                    packetId = event.getUnsignedByte(pos + 3);
+                    pos += 4;
+                } else {
+                    while (headerBytes < 4 && pos < length) {
+                        header |= event.getUnsignedByte(pos++) << (8 * headerBytes++);
                     }
-                    int restEnd = 4 - head.length();
-                    head.appendBuffer(event.slice(0, Math.min(event.length(), restEnd)));
-                    if (head.length() < 4) {
-                        state = HEAD;
+                    if (headerBytes < 4) {
                         return;
-                    } else {
-                        state = PAYLOAD;
-                        event = event.slice(restEnd, event.length());
-                    }
-                    if (state == PAYLOAD) {
-                        currentPacketLength = readInt(head, 0, 3);
-                        reveicePacketLength = 0;
-                        this.packetId = head.getUnsignedByte(3);
-                        head = null;//help gc
-                    }
-                    continue;
-                }
-                case PAYLOAD: {
-                    if (payload == null) {
-                        payload = Buffer.buffer();
-                    }
-                    int restPacketLength = currentPacketLength - reveicePacketLength;
-                    Buffer curBuffer;
-                    if (event.length() > restPacketLength) {
-                        curBuffer = event.slice(0, restPacketLength);
-                        event = event.slice(restPacketLength, event.length());
-                    } else {
-                        curBuffer = event;
-                        event =Buffer.buffer();
-                    }
-                    payload.appendBuffer(curBuffer);
-                    reveicePacketLength += curBuffer.length();
-                    boolean endPacket = currentPacketLength == reveicePacketLength;
-                    boolean multiPacket = (currentPacketLength == MySQLPacketSplitter.MAX_PACKET_SIZE);
-                    if (endPacket){
-                        state = HEAD;
-                        this.head = null;
-                        reveicePacketLength = 0;
                     }
-                    if (endPacket && !multiPacket) {
-                        Buffer payload = this.payload;
-                        this.payload = null;
-                        mySQLHandler.handle(packetId, payload, socket);
-                        continue;
-                    }else {
-                        continue;
+                    currentPacketLength = header & 0xffffff;
+                    packetId = header >>> 24;
+                    header = 0;
+                    headerBytes = 0;
                 }
+                receivePacketLength = 0;
+                readingPayload = true;
+            }
+            int n = Math.min(currentPacketLength - receivePacketLength, length - pos);
+            Buffer slice = event.slice(pos, pos + n);
+            pos += n;
+            receivePacketLength += n;
+            if (receivePacketLength < currentPacketLength) {
+                append(slice);
+                return;
+            }
+            readingPayload = false;
+            boolean multiPacket = (currentPacketLength == MySQLPacketSplitter.MAX_PACKET_SIZE);
+            if (fragments == null && !multiPacket) {
+                onPacket(packetId, slice);
+                continue;
+            }
+            append(slice);
+            if (!multiPacket) {
+                Buffer payload = Buffer.buffer(fragments);
+                fragments = null;
+                onPacket(packetId, payload);
             }
-            default:
-                throw new IllegalStateException("Unexpected value: " + state);
         }
     }
 
-}
+    protected void onPacket(int packetId, Buffer payload) {
+        mySQLHandler.handle(packetId, payload, socket);
+    }
+
+    private void append(Buffer slice) {
+        if (slice.length() == 0) {
+            return;
+        }
+        if (fragments == null) {
+            fragments = Unpooled.compositeBuffer(MAX_COMPONENTS);
+        }
+        fragments.addComponent(true, slice.getByteBuf());
+    }
 
     public static int readInt(Buffer buffer, int start, int length) {
         int rv = 0;
@@ -27,6 +27,7 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetSocket;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
 public class VertxSessionImpl implements VertxSession {
@@ -37,11 +38,22 @@ public class VertxSessionImpl implements VertxSession {
     private ProcessState processState;
     public boolean close = false;
     public boolean pause = false;
+    private final PacketWriteAggregator writeAggregator;
+    private final ConcurrentLinkedQueue<Runnable> drainHandlers = new ConcurrentLinkedQueue<>();
 
     public VertxSessionImpl(MycatDataContext mycatDataContext, NetSocket socket, VertxMycatServer.MycatSessionManager mycatSessionManager) {
         this.mycatDataContext = mycatDataContext;
         this.socket = socket;
         this.mycatSessionManager = mycatSessionManager;
+        //在连接所在的事件循环上合并写
+        this.writeAggregator = new PacketWriteAggregator(socket, Vertx.currentContext());
+        //socket只有一个drainHandler,多个等待者在此复用,每次drain后各自只触发一次
+        socket.drainHandler(unused -> {
+            Runnable handler;
+            while ((handler = drainHandlers.poll()) != null) {
+                handler.run();
+            }
+        });
     }
 
     @Override
@@ -134,7 +146,7 @@ public class VertxSessionImpl implements VertxSession {
                         //加速回收资源
                         return transactionSession.closeStatementState()
                                 .transform(voidAsyncResult ->
-                                        socket.write(Buffer.buffer(MySQLPacketUtil.generateMySQLPacket(getNextPacketId(), payload))))
+                                        writeAggregator.write(getNextPacketId(), payload, true))
                                 .onComplete(voidAsyncResult -> {
                                     if (!transactionSession.isInTransaction() && mycatSessionManager.isPause()) {
                                         socket.pause();
@@ -144,12 +156,22 @@ public class VertxSessionImpl implements VertxSession {
                     }
                 }
             }
-            return socket.write(Buffer.buffer(MySQLPacketUtil.generateMySQLPacket(getNextPacketId(), payload)));
+            return writeAggregator.write(getNextPacketId(), payload, end);
         } else {
             return VertxUtil.castPromise(Future.failedFuture("session is closed"));
         }
     }
 
+    @Override
+    public boolean isWriteQueueFull() {
+        return !close && socket.writeQueueFull();
+    }
+
+    @Override
+    public void writeDrainHandler(Runnable handler) {
+        drainHandlers.add(handler);
+    }
+
     @Override
     public Future<Void> writeErrorEndPacketBySyncInProcessError() {
         return writeBytes(MySQLPacketUtil.generateError(
@@ -189,7 +211,7 @@ public class VertxSessionImpl implements VertxSession {
 
     @Override
     public Future<Void> directWrite(Buffer buffer) {
-        return socket.write(buffer);
+        return writeAggregator.writeRaw(buffer);
     }
 
     @Override
@@ -2,9 +2,21 @@ CREATE DATABASE IF NOT EXISTS `mycat`;
 USE `mycat`;
 DROP TABLE IF EXISTS `analyze_table`;
 CREATE TABLE `analyze_table` (
+  `schema_name` varchar(64) NOT NULL,
+  `table_name` varchar(64) NOT NULL,
   `table_rows` bigint(20) NOT NULL,
-  `name` varchar(64) NOT NULL,
-  PRIMARY KEY (`name`)
+  PRIMARY KEY (`schema_name`,`table_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+DROP TABLE IF EXISTS `analyze_column`;
+CREATE TABLE `analyze_column` (
+  `schema_name` varchar(64) NOT NULL,
+  `table_name` varchar(64) NOT NULL,
+  `column_name` varchar(64) NOT NULL,
+  `ndv` double NOT NULL,
+  `null_fraction` double NOT NULL,
+  `histogram` longtext,
+  `hll` longtext,
+  PRIMARY KEY (`schema_name`,`table_name`,`column_name`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
 DROP TABLE IF EXISTS `config`;
 CREATE TABLE `config` (
@@ -44,6 +56,15 @@ CREATE TABLE `spm_plan` (
   PRIMARY KEY (`id`),
   KEY `id` (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=0 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+DROP TABLE IF EXISTS `spm_plan_snapshot`;
+CREATE TABLE `spm_plan_snapshot` (
+  `plan_id` bigint(22) NOT NULL,
+  `baseline_id` bigint(22) DEFAULT NULL,
+  `fingerprint` varchar(64) DEFAULT NULL,
+  `code` longtext,
+  `hit_count` bigint(22) DEFAULT 0,
+  PRIMARY KEY (`plan_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
 DROP TABLE IF EXISTS `sql_log`;
 CREATE TABLE `sql_log` (
   `instanceId` bigint(20) DEFAULT NULL,
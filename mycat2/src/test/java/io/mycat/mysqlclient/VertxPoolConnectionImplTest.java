@@ -0,0 +1,122 @@
+package io.mycat.mysqlclient;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetSocket;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class VertxPoolConnectionImplTest {
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+    private static final long VALIDATE_IDLE = TimeUnit.SECONDS.toMillis(30);
+
+    private Vertx vertx;
+    private VertxPoolConnectionImpl pool;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        VertxPoolConnectionImpl.Config config = new VertxPoolConnectionImpl.Config();
+        config.setName("testIdle");
+        config.setMinCon(1);
+        config.setMaxCon(10);
+        config.setTimer(IDLE_TIMEOUT);
+        config.setValidateIdleMillis(VALIDATE_IDLE);
+        //由测试直接调用collectIdle,不依赖定时维护
+        config.setMaintenanceMillis(TimeUnit.HOURS.toMillis(1));
+        pool = new VertxPoolConnectionImpl(config, vertx);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        vertx.close();
+    }
+
+    @Test
+    public void testCloseIdleAboveMinCon() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            //一直只被校验,从未被使用
+            pool.connections.offer(connection(i, now - 2 * IDLE_TIMEOUT, now));
+        }
+        List<VertxConnection> closeList = new ArrayList<>();
+        List<VertxConnection> validateList = new ArrayList<>();
+        pool.collectIdle(now, closeList, validateList);
+
+        Assert.assertEquals(2, closeList.size());
+        Assert.assertEquals(0, validateList.size());
+        Assert.assertEquals(1, pool.getAvailableNumber().intValue());
+    }
+
+    @Test
+    public void testValidateWithoutTouchingLastUsedTime() {
+        long now = System.currentTimeMillis();
+        VertxConnection connection = connection(0, now - 2 * IDLE_TIMEOUT, now - 2 * VALIDATE_IDLE);
+        pool.connections.offer(connection);
+        List<VertxConnection> closeList = new ArrayList<>();
+        List<VertxConnection> validateList = new ArrayList<>();
+        pool.collectIdle(now, closeList, validateList);
+
+        //minCon以内的连接保留,只做校验
+        Assert.assertEquals(0, closeList.size());
+        Assert.assertEquals(1, validateList.size());
+        Assert.assertEquals(now - 2 * IDLE_TIMEOUT, connection.lastUsedTime);
+    }
+
+    @Test
+    public void testKeepRecentlyUsed() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            pool.connections.offer(connection(i, now - 1000, now - 1000));
+        }
+        List<VertxConnection> closeList = new ArrayList<>();
+        List<VertxConnection> validateList = new ArrayList<>();
+        pool.collectIdle(now, closeList, validateList);
+
+        Assert.assertEquals(0, closeList.size());
+        Assert.assertEquals(0, validateList.size());
+        Assert.assertEquals(3, pool.getAvailableNumber().intValue());
+    }
+
+    @Test
+    public void testDrainMultiplexBeforeKill() {
+        VertxConnection connection = connection(0, System.currentTimeMillis(), System.currentTimeMillis());
+        connection.multiplexed = true;
+        connection.multiplexPending = 2;
+        pool.usedConnections.put(connection.getConnectionId(), connection);
+        pool.multiplexConnections.add(connection);
+
+        //出错的会话释放后不再分配该连接,但另一个会话的查询还在进行
+        pool.releaseMultiplex(connection, true);
+        Assert.assertTrue(connection.draining);
+        Assert.assertFalse(pool.multiplexConnections.contains(connection));
+        Assert.assertEquals(1, pool.getUsedNumber().intValue());
+
+        pool.releaseMultiplex(connection, false);
+        Assert.assertEquals(0, pool.getUsedNumber().intValue());
+    }
+
+    private VertxConnection connection(long connectionId, long lastUsedTime, long lastValidatedTime) {
+        VertxConnection connection = new VertxConnection(nopSocket(), connectionId, pool.config, pool);
+        connection.lastUsedTime = lastUsedTime;
+        connection.lastValidatedTime = lastValidatedTime;
+        return connection;
+    }
+
+    private static NetSocket nopSocket() {
+        return (NetSocket) Proxy.newProxyInstance(NetSocket.class.getClassLoader(), new Class[]{NetSocket.class}, (proxy, method, args) -> {
+            if ("close".equals(method.getName())) {
+                return Future.succeededFuture();
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,153 @@
+package io.mycat.vertx;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class PacketWriteAggregatorTest {
+    private Vertx vertx;
+    private List<Buffer> writes;
+    private NetSocket socket;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        writes = new CopyOnWriteArrayList<>();
+        socket = recordingSocket(writes);
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testWithoutContextWritesEachPacket() {
+        PacketWriteAggregator aggregator = new PacketWriteAggregator(socket, null);
+        Future<Void> first = aggregator.write(1, new byte[]{1, 2}, false);
+        Future<Void> second = aggregator.write(2, new byte[]{3}, false);
+        Assert.assertTrue(first.succeeded());
+        Assert.assertTrue(second.succeeded());
+        Assert.assertEquals(2, writes.size());
+        Assert.assertArrayEquals(new byte[]{2, 0, 0, 1, 1, 2}, writes.get(0).getBytes());
+        Assert.assertArrayEquals(new byte[]{1, 0, 0, 2, 3}, writes.get(1).getBytes());
+    }
+
+    @Test
+    public void testMergeUntilContextIdle() throws Exception {
+        Context context = vertx.getOrCreateContext();
+        PacketWriteAggregator aggregator = new PacketWriteAggregator(socket, context);
+        CompletableFuture<Integer> writesInTask = new CompletableFuture<>();
+        context.runOnContext(unused -> {
+            aggregator.write(1, new byte[]{1}, false);
+            aggregator.write(2, new byte[]{2}, false);
+            aggregator.write(3, new byte[]{3}, false);
+            writesInTask.complete(writes.size());
+        });
+        Assert.assertEquals(0, (int) writesInTask.get(5, TimeUnit.SECONDS));
+        awaitWrites(1);
+        Assert.assertArrayEquals(new byte[]{1, 0, 0, 1, 1, 1, 0, 0, 2, 2, 1, 0, 0, 3, 3}, writes.get(0).getBytes());
+    }
+
+    @Test
+    public void testFlushOnEnd() throws Exception {
+        Context context = vertx.getOrCreateContext();
+        PacketWriteAggregator aggregator = new PacketWriteAggregator(socket, context);
+        CompletableFuture<Integer> writesInTask = new CompletableFuture<>();
+        context.runOnContext(unused -> {
+            aggregator.write(1, new byte[]{1}, false);
+            aggregator.write(2, new byte[]{2}, true);
+            writesInTask.complete(writes.size());
+        });
+        Assert.assertEquals(1, (int) writesInTask.get(5, TimeUnit.SECONDS));
+        Assert.assertArrayEquals(new byte[]{1, 0, 0, 1, 1, 1, 0, 0, 2, 2}, writes.get(0).getBytes());
+    }
+
+    @Test
+    public void testFlushOnPacketLimit() throws Exception {
+        int maxBatchPackets = PacketWriteAggregator.MAX_BATCH_PACKETS;
+        PacketWriteAggregator.MAX_BATCH_PACKETS = 2;
+        try {
+            Context context = vertx.getOrCreateContext();
+            PacketWriteAggregator aggregator = new PacketWriteAggregator(socket, context);
+            CompletableFuture<Integer> writesInTask = new CompletableFuture<>();
+            context.runOnContext(unused -> {
+                aggregator.write(1, new byte[]{1}, false);
+                aggregator.write(2, new byte[]{2}, false);
+                aggregator.write(3, new byte[]{3}, false);
+                writesInTask.complete(writes.size());
+            });
+            Assert.assertEquals(1, (int) writesInTask.get(5, TimeUnit.SECONDS));
+            awaitWrites(2);
+            Assert.assertArrayEquals(new byte[]{1, 0, 0, 3, 3}, writes.get(1).getBytes());
+        } finally {
+            PacketWriteAggregator.MAX_BATCH_PACKETS = maxBatchPackets;
+        }
+    }
+
+    @Test
+    public void testWriteRawKeepsOrder() throws Exception {
+        Context context = vertx.getOrCreateContext();
+        PacketWriteAggregator aggregator = new PacketWriteAggregator(socket, context);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        context.runOnContext(unused -> {
+            aggregator.write(1, new byte[]{1}, false);
+            aggregator.writeRaw(Buffer.buffer(new byte[]{9}));
+            done.complete(null);
+        });
+        done.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, writes.size());
+        Assert.assertArrayEquals(new byte[]{1, 0, 0, 1, 1}, writes.get(0).getBytes());
+        Assert.assertArrayEquals(new byte[]{9}, writes.get(1).getBytes());
+    }
+
+    private void awaitWrites(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writes.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, writes.size());
+    }
+
+    /**
+     * 只记录写出内容的NetSocket
+     */
+    @SuppressWarnings("unchecked")
+    private static NetSocket recordingSocket(List<Buffer> writes) {
+        return (NetSocket) Proxy.newProxyInstance(NetSocket.class.getClassLoader(), new Class[]{NetSocket.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "write":
+                    writes.add(((Buffer) args[0]).copy());
+                    if (args.length == 2) {
+                        ((Handler<AsyncResult<Void>>) args[1]).handle(Future.succeededFuture());
+                        return null;
+                    }
+                    return Future.succeededFuture();
+                case "writeQueueFull":
+                    return false;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "RecordingNetSocket";
+                default:
+                    return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package io.mycat.vertx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+public class RowPayloadWriterTest {
+
+    private static String readLenencString(byte[] bytes) {
+        int len = bytes[0] & 0xff;
+        Assert.assertTrue(len < 251);
+        Assert.assertEquals(len + 1, bytes.length);
+        return new String(bytes, 1, len, StandardCharsets.US_ASCII);
+    }
+
+    private static String longText(long value) {
+        RowPayloadWriter writer = new RowPayloadWriter(2);
+        writer.writeLongText(value);
+        return readLenencString(writer.copyBytes());
+    }
+
+    private static String decimalText(BigDecimal value) {
+        RowPayloadWriter writer = new RowPayloadWriter(2);
+        Assert.assertTrue(writer.writeDecimalText(value));
+        return readLenencString(writer.copyBytes());
+    }
+
+    @Test
+    public void testLongText() {
+        long[] values = {0, 1, -1, 9, 10, -10, 99, 100, 1234567890L, -1234567890L,
+                999999999999999999L, 1000000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+        for (long value : values) {
+            Assert.assertEquals(Long.toString(value), longText(value));
+        }
+    }
+
+    @Test
+    public void testDecimalText() {
+        String[] values = {"0", "0.00", "1.50", "-1.50", "0.001", "-0.001", "0.000001", "123.456",
+                "-999999999999999999", "99999999.9999999999", "0.100000000000000000"};
+        for (String value : values) {
+            BigDecimal decimal = new BigDecimal(value);
+            Assert.assertEquals(decimal.toString(), decimalText(decimal));
+        }
+    }
+
+    @Test
+    public void testDecimalFallback() {
+        RowPayloadWriter writer = new RowPayloadWriter(2);
+        Assert.assertFalse(writer.writeDecimalText(new BigDecimal("1234567890123456789")));
+        Assert.assertFalse(writer.writeDecimalText(new BigDecimal("1E+3")));
+        Assert.assertFalse(writer.writeDecimalText(new BigDecimal("0.0000001")));
+        Assert.assertEquals(0, writer.position());
+    }
+
+    @Test
+    public void testReuse() {
+        RowPayloadWriter writer = new RowPayloadWriter(4);
+        writer.writeLongText(12);
+        byte[] first = writer.copyBytes();
+        writer.reset();
+        writer.writeLongText(345);
+        byte[] second = writer.copyBytes();
+        Assert.assertEquals("12", readLenencString(first));
+        Assert.assertEquals("345", readLenencString(second));
+    }
+
+    @Test
+    public void testSetBit() {
+        RowPayloadWriter writer = new RowPayloadWriter(4);
+        writer.writeByte((byte) 0);
+        writer.writeByte((byte) 0);
+        writer.setBit(1, 2);
+        writer.setBit(1, 7);
+        Assert.assertArrayEquals(new byte[]{0, (byte) 0x84}, writer.copyBytes());
+    }
+}
@@ -0,0 +1,94 @@
+package io.mycat.vertx;
+
+import io.mycat.beans.mysql.packet.MySQLPacketSplitter;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class VertxMySQLPacketResolverTest {
+
+    static class RecordingResolver extends VertxMySQLPacketResolver {
+        final List<Integer> packetIds = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+
+        RecordingResolver() {
+            super(null, null);
+        }
+
+        @Override
+        protected void onPacket(int packetId, Buffer payload) {
+            packetIds.add(packetId);
+            payloads.add(payload.getBytes());
+        }
+    }
+
+    private static byte[] packet(int packetId, byte[] payload) {
+        Buffer buffer = Buffer.buffer();
+        buffer.appendMediumLE(payload.length);
+        buffer.appendByte((byte) packetId);
+        buffer.appendBytes(payload);
+        return buffer.getBytes();
+    }
+
+    @Test
+    public void testManyPacketsInOneRead() {
+        RecordingResolver resolver = new RecordingResolver();
+        Buffer read = Buffer.buffer();
+        read.appendBytes(packet(0, new byte[]{3, 's', 'e', 'l'}));
+        read.appendBytes(packet(1, new byte[]{}));
+        read.appendBytes(packet(2, new byte[]{1}));
+        resolver.handle(read);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), resolver.packetIds);
+        Assert.assertArrayEquals(new byte[]{3, 's', 'e', 'l'}, resolver.payloads.get(0));
+        Assert.assertArrayEquals(new byte[]{}, resolver.payloads.get(1));
+        Assert.assertArrayEquals(new byte[]{1}, resolver.payloads.get(2));
+    }
+
+    @Test
+    public void testPacketAcrossReads() {
+        byte[] bytes = packet(5, new byte[]{3, 'a', 'b', 'c', 'd'});
+        //每个字节单独到达,报文头也被拆开
+        RecordingResolver resolver = new RecordingResolver();
+        for (byte b : bytes) {
+            resolver.handle(Buffer.buffer(new byte[]{b}));
+        }
+        Assert.assertEquals(Arrays.asList(5), resolver.packetIds);
+        Assert.assertArrayEquals(new byte[]{3, 'a', 'b', 'c', 'd'}, resolver.payloads.get(0));
+    }
+
+    @Test
+    public void testPacketTailWithNextPacket() {
+        byte[] first = packet(0, new byte[]{1, 2, 3});
+        byte[] second = packet(1, new byte[]{4});
+        byte[] all = new byte[first.length + second.length];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        RecordingResolver resolver = new RecordingResolver();
+        resolver.handle(Buffer.buffer(Arrays.copyOfRange(all, 0, 5)));
+        Assert.assertTrue(resolver.packetIds.isEmpty());
+        resolver.handle(Buffer.buffer(Arrays.copyOfRange(all, 5, all.length)));
+        Assert.assertEquals(Arrays.asList(0, 1), resolver.packetIds);
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, resolver.payloads.get(0));
+        Assert.assertArrayEquals(new byte[]{4}, resolver.payloads.get(1));
+    }
+
+    @Test
+    public void testMultiPacket() {
+        byte[] payload = new byte[MySQLPacketSplitter.MAX_PACKET_SIZE + 2];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        Buffer read = Buffer.buffer();
+        read.appendBytes(packet(0, Arrays.copyOfRange(payload, 0, MySQLPacketSplitter.MAX_PACKET_SIZE)));
+        read.appendBytes(packet(1, Arrays.copyOfRange(payload, MySQLPacketSplitter.MAX_PACKET_SIZE, payload.length)));
+        RecordingResolver resolver = new RecordingResolver();
+        resolver.handle(read.slice(0, 1024));
+        resolver.handle(read.slice(1024, read.length()));
+        Assert.assertEquals(Arrays.asList(1), resolver.packetIds);
+        Assert.assertArrayEquals(payload, resolver.payloads.get(0));
+    }
+}
@@ -142,6 +142,20 @@ public interface MySQLServerSession<T> {
 
     Future<Void> writeBytes(byte[] payload, boolean end);
 
+    /**
+     * 客户端写缓冲是否已满,满时应停止向后端请求结果
+     */
+    default boolean isWriteQueueFull() {
+        return false;
+    }
+
+    /**
+     * 写缓冲可以继续写入时回调,不支持背压的实现直接回调
+     */
+    default void writeDrainHandler(Runnable handler) {
+        handler.run();
+    }
+
     /**
      * 写入ok包,调用该方法,就指定响应已经结束
      */
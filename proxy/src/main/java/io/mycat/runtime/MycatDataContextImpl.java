@@ -92,6 +92,7 @@ public class MycatDataContextImpl implements MycatDataContext {
     private Map<String, Object> processStateMap = new HashMap<>();
     private boolean debug = false;
     private boolean vector = false;
+    private boolean backendSessionPinned = false;
     private Set<String> usedlocks = new HashSet<>();
     private Object holder;
     private String sql;
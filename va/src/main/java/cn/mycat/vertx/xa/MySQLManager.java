@@ -24,6 +24,14 @@ import java.util.Map;
 public interface MySQLManager {
 
     Future<NewMycatConnection> getConnection(String targetName);
+
+    /**
+     * 自动提交下的只读查询使用,数据源支持时多个会话共用后端连接
+     */
+    default Future<NewMycatConnection> getMultiplexConnection(String targetName) {
+        return getConnection(targetName);
+    }
+
     int getAvailableNumber(String targetName);
     int getSessionCount(String targetName);
 